@@ -29,14 +29,18 @@
  */
 package org.openimaj.feature;
 
-import java.util.HashMap;
-
 import org.openimaj.data.identity.Identifiable;
+import org.openimaj.feature.cache.BoundedFeatureCache;
+import org.openimaj.util.function.Function;
 
 /**
- * A simple wrapper for a feature extractor that caches the extracted feature to
- * a {@link HashMap}. If a feature has already been generated for a given
- * object, it will be re-read from the {@link HashMap}
+ * A simple wrapper for a feature extractor that caches the extracted feature in
+ * memory using a {@link BoundedFeatureCache}. If a feature has already been
+ * generated for a given object, it will be re-read from the cache. By default
+ * the cache is unbounded; if a maximum size is given, the least recently used
+ * features are discarded when it is exceeded. The extractor is safe to use
+ * from multiple threads, and concurrent requests for the same object only
+ * cause the feature to be extracted once.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -52,10 +56,10 @@ public class CachingFeatureExtractor<FEATURE, OBJECT extends Identifiable>
 	private FeatureExtractor<FEATURE, OBJECT> extractor;
 	private boolean force;
 
-	private HashMap<String, FEATURE> cache;
+	private BoundedFeatureCache<FEATURE> cache;
 
 	/**
-	 * Construct the cache {@link HashMap}. The given extractor will be used to
+	 * Construct an unbounded cache. The given extractor will be used to
 	 * generate the features.
 	 * 
 	 * @param extractor
@@ -66,7 +70,7 @@ public class CachingFeatureExtractor<FEATURE, OBJECT extends Identifiable>
 	}
 
 	/**
-	 * Construct the cache {@link HashMap} The given extractor will be used to
+	 * Construct an unbounded cache. The given extractor will be used to
 	 * generate the features. Optionally, all features can be regenerated.
 	 * 
 	 * @param extractor
@@ -76,26 +80,63 @@ public class CachingFeatureExtractor<FEATURE, OBJECT extends Identifiable>
 	 *            rather than being loaded.
 	 */
 	public CachingFeatureExtractor(FeatureExtractor<FEATURE, OBJECT> extractor, boolean force) {
-		this.cache = new HashMap<String, FEATURE>();
+		this(extractor, new BoundedFeatureCache<FEATURE>(Long.MAX_VALUE), force);
+	}
+
+	/**
+	 * Construct a cache that holds at most the given number of features. The
+	 * given extractor will be used to generate the features.
+	 * 
+	 * @param extractor
+	 *            the feature extractor
+	 * @param maxSize
+	 *            the maximum number of features to cache
+	 */
+	public CachingFeatureExtractor(FeatureExtractor<FEATURE, OBJECT> extractor, long maxSize) {
+		this(extractor, new BoundedFeatureCache<FEATURE>(maxSize), false);
+	}
+
+	/**
+	 * Construct with the given cache. The given extractor will be used to
+	 * generate the features. Optionally, all features can be regenerated.
+	 * 
+	 * @param extractor
+	 *            the feature extractor
+	 * @param cache
+	 *            the cache
+	 * @param force
+	 *            if true, then all features will be regenerated and saved,
+	 *            rather than being loaded.
+	 */
+	public CachingFeatureExtractor(FeatureExtractor<FEATURE, OBJECT> extractor, BoundedFeatureCache<FEATURE> cache,
+			boolean force)
+	{
+		this.cache = cache;
 		this.extractor = extractor;
 		this.force = force;
 	}
 
 	@Override
-	public FEATURE extractFeature(OBJECT object) {
-		final FEATURE cachedFeature = this.cache.get(object.getID());
-
-		FEATURE feature = null;
-		if (!force && cachedFeature != null) {
-			feature = cachedFeature;
-
-			if (feature != null)
-				return feature;
+	public FEATURE extractFeature(final OBJECT object) {
+		if (force) {
+			final FEATURE feature = extractor.extractFeature(object);
+			this.cache.put(object.getID(), feature);
+			return feature;
 		}
 
-		feature = extractor.extractFeature(object);
-		this.cache.put(object.getID(), feature);
-		return feature;
+		return this.cache.get(object.getID(), new Function<String, FEATURE>() {
+			@Override
+			public FEATURE apply(String id) {
+				return extractor.extractFeature(object);
+			}
+		});
+	}
+
+	/**
+	 * @return the underlying cache
+	 */
+	public BoundedFeatureCache<FEATURE> getCache() {
+		return cache;
 	}
 
 	@Override
@@ -43,6 +43,10 @@ import org.openimaj.io.WriteableBinary;
  * A simple wrapper for a feature extractor that caches the extracted feature to
  * disk. If a feature has already been generated for a given object, it will be
  * re-read from disk rather than being re-generated.
+ * <p>
+ * As there is one file per object, this class is best suited to modest
+ * numbers of objects; see {@link TieredCachingFeatureExtractor} for an
+ * alternative that scales to much larger collections.
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.feature.cache.BoundedFeatureCache;
+import org.openimaj.feature.cache.SegmentedFeatureStore;
+import org.openimaj.util.function.Function;
+
+/**
+ * A wrapper for a feature extractor that caches the extracted features in two
+ * tiers: a bounded in-memory {@link BoundedFeatureCache}, backed by a
+ * persistent {@link SegmentedFeatureStore}. Features are looked up in memory
+ * first, then on disk, and are only extracted if they are in neither;
+ * extracted features are written through to the disk tier. Concurrent
+ * requests for the same object only cause the feature to be extracted (or
+ * read) once.
+ * <p>
+ * Unlike {@link DiskCachingFeatureExtractor}, which writes a file per object,
+ * the disk tier packs the features into a small number of large files, so
+ * this class is more suitable for collections with millions of objects.
+ * Either tier can be <code>null</code> if it is not required.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <FEATURE>
+ *            Type of feature
+ * @param <OBJECT>
+ *            Type of object
+ */
+public class TieredCachingFeatureExtractor<FEATURE, OBJECT extends Identifiable>
+		implements
+		FeatureExtractor<FEATURE, OBJECT>
+{
+	private static Logger logger = LogManager.getLogger(TieredCachingFeatureExtractor.class);
+
+	private FeatureExtractor<FEATURE, OBJECT> extractor;
+	private BoundedFeatureCache<FEATURE> memory;
+	private SegmentedFeatureStore<FEATURE> disk;
+	private boolean force;
+
+	/**
+	 * Construct with the given extractor and cache tiers.
+	 *
+	 * @param extractor
+	 *            the feature extractor
+	 * @param memory
+	 *            the in-memory cache (can be <code>null</code>)
+	 * @param disk
+	 *            the persistent store (can be <code>null</code>)
+	 */
+	public TieredCachingFeatureExtractor(FeatureExtractor<FEATURE, OBJECT> extractor,
+			BoundedFeatureCache<FEATURE> memory, SegmentedFeatureStore<FEATURE> disk)
+	{
+		this(extractor, memory, disk, false);
+	}
+
+	/**
+	 * Construct with the given extractor and cache tiers. Optionally, the
+	 * features in the persistent store can be ignored and regenerated.
+	 *
+	 * @param extractor
+	 *            the feature extractor
+	 * @param memory
+	 *            the in-memory cache (can be <code>null</code>)
+	 * @param disk
+	 *            the persistent store (can be <code>null</code>)
+	 * @param force
+	 *            if true, then features will be regenerated and saved, rather
+	 *            than being loaded from the persistent store.
+	 */
+	public TieredCachingFeatureExtractor(FeatureExtractor<FEATURE, OBJECT> extractor,
+			BoundedFeatureCache<FEATURE> memory, SegmentedFeatureStore<FEATURE> disk, boolean force)
+	{
+		this.extractor = extractor;
+		this.memory = memory;
+		this.disk = disk;
+		this.force = force;
+	}
+
+	@Override
+	public FEATURE extractFeature(final OBJECT object) {
+		if (memory == null)
+			return load(object);
+
+		return memory.get(object.getID(), new Function<String, FEATURE>() {
+			@Override
+			public FEATURE apply(String id) {
+				return load(object);
+			}
+		});
+	}
+
+	private FEATURE load(OBJECT object) {
+		final String id = object.getID();
+
+		if (disk != null && !force) {
+			try {
+				final FEATURE feature = disk.get(id);
+
+				if (feature != null)
+					return feature;
+			} catch (final Exception e) {
+				logger.warn("Error reading from cache. Feature will be regenerated.", e);
+			}
+		}
+
+		final FEATURE feature = extractor.extractFeature(object);
+
+		if (disk != null && feature != null) {
+			try {
+				disk.put(id, feature);
+			} catch (final IOException e) {
+				logger.warn("Caching of the feature for the " + id + " object failed", e);
+			}
+		}
+
+		return feature;
+	}
+
+	/**
+	 * @return the in-memory cache tier (might be <code>null</code>)
+	 */
+	public BoundedFeatureCache<FEATURE> getMemoryCache() {
+		return memory;
+	}
+
+	/**
+	 * @return the persistent store tier (might be <code>null</code>)
+	 */
+	public SegmentedFeatureStore<FEATURE> getDiskStore() {
+		return disk;
+	}
+
+	@Override
+	public String toString() {
+		return this.extractor.toString();
+	}
+}
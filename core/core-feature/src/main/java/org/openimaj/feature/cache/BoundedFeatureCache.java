@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openimaj.util.function.Function;
+
+/**
+ * A thread-safe in-memory cache of features, keyed by the identifier of the
+ * object they were extracted from. The cache is bounded by a maximum total
+ * weight; the weight of each feature is determined by a {@link Weigher}, and
+ * defaults to one per feature (so the bound is the number of features). When
+ * the bound is exceeded, the least recently used features are evicted.
+ * <p>
+ * Features can be created with {@link #get(String, Function)}, which
+ * guarantees that concurrent requests for the same identifier only cause the
+ * feature to be created once; the other callers wait for the result.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <FEATURE>
+ *            Type of feature
+ */
+public class BoundedFeatureCache<FEATURE> {
+	/**
+	 * Interface for objects that can compute the weight of a cached feature.
+	 *
+	 * @param <FEATURE>
+	 *            Type of feature
+	 */
+	public interface Weigher<FEATURE> {
+		/**
+		 * Compute the weight of the given feature
+		 *
+		 * @param id
+		 *            the identifier
+		 * @param feature
+		 *            the feature
+		 * @return the weight; must be non-negative
+		 */
+		long weigh(String id, FEATURE feature);
+	}
+
+	private static class Entry<FEATURE> {
+		FEATURE feature;
+		long weight;
+
+		Entry(FEATURE feature, long weight) {
+			this.feature = feature;
+			this.weight = weight;
+		}
+	}
+
+	private final LinkedHashMap<String, Entry<FEATURE>> map = new LinkedHashMap<String, Entry<FEATURE>>(16, 0.75f,
+			true);
+	private final ConcurrentHashMap<String, FutureTask<FEATURE>> pending = new ConcurrentHashMap<String, FutureTask<FEATURE>>();
+
+	private final long maxWeight;
+	private final Weigher<FEATURE> weigher;
+	private long weight;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Construct a cache that holds at most the given number of features.
+	 *
+	 * @param maxSize
+	 *            the maximum number of features
+	 */
+	public BoundedFeatureCache(long maxSize) {
+		this(maxSize, null);
+	}
+
+	/**
+	 * Construct a cache with the given maximum total weight.
+	 *
+	 * @param maxWeight
+	 *            the maximum total weight of the features
+	 * @param weigher
+	 *            the weigher used to determine the weight of each feature. If
+	 *            <code>null</code>, each feature will have a weight of one.
+	 */
+	public BoundedFeatureCache(long maxWeight, Weigher<FEATURE> weigher) {
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	/**
+	 * Get the feature with the given identifier if it is in the cache.
+	 *
+	 * @param id
+	 *            the identifier
+	 * @return the feature, or <code>null</code> if it is not in the cache
+	 */
+	public FEATURE getIfPresent(String id) {
+		final FEATURE feature = peek(id);
+
+		if (feature != null)
+			hits.incrementAndGet();
+
+		return feature;
+	}
+
+	private FEATURE peek(String id) {
+		synchronized (map) {
+			final Entry<FEATURE> e = map.get(id);
+			return e == null ? null : e.feature;
+		}
+	}
+
+	/**
+	 * Get the feature with the given identifier, creating it with the given
+	 * function if it is not in the cache. If multiple threads request the
+	 * same missing feature concurrently, the function is only applied once.
+	 * Any exception thrown by the function is rethrown in all of the waiting
+	 * threads, and nothing is cached.
+	 *
+	 * @param id
+	 *            the identifier
+	 * @param loader
+	 *            the function to create the feature from its identifier
+	 * @return the feature
+	 */
+	public FEATURE get(final String id, final Function<String, FEATURE> loader) {
+		final FEATURE cached = getIfPresent(id);
+		if (cached != null)
+			return cached;
+
+		final FutureTask<FEATURE> task = new FutureTask<FEATURE>(new Callable<FEATURE>() {
+			@Override
+			public FEATURE call() throws Exception {
+				// another thread might have finished between our lookup and
+				// the task being registered
+				final FEATURE feature = peek(id);
+				if (feature != null)
+					return feature;
+
+				misses.incrementAndGet();
+				return loader.apply(id);
+			}
+		});
+
+		FutureTask<FEATURE> running = pending.putIfAbsent(id, task);
+		if (running == null) {
+			running = task;
+
+			try {
+				task.run();
+
+				final FEATURE feature = task.get();
+				if (feature != null)
+					put(id, feature);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (final ExecutionException e) {
+				// rethrown below
+			} finally {
+				pending.remove(id, task);
+			}
+		}
+
+		try {
+			return running.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Add a feature to the cache, replacing any existing feature with the same
+	 * identifier. Least recently used features will be evicted if necessary.
+	 *
+	 * @param id
+	 *            the identifier
+	 * @param feature
+	 *            the feature
+	 */
+	public void put(String id, FEATURE feature) {
+		final long w = weigher == null ? 1 : weigher.weigh(id, feature);
+
+		synchronized (map) {
+			final Entry<FEATURE> old = map.put(id, new Entry<FEATURE>(feature, w));
+			if (old != null)
+				weight -= old.weight;
+			weight += w;
+
+			final Iterator<Entry<FEATURE>> iter = map.values().iterator();
+			while (weight > maxWeight && iter.hasNext()) {
+				final Entry<FEATURE> e = iter.next();
+				iter.remove();
+				weight -= e.weight;
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Remove the feature with the given identifier
+	 *
+	 * @param id
+	 *            the identifier
+	 */
+	public void invalidate(String id) {
+		synchronized (map) {
+			final Entry<FEATURE> old = map.remove(id);
+			if (old != null)
+				weight -= old.weight;
+		}
+	}
+
+	/**
+	 * Remove all features from the cache. The statistics are not reset.
+	 */
+	public void clear() {
+		synchronized (map) {
+			map.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * @return the number of features in the cache
+	 */
+	public int size() {
+		synchronized (map) {
+			return map.size();
+		}
+	}
+
+	/**
+	 * @return the total weight of the features in the cache
+	 */
+	public long weight() {
+		synchronized (map) {
+			return weight;
+		}
+	}
+
+	/**
+	 * @return the number of requests that were satisfied by the cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of features that had to be created by
+	 *         {@link #get(String, Function)}
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of features that have been evicted to keep the cache
+	 *         within its bound
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("BoundedFeatureCache[size=%d, weight=%d/%d, hits=%d, misses=%d, evictions=%d]", size(),
+				weight(), maxWeight, getHitCount(), getMissCount(), getEvictionCount());
+	}
+}
@@ -0,0 +1,361 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openimaj.io.IOUtils;
+
+/**
+ * A persistent store of features, keyed by the identifier of the object they
+ * were extracted from. Rather than writing a file per feature, the features
+ * are appended to a small number of large segment files, and their locations
+ * are recorded in an append-only index file which is read back into memory
+ * when the store is opened. Features are serialised with
+ * {@link IOUtils#write(Object, java.io.DataOutput)}, so they don't need any
+ * special serialisation support.
+ * <p>
+ * Writing a feature for an identifier that is already in the store appends
+ * the new version and supersedes the old one; the space used by the old
+ * version is not reclaimed. The feature data is always written before its
+ * index record, so if the index is not fully written (for example because
+ * {@link #close()} was not called) the affected features are simply missing
+ * from the store when it is re-opened.
+ * <p>
+ * Instances are thread-safe; reads of different features can proceed
+ * concurrently.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <FEATURE>
+ *            Type of feature
+ */
+public class SegmentedFeatureStore<FEATURE> implements Closeable {
+	/** The default maximum size of a segment file (256MB) */
+	public static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+
+	private static final String INDEX_FILE = "index.dat";
+
+	private static class Location {
+		int segment;
+		long offset;
+		int length;
+	}
+
+	private final File dir;
+	private final long segmentSize;
+
+	private final Map<String, Location> index = new HashMap<String, Location>();
+	private final List<FileChannel> segments = new ArrayList<FileChannel>();
+	private final List<RandomAccessFile> files = new ArrayList<RandomAccessFile>();
+	private long currentLength;
+	private DataOutputStream indexStream;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong writes = new AtomicLong();
+
+	/**
+	 * Open (or create) a store in the given directory using the default
+	 * segment size.
+	 *
+	 * @param dir
+	 *            the directory
+	 * @throws IOException
+	 *             if the store cannot be opened
+	 */
+	public SegmentedFeatureStore(File dir) throws IOException {
+		this(dir, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Open (or create) a store in the given directory.
+	 *
+	 * @param dir
+	 *            the directory
+	 * @param segmentSize
+	 *            the size at which a new segment file is started
+	 * @throws IOException
+	 *             if the store cannot be opened
+	 */
+	public SegmentedFeatureStore(File dir, long segmentSize) throws IOException {
+		this.dir = dir;
+		this.segmentSize = segmentSize;
+
+		dir.mkdirs();
+
+		while (segmentFile(segments.size()).exists())
+			openSegment(segments.size());
+
+		if (segments.size() == 0)
+			openSegment(0);
+
+		currentLength = segments.get(segments.size() - 1).size();
+
+		final File indexFile = new File(dir, INDEX_FILE);
+		final long valid = readIndex(indexFile);
+		if (indexFile.exists() && indexFile.length() != valid) {
+			// remove any partially written record
+			final RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+			try {
+				raf.setLength(valid);
+			} finally {
+				raf.close();
+			}
+		}
+
+		indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+	}
+
+	private File segmentFile(int segment) {
+		return new File(dir, String.format("segment-%05d.dat", segment));
+	}
+
+	private void openSegment(int segment) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(segmentFile(segment), "rw");
+		files.add(raf);
+		segments.add(raf.getChannel());
+	}
+
+	/**
+	 * Read the index, returning the length of the valid part of the file
+	 */
+	private long readIndex(File indexFile) throws IOException {
+		if (!indexFile.exists())
+			return 0;
+
+		final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		long valid = 0;
+		try {
+			while (true) {
+				final String id = dis.readUTF();
+				final Location loc = new Location();
+				loc.segment = dis.readInt();
+				loc.offset = dis.readLong();
+				loc.length = dis.readInt();
+
+				// UTF length prefix + bytes, plus the location
+				valid += 2 + modifiedUTFLength(id) + 4 + 8 + 4;
+
+				if (loc.segment < segments.size() && loc.offset + loc.length <= segments.get(loc.segment).size())
+					index.put(id, loc);
+			}
+		} catch (final EOFException e) {
+			// end of the index, or a partially written record
+		} finally {
+			dis.close();
+		}
+
+		return valid;
+	}
+
+	private static int modifiedUTFLength(String str) {
+		int len = 0;
+		for (int i = 0; i < str.length(); i++) {
+			final char c = str.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F)
+				len++;
+			else if (c > 0x07FF)
+				len += 3;
+			else
+				len += 2;
+		}
+		return len;
+	}
+
+	/**
+	 * Get the feature with the given identifier.
+	 *
+	 * @param id
+	 *            the identifier
+	 * @return the feature, or <code>null</code> if it is not in the store
+	 * @throws IOException
+	 *             if the feature cannot be read
+	 */
+	public FEATURE get(String id) throws IOException {
+		final Location loc;
+		final FileChannel channel;
+		synchronized (this) {
+			loc = index.get(id);
+
+			if (loc == null) {
+				misses.incrementAndGet();
+				return null;
+			}
+
+			channel = segments.get(loc.segment);
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate(loc.length);
+		long pos = loc.offset;
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, pos);
+			if (read < 0)
+				throw new EOFException("Feature data for " + id + " is truncated");
+			pos += read;
+		}
+
+		hits.incrementAndGet();
+		return IOUtils.<FEATURE> read(new DataInputStream(new ByteArrayInputStream(buffer.array())));
+	}
+
+	/**
+	 * Write a feature to the store.
+	 *
+	 * @param id
+	 *            the identifier
+	 * @param feature
+	 *            the feature
+	 * @throws IOException
+	 *             if the feature cannot be written
+	 */
+	public void put(String id, FEATURE feature) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		IOUtils.write(feature, new DataOutputStream(baos));
+		final byte[] data = baos.toByteArray();
+
+		synchronized (this) {
+			if (currentLength > 0 && currentLength + data.length > segmentSize) {
+				openSegment(segments.size());
+				currentLength = 0;
+			}
+
+			final Location loc = new Location();
+			loc.segment = segments.size() - 1;
+			loc.offset = currentLength;
+			loc.length = data.length;
+
+			final FileChannel channel = segments.get(loc.segment);
+			final ByteBuffer buffer = ByteBuffer.wrap(data);
+			long pos = loc.offset;
+			while (buffer.hasRemaining())
+				pos += channel.write(buffer, pos);
+			currentLength = pos;
+
+			indexStream.writeUTF(id);
+			indexStream.writeInt(loc.segment);
+			indexStream.writeLong(loc.offset);
+			indexStream.writeInt(loc.length);
+
+			index.put(id, loc);
+		}
+
+		writes.incrementAndGet();
+	}
+
+	/**
+	 * Test whether the store contains a feature for the given identifier
+	 *
+	 * @param id
+	 *            the identifier
+	 * @return true if the feature is in the store; false otherwise
+	 */
+	public synchronized boolean contains(String id) {
+		return index.containsKey(id);
+	}
+
+	/**
+	 * @return the number of features in the store
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * @return the number of segment files
+	 */
+	public synchronized int numSegments() {
+		return segments.size();
+	}
+
+	/**
+	 * Flush the index to disk.
+	 *
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public synchronized void flush() throws IOException {
+		indexStream.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		indexStream.close();
+
+		for (final RandomAccessFile raf : files)
+			raf.close();
+	}
+
+	/**
+	 * @return the number of successful reads
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of reads of features that were not in the store
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of features written
+	 */
+	public long getWriteCount() {
+		return writes.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SegmentedFeatureStore[%s, size=%d, segments=%d, hits=%d, misses=%d, writes=%d]", dir,
+				size(), numSegments(), getHitCount(), getMissCount(), getWriteCount());
+	}
+}
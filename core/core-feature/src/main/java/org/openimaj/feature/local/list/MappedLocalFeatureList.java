@@ -0,0 +1,348 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature.local.list;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import org.openimaj.data.RandomData;
+import org.openimaj.feature.local.LocalFeature;
+import org.openimaj.io.IOUtils;
+
+/**
+ * A read-only {@link LocalFeatureList} backed by a memory-mapped binary
+ * ("KPT") local feature file. The file is mapped with NIO when the list is
+ * created, and the position of every record is computed directly from the
+ * header and the (fixed) record length, so any feature can be accessed in
+ * constant time without re-reading or parsing the preceding ones.
+ * <p>
+ * Features are decoded on demand by {@link #get(int)}. If only the raw data
+ * is required, {@link #getRecordBuffer(int)} and
+ * {@link #getFeatureVectorBuffer(int)} return views of the mapped file
+ * without copying or decoding anything; this assumes (as is the case for all
+ * the local features in OpenIMAJ) that the binary form of a feature is the
+ * binary form of its location followed by the feature vector.
+ * <p>
+ * Only the binary format can be mapped; use {@link FileLocalFeatureList} for
+ * ASCII files.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <T>
+ *            the type of local feature
+ */
+public class MappedLocalFeatureList<T extends LocalFeature<?, ?>> extends AbstractList<T>
+		implements
+		LocalFeatureList<T>,
+		RandomAccess
+{
+	protected final Class<T> clz;
+	protected final int veclen;
+	protected final int recordLength;
+	protected final int locationLength;
+
+	/** the mapped regions of the file; each holds a whole number of records */
+	protected final ByteBuffer[] segments;
+	protected final int recordsPerSegment;
+
+	/** the index of the first record of this list */
+	protected final long offset;
+	protected final int size;
+
+	protected MappedLocalFeatureList(ByteBuffer[] segments, int recordsPerSegment, long offset, int size, int veclen,
+			int recordLength, int locationLength, Class<T> clz)
+	{
+		this.segments = segments;
+		this.recordsPerSegment = recordsPerSegment;
+		this.offset = offset;
+		this.size = size;
+		this.veclen = veclen;
+		this.recordLength = recordLength;
+		this.locationLength = locationLength;
+		this.clz = clz;
+	}
+
+	/**
+	 * Map a binary file containing a set of local features of type clz. As
+	 * with {@link FileLocalFeatureList}, it is assumed that clz can
+	 * instantiate itself either given a vec length or no parameters and that
+	 * the instance can write itself, even when filled with no other data.
+	 * 
+	 * @param <T>
+	 *            the local feature class
+	 * @param keypointFile
+	 *            the file
+	 * @param clz
+	 *            the local feature class
+	 * @return a list of local features backed by the mapped file
+	 * @throws IOException
+	 *             if a problem occurs reading or mapping the file, or the file
+	 *             is not in the binary format
+	 */
+	public static <T extends LocalFeature<?, ?>> MappedLocalFeatureList<T> read(File keypointFile, Class<T> clz)
+			throws IOException
+	{
+		if (!IOUtils.isBinary(keypointFile, LocalFeatureList.BINARY_HEADER))
+			throw new IOException("Only binary local feature files can be memory-mapped");
+
+		// read header
+		final int[] header = LocalFeatureListUtils.readHeader(keypointFile, true);
+		final int size = header[0];
+		final int veclen = header[1];
+		final int headerLength = header[2];
+
+		// determine the length of the records and of the location within them
+		final T instance = LocalFeatureListUtils.newInstance(clz, veclen);
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		instance.writeBinary(new DataOutputStream(buffer));
+		final int recordLength = buffer.size();
+
+		buffer.reset();
+		instance.getLocation().writeBinary(new DataOutputStream(buffer));
+		final int locationLength = buffer.size();
+
+		// map the file in segments that hold whole records, as a single
+		// mapping is limited to 2GB
+		final int recordsPerSegment = Math.max(1, Integer.MAX_VALUE / Math.max(recordLength, 1));
+		final int nSegments = size == 0 ? 0 : 1 + (size - 1) / recordsPerSegment;
+		final ByteBuffer[] segments = new ByteBuffer[nSegments];
+
+		final RandomAccessFile raf = new RandomAccessFile(keypointFile, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+
+			if (channel.size() < headerLength + (long) size * recordLength)
+				throw new IOException("File is shorter than the " + size + " records given in its header");
+
+			for (int i = 0; i < nSegments; i++) {
+				final long start = headerLength + (long) i * recordsPerSegment * recordLength;
+				final int count = Math.min(recordsPerSegment, size - i * recordsPerSegment);
+
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, (long) count * recordLength);
+			}
+		} finally {
+			// the mappings remain valid after the channel is closed
+			raf.close();
+		}
+
+		return new MappedLocalFeatureList<T>(segments, recordsPerSegment, 0, size, veclen, recordLength,
+				locationLength, clz);
+	}
+
+	/**
+	 * Get a read-only view of the binary data of the record at the given index.
+	 * The returned buffer shares the mapped memory and is positioned at the
+	 * start of the record.
+	 * 
+	 * @param index
+	 *            the index of the feature
+	 * @return a buffer containing the binary form of the feature
+	 */
+	public ByteBuffer getRecordBuffer(int index) {
+		return slice(index, 0, recordLength);
+	}
+
+	/**
+	 * Get a read-only view of the binary data of the feature vector of the
+	 * record at the given index. The returned buffer shares the mapped memory;
+	 * for byte features (e.g. SIFT) the vector elements can be read directly
+	 * with {@link ByteBuffer#get(int)}.
+	 * 
+	 * @param index
+	 *            the index of the feature
+	 * @return a buffer containing the binary form of the feature vector
+	 */
+	public ByteBuffer getFeatureVectorBuffer(int index) {
+		return slice(index, locationLength, recordLength - locationLength);
+	}
+
+	private ByteBuffer slice(int index, int start, int length) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		final long record = offset + index;
+		final int position = (int) (record % recordsPerSegment) * recordLength + start;
+
+		final ByteBuffer buffer = segments[(int) (record / recordsPerSegment)].duplicate();
+		buffer.limit(position + length);
+		buffer.position(position);
+
+		return buffer.slice().asReadOnlyBuffer();
+	}
+
+	@Override
+	public T get(int index) {
+		final T element = LocalFeatureListUtils.newInstance(clz, veclen);
+
+		try {
+			element.readBinary(new DataInputStream(new ByteBufferInputStream(getRecordBuffer(index))));
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		return element;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int vecLength() {
+		return veclen;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <Q> Q[] asDataArray(Q[] a) {
+		if (a.length < size()) {
+			a = (Q[]) Array.newInstance(a.getClass().getComponentType(), size());
+		}
+
+		for (int i = 0; i < size; i++) {
+			a[i] = (Q) get(i).getFeatureVector().getVector();
+		}
+
+		return a;
+	}
+
+	/**
+	 * Get a view of a portion of this list. The returned list shares the
+	 * mapped memory of this list.
+	 */
+	@Override
+	public MappedLocalFeatureList<T> subList(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex);
+
+		return new MappedLocalFeatureList<T>(segments, recordsPerSegment, offset + fromIndex, toIndex - fromIndex,
+				veclen, recordLength, locationLength, clz);
+	}
+
+	@Override
+	public MemoryLocalFeatureList<T> randomSubList(int nelem) {
+		final int[] rnds = RandomData.getUniqueRandomInts(Math.min(nelem, size), 0, size);
+		final MemoryLocalFeatureList<T> kl = new MemoryLocalFeatureList<T>(veclen);
+
+		for (final int idx : rnds)
+			kl.add(this.get(idx));
+
+		return kl;
+	}
+
+	/**
+	 * Write the list in binary form. As the records are already in binary form
+	 * they are copied directly from the mapped file without being decoded.
+	 */
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		out.writeInt(size);
+		out.writeInt(veclen);
+
+		final int recordsPerCopy = Math.max(1, (64 * 1024) / Math.max(recordLength, 1));
+		final byte[] tmp = new byte[recordsPerCopy * recordLength];
+
+		for (int i = 0; i < size;) {
+			// copy runs of records that lie within a single segment
+			final long record = offset + i;
+			final int count = Math.min(Math.min(recordsPerCopy, size - i),
+					recordsPerSegment - (int) (record % recordsPerSegment));
+			final int length = count * recordLength;
+
+			slice(i, 0, length).get(tmp, 0, length);
+			out.write(tmp, 0, length);
+			i += count;
+		}
+	}
+
+	@Override
+	public void writeASCII(PrintWriter out) throws IOException {
+		LocalFeatureListUtils.writeASCII(out, this);
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return LocalFeatureList.BINARY_HEADER;
+	}
+
+	@Override
+	public String asciiHeader() {
+		return "";
+	}
+
+	/**
+	 * An {@link InputStream} that reads from a {@link ByteBuffer}.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!buffer.hasRemaining())
+				return -1;
+
+			return buffer.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (!buffer.hasRemaining())
+				return -1;
+
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return buffer.remaining();
+		}
+	}
+}
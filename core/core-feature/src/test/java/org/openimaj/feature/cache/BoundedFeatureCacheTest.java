@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.openimaj.util.function.Function;
+
+/**
+ * Tests for {@link BoundedFeatureCache}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class BoundedFeatureCacheTest {
+	/**
+	 * Test that the least recently used features are evicted
+	 */
+	@Test
+	public void testEviction() {
+		final BoundedFeatureCache<String> cache = new BoundedFeatureCache<String>(2);
+
+		cache.put("a", "A");
+		cache.put("b", "B");
+		assertEquals("A", cache.getIfPresent("a"));
+		cache.put("c", "C");
+
+		assertEquals(2, cache.size());
+		assertEquals("A", cache.getIfPresent("a"));
+		assertNull(cache.getIfPresent("b"));
+		assertEquals("C", cache.getIfPresent("c"));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	/**
+	 * Test that the bound applies to the total weight
+	 */
+	@Test
+	public void testWeigher() {
+		final BoundedFeatureCache<String> cache = new BoundedFeatureCache<String>(10,
+				new BoundedFeatureCache.Weigher<String>() {
+					@Override
+					public long weigh(String id, String feature) {
+						return feature.length();
+					}
+				});
+
+		cache.put("a", "aaaa");
+		cache.put("b", "bbbb");
+		assertEquals(8, cache.weight());
+		cache.put("c", "cccc");
+
+		assertEquals(2, cache.size());
+		assertEquals(8, cache.weight());
+		assertNull(cache.getIfPresent("a"));
+	}
+
+	/**
+	 * Test that concurrent requests for the same feature only create it once
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testComputeOnce() throws InterruptedException {
+		final BoundedFeatureCache<Object> cache = new BoundedFeatureCache<Object>(100);
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final Object[] results = new Object[8];
+
+		final Function<String, Object> loader = new Function<String, Object>() {
+			@Override
+			public Object apply(String id) {
+				calls.incrementAndGet();
+				try {
+					Thread.sleep(50);
+				} catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				return new Object();
+			}
+		};
+
+		final Thread[] threads = new Thread[results.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int idx = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (final InterruptedException e) {
+						return;
+					}
+					results[idx] = cache.get("x", loader);
+				}
+			};
+			threads[i].start();
+		}
+
+		start.countDown();
+		for (final Thread t : threads)
+			t.join();
+
+		assertEquals(1, calls.get());
+		assertEquals(1, cache.getMissCount());
+		for (final Object r : results)
+			assertSame(results[0], r);
+	}
+}
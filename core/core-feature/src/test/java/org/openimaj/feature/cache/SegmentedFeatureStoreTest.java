@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link SegmentedFeatureStore}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class SegmentedFeatureStoreTest {
+	/**
+	 * Temporary folder for the store
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static double[] feature(int i) {
+		final double[] f = new double[100];
+		for (int j = 0; j < f.length; j++)
+			f[j] = i * j;
+		return f;
+	}
+
+	/**
+	 * Test that features can be read back after the store is re-opened, and
+	 * that segments roll over
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testReopen() throws IOException {
+		final File dir = folder.newFolder("store");
+
+		SegmentedFeatureStore<double[]> store = new SegmentedFeatureStore<double[]>(dir, 4096);
+		for (int i = 0; i < 50; i++)
+			store.put("f" + i, feature(i));
+		store.put("f0", feature(100));
+		assertEquals(50, store.size());
+		assertNull(store.get("missing"));
+		store.close();
+
+		store = new SegmentedFeatureStore<double[]>(dir, 4096);
+		assertEquals(50, store.size());
+		assertEquals(true, store.numSegments() > 1);
+
+		assertArrayEquals(feature(100), store.get("f0"), 0);
+		for (int i = 1; i < 50; i++)
+			assertArrayEquals(feature(i), store.get("f" + i), 0);
+
+		store.put("f50", feature(50));
+		store.close();
+
+		store = new SegmentedFeatureStore<double[]>(dir, 4096);
+		assertArrayEquals(feature(50), store.get("f50"), 0);
+		store.close();
+	}
+
+	/**
+	 * Test that a partially written index record is ignored
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testTruncatedIndex() throws IOException {
+		final File dir = folder.newFolder("store");
+
+		SegmentedFeatureStore<double[]> store = new SegmentedFeatureStore<double[]>(dir);
+		store.put("a", feature(1));
+		store.close();
+
+		final FileOutputStream fos = new FileOutputStream(new File(dir, "index.dat"), true);
+		fos.write(new byte[] { 0, 1, 'b', 0 });
+		fos.close();
+
+		store = new SegmentedFeatureStore<double[]>(dir);
+		assertEquals(1, store.size());
+		assertFalse(store.contains("b"));
+		store.put("c", feature(3));
+		store.close();
+
+		store = new SegmentedFeatureStore<double[]>(dir);
+		assertEquals(2, store.size());
+		assertArrayEquals(feature(1), store.get("a"), 0);
+		assertArrayEquals(feature(3), store.get("c"), 0);
+		store.close();
+	}
+}
@@ -30,6 +30,7 @@
 package org.openimaj.image;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -238,6 +239,131 @@ class ExtendedImageIO {
 		return read(istream);
 	}
 
+	/**
+	 * Decode a <code>File</code>, keeping only every
+	 * <code>subsampling</code>-th column of every <code>subsampling</code>-th
+	 * row.
+	 *
+	 * @see #read(InputStream, int)
+	 *
+	 * @param input
+	 *            a <code>File</code> to read from.
+	 * @param subsampling
+	 *            the subsampling factor
+	 * @return a <code>BufferedImage</code> containing the decoded contents of
+	 *         the input, or <code>null</code>.
+	 * @throws IOException
+	 *             if an error occurs during reading.
+	 */
+	public static BufferedImage read(File input, int subsampling) throws IOException {
+		if (input == null) {
+			throw new IllegalArgumentException("input == null!");
+		}
+		if (!input.canRead()) {
+			throw new IIOException("Can't read input file!");
+		}
+		InputStream stream = null;
+		try {
+			stream = new FileInputStream(input);
+			return read(stream, subsampling);
+		} finally {
+			try {
+				stream.close();
+			} catch (final IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Decode an <code>InputStream</code>, keeping only every
+	 * <code>subsampling</code>-th column of every <code>subsampling</code>-th
+	 * row, starting from the top-left pixel. The subsampling is performed by
+	 * the decoder (see {@link ImageReadParam#setSourceSubsampling}) where
+	 * possible, which avoids the decoder creating the full resolution image.
+	 * If the standard {@link ImageIO} readers cannot decode the stream, the
+	 * full image is read with {@link #read(InputStream)} and then subsampled.
+	 *
+	 * @param input
+	 *            an <code>InputStream</code> to read from.
+	 * @param subsampling
+	 *            the subsampling factor; values less than 2 read the full
+	 *            image.
+	 * @return a <code>BufferedImage</code> containing the decoded contents of
+	 *         the input, or <code>null</code>.
+	 * @throws IOException
+	 *             if an error occurs during reading.
+	 */
+	public static BufferedImage read(InputStream input, int subsampling) throws IOException {
+		if (subsampling < 2)
+			return read(input);
+
+		if (input == null) {
+			throw new IllegalArgumentException("input == null!");
+		}
+
+		final NonClosableInputStream buffer = new NonClosableInputStream(input);
+		buffer.mark(100 * 1024 * 1024); // 100mb is big enough?
+
+		BufferedImage bi;
+		try {
+			bi = readSubsampled(buffer, subsampling);
+		} catch (final Exception ex) {
+			bi = null;
+		}
+
+		if (bi == null) {
+			buffer.reset();
+			bi = read(buffer);
+
+			if (bi != null)
+				bi = subsample(bi, subsampling);
+		}
+
+		return bi;
+	}
+
+	private static BufferedImage readSubsampled(BufferedInputStream binput, int subsampling) throws IOException {
+		final ImageInputStream stream = ImageIO.createImageInputStream(binput);
+		final Iterator<ImageReader> iter = ImageIO.getImageReaders(stream);
+
+		if (!iter.hasNext())
+			return null;
+
+		final ImageReader reader = iter.next();
+		try {
+			reader.setInput(stream, true, true);
+
+			final ImageReadParam param = reader.getDefaultReadParam();
+			param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+			return reader.read(0, param);
+		} finally {
+			reader.dispose();
+		}
+	}
+
+	/**
+	 * Subsample an already decoded image in the same way as
+	 * {@link ImageReadParam#setSourceSubsampling} with no offsets.
+	 */
+	static BufferedImage subsample(BufferedImage image, int subsampling) {
+		final int width = (image.getWidth() + subsampling - 1) / subsampling;
+		final int height = (image.getHeight() + subsampling - 1) / subsampling;
+
+		final WritableRaster src = image.getRaster();
+		final WritableRaster dst = src.createCompatibleWritableRaster(width, height);
+
+		Object pixel = null;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				pixel = src.getDataElements(x * subsampling, y * subsampling, pixel);
+				dst.setDataElements(x, y, pixel);
+			}
+		}
+
+		return new BufferedImage(image.getColorModel(), dst, image.isAlphaPremultiplied(), null);
+	}
+
 	/**
 	 * Returns a <code>BufferedImage</code> as the result of decoding a supplied
 	 * <code>ImageInputStream</code> with an <code>ImageReader</code> chosen
@@ -34,6 +34,7 @@ import java.util.Comparator;
 import org.apache.log4j.Logger;
 import org.openimaj.image.analyser.PixelAnalyser;
 import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.image.lazy.LazyFImage;
 import org.openimaj.image.pixel.FValuePixel;
 import org.openimaj.image.pixel.Pixel;
 import org.openimaj.image.processor.KernelProcessor;
@@ -148,6 +149,19 @@ public class FImage extends SingleBandImage<Float, FImage>
 				this.pixels[y][x] = (float) array[offset + y * width + x];
 	}
 
+	/**
+	 * Create an {@link FImage} by copying the pixels from the given
+	 * {@link FlatFImage}.
+	 *
+	 * @param flat
+	 *            the flat image to copy data from.
+	 */
+	public FImage(final FlatFImage flat)
+	{
+		this(flat.width, flat.height);
+		flat.copyTo(this);
+	}
+
 	/**
 	 * Create an {@link FImage} from an array of floating point values.
 	 *
@@ -780,6 +794,20 @@ public class FImage extends SingleBandImage<Float, FImage>
 		return img;
 	}
 
+	/**
+	 * Create a copy of this image with the pixels stored in a single flat
+	 * row-major array.
+	 *
+	 * @see FlatFImage
+	 *
+	 * @return a {@link FlatFImage} containing a copy of the pixels of this
+	 *         image.
+	 */
+	public FlatFImage toFlat()
+	{
+		return new FlatFImage(this);
+	}
+
 	/**
 	 * Returns the pixels of the image as a vector (array) of floats.
 	 *
@@ -1058,6 +1086,19 @@ public class FImage extends SingleBandImage<Float, FImage>
 		return this;
 	}
 
+	/**
+	 * Start a lazily evaluated chain of element-wise operations on this image.
+	 * The operations are fused into a single pass with one output allocation
+	 * when {@link LazyFImage#execute()} is called; this image is not
+	 * modified.
+	 *
+	 * @return a {@link LazyFImage} over this image
+	 */
+	public LazyFImage lazy()
+	{
+		return new LazyFImage(this);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *
@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A flat, row-major store of floating-point pixels. Unlike the jagged
+ * <code>float[][]</code> used by {@link FImage}, all the pixels of a
+ * {@link FlatFImage} live in a single <code>float[]</code>. Pixel (x, y) is
+ * stored at <code>data[offset + y * stride + x]</code>, so a
+ * {@link FlatFImage} can also be a view over a rectangular sub-region of a
+ * larger buffer; {@link #subImage(int, int, int, int)} creates such views
+ * without copying any data.
+ * <p>
+ * Because the pixels are contiguous they can be traversed without a row
+ * pointer dereference per access, and can be transferred to and from
+ * {@link FloatBuffer}s (including direct buffers) with bulk copies. Processors
+ * that have fast paths for flat storage accept {@link FlatFImage}s directly;
+ * conversion to and from {@link FImage} is provided by
+ * {@link FImage#toFlat()} and {@link FImage#FImage(FlatFImage)}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public final class FlatFImage {
+	/** The underlying pixel data */
+	public final float[] data;
+
+	/** The index of the first pixel in the data array */
+	public final int offset;
+
+	/** The distance between the starts of consecutive rows in the data array */
+	public final int stride;
+
+	/** The width of the image */
+	public final int width;
+
+	/** The height of the image */
+	public final int height;
+
+	/**
+	 * Create a new empty {@link FlatFImage} of the given size.
+	 *
+	 * @param width
+	 *            the width
+	 * @param height
+	 *            the height
+	 */
+	public FlatFImage(int width, int height) {
+		this(new float[width * height], 0, width, width, height);
+	}
+
+	/**
+	 * Create a {@link FlatFImage} over the given data. The data is not copied.
+	 *
+	 * @param data
+	 *            the data
+	 * @param offset
+	 *            the index of the first pixel
+	 * @param stride
+	 *            the distance between rows
+	 * @param width
+	 *            the width
+	 * @param height
+	 *            the height
+	 */
+	public FlatFImage(float[] data, int offset, int stride, int width, int height) {
+		if (width < 0 || height < 0 || stride < width || offset < 0)
+			throw new IllegalArgumentException("Invalid image geometry");
+		if (height > 0 && offset + (long) (height - 1) * stride + width > data.length)
+			throw new IllegalArgumentException("Data array is too small for the given geometry");
+
+		this.data = data;
+		this.offset = offset;
+		this.stride = stride;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Create a {@link FlatFImage} by copying the pixels of the given
+	 * {@link FImage}.
+	 *
+	 * @param image
+	 *            the image to copy
+	 */
+	public FlatFImage(FImage image) {
+		this(image.width, image.height);
+		copyFrom(image);
+	}
+
+	/**
+	 * Get the index in {@link #data} of the given pixel.
+	 *
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @return the index
+	 */
+	public int index(int x, int y) {
+		return offset + y * stride + x;
+	}
+
+	/**
+	 * Get the value of the given pixel.
+	 *
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @return the pixel value
+	 */
+	public float get(int x, int y) {
+		return data[offset + y * stride + x];
+	}
+
+	/**
+	 * Set the value of the given pixel.
+	 *
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @param value
+	 *            the new value
+	 */
+	public void set(int x, int y, float value) {
+		data[offset + y * stride + x] = value;
+	}
+
+	/**
+	 * Test whether the rows of this image are packed together without gaps,
+	 * in which case the pixels occupy the <code>width * height</code> elements
+	 * of {@link #data} starting at {@link #offset}.
+	 *
+	 * @return true if the data is contiguous; false otherwise
+	 */
+	public boolean isContiguous() {
+		return stride == width || height <= 1;
+	}
+
+	/**
+	 * Get a view of a rectangular region of this image. The returned image
+	 * shares its data with this one, so changes to either are visible in both.
+	 *
+	 * @param x
+	 *            the left of the region
+	 * @param y
+	 *            the top of the region
+	 * @param w
+	 *            the width of the region
+	 * @param h
+	 *            the height of the region
+	 * @return the view
+	 */
+	public FlatFImage subImage(int x, int y, int w, int h) {
+		if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > width || y + h > height)
+			throw new IllegalArgumentException("Region is outside the bounds of the image");
+
+		return new FlatFImage(data, index(x, y), stride, w, h);
+	}
+
+	/**
+	 * Create a copy of this image with its own contiguous storage.
+	 *
+	 * @return the copy
+	 */
+	public FlatFImage copy() {
+		final FlatFImage out = new FlatFImage(width, height);
+		for (int y = 0; y < height; y++)
+			System.arraycopy(data, offset + y * stride, out.data, y * width, width);
+		return out;
+	}
+
+	/**
+	 * Copy the pixels of the given {@link FImage} into this image. The images
+	 * must be the same size.
+	 *
+	 * @param image
+	 *            the image to copy from
+	 * @return this
+	 */
+	public FlatFImage copyFrom(FImage image) {
+		checkSize(image);
+
+		for (int y = 0; y < height; y++)
+			System.arraycopy(image.pixels[y], 0, data, offset + y * stride, width);
+
+		return this;
+	}
+
+	/**
+	 * Copy the pixels of this image into the given {@link FImage}. The images
+	 * must be the same size.
+	 *
+	 * @param image
+	 *            the image to copy to
+	 * @return the image
+	 */
+	public FImage copyTo(FImage image) {
+		checkSize(image);
+
+		for (int y = 0; y < height; y++)
+			System.arraycopy(data, offset + y * stride, image.pixels[y], 0, width);
+
+		return image;
+	}
+
+	/**
+	 * Create a new {@link FImage} with a copy of the pixels of this image.
+	 *
+	 * @return the new image
+	 */
+	public FImage toFImage() {
+		return copyTo(new FImage(width, height));
+	}
+
+	/**
+	 * Copy the pixels of this image into the given buffer in row-major order,
+	 * starting at the buffer's current position. The position of the buffer is
+	 * advanced by <code>width * height</code>.
+	 *
+	 * @param buffer
+	 *            the buffer to write to
+	 * @return the buffer
+	 */
+	public FloatBuffer copyTo(FloatBuffer buffer) {
+		if (isContiguous()) {
+			buffer.put(data, offset, width * height);
+		} else {
+			for (int y = 0; y < height; y++)
+				buffer.put(data, offset + y * stride, width);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Fill this image with pixels read in row-major order from the given
+	 * buffer, starting at the buffer's current position. The position of the
+	 * buffer is advanced by <code>width * height</code>.
+	 *
+	 * @param buffer
+	 *            the buffer to read from
+	 * @return this
+	 */
+	public FlatFImage copyFrom(FloatBuffer buffer) {
+		if (isContiguous()) {
+			buffer.get(data, offset, width * height);
+		} else {
+			for (int y = 0; y < height; y++)
+				buffer.get(data, offset + y * stride, width);
+		}
+		return this;
+	}
+
+	private void checkSize(FImage image) {
+		if (image.width != width || image.height != height)
+			throw new IllegalArgumentException("Image sizes must match");
+	}
+}
@@ -281,10 +281,34 @@ public class ImageUtilities {
 	 * @return an FImage representation of the input image
 	 */
 	public static FImage createFImage(final BufferedImage image) {
+		return createFImage(image, null);
+	}
+
+	/**
+	 * Create an FImage from a buffered image, reusing the given target image
+	 * if possible. The pixel data of the common 8-bit image types produced by
+	 * the image decoders is read directly, without first converting the image
+	 * to ARGB.
+	 *
+	 * @param image
+	 *            the image
+	 * @param target
+	 *            the image to write the pixels into; it will be resized if
+	 *            necessary. If <code>null</code> a new image will be created.
+	 * @return an FImage representation of the input image (the target, if it
+	 *         was given)
+	 */
+	public static FImage createFImage(final BufferedImage image, FImage target) {
+		if (target == null)
+			target = new FImage(image.getWidth(), image.getHeight());
+
+		if (RasterConverter.read(image, target))
+			return target;
+
 		final BufferedImage bimg = ImageUtilities.createWorkingImage(image);
 		final int[] data = bimg.getRGB(0, 0, bimg.getWidth(), bimg.getHeight(), null, 0, bimg.getWidth());
 
-		return new FImage(data, bimg.getWidth(), bimg.getHeight());
+		return target.internalAssign(data, bimg.getWidth(), bimg.getHeight());
 	}
 
 	/**
@@ -297,10 +321,38 @@ public class ImageUtilities {
 	 * @return an MBFImage representation of the input image
 	 */
 	public static MBFImage createMBFImage(final BufferedImage image, final boolean alpha) {
+		return createMBFImage(image, alpha, null);
+	}
+
+	/**
+	 * Create an MBFImage from a buffered image, reusing the given target image
+	 * if possible. The pixel data of the common 8-bit image types produced by
+	 * the image decoders is read directly, without first converting the image
+	 * to ARGB.
+	 *
+	 * @param image
+	 *            the image
+	 * @param alpha
+	 *            should the resultant MBFImage have an alpha channel
+	 * @param target
+	 *            the image to write the pixels into; it will be resized if
+	 *            necessary, and is only used if its colour space is
+	 *            {@link ColourSpace#RGBA} when <code>alpha</code> is true, or
+	 *            {@link ColourSpace#RGB} otherwise. Can be <code>null</code>.
+	 * @return an MBFImage representation of the input image (the target, if
+	 *         it was usable)
+	 */
+	public static MBFImage createMBFImage(final BufferedImage image, final boolean alpha, MBFImage target) {
+		if (target == null || target.colourSpace != (alpha ? ColourSpace.RGBA : ColourSpace.RGB))
+			target = new MBFImage(image.getWidth(), image.getHeight(), alpha ? 4 : 3);
+
+		if (RasterConverter.read(image, target))
+			return target;
+
 		final BufferedImage bimg = ImageUtilities.createWorkingImage(image);
 		final int[] data = bimg.getRGB(0, 0, bimg.getWidth(), bimg.getHeight(), null, 0, bimg.getWidth());
 
-		return new MBFImage(data, bimg.getWidth(), bimg.getHeight(), alpha);
+		return target.internalAssign(data, bimg.getWidth(), bimg.getHeight());
 	}
 
 	/**
@@ -342,6 +394,54 @@ public class ImageUtilities {
 		return ImageUtilities.createFImage(ExtendedImageIO.read(input));
 	}
 
+	/**
+	 * Reads an {@link FImage} from the given file, optionally subsampling the
+	 * image as it is decoded and reusing an existing image. Subsampling keeps
+	 * every <code>subsampling</code>-th pixel of every
+	 * <code>subsampling</code>-th row, which is much faster than decoding the
+	 * full image and resizing it when only a small version (i.e. a thumbnail)
+	 * is required.
+	 *
+	 * @param input
+	 *            The file to read the {@link FImage} from.
+	 * @param subsampling
+	 *            the subsampling factor; 1 reads the full image.
+	 * @param target
+	 *            the image to read into (see
+	 *            {@link #createFImage(BufferedImage, FImage)}); can be
+	 *            <code>null</code>.
+	 * @return An {@link FImage}
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static FImage readF(final File input, final int subsampling, final FImage target) throws IOException {
+		return ImageUtilities.createFImage(ExtendedImageIO.read(input, subsampling), target);
+	}
+
+	/**
+	 * Reads an {@link FImage} from the given input stream, optionally
+	 * subsampling the image as it is decoded and reusing an existing image.
+	 *
+	 * @see #readF(File, int, FImage)
+	 *
+	 * @param input
+	 *            The input stream to read the {@link FImage} from.
+	 * @param subsampling
+	 *            the subsampling factor; 1 reads the full image.
+	 * @param target
+	 *            the image to read into (see
+	 *            {@link #createFImage(BufferedImage, FImage)}); can be
+	 *            <code>null</code>.
+	 * @return An {@link FImage}
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	public static FImage readF(final InputStream input, final int subsampling, final FImage target)
+			throws IOException
+	{
+		return ImageUtilities.createFImage(ExtendedImageIO.read(input, subsampling), target);
+	}
+
 	/**
 	 * Reads an {@link MBFImage} from the given file.
 	 * 
@@ -381,6 +481,54 @@ public class ImageUtilities {
 		return ImageUtilities.createMBFImage(ExtendedImageIO.read(input), false);
 	}
 
+	/**
+	 * Reads an RGB {@link MBFImage} from the given file, optionally
+	 * subsampling the image as it is decoded and reusing an existing image.
+	 *
+	 * @see #readF(File, int, FImage)
+	 *
+	 * @param input
+	 *            The file to read the {@link MBFImage} from.
+	 * @param subsampling
+	 *            the subsampling factor; 1 reads the full image.
+	 * @param target
+	 *            the image to read into (see
+	 *            {@link #createMBFImage(BufferedImage, boolean, MBFImage)});
+	 *            can be <code>null</code>.
+	 * @return An {@link MBFImage}
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static MBFImage readMBF(final File input, final int subsampling, final MBFImage target)
+			throws IOException
+	{
+		return ImageUtilities.createMBFImage(ExtendedImageIO.read(input, subsampling), false, target);
+	}
+
+	/**
+	 * Reads an RGB {@link MBFImage} from the given input stream, optionally
+	 * subsampling the image as it is decoded and reusing an existing image.
+	 *
+	 * @see #readF(File, int, FImage)
+	 *
+	 * @param input
+	 *            The input stream to read the {@link MBFImage} from.
+	 * @param subsampling
+	 *            the subsampling factor; 1 reads the full image.
+	 * @param target
+	 *            the image to read into (see
+	 *            {@link #createMBFImage(BufferedImage, boolean, MBFImage)});
+	 *            can be <code>null</code>.
+	 * @return An {@link MBFImage}
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	public static MBFImage readMBF(final InputStream input, final int subsampling, final MBFImage target)
+			throws IOException
+	{
+		return ImageUtilities.createMBFImage(ExtendedImageIO.read(input, subsampling), false, target);
+	}
+
 	/**
 	 * Reads an {@link MBFImage} from the given file. The resultant MBImage will
 	 * contain an alpha channel
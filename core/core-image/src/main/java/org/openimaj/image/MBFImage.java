@@ -32,6 +32,7 @@ package org.openimaj.image;
 import java.util.Comparator;
 
 import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.image.lazy.LazyMBFImage;
 import org.openimaj.image.pixel.Pixel;
 import org.openimaj.image.renderer.MBFImageRenderer;
 import org.openimaj.image.renderer.RenderHints;
@@ -262,6 +263,22 @@ public class MBFImage extends MultiBandImage<Float, MBFImage, FImage> {
 		return out;
 	}
 
+	/**
+	 * Create copies of the bands of this image with the pixels of each band
+	 * stored in a single flat row-major array. Note that this is unrelated to
+	 * {@link #flatten()}, which averages the bands.
+	 *
+	 * @see FlatFImage
+	 *
+	 * @return an array containing a {@link FlatFImage} for each band
+	 */
+	public FlatFImage[] toFlat() {
+		final FlatFImage[] out = new FlatFImage[this.numBands()];
+		for (int i = 0; i < out.length; i++)
+			out[i] = this.bands.get(i).toFlat();
+		return out;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -410,6 +427,18 @@ public class MBFImage extends MultiBandImage<Float, MBFImage, FImage> {
 		return (float) n;
 	}
 
+	/**
+	 * Start a lazily evaluated chain of element-wise operations on this image.
+	 * The operations are fused into a single pass over each band with one
+	 * output allocation when {@link LazyMBFImage#execute()} is called; this
+	 * image is not modified.
+	 *
+	 * @return a {@link LazyMBFImage} over this image
+	 */
+	public LazyMBFImage lazy() {
+		return new LazyMBFImage(this);
+	}
+
 	@Override
 	public FImage newBandInstance(final int width, final int height) {
 		return new FImage(width, height);
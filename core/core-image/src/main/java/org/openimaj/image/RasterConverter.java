@@ -0,0 +1,304 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+import org.openimaj.image.colour.ColourSpace;
+
+/**
+ * Conversion of {@link BufferedImage}s to {@link FImage}s and
+ * {@link MBFImage}s by reading directly from the underlying
+ * {@link DataBuffer}, rather than redrawing the image into a new ARGB image
+ * and copying the pixels out with {@link BufferedImage#getRGB}. Only the common
+ * 8-bit types produced by the image decoders are supported; for these the
+ * pixel values are exactly the same as the ones produced by the slower path
+ * in {@link ImageUtilities}.
+ * <p>
+ * Images with a separate alpha component (other than
+ * {@link BufferedImage#TYPE_INT_ARGB}) are not supported, as drawing them
+ * into the working image composites them, which can alter their colour
+ * values.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+final class RasterConverter {
+	/**
+	 * Reads a row of a supported image as packed ARGB integers
+	 */
+	private static abstract class RowReader {
+		abstract void read(int y, int[] argb);
+	}
+
+	/**
+	 * Reader for 8-bit interleaved grey or RGB data
+	 */
+	private static class ByteRowReader extends RowReader {
+		byte[] data;
+		int base;
+		int scanlineStride;
+		int pixelStride;
+		int[] bandOffsets;
+
+		@Override
+		void read(int y, int[] argb) {
+			int idx = base + y * scanlineStride;
+
+			if (bandOffsets.length == 1) {
+				final int o = bandOffsets[0];
+				for (int x = 0; x < argb.length; x++, idx += pixelStride) {
+					final int g = data[idx + o] & 0xff;
+					argb[x] = 0xff000000 | (g << 16) | (g << 8) | g;
+				}
+			} else {
+				final int ro = bandOffsets[0];
+				final int go = bandOffsets[1];
+				final int bo = bandOffsets[2];
+				for (int x = 0; x < argb.length; x++, idx += pixelStride) {
+					argb[x] = 0xff000000 | ((data[idx + ro] & 0xff) << 16) | ((data[idx + go] & 0xff) << 8)
+							| (data[idx + bo] & 0xff);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reader for 8-bit packed RGB or ARGB integer data
+	 */
+	private static class IntRowReader extends RowReader {
+		int[] data;
+		int base;
+		int scanlineStride;
+		int[] shifts;
+		boolean alpha;
+
+		@Override
+		void read(int y, int[] argb) {
+			final int idx = base + y * scanlineStride;
+			final int rs = shifts[0];
+			final int gs = shifts[1];
+			final int bs = shifts[2];
+			final int as = alpha ? shifts[3] : 0;
+
+			for (int x = 0; x < argb.length; x++) {
+				final int v = data[idx + x];
+				final int a = alpha ? (v >>> as) & 0xff : 0xff;
+				argb[x] = (a << 24) | (((v >>> rs) & 0xff) << 16) | (((v >>> gs) & 0xff) << 8) | ((v >>> bs) & 0xff);
+			}
+		}
+	}
+
+	private RasterConverter() {
+		// don't allow instances to be created
+	}
+
+	/**
+	 * Create a {@link RowReader} for the given image, or return null if the
+	 * image is not of a supported type.
+	 */
+	private static RowReader createReader(BufferedImage image) {
+		final Raster raster = image.getRaster();
+		final ColorModel cm = image.getColorModel();
+		final DataBuffer db = raster.getDataBuffer();
+
+		if (db.getNumBanks() != 1 || cm.isAlphaPremultiplied())
+			return null;
+
+		final int tx = -raster.getSampleModelTranslateX();
+		final int ty = -raster.getSampleModelTranslateY();
+
+		if (cm instanceof ComponentColorModel && db instanceof DataBufferByte
+				&& raster.getSampleModel() instanceof ComponentSampleModel)
+		{
+			final ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+			final int nbands = sm.getNumBands();
+
+			if (cm.hasAlpha() || !(nbands == 1 || nbands == 3) || sm.getBankIndices()[0] != 0)
+				return null;
+			for (int i = 0; i < nbands; i++)
+				if (cm.getComponentSize(i) != 8)
+					return null;
+
+			final ColorSpace cs = cm.getColorSpace();
+			if (nbands == 3 && !cs.isCS_sRGB())
+				return null;
+			// drawing other 8-bit gray layouts converts them through sRGB,
+			// which changes the values, so only the standard type is read
+			// directly
+			if (nbands == 1 && image.getType() != BufferedImage.TYPE_BYTE_GRAY)
+				return null;
+
+			final ByteRowReader reader = new ByteRowReader();
+			reader.data = ((DataBufferByte) db).getData();
+			reader.scanlineStride = sm.getScanlineStride();
+			reader.pixelStride = sm.getPixelStride();
+			reader.base = db.getOffset() + ty * reader.scanlineStride + tx * reader.pixelStride;
+			reader.bandOffsets = sm.getBandOffsets();
+			return reader;
+		}
+
+		if (cm instanceof DirectColorModel && db instanceof DataBufferInt
+				&& raster.getSampleModel() instanceof SinglePixelPackedSampleModel)
+		{
+			final DirectColorModel dcm = (DirectColorModel) cm;
+			final SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+
+			if (!cm.getColorSpace().isCS_sRGB())
+				return null;
+
+			// other images with alpha are composited when the working image is
+			// drawn
+			if (cm.hasAlpha() && image.getType() != BufferedImage.TYPE_INT_ARGB)
+				return null;
+
+			final int[] masks = cm.hasAlpha() ?
+					new int[] { dcm.getRedMask(), dcm.getGreenMask(), dcm.getBlueMask(), dcm.getAlphaMask() } :
+					new int[] { dcm.getRedMask(), dcm.getGreenMask(), dcm.getBlueMask() };
+
+			final IntRowReader reader = new IntRowReader();
+			reader.shifts = new int[masks.length];
+			for (int i = 0; i < masks.length; i++) {
+				reader.shifts[i] = Integer.numberOfTrailingZeros(masks[i]);
+				if (masks[i] >>> reader.shifts[i] != 0xff)
+					return null;
+			}
+
+			reader.data = ((DataBufferInt) db).getData();
+			reader.base = db.getOffset() + sm.getOffset(tx, ty);
+			reader.scanlineStride = sm.getScanlineStride();
+			reader.alpha = cm.hasAlpha();
+			return reader;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Read the given image into the given {@link FImage}, resizing the target
+	 * if necessary. The pixel values are the same as those created by
+	 * {@link FImage#internalAssign(int[], int, int)}.
+	 *
+	 * @param image
+	 *            the image to read
+	 * @param target
+	 *            the image to read into
+	 * @return true if the image was read; false if the type of image is not
+	 *         supported, in which case the target is unchanged.
+	 */
+	static boolean read(BufferedImage image, FImage target) {
+		final RowReader reader = createReader(image);
+		if (reader == null)
+			return false;
+
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+
+		if (target.width != width || target.height != height)
+			target.internalAssign(new FImage(width, height));
+
+		final int[] argb = new int[width];
+		for (int y = 0; y < height; y++) {
+			reader.read(y, argb);
+
+			final float[] row = target.pixels[y];
+			for (int x = 0; x < width; x++) {
+				final int rgb = argb[x];
+
+				final int red = ((rgb >> 16) & 0xff);
+				final int green = ((rgb >> 8) & 0xff);
+				final int blue = ((rgb) & 0xff);
+
+				// NTSC colour conversion (as FImage#internalAssign(int[],...))
+				final float fpix = 0.299f * red + 0.587f * green + 0.114f * blue;
+
+				row[x] = ImageUtilities.BYTE_TO_FLOAT_LUT[(int) fpix];
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Read the given image into the given {@link ColourSpace#RGB} or
+	 * {@link ColourSpace#RGBA} {@link MBFImage}, resizing the target if
+	 * necessary. The pixel values are the same as those created by
+	 * {@link MBFImage#internalAssign(int[], int, int)}.
+	 *
+	 * @param image
+	 *            the image to read
+	 * @param target
+	 *            the image to read into
+	 * @return true if the image was read; false if the type of image is not
+	 *         supported, in which case the target is unchanged.
+	 */
+	static boolean read(BufferedImage image, MBFImage target) {
+		final RowReader reader = createReader(image);
+		if (reader == null)
+			return false;
+
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+
+		if (target.getWidth() != width || target.getHeight() != height)
+			target.internalAssign(target.newInstance(width, height));
+
+		final float[][] br = target.bands.get(0).pixels;
+		final float[][] bg = target.bands.get(1).pixels;
+		final float[][] bb = target.bands.get(2).pixels;
+		final float[][] ba = target.colourSpace == ColourSpace.RGBA ? target.bands.get(3).pixels : null;
+
+		final int[] argb = new int[width];
+		for (int y = 0; y < height; y++) {
+			reader.read(y, argb);
+
+			for (int x = 0; x < width; x++) {
+				final int rgb = argb[x];
+				br[y][x] = ImageUtilities.BYTE_TO_FLOAT_LUT[(rgb >> 16) & 0xff];
+				bg[y][x] = ImageUtilities.BYTE_TO_FLOAT_LUT[(rgb >> 8) & 0xff];
+				bb[y][x] = ImageUtilities.BYTE_TO_FLOAT_LUT[rgb & 0xff];
+
+				if (ba != null)
+					ba[y][x] = ImageUtilities.BYTE_TO_FLOAT_LUT[(rgb >> 24) & 0xff];
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.lazy;
+
+import org.openimaj.image.FImage;
+import org.openimaj.util.parallel.ParallelBackend;
+
+/**
+ * A lazily evaluated chain of element-wise operations on an {@link FImage}.
+ * For example:
+ * 
+ * <pre>
+ * FImage result = img.lazy().subtract(a).multiply(b).clip(0f, 1f).normalise().execute();
+ * </pre>
+ * 
+ * computes the same image as the corresponding chain of {@link FImage}
+ * methods, but makes one output allocation and streams each row through all
+ * the operations rather than traversing the whole image for each. The input
+ * image is not modified.
+ * 
+ * @see LazyImage
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class LazyFImage extends LazyImage<FImage, LazyFImage> {
+	final FImage image;
+
+	/**
+	 * Construct with the given input image.
+	 * 
+	 * @param image
+	 *            the input image
+	 */
+	public LazyFImage(FImage image) {
+		super(image.width, image.height);
+		this.image = image;
+	}
+
+	/**
+	 * Add the pixels of the given image.
+	 * 
+	 * @param im
+	 *            the image to add
+	 * @return this
+	 */
+	public LazyFImage add(FImage im) {
+		checkSize(im);
+		return record(new PixelOp.Add(im));
+	}
+
+	/**
+	 * Subtract the pixels of the given image.
+	 * 
+	 * @param im
+	 *            the image to subtract
+	 * @return this
+	 */
+	public LazyFImage subtract(FImage im) {
+		checkSize(im);
+		return record(new PixelOp.Subtract(im));
+	}
+
+	/**
+	 * Multiply by the pixels of the given image.
+	 * 
+	 * @param im
+	 *            the image to multiply by
+	 * @return this
+	 */
+	public LazyFImage multiply(FImage im) {
+		checkSize(im);
+		return record(new PixelOp.Multiply(im));
+	}
+
+	/**
+	 * Divide by the pixels of the given image.
+	 * 
+	 * @param im
+	 *            the image to divide by
+	 * @return this
+	 */
+	public LazyFImage divide(FImage im) {
+		checkSize(im);
+		return record(new PixelOp.Divide(im));
+	}
+
+	@Override
+	public FImage execute(ParallelBackend backend) {
+		final FImage output = new FImage(width, height);
+		execute(image, output, 0, backend);
+		return output;
+	}
+}
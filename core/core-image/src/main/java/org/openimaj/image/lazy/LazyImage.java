@@ -0,0 +1,320 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.lazy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.Image;
+import org.openimaj.image.processor.PixelProcessor;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.ParallelBackend;
+
+/**
+ * Base class for lazily evaluated chains of element-wise operations on an
+ * image. Calling an operation only records it; {@link #execute()} then
+ * evaluates the whole chain with a single output allocation, streaming each
+ * row of the input through all the recorded operations while it is in cache.
+ * Compared to the equivalent chain of {@link FImage} methods, which allocate
+ * and traverse a full image per call, this greatly reduces memory traffic.
+ * <p>
+ * The result is identical to applying the same methods in turn to a clone of
+ * the input. Operations that depend on the range of their input, such as
+ * {@link #normalise()}, need all preceding operations to be complete: they
+ * cause the rows computed so far to be written to the output while the range
+ * is measured, and the remainder of the chain is then applied in place.
+ * <p>
+ * The input and operand images are read when the chain is executed, not when
+ * the operations are recorded, and must not change in the meantime.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <I>
+ *            the type of image produced
+ * @param <L>
+ *            the concrete type of this lazy image
+ */
+public abstract class LazyImage<I extends Image<?, I>, L extends LazyImage<I, L>> {
+	final List<PixelOp> ops = new ArrayList<PixelOp>();
+	final int width;
+	final int height;
+
+	LazyImage(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	@SuppressWarnings("unchecked")
+	L record(PixelOp op) {
+		ops.add(op);
+		return (L) this;
+	}
+
+	void checkSize(FImage im) {
+		if (im.width != width || im.height != height)
+			throw new AssertionError("images must be the same size");
+	}
+
+	/**
+	 * Add a constant to every pixel.
+	 * 
+	 * @param value
+	 *            the value to add
+	 * @return this
+	 */
+	public L add(float value) {
+		return record(new PixelOp.AddScalar(value));
+	}
+
+	/**
+	 * Subtract a constant from every pixel.
+	 * 
+	 * @param value
+	 *            the value to subtract
+	 * @return this
+	 */
+	public L subtract(float value) {
+		return record(new PixelOp.SubtractScalar(value));
+	}
+
+	/**
+	 * Multiply every pixel by a constant.
+	 * 
+	 * @param value
+	 *            the value to multiply by
+	 * @return this
+	 */
+	public L multiply(float value) {
+		return record(new PixelOp.MultiplyScalar(value));
+	}
+
+	/**
+	 * Divide every pixel by a constant.
+	 * 
+	 * @param value
+	 *            the value to divide by
+	 * @return this
+	 */
+	public L divide(float value) {
+		return record(new PixelOp.DivideScalar(value));
+	}
+
+	/**
+	 * Clip the pixels as {@link FImage#clip(Float, Float)}.
+	 * 
+	 * @param min
+	 *            the minimum value
+	 * @param max
+	 *            the maximum value
+	 * @return this
+	 */
+	public L clip(float min, float max) {
+		return record(new PixelOp.Clip(min, max));
+	}
+
+	/**
+	 * Clip the pixels as {@link FImage#clipMin(Float)}.
+	 * 
+	 * @param thresh
+	 *            the threshold
+	 * @return this
+	 */
+	public L clipMin(float thresh) {
+		return record(new PixelOp.ClipMin(thresh));
+	}
+
+	/**
+	 * Clip the pixels as {@link FImage#clipMax(Float)}.
+	 * 
+	 * @param thresh
+	 *            the threshold
+	 * @return this
+	 */
+	public L clipMax(float thresh) {
+		return record(new PixelOp.ClipMax(thresh));
+	}
+
+	/**
+	 * Threshold the pixels as {@link FImage#threshold(Float)}.
+	 * 
+	 * @param thresh
+	 *            the threshold
+	 * @return this
+	 */
+	public L threshold(float thresh) {
+		return record(new PixelOp.Threshold(thresh));
+	}
+
+	/**
+	 * Take the absolute value of every pixel.
+	 * 
+	 * @return this
+	 */
+	public L abs() {
+		return record(new PixelOp.Abs());
+	}
+
+	/**
+	 * Apply a {@link PixelProcessor} to every pixel.
+	 * 
+	 * @param p
+	 *            the processor
+	 * @return this
+	 */
+	public L process(PixelProcessor<Float> p) {
+		return record(new PixelOp.Process(p));
+	}
+
+	/**
+	 * Normalise each band as {@link FImage#normalise()}.
+	 * 
+	 * @return this
+	 */
+	public L normalise() {
+		return record(new PixelOp.Normalise());
+	}
+
+	/**
+	 * Invert each band as {@link FImage#inverse()}.
+	 * 
+	 * @return this
+	 */
+	public L inverse() {
+		return record(new PixelOp.Inverse());
+	}
+
+	/**
+	 * Evaluate the recorded operations sequentially.
+	 * 
+	 * @return a new image containing the result
+	 */
+	public I execute() {
+		return execute(null);
+	}
+
+	/**
+	 * Evaluate the recorded operations, processing strips of rows in parallel
+	 * with the given backend.
+	 * 
+	 * @param backend
+	 *            the backend; if <code>null</code> the operations are
+	 *            evaluated sequentially
+	 * @return a new image containing the result
+	 */
+	public abstract I execute(ParallelBackend backend);
+
+	/**
+	 * Evaluate the recorded operations for a single band.
+	 */
+	void execute(FImage source, FImage output, int band, ParallelBackend backend) {
+		final List<PixelOp> segment = new ArrayList<PixelOp>();
+
+		for (final PixelOp op : ops) {
+			if (op.needsRange()) {
+				final float[] range = run(source, output, band, segment, true, backend);
+				source = output;
+				segment.clear();
+
+				final PixelOp bound = op.bind(range[0], range[1]);
+				if (bound != null)
+					segment.add(bound);
+			} else {
+				segment.add(op);
+			}
+		}
+
+		if (source != output || segment.size() > 0)
+			run(source, output, band, segment, false, backend);
+	}
+
+	/**
+	 * Run a segment of the chain over all the rows, optionally measuring the
+	 * range of the result as {@link FImage#min()} and {@link FImage#max()}.
+	 */
+	private float[] run(final FImage source, final FImage output, final int band, List<PixelOp> segment,
+			final boolean measure, ParallelBackend backend)
+	{
+		final PixelOp[] chain = segment.toArray(new PixelOp[segment.size()]);
+		final int nStrips = backend == null ? 1 : Math.max(1, Math.min(height, backend.getParallelism()));
+		final int stripHeight = (height + nStrips - 1) / nStrips;
+		final float[] mins = new float[nStrips];
+		final float[] maxs = new float[nStrips];
+
+		final Operation<Integer> strip = new Operation<Integer>() {
+			@Override
+			public void perform(Integer s) {
+				float min = Float.MAX_VALUE;
+				float max = Float.MIN_VALUE;
+
+				final int stop = Math.min(height, (s + 1) * stripHeight);
+				for (int y = s * stripHeight; y < stop; y++) {
+					final float[] row = output.pixels[y];
+
+					if (source != output)
+						System.arraycopy(source.pixels[y], 0, row, 0, width);
+
+					for (final PixelOp op : chain)
+						op.apply(row, y, band);
+
+					if (measure) {
+						for (int x = 0; x < width; x++) {
+							if (min > row[x])
+								min = row[x];
+							if (max < row[x])
+								max = row[x];
+						}
+					}
+				}
+
+				mins[s] = min;
+				maxs[s] = max;
+			}
+		};
+
+		if (nStrips == 1) {
+			strip.perform(0);
+		} else {
+			Parallel.forIndex(0, nStrips, 1, strip, backend);
+		}
+
+		float min = Float.MAX_VALUE;
+		float max = Float.MIN_VALUE;
+		for (int s = 0; s < nStrips; s++) {
+			if (min > mins[s])
+				min = mins[s];
+			if (max < maxs[s])
+				max = maxs[s];
+		}
+
+		return new float[] { min, max };
+	}
+}
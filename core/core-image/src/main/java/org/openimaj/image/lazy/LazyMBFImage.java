@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.lazy;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.util.parallel.ParallelBackend;
+
+/**
+ * A lazily evaluated chain of element-wise operations on an {@link MBFImage}.
+ * Every operation is applied to each band independently; operations with an
+ * {@link FImage} operand apply it to all the bands, whilst those with an
+ * {@link MBFImage} operand combine corresponding bands. The input image is not
+ * modified.
+ * 
+ * @see LazyImage
+ * @see LazyFImage
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class LazyMBFImage extends LazyImage<MBFImage, LazyMBFImage> {
+	final MBFImage image;
+
+	/**
+	 * Construct with the given input image.
+	 * 
+	 * @param image
+	 *            the input image
+	 */
+	public LazyMBFImage(MBFImage image) {
+		super(image.getWidth(), image.getHeight());
+		this.image = image;
+	}
+
+	private FImage[] bands(MBFImage im) {
+		if (im.numBands() != image.numBands())
+			throw new IllegalArgumentException("images must have the same number of bands");
+
+		final FImage[] bands = im.bands.toArray(new FImage[im.numBands()]);
+		for (final FImage b : bands)
+			checkSize(b);
+
+		return bands;
+	}
+
+	/**
+	 * Add the pixels of the given image to every band.
+	 * 
+	 * @param im
+	 *            the image to add
+	 * @return this
+	 */
+	public LazyMBFImage add(FImage im) {
+		checkSize(im);
+		return record(new PixelOp.Add(im));
+	}
+
+	/**
+	 * Add the corresponding bands of the given image.
+	 * 
+	 * @param im
+	 *            the image to add
+	 * @return this
+	 */
+	public LazyMBFImage add(MBFImage im) {
+		return record(new PixelOp.Add(bands(im)));
+	}
+
+	/**
+	 * Subtract the pixels of the given image from every band.
+	 * 
+	 * @param im
+	 *            the image to subtract
+	 * @return this
+	 */
+	public LazyMBFImage subtract(FImage im) {
+		checkSize(im);
+		return record(new PixelOp.Subtract(im));
+	}
+
+	/**
+	 * Subtract the corresponding bands of the given image.
+	 * 
+	 * @param im
+	 *            the image to subtract
+	 * @return this
+	 */
+	public LazyMBFImage subtract(MBFImage im) {
+		return record(new PixelOp.Subtract(bands(im)));
+	}
+
+	/**
+	 * Multiply every band by the pixels of the given image.
+	 * 
+	 * @param im
+	 *            the image to multiply by
+	 * @return this
+	 */
+	public LazyMBFImage multiply(FImage im) {
+		checkSize(im);
+		return record(new PixelOp.Multiply(im));
+	}
+
+	/**
+	 * Multiply by the corresponding bands of the given image.
+	 * 
+	 * @param im
+	 *            the image to multiply by
+	 * @return this
+	 */
+	public LazyMBFImage multiply(MBFImage im) {
+		return record(new PixelOp.Multiply(bands(im)));
+	}
+
+	/**
+	 * Divide every band by the pixels of the given image.
+	 * 
+	 * @param im
+	 *            the image to divide by
+	 * @return this
+	 */
+	public LazyMBFImage divide(FImage im) {
+		checkSize(im);
+		return record(new PixelOp.Divide(im));
+	}
+
+	/**
+	 * Divide by the corresponding bands of the given image.
+	 * 
+	 * @param im
+	 *            the image to divide by
+	 * @return this
+	 */
+	public LazyMBFImage divide(MBFImage im) {
+		return record(new PixelOp.Divide(bands(im)));
+	}
+
+	@Override
+	public MBFImage execute(ParallelBackend backend) {
+		final FImage[] bands = new FImage[image.numBands()];
+
+		for (int b = 0; b < bands.length; b++) {
+			bands[b] = new FImage(width, height);
+			execute(image.getBand(b), bands[b], b, backend);
+		}
+
+		return new MBFImage(image.colourSpace, bands);
+	}
+}
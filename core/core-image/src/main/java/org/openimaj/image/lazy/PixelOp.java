@@ -0,0 +1,346 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.lazy;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.processor.PixelProcessor;
+
+/**
+ * An element-wise operation recorded by a {@link LazyImage}. Operations are
+ * applied in place to one row of one band at a time, so that a chain of them
+ * can be run while the row is still in cache. Each operation performs exactly
+ * the same floating point arithmetic as the corresponding {@link FImage}
+ * method.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+abstract class PixelOp {
+	/**
+	 * Apply the operation to a row.
+	 * 
+	 * @param row
+	 *            the row (modified in place)
+	 * @param y
+	 *            the index of the row
+	 * @param band
+	 *            the index of the band
+	 */
+	abstract void apply(float[] row, int y, int band);
+
+	/**
+	 * Operations that depend on the minimum and maximum of their input (such
+	 * as normalisation) return true; these are bound to the statistics of the
+	 * values computed so far using {@link #bind(float, float)} before being
+	 * applied.
+	 * 
+	 * @return true if the operation needs the range of its input
+	 */
+	boolean needsRange() {
+		return false;
+	}
+
+	/**
+	 * Bind an operation that {@link #needsRange()} to the range of its input.
+	 * 
+	 * @param min
+	 *            the minimum of the input, as {@link FImage#min()}
+	 * @param max
+	 *            the maximum of the input, as {@link FImage#max()}
+	 * @return the bound operation, or null if it would have no effect
+	 */
+	PixelOp bind(float min, float max) {
+		return this;
+	}
+
+	private static FImage operand(FImage[] images, int band) {
+		return images.length == 1 ? images[0] : images[band];
+	}
+
+	static class Add extends PixelOp {
+		final FImage[] images;
+
+		Add(FImage... images) {
+			this.images = images;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			final float[] other = operand(images, band).pixels[y];
+			for (int x = 0; x < row.length; x++)
+				row[x] += other[x];
+		}
+	}
+
+	static class Subtract extends PixelOp {
+		final FImage[] images;
+
+		Subtract(FImage... images) {
+			this.images = images;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			final float[] other = operand(images, band).pixels[y];
+			for (int x = 0; x < row.length; x++)
+				row[x] -= other[x];
+		}
+	}
+
+	static class Multiply extends PixelOp {
+		final FImage[] images;
+
+		Multiply(FImage... images) {
+			this.images = images;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			final float[] other = operand(images, band).pixels[y];
+			for (int x = 0; x < row.length; x++)
+				row[x] *= other[x];
+		}
+	}
+
+	static class Divide extends PixelOp {
+		final FImage[] images;
+
+		Divide(FImage... images) {
+			this.images = images;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			final float[] other = operand(images, band).pixels[y];
+			for (int x = 0; x < row.length; x++)
+				row[x] /= other[x];
+		}
+	}
+
+	static class AddScalar extends PixelOp {
+		final float value;
+
+		AddScalar(float value) {
+			this.value = value;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			final float v = value;
+			for (int x = 0; x < row.length; x++)
+				row[x] += v;
+		}
+	}
+
+	static class SubtractScalar extends PixelOp {
+		final float value;
+
+		SubtractScalar(float value) {
+			this.value = value;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			final float v = value;
+			for (int x = 0; x < row.length; x++)
+				row[x] -= v;
+		}
+	}
+
+	static class MultiplyScalar extends PixelOp {
+		final float value;
+
+		MultiplyScalar(float value) {
+			this.value = value;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			final float v = value;
+			for (int x = 0; x < row.length; x++)
+				row[x] *= v;
+		}
+	}
+
+	static class DivideScalar extends PixelOp {
+		final float value;
+
+		DivideScalar(float value) {
+			this.value = value;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			final float v = value;
+			for (int x = 0; x < row.length; x++)
+				row[x] /= v;
+		}
+	}
+
+	/** As {@link FImage#clip(Float, Float)} */
+	static class Clip extends PixelOp {
+		final float min;
+		final float max;
+
+		Clip(float min, float max) {
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			for (int x = 0; x < row.length; x++) {
+				if (row[x] < min)
+					row[x] = 0;
+				if (row[x] > max)
+					row[x] = 1;
+			}
+		}
+	}
+
+	/** As {@link FImage#clipMin(Float)} */
+	static class ClipMin extends PixelOp {
+		final float thresh;
+
+		ClipMin(float thresh) {
+			this.thresh = thresh;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			for (int x = 0; x < row.length; x++)
+				if (row[x] < thresh)
+					row[x] = 0;
+		}
+	}
+
+	/** As {@link FImage#clipMax(Float)} */
+	static class ClipMax extends PixelOp {
+		final float thresh;
+
+		ClipMax(float thresh) {
+			this.thresh = thresh;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			for (int x = 0; x < row.length; x++)
+				if (row[x] > thresh)
+					row[x] = 1;
+		}
+	}
+
+	/** As {@link FImage#threshold(Float)} */
+	static class Threshold extends PixelOp {
+		final float thresh;
+
+		Threshold(float thresh) {
+			this.thresh = thresh;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			for (int x = 0; x < row.length; x++)
+				row[x] = row[x] <= thresh ? 0 : 1;
+		}
+	}
+
+	static class Abs extends PixelOp {
+		@Override
+		void apply(float[] row, int y, int band) {
+			for (int x = 0; x < row.length; x++)
+				row[x] = Math.abs(row[x]);
+		}
+	}
+
+	static class Process extends PixelOp {
+		final PixelProcessor<Float> processor;
+
+		Process(PixelProcessor<Float> processor) {
+			this.processor = processor;
+		}
+
+		@Override
+		void apply(float[] row, int y, int band) {
+			for (int x = 0; x < row.length; x++)
+				row[x] = processor.processPixel(row[x]);
+		}
+	}
+
+	/** As {@link FImage#normalise()} */
+	static class Normalise extends PixelOp {
+		@Override
+		void apply(float[] row, int y, int band) {
+			throw new IllegalStateException("not bound");
+		}
+
+		@Override
+		boolean needsRange() {
+			return true;
+		}
+
+		@Override
+		PixelOp bind(final float min, final float max) {
+			if (max == min)
+				return null;
+
+			return new PixelOp() {
+				@Override
+				void apply(float[] row, int y, int band) {
+					for (int x = 0; x < row.length; x++)
+						row[x] = (row[x] - min) / (max - min);
+				}
+			};
+		}
+	}
+
+	/** As {@link FImage#inverse()} */
+	static class Inverse extends PixelOp {
+		@Override
+		void apply(float[] row, int y, int band) {
+			throw new IllegalStateException("not bound");
+		}
+
+		@Override
+		boolean needsRange() {
+			return true;
+		}
+
+		@Override
+		PixelOp bind(final float min, final float max) {
+			return new PixelOp() {
+				@Override
+				void apply(float[] row, int y, int band) {
+					for (int x = 0; x < row.length; x++)
+						row[x] = max - row[x];
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.openimaj.image.colour.ColourSpace;
+
+/**
+ * Tests for reading {@link BufferedImage}s directly with the
+ * {@link RasterConverter}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RasterConverterTest {
+	private static BufferedImage random(Random rng, int type) {
+		final BufferedImage image = new BufferedImage(67, 45, type);
+		final WritableRaster raster = image.getRaster();
+
+		for (int y = 0; y < image.getHeight(); y++)
+			for (int x = 0; x < image.getWidth(); x++)
+				for (int b = 0; b < raster.getNumBands(); b++)
+					raster.setSample(x, y, b, rng.nextInt(1 << image.getSampleModel().getSampleSize(b)));
+
+		return image;
+	}
+
+	private static int[] argb(BufferedImage image) {
+		final BufferedImage bimg = ImageUtilities.createWorkingImage(image);
+		return bimg.getRGB(0, 0, bimg.getWidth(), bimg.getHeight(), null, 0, bimg.getWidth());
+	}
+
+	private static void assertImageEquals(FImage expected, FImage actual) {
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+		for (int y = 0; y < expected.height; y++)
+			assertArrayEquals(expected.pixels[y], actual.pixels[y], 0f);
+	}
+
+	/**
+	 * Test that the direct conversion gives exactly the same pixels as
+	 * converting via an ARGB image, including for sub-images
+	 */
+	@Test
+	public void testSameAsARGB() {
+		final Random rng = new Random(0);
+		final int[] types = { BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_RGB,
+				BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_INT_ARGB };
+
+		for (final int type : types) {
+			for (final BufferedImage image : new BufferedImage[] { random(rng, type),
+					random(rng, type).getSubimage(5, 7, 40, 30) })
+			{
+				final int[] data = argb(image);
+				final int w = image.getWidth();
+				final int h = image.getHeight();
+
+				final FImage fimage = new FImage(1, 1);
+				assertTrue(RasterConverter.read(image, fimage));
+				assertImageEquals(new FImage(data, w, h), fimage);
+
+				for (final boolean alpha : new boolean[] { false, true }) {
+					final MBFImage expected = new MBFImage(data, w, h, alpha);
+					final MBFImage actual = new MBFImage(1, 1, alpha ? ColourSpace.RGBA : ColourSpace.RGB);
+					assertTrue(RasterConverter.read(image, actual));
+
+					for (int b = 0; b < expected.numBands(); b++)
+						assertImageEquals(expected.getBand(b), actual.getBand(b));
+				}
+			}
+		}
+
+		assertFalse(RasterConverter.read(random(rng, BufferedImage.TYPE_4BYTE_ABGR), new FImage(1, 1)));
+		assertFalse(RasterConverter.read(random(rng, BufferedImage.TYPE_USHORT_GRAY), new FImage(1, 1)));
+	}
+
+	/**
+	 * Test that an 8-bit gray image with a non-standard layout is not read
+	 * directly, and that reading it gives the same pixels as drawing it into
+	 * an ARGB image (which converts the gray values through sRGB)
+	 */
+	@Test
+	public void testCustomGray() {
+		final Random rng = new Random(3);
+		final int w = 31;
+		final int h = 17;
+
+		final ComponentColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+				new int[] { 8 }, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+		final PixelInterleavedSampleModel sm = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, w, h, 2, 2 * w,
+				new int[] { 0 });
+		final WritableRaster raster = Raster.createWritableRaster(sm, null);
+		for (int y = 0; y < h; y++)
+			for (int x = 0; x < w; x++)
+				raster.setSample(x, y, 0, rng.nextInt(256));
+		raster.setSample(0, 0, 0, 60);
+
+		final BufferedImage image = new BufferedImage(cm, raster, false, null);
+		assertEquals(BufferedImage.TYPE_CUSTOM, image.getType());
+
+		assertFalse(RasterConverter.read(image, new FImage(1, 1)));
+
+		final FImage expected = new FImage(argb(image), w, h);
+		final FImage actual = ImageUtilities.createFImage(image);
+		assertImageEquals(expected, actual);
+		assertEquals(133 / 255f, actual.pixels[0][0], 0f);
+	}
+
+	/**
+	 * Test that target images are reused
+	 */
+	@Test
+	public void testTargets() {
+		final Random rng = new Random(1);
+		final BufferedImage bgr = random(rng, BufferedImage.TYPE_3BYTE_BGR);
+		final BufferedImage abgr = random(rng, BufferedImage.TYPE_4BYTE_ABGR);
+
+		final FImage target = new FImage(10, 10);
+		assertSame(target, ImageUtilities.createFImage(bgr, target));
+		assertSame(target, ImageUtilities.createFImage(abgr, target));
+		assertEquals(67, target.width);
+		assertEquals(45, target.height);
+
+		final MBFImage mtarget = new MBFImage(67, 45, ColourSpace.RGB);
+		final FImage band = mtarget.getBand(0);
+		assertSame(mtarget, ImageUtilities.createMBFImage(bgr, false, mtarget));
+		assertSame(band, mtarget.getBand(0));
+
+		final MBFImage rgba = ImageUtilities.createMBFImage(bgr, true, mtarget);
+		assertEquals(ColourSpace.RGBA, rgba.colourSpace);
+		assertEquals(1f, rgba.getBand(3).pixels[0][0], 0f);
+	}
+
+	/**
+	 * Test subsampled reading
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testSubsampling() throws IOException {
+		final Random rng = new Random(2);
+		final BufferedImage image = random(rng, BufferedImage.TYPE_3BYTE_BGR);
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", baos);
+		final byte[] bytes = baos.toByteArray();
+
+		final FImage full = ImageUtilities.readF(new ByteArrayInputStream(bytes));
+		final FImage sub = ImageUtilities.readF(new ByteArrayInputStream(bytes), 3, null);
+
+		assertEquals(23, sub.width);
+		assertEquals(15, sub.height);
+		for (int y = 0; y < sub.height; y++)
+			for (int x = 0; x < sub.width; x++)
+				assertEquals(full.pixels[y * 3][x * 3], sub.pixels[y][x], 0f);
+
+		final FImage resampled = ImageUtilities.createFImage(ExtendedImageIO.subsample(image, 3));
+		assertImageEquals(sub, resampled);
+	}
+}
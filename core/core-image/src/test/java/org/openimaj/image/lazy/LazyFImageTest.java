@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.lazy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.image.processor.PixelProcessor;
+import org.openimaj.util.parallel.ForkJoinBackend;
+import org.openimaj.util.parallel.ParallelBackend;
+
+/**
+ * Tests for {@link LazyFImage} and {@link LazyMBFImage}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class LazyFImageTest {
+	private static final ForkJoinBackend BACKEND = ForkJoinBackend.create(4);
+	private static final ParallelBackend[] BACKENDS = { null, BACKEND };
+
+	/**
+	 * Shut down the pool used by the parallel backend
+	 */
+	@AfterClass
+	public static void shutdown() {
+		BACKEND.close();
+	}
+
+	private static FImage random(Random rng, int width, int height) {
+		final FImage image = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextFloat() * 4 - 2;
+		return image;
+	}
+
+	private static void assertSame(FImage expected, FImage actual) {
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+		for (int y = 0; y < expected.height; y++)
+			assertArrayEquals(expected.pixels[y], actual.pixels[y], 0f);
+	}
+
+	private static final PixelProcessor<Float> SQUARE = new PixelProcessor<Float>() {
+		@Override
+		public Float processPixel(Float pixel) {
+			return pixel * pixel;
+		}
+	};
+
+	/**
+	 * Test that chains give identical results to the equivalent eager
+	 * {@link FImage} calls and leave their inputs untouched
+	 */
+	@Test
+	public void testFImage() {
+		final Random rng = new Random(0);
+
+		for (final ParallelBackend backend : BACKENDS) {
+			for (int i = 0; i < 10; i++) {
+				final int w = 1 + rng.nextInt(50);
+				final int h = 1 + rng.nextInt(50);
+				final FImage img = random(rng, w, h);
+				final FImage a = random(rng, w, h);
+				final FImage b = random(rng, w, h);
+				final FImage copy = img.clone();
+
+				FImage expected = img.subtract(a).multiply(b).clip(0f, 1f).normalise();
+				assertSame(expected, img.lazy().subtract(a).multiply(b).clip(0f, 1f).normalise().execute(backend));
+
+				expected = img.add(a).divide(b).abs().multiply(0.5f).subtract(1f).normalise().inverse()
+						.clipMin(0.2f).add(3f).divide(2f);
+				assertSame(expected, img.lazy().add(a).divide(b).abs().multiply(0.5f).subtract(1f).normalise()
+						.inverse().clipMin(0.2f).add(3f).divide(2f).execute(backend));
+
+				expected = img.clone().processInplace(SQUARE).clipMax(1.5f).threshold(0.7f);
+				assertSame(expected, img.lazy().process(SQUARE).clipMax(1.5f).threshold(0.7f).execute(backend));
+
+				// all negative, so the max is FImage's initial value
+				expected = img.clone().abs().multiply(-1f).inverse();
+				assertSame(expected, img.lazy().abs().multiply(-1f).inverse().execute(backend));
+
+				// no operations is a copy
+				assertSame(img, img.lazy().execute(backend));
+
+				assertSame(copy, img);
+			}
+		}
+
+		// constant images are not changed by normalisation
+		final FImage constant = new FImage(5, 4).add(0.3f);
+		assertSame(constant, constant.lazy().normalise().execute());
+	}
+
+	/**
+	 * Test that chains over {@link MBFImage}s are applied band by band
+	 */
+	@Test
+	public void testMBFImage() {
+		final Random rng = new Random(1);
+
+		for (final ParallelBackend backend : BACKENDS) {
+			final int w = 37;
+			final int h = 23;
+			final MBFImage img = new MBFImage(ColourSpace.RGB, random(rng, w, h), random(rng, w, h), random(rng, w, h));
+			final MBFImage other = new MBFImage(ColourSpace.RGB, random(rng, w, h), random(rng, w, h),
+					random(rng, w, h));
+			final FImage mask = random(rng, w, h);
+
+			final MBFImage result = img.lazy().multiply(mask).add(other).normalise().execute(backend);
+			assertEquals(ColourSpace.RGB, result.colourSpace);
+			assertEquals(3, result.numBands());
+
+			for (int b = 0; b < 3; b++) {
+				final FImage expected = img.getBand(b).multiply(mask).add(other.getBand(b)).normalise();
+				assertSame(expected, result.getBand(b));
+			}
+		}
+	}
+}
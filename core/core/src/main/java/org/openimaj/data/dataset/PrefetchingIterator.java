@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.data.dataset;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+
+/**
+ * An {@link Iterator} over the items of an indexed collection (i.e. a
+ * {@link ListDataset}) that loads the items ahead of the consumer. Each item is
+ * loaded in two stages, described by a {@link Loader}: the raw data is first
+ * read on an I/O thread pool, and is then decoded on a compute thread pool.
+ * This means that slow reads (for example from network storage) overlap with
+ * decoding and with whatever the consumer does with the items.
+ * <p>
+ * At most <code>depth</code> items are in flight (being read, being decoded or
+ * waiting for the consumer) at any time. Items can be delivered in index order,
+ * or in the order in which they finish decoding; the latter avoids a slow item
+ * holding up the ones behind it.
+ * <p>
+ * If loading an item fails, the exception is rethrown (wrapped in a
+ * {@link RuntimeException} if necessary) by the call to {@link #next()} that
+ * would have returned the item. The iterator should be {@link #close()}d if it
+ * is abandoned before the end so that no further items are loaded.
+ * <p>
+ * By default both stages run on shared pools of daemon threads that are
+ * dedicated to prefetching, so the iterator can safely be consumed from a task
+ * running on the {@link GlobalExecutorPool} (for example inside a loop in
+ * {@link org.openimaj.util.parallel.Parallel}). If explicit pools are given,
+ * the iterator must not be consumed from a thread of a bounded compute pool,
+ * as the consumer could then wait for a decode task that can never run.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <INSTANCE>
+ *            the type of item
+ */
+public class PrefetchingIterator<INSTANCE> implements Iterator<INSTANCE>, Closeable {
+	/**
+	 * Interface describing how to load the item at a given index in two
+	 * stages.
+	 *
+	 * @param <RAW>
+	 *            the type of the raw data
+	 * @param <INSTANCE>
+	 *            the type of item
+	 */
+	public interface Loader<RAW, INSTANCE> {
+		/**
+		 * Read the raw data for the item at the given index. This is called on
+		 * the I/O pool.
+		 *
+		 * @param index
+		 *            the index
+		 * @return the raw data
+		 * @throws Exception
+		 *             if an error occurs
+		 */
+		RAW load(int index) throws Exception;
+
+		/**
+		 * Decode the raw data for the item at the given index. This is called
+		 * on the compute pool.
+		 *
+		 * @param index
+		 *            the index
+		 * @param raw
+		 *            the raw data returned by {@link #load(int)}
+		 * @return the item
+		 * @throws Exception
+		 *             if an error occurs
+		 */
+		INSTANCE decode(int index, RAW raw) throws Exception;
+	}
+
+	/**
+	 * The default number of items in flight
+	 */
+	public static final int DEFAULT_DEPTH = 16;
+
+	private static ExecutorService ioPool;
+	private static ExecutorService decodePool;
+
+	private class Slot implements Runnable {
+		final int index;
+		boolean loaded;
+		Object raw;
+		INSTANCE value;
+		Throwable error;
+		boolean done;
+
+		Slot(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public void run() {
+			if (!loaded) {
+				// I/O stage
+				try {
+					raw = loader.load(index);
+					loaded = true;
+
+					if (closed)
+						finish(null, null);
+					else
+						computePool.execute(this);
+				} catch (final Throwable t) {
+					finish(null, t);
+				}
+			} else {
+				// decode stage
+				try {
+					finish(loader.decode(index, raw), null);
+				} catch (final Throwable t) {
+					finish(null, t);
+				}
+			}
+		}
+
+		synchronized void finish(INSTANCE value, Throwable error) {
+			this.raw = null;
+			this.value = value;
+			this.error = error;
+			this.done = true;
+			notifyAll();
+
+			if (!ordered)
+				completed.add(this);
+		}
+
+		synchronized void await() throws InterruptedException {
+			while (!done)
+				wait();
+		}
+	}
+
+	private final Loader<Object, INSTANCE> loader;
+	private final int size;
+	private final ExecutorService io;
+	private final ExecutorService computePool;
+	private final boolean ordered;
+
+	private final ArrayDeque<Slot> pending = new ArrayDeque<Slot>();
+	private final BlockingQueue<Slot> completed = new LinkedBlockingQueue<Slot>();
+	private int submitted;
+	private int returned;
+	private volatile boolean closed;
+
+	/**
+	 * Construct with the given loader, using a shared pool of daemon threads
+	 * for I/O and a shared fixed-size pool of daemon threads (one per
+	 * available processor) for decoding.
+	 *
+	 * @param loader
+	 *            the loader
+	 * @param size
+	 *            the number of items; the items with indices from 0 to
+	 *            <code>size-1</code> are returned
+	 * @param depth
+	 *            the maximum number of items in flight
+	 * @param ordered
+	 *            if true items are returned in index order; otherwise they are
+	 *            returned in the order they are decoded
+	 */
+	public <RAW> PrefetchingIterator(Loader<RAW, INSTANCE> loader, int size, int depth, boolean ordered) {
+		this(loader, size, getIOPool(), getDecodePool(), depth, ordered);
+	}
+
+	/**
+	 * Construct with the given loader and thread pools.
+	 *
+	 * @param loader
+	 *            the loader
+	 * @param size
+	 *            the number of items; the items with indices from 0 to
+	 *            <code>size-1</code> are returned
+	 * @param ioPool
+	 *            the pool on which raw data is read
+	 * @param computePool
+	 *            the pool on which raw data is decoded
+	 * @param depth
+	 *            the maximum number of items in flight
+	 * @param ordered
+	 *            if true items are returned in index order; otherwise they are
+	 *            returned in the order they are decoded
+	 */
+	@SuppressWarnings("unchecked")
+	public <RAW> PrefetchingIterator(Loader<RAW, INSTANCE> loader, int size, ExecutorService ioPool,
+			ExecutorService computePool, int depth, boolean ordered)
+	{
+		if (depth < 1)
+			throw new IllegalArgumentException("depth must be at least 1");
+
+		this.loader = (Loader<Object, INSTANCE>) loader;
+		this.size = size;
+		this.io = ioPool;
+		this.computePool = computePool;
+		this.ordered = ordered;
+
+		while (submitted < size && submitted < depth)
+			submit();
+	}
+
+	private static synchronized ExecutorService getIOPool() {
+		if (ioPool == null)
+			ioPool = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+		return ioPool;
+	}
+
+	private static synchronized ExecutorService getDecodePool() {
+		if (decodePool == null)
+			decodePool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					new DaemonThreadFactory());
+
+		return decodePool;
+	}
+
+	private void submit() {
+		final Slot slot = new Slot(submitted++);
+
+		if (ordered)
+			pending.add(slot);
+
+		try {
+			io.execute(slot);
+		} catch (final RuntimeException e) {
+			slot.finish(null, e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return returned < size;
+	}
+
+	@Override
+	public INSTANCE next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		final Slot slot;
+		try {
+			if (ordered) {
+				slot = pending.poll();
+				slot.await();
+			} else {
+				slot = completed.take();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+
+		returned++;
+		if (!closed && submitted < size)
+			submit();
+
+		if (slot.error != null) {
+			if (slot.error instanceof RuntimeException)
+				throw (RuntimeException) slot.error;
+			if (slot.error instanceof Error)
+				throw (Error) slot.error;
+			throw new RuntimeException(slot.error);
+		}
+
+		return slot.value;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Not supported");
+	}
+
+	/**
+	 * Stop loading items. Items that are already being read will not be
+	 * decoded, and {@link #hasNext()} will return false.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		returned = size;
+	}
+}
@@ -30,6 +30,7 @@
 package org.openimaj.data.dataset;
 
 import java.util.AbstractList;
+import java.util.concurrent.ExecutorService;
 
 import org.openimaj.data.identity.Identifiable;
 import org.openimaj.data.identity.IdentifiableObject;
@@ -107,6 +108,70 @@ public abstract class ReadableListDataset<INSTANCE, SOURCE> extends AbstractList
 		return numInstances();
 	}
 
+	/**
+	 * Get an iterator over the instances that reads and decodes them ahead of
+	 * the consumer using the default thread pools, which are dedicated to
+	 * prefetching. See {@link PrefetchingIterator} for details.
+	 *
+	 * @param depth
+	 *            the maximum number of instances being loaded or waiting to be
+	 *            consumed
+	 * @param ordered
+	 *            if true, the instances are returned in order; otherwise they
+	 *            are returned as soon as they have been loaded
+	 * @return the iterator
+	 */
+	public PrefetchingIterator<INSTANCE> prefetchingIterator(int depth, boolean ordered) {
+		return new PrefetchingIterator<INSTANCE>(createLoader(), size(), depth, ordered);
+	}
+
+	/**
+	 * Get an iterator over the instances that reads and decodes them ahead of
+	 * the consumer using the given thread pools. See
+	 * {@link PrefetchingIterator} for details; in particular, the iterator must
+	 * not be consumed from a thread of a bounded <code>computePool</code>.
+	 *
+	 * @param ioPool
+	 *            the pool used for reading
+	 * @param computePool
+	 *            the pool used for decoding
+	 * @param depth
+	 *            the maximum number of instances being loaded or waiting to be
+	 *            consumed
+	 * @param ordered
+	 *            if true, the instances are returned in order; otherwise they
+	 *            are returned as soon as they have been loaded
+	 * @return the iterator
+	 */
+	public PrefetchingIterator<INSTANCE> prefetchingIterator(ExecutorService ioPool, ExecutorService computePool,
+			int depth, boolean ordered)
+	{
+		return new PrefetchingIterator<INSTANCE>(createLoader(), size(), ioPool, computePool, depth, ordered);
+	}
+
+	/**
+	 * Create the {@link PrefetchingIterator.Loader} used by
+	 * {@link #prefetchingIterator(int, boolean)}. By default the whole of
+	 * {@link #getInstance(int)} is performed in the I/O stage; sub-classes
+	 * that can separate reading the raw data from decoding it should override
+	 * this.
+	 *
+	 * @return the loader
+	 */
+	protected PrefetchingIterator.Loader<?, INSTANCE> createLoader() {
+		return new PrefetchingIterator.Loader<INSTANCE, INSTANCE>() {
+			@Override
+			public INSTANCE load(int index) {
+				return getInstance(index);
+			}
+
+			@Override
+			public INSTANCE decode(int index, INSTANCE raw) {
+				return raw;
+			}
+		};
+	}
+
 	private class WrappedListDataset extends AbstractList<IdentifiableObject<INSTANCE>>
 			implements
 			ListDataset<IdentifiableObject<INSTANCE>>
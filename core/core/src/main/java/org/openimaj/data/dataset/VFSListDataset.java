@@ -30,6 +30,7 @@
 package org.openimaj.data.dataset;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Iterator;
 
@@ -264,6 +265,40 @@ public class VFSListDataset<INSTANCE> extends ReadableListDataset<INSTANCE, File
 		};
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If the dataset was constructed with an {@link InputStreamObjectReader},
+	 * the I/O stage just reads the bytes of each file, and the decoding is
+	 * performed by the compute stage.
+	 */
+	@Override
+	protected PrefetchingIterator.Loader<?, INSTANCE> createLoader() {
+		if (!(reader instanceof FileObjectISReader))
+			return super.createLoader();
+
+		final InputStreamObjectReader<INSTANCE> streamReader = ((FileObjectISReader<INSTANCE>) reader).streamReader;
+
+		return new PrefetchingIterator.Loader<byte[], INSTANCE>() {
+			@Override
+			public byte[] load(int index) throws IOException {
+				FileContent content = null;
+				try {
+					content = files[index].getContent();
+					return org.apache.commons.io.IOUtils.toByteArray(content.getInputStream());
+				} finally {
+					if (content != null)
+						content.close();
+				}
+			}
+
+			@Override
+			public INSTANCE decode(int index, byte[] raw) throws IOException {
+				return streamReader.read(new ByteArrayInputStream(raw));
+			}
+		};
+	}
+
 	@Override
 	public String getID(int index) {
 		try {
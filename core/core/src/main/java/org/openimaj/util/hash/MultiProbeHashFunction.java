@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.hash;
+
+/**
+ * Interface describing a {@link HashFunction} that can produce, in addition to
+ * the hash code of an object, the codes of the other buckets in which similar
+ * objects are most likely to have been hashed. This is the basis of
+ * multi-probe LSH, where fewer hash tables are needed for a given recall
+ * because each table is probed multiple times.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * @param <OBJECT>
+ *            Type of object being hashed
+ */
+public interface MultiProbeHashFunction<OBJECT> extends HashFunction<OBJECT> {
+	/**
+	 * Compute the codes of the buckets to probe for the given object. The
+	 * first code is always the same as {@link #computeHashCode(Object)}; the
+	 * remaining codes are in order of decreasing likelihood of containing
+	 * similar objects. Fewer than <code>numProbes</code> codes may be returned.
+	 * 
+	 * @param object
+	 *            the object
+	 * @param numProbes
+	 *            the maximum number of codes to produce
+	 * @return the codes of the buckets to probe
+	 */
+	public int[] computeProbeHashCodes(OBJECT object, int numProbes);
+}
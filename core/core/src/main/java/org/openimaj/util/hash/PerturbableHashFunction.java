@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.hash;
+
+/**
+ * Interface describing a {@link HashFunction} that produces integer codes by
+ * quantising a continuous value, and that can report how close the value was
+ * to the boundaries of its quantisation bin. This information allows
+ * multi-probe hashing schemes to determine which neighbouring bins are most
+ * likely to contain similar objects.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * @param <OBJECT>
+ *            Type of object being hashed
+ */
+public interface PerturbableHashFunction<OBJECT> extends HashFunction<OBJECT> {
+	/**
+	 * Compute the hash code for the object, together with the distances from
+	 * the underlying value to the boundaries of its bin. On return,
+	 * <code>distances[0]</code> will hold the distance to the bin with code
+	 * one less than the returned code, and <code>distances[1]</code> will hold
+	 * the distance to the bin with code one more than the returned code. If a
+	 * neighbouring bin cannot be reached the distance will be
+	 * {@link Double#POSITIVE_INFINITY}.
+	 * 
+	 * @param object
+	 *            the object
+	 * @param distances
+	 *            array of length two to hold the distances to the boundaries
+	 * 
+	 * @return the hash code
+	 */
+	public int computeHashCode(OBJECT object, double[] distances);
+}
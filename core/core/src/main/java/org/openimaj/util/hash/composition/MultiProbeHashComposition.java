@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.hash.composition;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.util.hash.HashFunction;
+import org.openimaj.util.hash.HashFunctionFactory;
+import org.openimaj.util.hash.MultiProbeHashFunction;
+import org.openimaj.util.hash.PerturbableHashFunction;
+
+/**
+ * A {@link HashComposition} that can also generate the codes of the buckets
+ * adjacent to the bucket of an object for multi-probe search. Subclasses
+ * provide the combining function through {@link #combine(int[])}, which is
+ * applied to the perturbed codes of the underlying functions; only functions
+ * that are {@link PerturbableHashFunction}s are perturbed. The probes are
+ * generated in order of increasing score using the query-directed probing
+ * sequence of Lv et al.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <OBJECT>
+ *            Type of object being hashed
+ */
+@Reference(
+		type = ReferenceType.Inproceedings,
+		author = { "Lv, Qin", "Josephson, William", "Wang, Zhe", "Charikar, Moses", "Li, Kai" },
+		title = "Multi-probe LSH: efficient indexing for high-dimensional similarity search",
+		year = "2007",
+		booktitle = "Proceedings of the 33rd international conference on Very large data bases",
+		pages = { "950", "", "961" },
+		publisher = "VLDB Endowment",
+		series = "VLDB '07")
+public abstract class MultiProbeHashComposition<OBJECT> extends HashComposition<OBJECT>
+		implements
+		MultiProbeHashFunction<OBJECT>
+{
+	/**
+	 * A set of perturbations, represented by indexes into the list of possible
+	 * perturbations sorted by increasing score.
+	 */
+	private static class PerturbationSet implements Comparable<PerturbationSet> {
+		final int[] indexes;
+		final double score;
+
+		PerturbationSet(int[] indexes, double score) {
+			this.indexes = indexes;
+			this.score = score;
+		}
+
+		int max() {
+			return indexes[indexes.length - 1];
+		}
+
+		@Override
+		public int compareTo(PerturbationSet o) {
+			return Double.compare(score, o.score);
+		}
+	}
+
+	/**
+	 * Construct with the given functions.
+	 *
+	 * @param functions
+	 *            the underlying hash functions.
+	 */
+	public MultiProbeHashComposition(List<HashFunction<OBJECT>> functions) {
+		super(functions);
+	}
+
+	/**
+	 * Construct with the given functions.
+	 *
+	 * @param first
+	 *            the first function
+	 * @param remainder
+	 *            the remainder of the functions
+	 */
+	@SafeVarargs
+	public MultiProbeHashComposition(HashFunction<OBJECT> first, HashFunction<OBJECT>... remainder) {
+		super(first, remainder);
+	}
+
+	/**
+	 * Construct with the factory which is used to produce the required number
+	 * of functions.
+	 *
+	 * @param factory
+	 *            the factory to use to produce the underlying hash functions.
+	 * @param nFuncs
+	 *            the number of functions to create for the composition
+	 */
+	public MultiProbeHashComposition(HashFunctionFactory<OBJECT> factory, int nFuncs) {
+		super(factory, nFuncs);
+	}
+
+	/**
+	 * Combine the codes produced by each of the underlying hash functions into
+	 * a single code. The result must be the same as
+	 * {@link #computeHashCode(Object)} would produce if the underlying
+	 * functions had computed the given codes.
+	 * 
+	 * @param hashes
+	 *            the codes from each underlying function
+	 * @return the composite code
+	 */
+	public abstract int combine(int[] hashes);
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public int[] computeProbeHashCodes(OBJECT object, int numProbes) {
+		final int nfuncs = hashFunctions.size();
+		final int[] hashes = new int[nfuncs];
+
+		// the possible perturbations of each function and their scores
+		final double[] distances = new double[2];
+		final double[] scores = new double[2 * nfuncs];
+		int nperturbations = 0;
+		for (int i = 0; i < nfuncs; i++) {
+			final HashFunction<OBJECT> fcn = hashFunctions.get(i);
+
+			if (fcn instanceof PerturbableHashFunction) {
+				hashes[i] = ((PerturbableHashFunction<OBJECT>) fcn).computeHashCode(object, distances);
+
+				scores[2 * i] = distances[0] * distances[0];
+				scores[2 * i + 1] = distances[1] * distances[1];
+			} else {
+				hashes[i] = fcn.computeHashCode(object);
+
+				scores[2 * i] = Double.POSITIVE_INFINITY;
+				scores[2 * i + 1] = Double.POSITIVE_INFINITY;
+			}
+
+			if (scores[2 * i] != Double.POSITIVE_INFINITY)
+				nperturbations++;
+			if (scores[2 * i + 1] != Double.POSITIVE_INFINITY)
+				nperturbations++;
+		}
+
+		final int[] probes = new int[Math.max(1, numProbes)];
+		probes[0] = combine(hashes);
+
+		if (numProbes <= 1 || nperturbations == 0)
+			return Arrays.copyOf(probes, 1);
+
+		// sort the possible perturbations by score; perturbation 2i
+		// decrements the code of function i, and 2i+1 increments it
+		final Integer[] order = new Integer[2 * nfuncs];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(scores[o1], scores[o2]);
+			}
+		});
+
+		final int[] sorted = new int[nperturbations];
+		final double[] sortedScores = new double[nperturbations];
+		for (int i = 0; i < nperturbations; i++) {
+			sorted[i] = order[i];
+			sortedScores[i] = scores[order[i]];
+		}
+
+		// generate the perturbation sets in order of score using the shift and
+		// expand operations
+		final PriorityQueue<PerturbationSet> heap = new PriorityQueue<PerturbationSet>();
+		heap.add(new PerturbationSet(new int[] { 0 }, sortedScores[0]));
+
+		int count = 1;
+		final int[] perturbed = new int[nfuncs];
+		while (count < numProbes && !heap.isEmpty()) {
+			final PerturbationSet set = heap.poll();
+			final int max = set.max();
+
+			if (max + 1 < nperturbations) {
+				// shift: replace the largest perturbation with the next one
+				final int[] shifted = set.indexes.clone();
+				shifted[shifted.length - 1] = max + 1;
+				heap.add(new PerturbationSet(shifted, set.score - sortedScores[max] + sortedScores[max + 1]));
+
+				// expand: add the next perturbation
+				final int[] expanded = Arrays.copyOf(set.indexes, set.indexes.length + 1);
+				expanded[expanded.length - 1] = max + 1;
+				heap.add(new PerturbationSet(expanded, set.score + sortedScores[max + 1]));
+			}
+
+			// sets that perturb the same function twice are invalid
+			System.arraycopy(hashes, 0, perturbed, 0, nfuncs);
+			boolean valid = true;
+			for (final int idx : set.indexes) {
+				final int fcn = sorted[idx] / 2;
+
+				if (perturbed[fcn] != hashes[fcn]) {
+					valid = false;
+					break;
+				}
+
+				perturbed[fcn] += (sorted[idx] % 2 == 0) ? -1 : 1;
+			}
+
+			if (valid)
+				probes[count++] = combine(perturbed);
+		}
+
+		return count == probes.length ? probes : Arrays.copyOf(probes, count);
+	}
+}
@@ -44,7 +44,7 @@ import org.openimaj.util.hash.HashFunctionFactory;
  * @param <OBJECT>
  *            Type of object being hashed
  */
-public class SimpleComposition<OBJECT> extends HashComposition<OBJECT> {
+public class SimpleComposition<OBJECT> extends MultiProbeHashComposition<OBJECT> {
 	/**
 	 * Construct with the given functions.
 	 *
@@ -90,4 +90,14 @@ public class SimpleComposition<OBJECT> extends HashComposition<OBJECT> {
 
 		return result;
 	}
+
+	@Override
+	public int combine(int[] hashes) {
+		int result = HashCodeUtil.SEED;
+
+		for (int i = 0; i < hashes.length; i++)
+			result = HashCodeUtil.hash(result, hashes[i]);
+
+		return result;
+	}
 }
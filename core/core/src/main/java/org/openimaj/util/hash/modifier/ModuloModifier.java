@@ -40,7 +40,7 @@ import org.openimaj.util.hash.HashFunction;
  * 
  * @param <O>
  */
-public class ModuloModifier<O> extends HashModifier<O> {
+public class ModuloModifier<O> extends MultiProbeHashModifier<O> {
 	private int range;
 
 	/**
@@ -59,8 +59,8 @@ public class ModuloModifier<O> extends HashModifier<O> {
 	}
 
 	@Override
-	public int computeHashCode(O object) {
-		final long innerHash = hashFunction.computeHashCode(object) & 0x00000000ffffffffL;
+	protected int modify(int hash) {
+		final long innerHash = hash & 0x00000000ffffffffL;
 
 		return (int) (innerHash % range);
 	}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.hash.modifier;
+
+import org.openimaj.util.hash.HashFunction;
+import org.openimaj.util.hash.MultiProbeHashFunction;
+
+/**
+ * A {@link HashModifier} that is applied to each hash code independently of
+ * the object being hashed. If the underlying function is a
+ * {@link MultiProbeHashFunction}, the probe codes it produces are modified in
+ * the same way as the hash code.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <OBJECT>
+ *            Object being hashed
+ */
+public abstract class MultiProbeHashModifier<OBJECT> extends HashModifier<OBJECT>
+		implements
+		MultiProbeHashFunction<OBJECT>
+{
+	protected MultiProbeHashModifier(HashFunction<OBJECT> hashFunction) {
+		super(hashFunction);
+	}
+
+	/**
+	 * Modify a hash code produced by the underlying hash function
+	 * 
+	 * @param hash
+	 *            the hash code
+	 * @return the modified hash code
+	 */
+	protected abstract int modify(int hash);
+
+	@Override
+	public int computeHashCode(OBJECT object) {
+		return modify(hashFunction.computeHashCode(object));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public int[] computeProbeHashCodes(OBJECT object, int numProbes) {
+		if (!(hashFunction instanceof MultiProbeHashFunction))
+			return new int[] { computeHashCode(object) };
+
+		final int[] probes = ((MultiProbeHashFunction<OBJECT>) hashFunction).computeProbeHashCodes(object, numProbes);
+		for (int i = 0; i < probes.length; i++)
+			probes[i] = modify(probes[i]);
+
+		return probes;
+	}
+}
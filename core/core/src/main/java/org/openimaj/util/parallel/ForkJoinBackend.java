@@ -0,0 +1,315 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.parallel;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel.IntRange;
+import org.openimaj.util.parallel.partition.Partitioner;
+
+/**
+ * A {@link ParallelBackend} built on a work-stealing {@link ForkJoinPool}.
+ * <p>
+ * Integer ranges are recursively split into sub-ranges until they are small
+ * enough to be processed directly; by default the range is split into several
+ * times more pieces than there are threads, so that idle threads can steal
+ * work from busy ones when the cost of each iteration is skewed.
+ * Iterator-based loops are processed by a set of worker tasks that pull items
+ * from the shared iterator as they become free.
+ * <p>
+ * Unlike the {@link ThreadPoolBackend}, parallel loops may be nested: if a
+ * loop is started from a thread belonging to the backend's pool, the work is
+ * forked within that pool and the calling thread participates in executing it
+ * rather than blocking.
+ * <p>
+ * The number of threads working on any single loop can be limited with
+ * {@link #withMaxParallelism(int)}; the returned backend shares the same pool.
+ * A limited backend splits integer ranges into exactly that many contiguous
+ * chunks, so no more than that many iterations of a range are ever in
+ * progress at once.
+ * <p>
+ * Backends created with {@link #create(int)} own their pool; closing them
+ * shuts the pool down. Closing a backend that was given its pool does
+ * nothing.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ForkJoinBackend implements ParallelBackend, Closeable {
+	/**
+	 * The number of range pieces created per thread when the parallelism is
+	 * unlimited
+	 */
+	private static final int PIECES_PER_THREAD = 4;
+
+	private static final class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int start;
+		private final int stop;
+		private final int incr;
+		private final int lo;
+		private final int hi;
+		private final int grain;
+		private final Operation<IntRange> op;
+
+		RangeTask(int start, int stop, int incr, int lo, int hi, int grain, Operation<IntRange> op) {
+			this.start = start;
+			this.stop = stop;
+			this.incr = incr;
+			this.lo = lo;
+			this.hi = hi;
+			this.grain = grain;
+			this.op = op;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo <= grain) {
+				final int from = (int) (start + (long) lo * incr);
+				final int to = (int) Math.min(start + (long) hi * incr, stop);
+
+				op.perform(new IntRange(from, to, incr));
+				return;
+			}
+
+			final int mid = (lo + hi) >>> 1;
+			invokeAll(new RangeTask(start, stop, incr, lo, mid, grain, op),
+					new RangeTask(start, stop, incr, mid, hi, grain, op));
+		}
+	}
+
+	private static final class DrainTask<T> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Iterator<T> data;
+		private final Operation<T> op;
+
+		DrainTask(Iterator<T> data, Operation<T> op) {
+			this.data = data;
+			this.op = op;
+		}
+
+		@Override
+		protected void compute() {
+			while (true) {
+				final T next;
+				synchronized (data) {
+					if (!data.hasNext())
+						return;
+					next = data.next();
+				}
+				op.perform(next);
+			}
+		}
+	}
+
+	private static final class InvokeAllTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends ForkJoinTask<?>> tasks;
+
+		InvokeAllTask(List<? extends ForkJoinTask<?>> tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(tasks);
+		}
+	}
+
+	private final ForkJoinPool pool;
+	private final int maxParallelism;
+	private final boolean ownsPool;
+
+	/**
+	 * Construct using the global {@link ForkJoinPool}.
+	 *
+	 * @see GlobalExecutorPool#getForkJoinPool()
+	 */
+	public ForkJoinBackend() {
+		this(GlobalExecutorPool.getForkJoinPool());
+	}
+
+	/**
+	 * Construct with the given pool. The parallelism of each loop is only
+	 * limited by the parallelism of the pool.
+	 *
+	 * @param pool
+	 *            the pool
+	 */
+	public ForkJoinBackend(ForkJoinPool pool) {
+		this(pool, 0);
+	}
+
+	/**
+	 * Construct with the given pool and a limit on the number of threads that
+	 * can work on a single loop concurrently.
+	 *
+	 * @param pool
+	 *            the pool
+	 * @param maxParallelism
+	 *            the maximum number of threads per loop; values less than 1
+	 *            mean no limit other than the parallelism of the pool
+	 */
+	public ForkJoinBackend(ForkJoinPool pool, int maxParallelism) {
+		this(pool, maxParallelism, false);
+	}
+
+	private ForkJoinBackend(ForkJoinPool pool, int maxParallelism, boolean ownsPool) {
+		this.pool = pool;
+		this.maxParallelism = maxParallelism;
+		this.ownsPool = ownsPool;
+	}
+
+	/**
+	 * Create a backend with its own pool of the given number of threads. The
+	 * pool is shut down when the backend is {@link #close() closed}.
+	 *
+	 * @param threads
+	 *            the number of threads in the pool
+	 * @return the backend
+	 */
+	public static ForkJoinBackend create(int threads) {
+		return new ForkJoinBackend(new ForkJoinPool(threads), 0, true);
+	}
+
+	/**
+	 * Get a backend that shares this backend's pool, but limits the number of
+	 * threads that work on each loop to the given value. This is useful for
+	 * stopping an inner loop from monopolising the pool.
+	 *
+	 * @param maxParallelism
+	 *            the maximum number of threads per loop
+	 * @return the limited backend
+	 */
+	public ForkJoinBackend withMaxParallelism(int maxParallelism) {
+		return new ForkJoinBackend(pool, maxParallelism);
+	}
+
+	/**
+	 * @return the underlying pool
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Shut down the pool if it was created by {@link #create(int)}; otherwise
+	 * do nothing. Loops that are already running are allowed to finish.
+	 */
+	@Override
+	public void close() {
+		if (ownsPool)
+			pool.shutdown();
+	}
+
+	@Override
+	public int getParallelism() {
+		if (maxParallelism > 0)
+			return Math.min(maxParallelism, pool.getParallelism());
+		return pool.getParallelism();
+	}
+
+	@Override
+	public void forRange(int start, int stop, int incr, Operation<IntRange> op) {
+		if (start >= stop)
+			return;
+
+		final int ops = (int) ((stop - (long) start + incr - 1) / incr);
+
+		if (maxParallelism > 0) {
+			// exactly one contiguous chunk per permitted thread; recursive
+			// halving would create more leaves than that, and they could all
+			// run at once on the shared pool
+			final int chunks = Math.min(getParallelism(), ops);
+			final List<RangeTask> tasks = new ArrayList<RangeTask>(chunks);
+			for (int i = 0; i < chunks; i++) {
+				final int lo = (int) ((long) ops * i / chunks);
+				final int hi = (int) ((long) ops * (i + 1) / chunks);
+				tasks.add(new RangeTask(start, stop, incr, lo, hi, Integer.MAX_VALUE, op));
+			}
+
+			execute(new InvokeAllTask(tasks));
+			return;
+		}
+
+		final int pieces = getParallelism() * PIECES_PER_THREAD;
+		final int grain = Math.max(1, (ops + pieces - 1) / pieces);
+
+		execute(new RangeTask(start, stop, incr, 0, ops, grain, op));
+	}
+
+	@Override
+	public <T> void forEach(Partitioner<T> partitioner, final Operation<T> op) {
+		forEachPartitioned(partitioner, new Operation<Iterator<T>>() {
+			@Override
+			public void perform(Iterator<T> partition) {
+				while (partition.hasNext())
+					op.perform(partition.next());
+			}
+		});
+	}
+
+	@Override
+	public <T> void forEachUnpartitioned(Iterator<T> data, Operation<T> op) {
+		drain(data, op);
+	}
+
+	@Override
+	public <T> void forEachPartitioned(Partitioner<T> partitioner, Operation<Iterator<T>> op) {
+		drain(partitioner.getPartitions(), op);
+	}
+
+	private <T> void drain(Iterator<T> data, Operation<T> op) {
+		final int nTasks = getParallelism();
+		final List<DrainTask<T>> tasks = new ArrayList<DrainTask<T>>(nTasks);
+		for (int i = 0; i < nTasks; i++)
+			tasks.add(new DrainTask<T>(data, op));
+
+		execute(new InvokeAllTask(tasks));
+	}
+
+	private void execute(ForkJoinTask<?> task) {
+		if (ForkJoinTask.getPool() == pool) {
+			// nested call from one of our workers; fork within the pool
+			task.invoke();
+		} else {
+			pool.invoke(task);
+		}
+	}
+}
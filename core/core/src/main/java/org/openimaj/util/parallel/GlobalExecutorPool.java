@@ -30,6 +30,7 @@
 package org.openimaj.util.parallel;
 
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -39,6 +40,14 @@ import java.util.concurrent.ThreadPoolExecutor;
  * {@link Runtime#availableProcessors()}. 
  * 
  * To avoid the need to shutdown the threadpool, the threads are all daemons.
+ * <p>
+ * This class also holds the global {@link ParallelBackend} used by the methods
+ * in {@link Parallel} that don't take an explicit pool. By default this is a
+ * {@link ThreadPoolBackend} over the global {@link ThreadPoolExecutor}; setting
+ * the system property {@value #BACKEND_PROPERTY} to <code>forkjoin</code>
+ * selects a {@link ForkJoinBackend} over a global {@link ForkJoinPool}
+ * instead. The backend can also be changed programmatically with
+ * {@link #setBackend(ParallelBackend)}.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -58,7 +67,14 @@ public class GlobalExecutorPool {
 		}
 	}
 	
+	/**
+	 * The name of the system property used to select the default backend
+	 */
+	public static final String BACKEND_PROPERTY = "openimaj.parallel.backend";
+	
 	private static ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory());
+	private static ForkJoinPool forkJoinPool;
+	private static volatile ParallelBackend backend;
 	
 	/**
 	 * Get the pool.
@@ -67,4 +83,44 @@ public class GlobalExecutorPool {
 	public static ThreadPoolExecutor getPool() {
 		return pool;
 	}
+	
+	/**
+	 * Get the global {@link ForkJoinPool}. The pool is created on first use with a
+	 * parallelism equal to the number of available hardware threads. The worker
+	 * threads of a {@link ForkJoinPool} are always daemons.
+	 * @return the pool.
+	 */
+	public static synchronized ForkJoinPool getForkJoinPool() {
+		if (forkJoinPool == null)
+			forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		
+		return forkJoinPool;
+	}
+	
+	/**
+	 * Get the backend used by default for the parallel loops in {@link Parallel}.
+	 * @return the backend.
+	 */
+	public static ParallelBackend getBackend() {
+		if (backend == null) {
+			synchronized (GlobalExecutorPool.class) {
+				if (backend == null) {
+					if ("forkjoin".equalsIgnoreCase(System.getProperty(BACKEND_PROPERTY)))
+						backend = new ForkJoinBackend(getForkJoinPool());
+					else
+						backend = new ThreadPoolBackend(pool);
+				}
+			}
+		}
+		
+		return backend;
+	}
+	
+	/**
+	 * Set the backend used by default for the parallel loops in {@link Parallel}.
+	 * @param backend the backend to use.
+	 */
+	public static void setBackend(ParallelBackend backend) {
+		GlobalExecutorPool.backend = backend;
+	}
 }
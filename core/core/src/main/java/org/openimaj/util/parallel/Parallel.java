@@ -50,6 +50,10 @@ import org.openimaj.util.stream.Stream;
  * is partitioned using inspiration from <a href=
  * "http://reedcopsey.com/2010/01/26/parallelism-in-net-part-5-partitioning-of-work/"
  * >Reed Copsey's blog</a>.
+ * <p>
+ * The methods that don't take an explicit pool or {@link ParallelBackend}
+ * schedule their work using the backend returned by
+ * {@link GlobalExecutorPool#getBackend()}.
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
@@ -172,9 +176,35 @@ public class Parallel {
 	}
 
 	/**
-	 * Parallel integer for loop. Uses the default global thread pool.
+	 * Parallel integer for loop using the given backend.
 	 *
-	 * @see GlobalExecutorPool#getPool()
+	 * @param start
+	 *            starting value
+	 * @param stop
+	 *            stopping value
+	 * @param incr
+	 *            increment amount
+	 * @param op
+	 *            operation to perform
+	 * @param backend
+	 *            the backend used to schedule the work.
+	 */
+	public static void forIndex(final int start, final int stop, final int incr, final Operation<Integer> op,
+			final ParallelBackend backend)
+	{
+		backend.forRange(start, stop, incr, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int i = range.start; i < range.stop; i += range.incr)
+					op.perform(i);
+			}
+		});
+	}
+
+	/**
+	 * Parallel integer for loop. Uses the default global backend.
+	 *
+	 * @see GlobalExecutorPool#getBackend()
 	 *
 	 * @param start
 	 *            starting value
@@ -186,7 +216,7 @@ public class Parallel {
 	 *            operation to perform
 	 */
 	public static void forIndex(final int start, final int stop, final int incr, final Operation<Integer> op) {
-		forIndex(start, stop, incr, op, GlobalExecutorPool.getPool());
+		forIndex(start, stop, incr, op, GlobalExecutorPool.getBackend());
 	}
 
 	/**
@@ -194,7 +224,9 @@ public class Parallel {
 	 * {@link #forIndex(int, int, int, Operation)}, but potentially slightly
 	 * faster as it avoids auto-boxing/unboxing and results in fewer method
 	 * calls. The downside is that users have to write an extra loop to iterate
-	 * over the {@link IntRange} object. Uses the default global thread pool.
+	 * over the {@link IntRange} object. Uses the default global backend.
+	 *
+	 * @see GlobalExecutorPool#getBackend()
 	 *
 	 * @param start
 	 *            starting value
@@ -206,7 +238,27 @@ public class Parallel {
 	 *            operation to perform
 	 */
 	public static void forRange(final int start, final int stop, final int incr, final Operation<IntRange> op) {
-		forRange(start, stop, incr, op, GlobalExecutorPool.getPool());
+		forRange(start, stop, incr, op, GlobalExecutorPool.getBackend());
+	}
+
+	/**
+	 * Parallel integer for loop over ranges using the given backend.
+	 *
+	 * @param start
+	 *            starting value
+	 * @param stop
+	 *            stopping value
+	 * @param incr
+	 *            increment amount
+	 * @param op
+	 *            operation to perform
+	 * @param backend
+	 *            the backend used to schedule the work.
+	 */
+	public static void forRange(final int start, final int stop, final int incr, final Operation<IntRange> op,
+			final ParallelBackend backend)
+	{
+		backend.forRange(start, stop, incr, op);
 	}
 
 	/**
@@ -309,13 +361,38 @@ public class Parallel {
 		forEach(partitioner, op, pool);
 	}
 
+	/**
+	 * Parallel ForEach loop over {@link Iterable} data using the given backend.
+	 * The data is automatically partitioned; if the data is a {@link List},
+	 * then a {@link RangePartitioner} is used, otherwise a
+	 * {@link GrowingChunkPartitioner} is used.
+	 *
+	 * @param <T>
+	 *            type of the data items
+	 * @param objects
+	 *            the data
+	 * @param op
+	 *            the operation to apply
+	 * @param backend
+	 *            the backend used to schedule the work.
+	 */
+	public static <T> void forEach(final Iterable<T> objects, final Operation<T> op, final ParallelBackend backend) {
+		Partitioner<T> partitioner;
+		if (objects instanceof List) {
+			partitioner = new RangePartitioner<T>((List<T>) objects, backend.getParallelism());
+		} else {
+			partitioner = new GrowingChunkPartitioner<T>(objects);
+		}
+		backend.forEach(partitioner, op);
+	}
+
 	/**
 	 * Parallel ForEach loop over {@link Iterable} data. Uses the default global
-	 * thread pool. The data is automatically partitioned; if the data is a
+	 * backend. The data is automatically partitioned; if the data is a
 	 * {@link List}, then a {@link RangePartitioner} is used, otherwise a
 	 * {@link GrowingChunkPartitioner} is used.
 	 *
-	 * @see GlobalExecutorPool#getPool()
+	 * @see GlobalExecutorPool#getBackend()
 	 *
 	 * @param <T>
 	 *            type of the data items
@@ -325,14 +402,14 @@ public class Parallel {
 	 *            the operation to apply
 	 */
 	public static <T> void forEach(final Iterable<T> objects, final Operation<T> op) {
-		forEach(objects, op, GlobalExecutorPool.getPool());
+		forEach(objects, op, GlobalExecutorPool.getBackend());
 	}
 
 	/**
 	 * Parallel ForEach loop over partitioned data. Uses the default global
-	 * thread pool.
+	 * backend.
 	 *
-	 * @see GlobalExecutorPool#getPool()
+	 * @see GlobalExecutorPool#getBackend()
 	 *
 	 * @param <T>
 	 *            type of the data items
@@ -342,7 +419,7 @@ public class Parallel {
 	 *            the operation to apply
 	 */
 	public static <T> void forEach(final Partitioner<T> partitioner, final Operation<T> op) {
-		forEach(partitioner, op, GlobalExecutorPool.getPool());
+		GlobalExecutorPool.getBackend().forEach(partitioner, op);
 	}
 
 	/**
@@ -425,7 +502,7 @@ public class Parallel {
 	void
 	forEachUnpartitioned(final Iterator<T> data, final Operation<T> op)
 	{
-		forEachUnpartitioned(data, op, GlobalExecutorPool.getPool());
+		GlobalExecutorPool.getBackend().forEachUnpartitioned(data, op);
 	}
 
 	/**
@@ -560,9 +637,9 @@ public class Parallel {
 
 	/**
 	 * Parallel ForEach loop over batched partitioned data. Uses the default
-	 * global thread pool.
+	 * global backend.
 	 *
-	 * @see GlobalExecutorPool#getPool()
+	 * @see GlobalExecutorPool#getBackend()
 	 *
 	 * @param <T>
 	 *            type of the data items
@@ -572,6 +649,6 @@ public class Parallel {
 	 *            the operation to apply
 	 */
 	public static <T> void forEachPartitioned(final Partitioner<T> partitioner, final Operation<Iterator<T>> op) {
-		forEachPartitioned(partitioner, op, GlobalExecutorPool.getPool());
+		GlobalExecutorPool.getBackend().forEachPartitioned(partitioner, op);
 	}
 }
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.parallel;
+
+import java.util.Iterator;
+
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel.IntRange;
+import org.openimaj.util.parallel.partition.Partitioner;
+
+/**
+ * A {@link ParallelBackend} is responsible for actually scheduling and
+ * executing the work generated by the loops in {@link Parallel}. The default
+ * backend is selected by {@link GlobalExecutorPool#getBackend()}, which allows
+ * the scheduling strategy to be changed without altering any call sites.
+ *
+ * @see ThreadPoolBackend
+ * @see ForkJoinBackend
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public interface ParallelBackend {
+	/**
+	 * Get the (maximum) number of threads that this backend will use to
+	 * perform work concurrently.
+	 *
+	 * @return the parallelism level
+	 */
+	public int getParallelism();
+
+	/**
+	 * Parallel integer for loop over ranges.
+	 *
+	 * @see Parallel#forRange(int, int, int, Operation)
+	 *
+	 * @param start
+	 *            starting value
+	 * @param stop
+	 *            stopping value
+	 * @param incr
+	 *            increment amount
+	 * @param op
+	 *            operation to perform
+	 */
+	public void forRange(int start, int stop, int incr, Operation<IntRange> op);
+
+	/**
+	 * Parallel ForEach loop over partitioned data.
+	 *
+	 * @see Parallel#forEach(Partitioner, Operation)
+	 *
+	 * @param <T>
+	 *            type of the data items
+	 * @param partitioner
+	 *            the partitioner applied to the data
+	 * @param op
+	 *            the operation to apply
+	 */
+	public <T> void forEach(Partitioner<T> partitioner, Operation<T> op);
+
+	/**
+	 * Parallel ForEach loop over unpartitioned data.
+	 *
+	 * @see Parallel#forEachUnpartitioned(Iterator, Operation)
+	 *
+	 * @param <T>
+	 *            type of the data items
+	 * @param data
+	 *            the iterator of data items
+	 * @param op
+	 *            the operation to apply
+	 */
+	public <T> void forEachUnpartitioned(Iterator<T> data, Operation<T> op);
+
+	/**
+	 * Parallel ForEach loop over partitioned data with batches of data.
+	 *
+	 * @see Parallel#forEachPartitioned(Partitioner, Operation)
+	 *
+	 * @param <T>
+	 *            type of the data items
+	 * @param partitioner
+	 *            the partitioner applied to the data
+	 * @param op
+	 *            the operation to apply
+	 */
+	public <T> void forEachPartitioned(Partitioner<T> partitioner, Operation<Iterator<T>> op);
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.parallel;
+
+import java.util.Iterator;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel.IntRange;
+import org.openimaj.util.parallel.partition.Partitioner;
+
+/**
+ * A {@link ParallelBackend} that schedules work on a fixed
+ * {@link ThreadPoolExecutor}. This is the original scheduling strategy used by
+ * {@link Parallel}; each loop is split into roughly one chunk per thread.
+ * <p>
+ * Note that nested parallel loops executed with this backend will block a pool
+ * thread whilst waiting for their inner tasks to complete; if all the pool
+ * threads are blocked in this way the loops will deadlock. Use a
+ * {@link ForkJoinBackend} if nested parallelism is required.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ThreadPoolBackend implements ParallelBackend {
+	private final ThreadPoolExecutor pool;
+
+	/**
+	 * Construct with the given pool
+	 *
+	 * @param pool
+	 *            the thread pool
+	 */
+	public ThreadPoolBackend(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the underlying thread pool
+	 */
+	public ThreadPoolExecutor getPool() {
+		return pool;
+	}
+
+	@Override
+	public int getParallelism() {
+		return pool.getMaximumPoolSize();
+	}
+
+	@Override
+	public void forRange(int start, int stop, int incr, Operation<IntRange> op) {
+		Parallel.forRange(start, stop, incr, op, pool);
+	}
+
+	@Override
+	public <T> void forEach(Partitioner<T> partitioner, Operation<T> op) {
+		Parallel.forEach(partitioner, op, pool);
+	}
+
+	@Override
+	public <T> void forEachUnpartitioned(Iterator<T> data, Operation<T> op) {
+		Parallel.forEachUnpartitioned(data, op, pool);
+	}
+
+	@Override
+	public <T> void forEachPartitioned(Partitioner<T> partitioner, Operation<Iterator<T>> op) {
+		Parallel.forEachPartitioned(partitioner, op, pool);
+	}
+}
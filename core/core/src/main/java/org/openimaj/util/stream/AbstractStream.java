@@ -32,12 +32,15 @@ package org.openimaj.util.stream;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.openimaj.util.function.Function;
 import org.openimaj.util.function.MultiFunction;
 import org.openimaj.util.function.Operation;
 import org.openimaj.util.function.Predicate;
+import org.openimaj.util.parallel.GlobalExecutorPool;
 import org.openimaj.util.parallel.Parallel;
 
 /**
@@ -190,6 +193,36 @@ public abstract class AbstractStream<T> implements Stream<T> {
 		};
 	}
 
+	@Override
+	public <R> Stream<R> parallelMap(Function<T, R> mapper, int concurrency) {
+		return parallelMap(mapper, concurrency, true, GlobalExecutorPool.getPool());
+	}
+
+	@Override
+	public <R> Stream<R> parallelMapUnordered(Function<T, R> mapper, int concurrency) {
+		return parallelMap(mapper, concurrency, false, GlobalExecutorPool.getPool());
+	}
+
+	@Override
+	public <R> Stream<R> parallelMap(Function<T, R> mapper, int concurrency, boolean ordered, ExecutorService pool) {
+		return new ParallelMapStream<T, R>(this, mapper, concurrency, ordered, pool);
+	}
+
+	@Override
+	public Stream<List<T>> batch(int size) {
+		return new BatchStream<T>(this, size, 0);
+	}
+
+	@Override
+	public Stream<List<T>> batch(int size, long timeout, TimeUnit unit) {
+		return new BatchStream<T>(this, size, unit.toNanos(timeout));
+	}
+
+	@Override
+	public Stream<T> buffer(int capacity) {
+		return new AsyncBufferedStream<T>(this, capacity);
+	}
+
 	/**
 	 * Throws an UnsupportedOperationException()
 	 */
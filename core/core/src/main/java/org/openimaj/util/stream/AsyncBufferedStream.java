@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream;
+
+import java.io.Closeable;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Stream} that reads another stream on a background (daemon) thread
+ * into a bounded buffer. The producer blocks when the buffer is full, so the
+ * source is never more than <code>capacity</code> items ahead of the consumer.
+ * Any exception or error thrown by the source is rethrown to the consumer
+ * once the items before it have been consumed.
+ * <p>
+ * A stream that is abandoned before it ends should be {@link #close() closed}
+ * to stop the background thread and release the buffered items.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <T>
+ *            the type of items
+ */
+class AsyncBufferedStream<T> extends AbstractStream<T> implements Closeable {
+	private static final Object NULL = new Object();
+	private static final Object END = new Object();
+
+	private final Stream<T> source;
+	private final BlockingQueue<Object> buffer;
+	private Thread producer;
+	private volatile Throwable error;
+	private volatile boolean closed;
+
+	private Object head;
+	private boolean ended;
+
+	AsyncBufferedStream(Stream<T> source, int capacity) {
+		this.source = source;
+		this.buffer = new ArrayBlockingQueue<Object>(capacity);
+	}
+
+	private synchronized void start() {
+		if (producer != null || closed)
+			return;
+
+		producer = new Thread("AsyncBufferedStream") {
+			@Override
+			public void run() {
+				try {
+					while (source.hasNext()) {
+						final T item = source.next();
+						buffer.put(item == null ? NULL : item);
+					}
+				} catch (final InterruptedException e) {
+					// stop producing
+				} catch (final Throwable t) {
+					error = t;
+				} finally {
+					try {
+						if (!closed)
+							buffer.put(END);
+					} catch (final InterruptedException e) {
+						// ignore
+					}
+				}
+			}
+		};
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	/**
+	 * Wait for the next item for up to the given time.
+	 *
+	 * @param nanos
+	 *            the maximum time to wait in nanoseconds
+	 * @return true if there is a next item; false if the stream has ended or
+	 *         the time elapsed (check {@link #hasNext()} to distinguish)
+	 */
+	boolean await(long nanos) {
+		if (head != null)
+			return true;
+		if (ended)
+			return false;
+		if (closed) {
+			ended = true;
+			return false;
+		}
+
+		start();
+		try {
+			final Object obj = buffer.poll(nanos, TimeUnit.NANOSECONDS);
+			if (obj == null)
+				return false;
+
+			if (obj == END) {
+				ended = true;
+				return false;
+			}
+
+			head = obj;
+			return true;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!await(Long.MAX_VALUE)) {
+			if (ended) {
+				if (error != null && !closed) {
+					final Throwable t = error;
+					error = null;
+
+					if (t instanceof RuntimeException)
+						throw (RuntimeException) t;
+					if (t instanceof Error)
+						throw (Error) t;
+					throw new RuntimeException(t);
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException("iteration has no more elements");
+
+		final Object obj = head;
+		head = null;
+		return obj == NULL ? null : (T) obj;
+	}
+
+	/**
+	 * Stop reading the source and discard any buffered items. The background
+	 * thread is interrupted, and {@link #hasNext()} will return false
+	 * afterwards.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+
+		if (producer != null)
+			producer.interrupt();
+
+		buffer.clear();
+		head = null;
+
+		// wake a consumer that is waiting for the next item
+		buffer.offer(END);
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link Stream} that groups the items of another stream into batches. A
+ * batch is emitted when it is full, when the source ends or, if a timeout is
+ * set, when the timeout has elapsed since the first item of the batch arrived.
+ * Batches are never empty.
+ * <p>
+ * With a timeout the source is read on a background thread; {@link #close()}
+ * stops that thread if the stream is abandoned before it ends.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <T>
+ *            the type of items
+ */
+class BatchStream<T> extends AbstractStream<List<T>> implements Closeable {
+	private final Stream<T> source;
+	private final AsyncBufferedStream<T> timedSource;
+	private final int size;
+	private final long timeoutNanos;
+
+	BatchStream(Stream<T> source, int size, long timeoutNanos) {
+		if (size < 1)
+			throw new IllegalArgumentException("batch size must be at least 1");
+
+		this.size = size;
+		this.timeoutNanos = timeoutNanos;
+
+		if (timeoutNanos > 0) {
+			// the source must be read asynchronously to be able to time out
+			this.timedSource = source instanceof AsyncBufferedStream ? (AsyncBufferedStream<T>) source
+					: new AsyncBufferedStream<T>(source, size);
+			this.source = timedSource;
+		} else {
+			this.timedSource = null;
+			this.source = source;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return source.hasNext();
+	}
+
+	@Override
+	public List<T> next() {
+		if (!hasNext())
+			throw new NoSuchElementException("iteration has no more elements");
+
+		final List<T> batch = new ArrayList<T>(size);
+		batch.add(source.next());
+
+		if (timedSource == null) {
+			while (batch.size() < size && source.hasNext())
+				batch.add(source.next());
+		} else {
+			final long deadline = System.nanoTime() + timeoutNanos;
+
+			while (batch.size() < size) {
+				final long remaining = deadline - System.nanoTime();
+				if (remaining <= 0 || !timedSource.await(remaining))
+					break;
+
+				batch.add(timedSource.next());
+			}
+		}
+
+		return batch;
+	}
+
+	/**
+	 * Stop the background thread reading the source, if there is one.
+	 */
+	@Override
+	public void close() {
+		if (timedSource != null)
+			timedSource.close();
+	}
+}
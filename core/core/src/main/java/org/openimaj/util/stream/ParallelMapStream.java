@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.openimaj.util.function.Function;
+
+/**
+ * A {@link Stream} that applies a {@link Function} to the items of another
+ * stream using a pool of threads. At most <code>concurrency</code> items are
+ * being processed (or waiting to be consumed) at any time, so the amount of
+ * memory used is bounded. In ordered mode, the items are returned in the order
+ * of the source stream, and the in-flight items form the reorder buffer; in
+ * unordered mode, items are returned as soon as they have been processed.
+ * <p>
+ * The source stream is read on the consuming thread.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <T>
+ *            the type of the source items
+ * @param <R>
+ *            the type of the mapped items
+ */
+class ParallelMapStream<T, R> extends AbstractStream<R> {
+	private final Stream<T> source;
+	private final Function<T, R> mapper;
+	private final int concurrency;
+	private final ExecutorService pool;
+	private final boolean ordered;
+
+	private final ArrayDeque<Future<R>> pending = new ArrayDeque<Future<R>>();
+	private final CompletionService<R> completion;
+	private int inFlight;
+
+	ParallelMapStream(Stream<T> source, Function<T, R> mapper, int concurrency, boolean ordered, ExecutorService pool) {
+		if (concurrency < 1)
+			throw new IllegalArgumentException("concurrency must be at least 1");
+
+		this.source = source;
+		this.mapper = mapper;
+		this.concurrency = concurrency;
+		this.pool = pool;
+		this.ordered = ordered;
+		this.completion = ordered ? null : new ExecutorCompletionService<R>(pool);
+	}
+
+	private void fill() {
+		while (inFlight < concurrency && source.hasNext()) {
+			final T item = source.next();
+			final Callable<R> task = new Callable<R>() {
+				@Override
+				public R call() throws Exception {
+					return mapper.apply(item);
+				}
+			};
+
+			if (ordered)
+				pending.add(pool.submit(task));
+			else
+				completion.submit(task);
+
+			inFlight++;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (inFlight > 0)
+			return true;
+
+		fill();
+		return inFlight > 0;
+	}
+
+	@Override
+	public R next() {
+		fill();
+
+		if (inFlight == 0)
+			throw new NoSuchElementException("iteration has no more elements");
+
+		try {
+			final Future<R> future = ordered ? pending.poll() : completion.take();
+			inFlight--;
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+}
@@ -30,12 +30,16 @@
 package org.openimaj.util.stream;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.openimaj.util.function.Function;
 import org.openimaj.util.function.MultiFunction;
 import org.openimaj.util.function.Operation;
 import org.openimaj.util.function.Predicate;
+import org.openimaj.util.parallel.GlobalExecutorPool;
 import org.openimaj.util.parallel.Parallel;
 
 /**
@@ -178,4 +182,99 @@ public interface Stream<T> extends Iterator<T>, Iterable<T> {
 	 * @return a new stream with transformed items from this stream
 	 */
 	public <R> Stream<R> transform(Function<Stream<T>, Stream<R>> transform);
+
+	/**
+	 * Transform the stream by creating a new stream that transforms the items
+	 * in this stream with the given {@link Function}, using the threads of the
+	 * {@link GlobalExecutorPool}. The transformed items are returned in the
+	 * same order as the items in this stream. At most <code>concurrency</code>
+	 * items are being transformed or waiting to be consumed at any time.
+	 * <p>
+	 * Items are read from this stream on the consuming thread; if reading can
+	 * block, consider using {@link #buffer(int)} first.
+	 *
+	 * @param mapper
+	 *            the function to apply
+	 * @param concurrency
+	 *            the maximum number of items in flight
+	 * @return a new stream with transformed items from this stream
+	 */
+	public <R> Stream<R> parallelMap(Function<T, R> mapper, int concurrency);
+
+	/**
+	 * Transform the stream by creating a new stream that transforms the items
+	 * in this stream with the given {@link Function}, using the threads of the
+	 * {@link GlobalExecutorPool}. The transformed items are returned as soon
+	 * as they are ready, so their order is not guaranteed. At most
+	 * <code>concurrency</code> items are being transformed or waiting to be
+	 * consumed at any time.
+	 *
+	 * @param mapper
+	 *            the function to apply
+	 * @param concurrency
+	 *            the maximum number of items in flight
+	 * @return a new stream with transformed items from this stream
+	 */
+	public <R> Stream<R> parallelMapUnordered(Function<T, R> mapper, int concurrency);
+
+	/**
+	 * Transform the stream by creating a new stream that transforms the items
+	 * in this stream with the given {@link Function}, using the threads of the
+	 * given pool. At most <code>concurrency</code> items are being transformed
+	 * or waiting to be consumed at any time.
+	 *
+	 * @param mapper
+	 *            the function to apply
+	 * @param concurrency
+	 *            the maximum number of items in flight
+	 * @param ordered
+	 *            if true, the transformed items are returned in the same
+	 *            order as the items in this stream
+	 * @param pool
+	 *            the thread pool
+	 * @return a new stream with transformed items from this stream
+	 */
+	public <R> Stream<R> parallelMap(Function<T, R> mapper, int concurrency, boolean ordered, ExecutorService pool);
+
+	/**
+	 * Transform the stream by grouping its items into lists of the given size.
+	 * The final batch might be smaller.
+	 *
+	 * @param size
+	 *            the number of items in each batch
+	 * @return a new stream of batches of items from this stream
+	 */
+	public Stream<List<T>> batch(int size);
+
+	/**
+	 * Transform the stream by grouping its items into lists of up to the given
+	 * size. A smaller batch is emitted if the timeout elapses after the first
+	 * item of the batch arrived, so that items from slow or bursty streams are
+	 * not held back indefinitely. This stream is read on a background thread;
+	 * the returned stream implements {@link java.io.Closeable}, and should be
+	 * closed if it is abandoned before it ends so that the thread stops.
+	 *
+	 * @param size
+	 *            the maximum number of items in each batch
+	 * @param timeout
+	 *            the maximum time to wait to fill a batch
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return a new stream of batches of items from this stream
+	 */
+	public Stream<List<T>> batch(int size, long timeout, TimeUnit unit);
+
+	/**
+	 * Create a new stream that reads this stream on a background thread into a
+	 * buffer of the given capacity. This decouples a producer that might block
+	 * (for example one reading from the network) from the consumer, whilst
+	 * bounding the number of items that are read ahead. The returned stream
+	 * implements {@link java.io.Closeable}, and should be closed if it is
+	 * abandoned before it ends so that the background thread stops.
+	 *
+	 * @param capacity
+	 *            the maximum number of buffered items
+	 * @return a new stream with the items from this stream
+	 */
+	public Stream<T> buffer(int capacity);
 }
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link PrefetchingIterator}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PrefetchingIteratorTest {
+	/**
+	 * A loader that reads with random delays and tracks how many items are
+	 * loaded but not yet consumed
+	 */
+	static class DelayedLoader implements PrefetchingIterator.Loader<String, Integer> {
+		final AtomicInteger inFlight = new AtomicInteger();
+		volatile int maxInFlight;
+		final Random rng = new Random(0);
+
+		@Override
+		public String load(int index) throws Exception {
+			final int n = inFlight.incrementAndGet();
+			synchronized (this) {
+				maxInFlight = Math.max(maxInFlight, n);
+			}
+			Thread.sleep(rng.nextInt(5));
+			return Integer.toString(index);
+		}
+
+		@Override
+		public Integer decode(int index, String raw) throws Exception {
+			Thread.sleep(rng.nextInt(3));
+			return Integer.parseInt(raw);
+		}
+	}
+
+	/**
+	 * Test in-order delivery and that the depth is respected
+	 */
+	@Test
+	public void testOrdered() {
+		final ExecutorService io = Executors.newFixedThreadPool(8);
+		final ExecutorService compute = Executors.newFixedThreadPool(4);
+
+		try {
+			final DelayedLoader loader = new DelayedLoader();
+			final PrefetchingIterator<Integer> iter = new PrefetchingIterator<Integer>(loader, 200, io, compute, 6, true);
+
+			int i = 0;
+			while (iter.hasNext()) {
+				assertEquals(i++, (int) iter.next());
+				loader.inFlight.decrementAndGet();
+			}
+			assertEquals(200, i);
+
+			// the replacement for an item is submitted just before the item is
+			// returned, so the count can briefly exceed the depth by one
+			assertTrue(loader.maxInFlight <= 7);
+		} finally {
+			io.shutdown();
+			compute.shutdown();
+		}
+	}
+
+	/**
+	 * Test unordered delivery returns every item exactly once
+	 */
+	@Test
+	public void testUnordered() {
+		final PrefetchingIterator<Integer> iter = new PrefetchingIterator<Integer>(new DelayedLoader(), 200, 8, false);
+
+		final Set<Integer> seen = new HashSet<Integer>();
+		while (iter.hasNext())
+			assertTrue(seen.add(iter.next()));
+
+		assertEquals(200, seen.size());
+	}
+
+	/**
+	 * Test that errors are passed to the consumer for the failing item only
+	 */
+	@Test
+	public void testError() {
+		final PrefetchingIterator<Integer> iter = new PrefetchingIterator<Integer>(
+				new PrefetchingIterator.Loader<Integer, Integer>() {
+					@Override
+					public Integer load(int index) throws Exception {
+						if (index == 3)
+							throw new IOException("failed");
+						return index;
+					}
+
+					@Override
+					public Integer decode(int index, Integer raw) {
+						return raw;
+					}
+				}, 5, 2, true);
+
+		int failures = 0;
+		int count = 0;
+		while (iter.hasNext()) {
+			try {
+				assertEquals(count, (int) iter.next());
+			} catch (final RuntimeException e) {
+				assertTrue(e.getCause() instanceof IOException);
+				failures++;
+			}
+			count++;
+		}
+		assertEquals(1, failures);
+		assertEquals(5, count);
+
+		iter.close();
+		assertFalse(iter.hasNext());
+	}
+
+	/**
+	 * Test that iterators using the default pools can be consumed from tasks
+	 * occupying every thread of the {@link GlobalExecutorPool}
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testConsumeFromGlobalPool() throws Exception {
+		final ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+		final int nTasks = pool.getMaximumPoolSize();
+		final CountDownLatch started = new CountDownLatch(nTasks);
+
+		final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int t = 0; t < nTasks; t++) {
+			futures.add(pool.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					// make sure that all the pool threads are busy
+					started.countDown();
+					started.await();
+
+					final PrefetchingIterator<Integer> iter = new PrefetchingIterator<Integer>(new DelayedLoader(),
+							50, 4, true);
+
+					int sum = 0;
+					while (iter.hasNext())
+						sum += iter.next();
+					return sum;
+				}
+			}));
+		}
+
+		for (final Future<Integer> f : futures)
+			assertEquals(49 * 50 / 2, (int) f.get(30, TimeUnit.SECONDS));
+	}
+}
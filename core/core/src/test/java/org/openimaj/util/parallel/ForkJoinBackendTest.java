@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.parallel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * Tests for {@link ForkJoinBackend}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ForkJoinBackendTest {
+	private final ForkJoinBackend backend = ForkJoinBackend.create(4);
+
+	/**
+	 * Shut down the pool used by the backend
+	 */
+	@After
+	public void shutdown() {
+		backend.close();
+	}
+
+	private static void recordActive(AtomicInteger active, AtomicInteger maxActive) {
+		final int a = active.incrementAndGet();
+		synchronized (maxActive) {
+			if (a > maxActive.get())
+				maxActive.set(a);
+		}
+	}
+
+	/**
+	 * Test that every index of a stepped range is visited exactly once
+	 */
+	@Test
+	public void testForRange() {
+		final int start = 3;
+		final int stop = 10007;
+		final int incr = 3;
+		final AtomicIntegerArray visits = new AtomicIntegerArray(stop);
+
+		Parallel.forRange(start, stop, incr, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int i = range.start; i < range.stop; i += range.incr)
+					visits.incrementAndGet(i);
+			}
+		}, backend);
+
+		for (int i = 0; i < stop; i++)
+			assertEquals(i >= start && (i - start) % incr == 0 ? 1 : 0, visits.get(i));
+	}
+
+	/**
+	 * Test that nested loops complete when they share a pool
+	 */
+	@Test
+	public void testNested() {
+		final AtomicInteger count = new AtomicInteger();
+
+		Parallel.forIndex(0, 16, 1, new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				Parallel.forIndex(0, 100, 1, new Operation<Integer>() {
+					@Override
+					public void perform(Integer j) {
+						count.incrementAndGet();
+					}
+				}, backend);
+			}
+		}, backend);
+
+		assertEquals(1600, count.get());
+	}
+
+	/**
+	 * Test the for-each loop with a limited parallelism
+	 */
+	@Test
+	public void testForEachLimited() {
+		final List<Integer> data = new ArrayList<Integer>();
+		for (int i = 0; i < 1000; i++)
+			data.add(i);
+
+		final AtomicInteger sum = new AtomicInteger();
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger maxActive = new AtomicInteger();
+
+		Parallel.forEach(data, new Operation<Integer>() {
+			@Override
+			public void perform(Integer object) {
+				recordActive(active, maxActive);
+				sum.addAndGet(object);
+				active.decrementAndGet();
+			}
+		}, backend.withMaxParallelism(2));
+
+		assertEquals(999 * 1000 / 2, sum.get());
+		assertTrue(maxActive.get() <= 2);
+	}
+
+	/**
+	 * Test that a range loop with a limited parallelism never has more than
+	 * the limit of sub-ranges in progress at once, for range sizes that do and
+	 * do not divide evenly between the threads
+	 */
+	@Test
+	public void testForRangeLimited() {
+		final ForkJoinBackend limited = backend.withMaxParallelism(3);
+
+		for (final int stop : new int[] { 2, 3, 10, 100, 1001 }) {
+			final AtomicIntegerArray visits = new AtomicIntegerArray(stop);
+			final AtomicInteger active = new AtomicInteger();
+			final AtomicInteger maxActive = new AtomicInteger();
+
+			Parallel.forRange(0, stop, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					recordActive(active, maxActive);
+					try {
+						for (int i = range.start; i < range.stop; i += range.incr)
+							visits.incrementAndGet(i);
+						Thread.sleep(20);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						active.decrementAndGet();
+					}
+				}
+			}, limited);
+
+			for (int i = 0; i < stop; i++)
+				assertEquals(1, visits.get(i));
+			assertTrue(maxActive.get() <= 3);
+		}
+	}
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.openimaj.util.function.Function;
+
+/**
+ * Tests for the parallel and buffering operators of {@link AbstractStream}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class AbstractStreamTest {
+	private static Stream<Integer> range(int n) {
+		final List<Integer> list = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++)
+			list.add(i);
+		return new CollectionStream<Integer>(list);
+	}
+
+	/**
+	 * A function that squares its input after a random delay, and tracks the
+	 * maximum number of concurrent calls
+	 */
+	static class SlowSquare implements Function<Integer, Integer> {
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger maxActive = new AtomicInteger();
+		final Random rng = new Random(0);
+
+		@Override
+		public Integer apply(Integer in) {
+			final int n = active.incrementAndGet();
+			synchronized (this) {
+				maxActive.set(Math.max(maxActive.get(), n));
+			}
+			try {
+				Thread.sleep(rng.nextInt(5));
+			} catch (final InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			active.decrementAndGet();
+			return in * in;
+		}
+	}
+
+	/**
+	 * Test that the ordered parallel map preserves order and bounds the
+	 * concurrency
+	 */
+	@Test
+	public void testParallelMapOrdered() {
+		final ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			final SlowSquare fcn = new SlowSquare();
+			final Stream<Integer> stream = range(200).parallelMap(fcn, 4, true, pool);
+
+			int i = 0;
+			for (final Integer v : stream) {
+				assertEquals(i * i, (int) v);
+				i++;
+			}
+			assertEquals(200, i);
+			assertTrue(fcn.maxActive.get() <= 4);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test that the unordered parallel map returns every item
+	 */
+	@Test
+	public void testParallelMapUnordered() {
+		final Set<Integer> seen = new HashSet<Integer>();
+		for (final Integer v : range(200).parallelMapUnordered(new SlowSquare(), 8))
+			assertTrue(seen.add(v));
+
+		assertEquals(200, seen.size());
+	}
+
+	/**
+	 * Test batching by size
+	 */
+	@Test
+	public void testBatch() {
+		final List<List<Integer>> batches = new ArrayList<List<Integer>>();
+		for (final List<Integer> b : range(10).batch(4))
+			batches.add(b);
+
+		assertEquals(3, batches.size());
+		assertEquals(4, batches.get(0).size());
+		assertEquals(2, batches.get(2).size());
+		assertEquals(9, (int) batches.get(2).get(1));
+	}
+
+	/**
+	 * Test that a batch is emitted early when the timeout elapses
+	 */
+	@Test
+	public void testBatchTimeout() {
+		final Stream<Integer> slow = range(6).map(new Function<Integer, Integer>() {
+			@Override
+			public Integer apply(Integer in) {
+				if (in == 3) {
+					try {
+						Thread.sleep(300);
+					} catch (final InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+				return in;
+			}
+		});
+
+		final List<List<Integer>> batches = new ArrayList<List<Integer>>();
+		for (final List<Integer> b : slow.batch(100, 50, TimeUnit.MILLISECONDS))
+			batches.add(b);
+
+		assertEquals(2, batches.size());
+		assertEquals(3, batches.get(0).size());
+		assertEquals(3, batches.get(1).size());
+	}
+
+	/**
+	 * Test that the buffered stream returns all items, and then rethrows an
+	 * error from the source
+	 */
+	@Test
+	public void testBuffer() {
+		final Stream<Integer> failing = range(10).map(new Function<Integer, Integer>() {
+			@Override
+			public Integer apply(Integer in) {
+				if (in == 9)
+					throw new IllegalStateException();
+				return in;
+			}
+		});
+
+		final Stream<Integer> buffered = failing.buffer(2);
+		int count = 0;
+		try {
+			while (buffered.hasNext()) {
+				assertEquals(count, (int) buffered.next());
+				count++;
+			}
+		} catch (final IllegalStateException e) {
+			count = -count;
+		}
+		assertEquals(-9, count);
+	}
+
+	/**
+	 * Test that an {@link Error} from the source is rethrown to the consumer
+	 * rather than silently ending the buffered stream
+	 */
+	@Test(expected = InternalError.class)
+	public void testBufferError() {
+		final Stream<Integer> failing = range(10).map(new Function<Integer, Integer>() {
+			@Override
+			public Integer apply(Integer in) {
+				if (in == 5)
+					throw new InternalError();
+				return in;
+			}
+		});
+
+		final Stream<Integer> buffered = failing.buffer(2);
+		while (buffered.hasNext())
+			buffered.next();
+	}
+
+	/**
+	 * Test that closing an abandoned buffered stream stops it reading the
+	 * source
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBufferClose() throws Exception {
+		final AtomicInteger reads = new AtomicInteger();
+		final Stream<Integer> buffered = counting(reads).buffer(2);
+		assertEquals(1, (int) buffered.next());
+
+		close(buffered);
+		assertFalse(buffered.hasNext());
+
+		Thread.sleep(50);
+		final int count = reads.get();
+		Thread.sleep(50);
+		assertEquals(count, reads.get());
+	}
+
+	/**
+	 * Test that closing an abandoned batch stream with a timeout stops its
+	 * background thread reading the source
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBatchClose() throws Exception {
+		final AtomicInteger reads = new AtomicInteger();
+		final Stream<List<Integer>> batches = counting(reads).batch(4, 10, TimeUnit.MILLISECONDS);
+		assertEquals(4, batches.next().size());
+
+		close(batches);
+		assertFalse(batches.hasNext());
+
+		Thread.sleep(50);
+		final int count = reads.get();
+		Thread.sleep(50);
+		assertEquals(count, reads.get());
+	}
+
+	private static Stream<Integer> counting(final AtomicInteger reads) {
+		return new AbstractStream<Integer>() {
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public Integer next() {
+				return reads.incrementAndGet();
+			}
+		};
+	}
+
+	private static void close(Object stream) throws IOException {
+		assertTrue(stream instanceof Closeable);
+		((Closeable) stream).close();
+	}
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.mapreduce;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+
+/**
+ * Base class for {@link Mapper}s that can optionally process the records of a
+ * map task with multiple threads, whilst sharing a single instance of the
+ * mapper (and thus any models it loads in {@link #setup(Context)}) between
+ * the threads. This differs from the {@link MultithreadedMapper}, which
+ * creates a separate mapper instance for each thread and doesn't preserve the
+ * order of the records.
+ * <p>
+ * Sub-classes implement {@link #process(Writable, Writable, RecordOutput)},
+ * which must be thread-safe if more than one thread is used. The
+ * {@link Context} is not thread-safe, so output and counter updates go through
+ * the given {@link RecordOutput}; they are buffered and applied to the context
+ * by the thread that called {@link #map(Writable, Writable, Context)}. The
+ * number of
+ * threads and the maximum number of records being processed (or waiting to be
+ * written) are set in the job configuration with
+ * {@link #configure(Job, Class, int, int)}; if the number of threads is not set
+ * the records are processed directly on the calling thread, so the mapper can
+ * also be used as a standard mapper or wrapped in a {@link MultithreadedMapper}.
+ * The output for each record is written in the order that the records were
+ * read.
+ * <p>
+ * Sub-classes that override {@link #cleanup(Context)} must call the super-class
+ * implementation first.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <KEYIN>
+ *            the input key type
+ * @param <VALUEIN>
+ *            the input value type
+ * @param <KEYOUT>
+ *            the output key type
+ * @param <VALUEOUT>
+ *            the output value type
+ */
+public abstract class OrderedMultithreadedMapper<KEYIN extends Writable, VALUEIN extends Writable, KEYOUT, VALUEOUT>
+		extends
+		Mapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
+{
+	/**
+	 * Configuration key for the number of threads
+	 */
+	public static final String NUM_THREADS = "openimaj.mapper.ordered-multithread.threads";
+
+	/**
+	 * Configuration key for the maximum number of records in flight
+	 */
+	public static final String MAX_IN_FLIGHT = "openimaj.mapper.ordered-multithread.max-in-flight";
+
+	/**
+	 * Receives the output and counter updates produced by processing a
+	 * single record.
+	 *
+	 * @param <K>
+	 *            the output key type
+	 * @param <V>
+	 *            the output value type
+	 */
+	public static interface RecordOutput<K, V> extends OutputCollector<K, V> {
+		/**
+		 * Increment the given counter.
+		 *
+		 * @param counter
+		 *            the counter
+		 * @param amount
+		 *            the amount to increment by
+		 */
+		public void incrementCounter(Enum<?> counter, long amount);
+	}
+
+	private static class DirectOutput<K, V> implements RecordOutput<K, V> {
+		private final TaskInputOutputContext<?, ?, K, V> context;
+
+		DirectOutput(TaskInputOutputContext<?, ?, K, V> context) {
+			this.context = context;
+		}
+
+		@Override
+		public void collect(K key, V value) throws IOException {
+			try {
+				context.write(key, value);
+			} catch (final InterruptedException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public void incrementCounter(Enum<?> counter, long amount) {
+			context.getCounter(counter).increment(amount);
+		}
+	}
+
+	private static class BufferedOutput<K, V> implements RecordOutput<K, V> {
+		List<K> keys = new ArrayList<K>();
+		List<V> values = new ArrayList<V>();
+		List<Enum<?>> counters = new ArrayList<Enum<?>>();
+		List<Long> amounts = new ArrayList<Long>();
+
+		@Override
+		public void collect(K key, V value) {
+			keys.add(key);
+			values.add(value);
+		}
+
+		@Override
+		public void incrementCounter(Enum<?> counter, long amount) {
+			counters.add(counter);
+			amounts.add(amount);
+		}
+	}
+
+	private boolean initialised;
+	private ExecutorService pool;
+	private int maxInFlight;
+	private final ArrayDeque<Future<BufferedOutput<KEYOUT, VALUEOUT>>> pending = new ArrayDeque<Future<BufferedOutput<KEYOUT, VALUEOUT>>>();
+
+	/**
+	 * Configure the job to use the given mapper class with the given number of
+	 * threads. At most twice as many records as threads will be in flight.
+	 *
+	 * @param job
+	 *            the job
+	 * @param mapperClass
+	 *            the mapper class
+	 * @param threads
+	 *            the number of threads; if less than 1 the number of
+	 *            available processors is used
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void configure(Job job, Class<? extends OrderedMultithreadedMapper> mapperClass, int threads) {
+		configure(job, mapperClass, threads, 0);
+	}
+
+	/**
+	 * Configure the job to use the given mapper class with the given number of
+	 * threads and maximum number of records in flight.
+	 *
+	 * @param job
+	 *            the job
+	 * @param mapperClass
+	 *            the mapper class
+	 * @param threads
+	 *            the number of threads; if less than 1 the number of
+	 *            available processors is used
+	 * @param maxInFlight
+	 *            the maximum number of records that are being processed or
+	 *            waiting to be written; if less than the number of threads,
+	 *            twice the number of threads is used
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void configure(Job job, Class<? extends OrderedMultithreadedMapper> mapperClass, int threads,
+			int maxInFlight)
+	{
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		if (maxInFlight < threads)
+			maxInFlight = 2 * threads;
+
+		job.setMapperClass(mapperClass);
+		job.getConfiguration().setInt(NUM_THREADS, threads);
+		job.getConfiguration().setInt(MAX_IN_FLIGHT, maxInFlight);
+	}
+
+	/**
+	 * Process a record. Any output and counter updates must be made through
+	 * the given {@link RecordOutput}. If multiple threads are used, this method
+	 * will be called concurrently, and the key and value will be copies that
+	 * are not re-used by the framework.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @param output
+	 *            the output
+	 * @throws IOException
+	 *             if an error occurs
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	protected abstract void process(KEYIN key, VALUEIN value, RecordOutput<KEYOUT, VALUEOUT> output)
+			throws IOException, InterruptedException;
+
+	private void init(Context context) {
+		initialised = true;
+
+		final int threads = context.getConfiguration().getInt(NUM_THREADS, 0);
+		if (threads > 1) {
+			pool = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+			maxInFlight = Math.max(threads, context.getConfiguration().getInt(MAX_IN_FLIGHT, 2 * threads));
+		}
+	}
+
+	@Override
+	protected final void map(KEYIN key, VALUEIN value, Context context) throws IOException,
+			InterruptedException
+	{
+		if (!initialised)
+			init(context);
+
+		if (pool == null) {
+			process(key, value, new DirectOutput<KEYOUT, VALUEOUT>(context));
+			return;
+		}
+
+		// the framework re-uses the key and value objects
+		final Configuration conf = context.getConfiguration();
+		final KEYIN keyCopy = WritableUtils.clone(key, conf);
+		final VALUEIN valueCopy = WritableUtils.clone(value, conf);
+
+		pending.add(pool.submit(new Callable<BufferedOutput<KEYOUT, VALUEOUT>>() {
+			@Override
+			public BufferedOutput<KEYOUT, VALUEOUT> call() throws Exception {
+				final BufferedOutput<KEYOUT, VALUEOUT> output = new BufferedOutput<KEYOUT, VALUEOUT>();
+				process(keyCopy, valueCopy, output);
+				return output;
+			}
+		}));
+
+		while (pending.size() >= maxInFlight || (!pending.isEmpty() && pending.peek().isDone()))
+			writeNext(context);
+	}
+
+	private void writeNext(Context context) throws IOException, InterruptedException {
+		final BufferedOutput<KEYOUT, VALUEOUT> output;
+		try {
+			output = pending.poll().get();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof InterruptedException)
+				throw (InterruptedException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
+		}
+
+		for (int i = 0; i < output.keys.size(); i++)
+			context.write(output.keys.get(i), output.values.get(i));
+
+		for (int i = 0; i < output.counters.size(); i++)
+			context.getCounter(output.counters.get(i)).increment(output.amounts.get(i));
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		try {
+			while (!pending.isEmpty())
+				writeNext(context);
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+				pool = null;
+			}
+			initialised = false;
+		}
+	}
+}
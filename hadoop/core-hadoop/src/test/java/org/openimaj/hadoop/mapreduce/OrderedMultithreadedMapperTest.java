@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.mapreduce;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.io.FileUtils;
+
+/**
+ * Test the {@link OrderedMultithreadedMapper}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class OrderedMultithreadedMapperTest {
+	static enum Counters {
+		RECORDS, VALUES;
+	}
+
+	static class SlowMapper extends OrderedMultithreadedMapper<LongWritable, Text, NullWritable, Text> {
+		private final Random random = new Random();
+
+		@Override
+		protected void process(LongWritable key, Text value, RecordOutput<NullWritable, Text> output)
+				throws IOException, InterruptedException
+		{
+			Thread.sleep(random.nextInt(5));
+			output.collect(NullWritable.get(), new Text("out" + value.toString()));
+			output.incrementCounter(Counters.RECORDS, 1);
+			output.incrementCounter(Counters.VALUES, Long.parseLong(value.toString().trim()));
+		}
+	}
+
+	/**
+	 * Working dir
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Test that the output is in the same order as the input when multiple
+	 * threads are used, and that no counter updates are lost
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOrdering() throws Exception {
+		final File input = folder.newFile("input");
+		final PrintWriter pw = new PrintWriter(input);
+		for (int i = 0; i < 500; i++)
+			pw.println(i);
+		pw.close();
+
+		final File output = folder.newFile("output");
+		output.delete();
+
+		final Job job = new Job(new Configuration());
+		job.setInputFormatClass(TextInputFormat.class);
+		job.setOutputFormatClass(TextOutputFormat.class);
+		job.setOutputKeyClass(NullWritable.class);
+		job.setOutputValueClass(Text.class);
+		FileInputFormat.setInputPaths(job, new Path(input.getAbsolutePath()));
+		FileOutputFormat.setOutputPath(job, new Path(output.getAbsolutePath()));
+		OrderedMultithreadedMapper.configure(job, SlowMapper.class, 4, 8);
+		job.setNumReduceTasks(0);
+		job.waitForCompletion(true);
+
+		final String[] lines = FileUtils.readlines(new File(output, "part-m-00000"));
+		assertEquals(500, lines.length);
+		for (int i = 0; i < lines.length; i++)
+			assertEquals("out" + i, lines[i].trim());
+
+		assertEquals(500, job.getCounters().findCounter(Counters.RECORDS).getValue());
+		assertEquals(499 * 500 / 2, job.getCounters().findCounter(Counters.VALUES).getValue());
+	}
+}
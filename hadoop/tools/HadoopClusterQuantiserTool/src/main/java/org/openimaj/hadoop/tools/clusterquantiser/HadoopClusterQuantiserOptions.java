@@ -44,6 +44,7 @@ import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineOptionsProvider;
 import org.kohsuke.args4j.Option;
 import org.kohsuke.args4j.ProxyOptionHandler;
+import org.openimaj.hadoop.mapreduce.OrderedMultithreadedMapper;
 import org.openimaj.hadoop.sequencefile.SequenceFileUtility;
 import org.openimaj.hadoop.tools.clusterquantiser.HadoopClusterQuantiserOptions.MapperMode.MapperModeOp;
 import org.openimaj.hadoop.tools.clusterquantiser.HadoopClusterQuantiserTool.ClusterQuantiserMapper;
@@ -66,6 +67,12 @@ public class HadoopClusterQuantiserOptions extends AbstractClusterQuantiserOptio
 			public MapperModeOp getOptions() {
 				return new MultithreadOp();
 			}
+		},
+		SHARED {
+			@Override
+			public MapperModeOp getOptions() {
+				return new SharedOp();
+			}
 		};
 
 		public static abstract class MapperModeOp {
@@ -98,6 +105,23 @@ public class HadoopClusterQuantiserOptions extends AbstractClusterQuantiserOptio
 				System.out.println("NThreads = " + MultithreadedMapper.getNumberOfThreads(job));
 			}
 		}
+
+		private static class SharedOp extends MapperModeOp {
+			@Option(
+					name = "--max-in-flight",
+					required = false,
+					usage = "The maximum number of records being processed by each mapper. defaults to twice the number of threads.",
+					metaVar = "NUMBER")
+			private int maxInFlight = 0;
+
+			@Override
+			public void prepareJobMapper(Job job, Class<ClusterQuantiserMapper> mapperClass,
+					AbstractClusterQuantiserOptions opts)
+			{
+				OrderedMultithreadedMapper.configure(job, mapperClass, opts.getConcurrency(), maxInFlight);
+				System.out.println("NThreads = " + job.getConfiguration().getInt(OrderedMultithreadedMapper.NUM_THREADS, 1));
+			}
+		}
 	}
 
 	private boolean beforeMaps;
@@ -47,6 +47,7 @@ import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.kohsuke.args4j.CmdLineException;
+import org.openimaj.hadoop.mapreduce.OrderedMultithreadedMapper;
 import org.openimaj.hadoop.mapreduce.TextBytesJobUtil;
 import org.openimaj.hadoop.sequencefile.MetadataConfiguration;
 import org.openimaj.hadoop.sequencefile.TextBytesSequenceFileUtility;
@@ -65,7 +66,7 @@ import org.openimaj.util.array.ByteArrayConverter;
 public class HadoopClusterQuantiserTool extends Configured implements Tool {
 	private static final String ARGS_KEY = "clusterquantiser.args";
 
-	static class ClusterQuantiserMapper extends Mapper<Text, BytesWritable, Text, BytesWritable> {
+	static class ClusterQuantiserMapper extends OrderedMultithreadedMapper<Text, BytesWritable, Text, BytesWritable> {
 		private static SpatialClusters<?> tree = null;
 		private static HardAssigner<?, ?, ?> assigner = null;
 		private static HadoopClusterQuantiserOptions options = null;
@@ -119,7 +120,7 @@ public class HadoopClusterQuantiserTool extends Configured implements Tool {
 		@SuppressWarnings("unchecked")
 		@Override
 		protected void
-				map(Text key, BytesWritable value, Mapper<Text, BytesWritable, Text, BytesWritable>.Context context)
+				process(Text key, BytesWritable value, RecordOutput<Text, BytesWritable> output)
 						throws java.io.IOException, InterruptedException
 		{
 			try {
@@ -158,7 +159,7 @@ public class HadoopClusterQuantiserTool extends Configured implements Tool {
 						}
 					}
 
-					context.write(key, new BytesWritable(baos.toByteArray()));
+					output.collect(key, new BytesWritable(baos.toByteArray()));
 				}
 				final long t2 = System.currentTimeMillis();
 				System.out.println("[" + Thread.currentThread().getId() + "]" + "Job time taken: " + (t2 - t1) / 1000.0
@@ -36,6 +36,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Random;
 
 import org.apache.hadoop.fs.FileSystem;
@@ -55,7 +56,11 @@ import org.openimaj.ml.clustering.assignment.HardAssigner;
 import org.openimaj.ml.clustering.assignment.hard.ExactByteAssigner;
 import org.openimaj.ml.clustering.assignment.hard.KDTreeByteEuclideanAssigner;
 import org.openimaj.ml.clustering.kmeans.ByteKMeans;
+import org.openimaj.util.function.Operation;
 import org.openimaj.util.pair.IntFloatPair;
+import org.openimaj.util.parallel.ForkJoinBackend;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Approximate KMeans mapreduce implementation
@@ -79,6 +84,24 @@ public class AKMeans {
 	 */
 	public static final String CENTROIDS_EXACT = "uk.ac.soton.ecs.jsh2.clusterquantiser.CentroidsExact";
 
+	/**
+	 * Config option for the number of threads used for assignment by the
+	 * {@link CombiningMap}
+	 */
+	public static final String MAPPER_THREADS = "uk.ac.soton.ecs.jsh2.clusterquantiser.MapperThreads";
+
+	/**
+	 * Config option for the maximum number of partial sums held in memory by
+	 * the {@link CombiningMap}
+	 */
+	public static final String MAX_PARTIAL_SUMS = "uk.ac.soton.ecs.jsh2.clusterquantiser.MaxPartialSums";
+
+	/**
+	 * The default maximum number of partial sums held in memory by the
+	 * {@link CombiningMap}
+	 */
+	public static final int DEFAULT_MAX_PARTIAL_SUMS = 100000;
+
 	private static final String CENTROIDS_FALLBACK_CHANCE = "uk.ac.soton.ecs.jsh2.clusterquantiser.FallbackChance";
 
 	/**
@@ -150,6 +173,146 @@ public class AKMeans {
 		}
 	}
 
+	/**
+	 * A map for approximate kmeans that performs the combining step in memory.
+	 * Rather than emitting every feature, the sum and count of the features
+	 * assigned to each centroid are accumulated, and only the partial sums are
+	 * emitted (in the same format as produced by {@link Combine}). This
+	 * reduces the amount of data that needs to be shuffled from the size of
+	 * the input to approximately the number of centroids per map task.
+	 * <p>
+	 * Features are assigned in batches, and each batch is split across a
+	 * number of threads (controlled by {@link #MAPPER_THREADS}) which share a
+	 * single assigner. The threads belong to a pool that is created in
+	 * {@link #setup(Context)} and shut down in {@link #cleanup(Context)}. The
+	 * number of partial sums held in memory is bounded
+	 * by {@link #MAX_PARTIAL_SUMS}; when there are more, they are emitted and
+	 * accumulation starts again.
+	 * <p>
+	 * This mapper should not be wrapped in a multi-threaded mapper.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 *
+	 */
+	public static class CombiningMap extends Mapper<Text, BytesWritable, IntWritable, BytesWritable> {
+		private static final int BATCH_SIZE = 4096;
+
+		private ForkJoinBackend backend;
+
+		private int[][] sums;
+		private int[] counts;
+		private int numPartialSums;
+		private int maxPartialSums;
+
+		private byte[][] batch = new byte[BATCH_SIZE][];
+		private int batchSize;
+		private final Random random = new Random();
+
+		private final IntWritable outKey = new IntWritable();
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			Map.loadCluster(context);
+
+			sums = new int[Map.k][];
+			counts = new int[Map.k];
+			maxPartialSums = context.getConfiguration().getInt(MAX_PARTIAL_SUMS, DEFAULT_MAX_PARTIAL_SUMS);
+
+			final int threads = context.getConfiguration().getInt(MAPPER_THREADS, 1);
+			if (threads > 1)
+				backend = ForkJoinBackend.create(threads);
+		}
+
+		@Override
+		public void map(Text key, BytesWritable value, Context context) throws IOException, InterruptedException {
+			final byte[] points = Arrays.copyOf(value.getBytes(), value.getLength());
+
+			batch[batchSize++] = points;
+
+			if (random.nextDouble() < Map.randomFallbackChance) {
+				context.write(new IntWritable(Map.k + 1), new BytesWritable(points));
+			}
+
+			if (batchSize == BATCH_SIZE)
+				processBatch(context);
+		}
+
+		private void processBatch(Context context) throws IOException, InterruptedException {
+			if (batchSize == 0)
+				return;
+
+			final byte[][] data = batchSize == BATCH_SIZE ? batch : Arrays.copyOf(batch, batchSize);
+			final int[] clusters;
+
+			if (backend == null) {
+				clusters = Map.assigner.assign(data);
+			} else {
+				clusters = new int[data.length];
+				Parallel.forRange(0, data.length, 1, new Operation<IntRange>() {
+					@Override
+					public void perform(IntRange range) {
+						final int[] assigned = Map.assigner.assign(Arrays.copyOfRange(data, range.start, range.stop));
+						System.arraycopy(assigned, 0, clusters, range.start, assigned.length);
+					}
+				}, backend);
+			}
+
+			for (int i = 0; i < data.length; i++) {
+				final int c = clusters[i];
+
+				if (sums[c] == null) {
+					sums[c] = new int[data[i].length];
+					numPartialSums++;
+				}
+
+				accumulateFromFeature(sums[c], data[i]);
+				counts[c]++;
+				batch[i] = null;
+			}
+			batchSize = 0;
+
+			if (numPartialSums > maxPartialSums)
+				flush(context);
+		}
+
+		private void flush(Context context) throws IOException, InterruptedException {
+			for (int c = 0; c < sums.length; c++) {
+				if (sums[c] == null)
+					continue;
+
+				outKey.set(c);
+				context.write(outKey, new BytesWritable(encodeSum(counts[c], sums[c])));
+
+				sums[c] = null;
+				counts[c] = 0;
+			}
+			numPartialSums = 0;
+		}
+
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			try {
+				processBatch(context);
+				flush(context);
+			} finally {
+				if (backend != null) {
+					backend.close();
+					backend = null;
+				}
+			}
+		}
+	}
+
+	private static byte[] encodeSum(int totalAssigned, int[] sum) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream((sum.length + 1) * 4);
+		final DataOutputStream dos = new DataOutputStream(bos);
+		dos.writeInt(totalAssigned);
+		for (final int i : sum) {
+			dos.writeInt(i);
+		}
+		return bos.toByteArray();
+	}
+
 	private static int accumulateFromFeature(int[] sum, byte[] assigned) throws IOException {
 		if (assigned.length != sum.length)
 			throw new IOException("Inconsistency in sum and feature length");
@@ -213,13 +376,7 @@ public class AKMeans {
 			if (key.get() > k)
 				return;
 			// Write accumulation and current count
-			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			final DataOutputStream dos = new DataOutputStream(bos);
-			dos.writeInt(totalAssigned);
-			for (final int i : sum) {
-				dos.writeInt(i);
-			}
-			context.write(key, new BytesWritable(bos.toByteArray()));
+			context.write(key, new BytesWritable(encodeSum(totalAssigned, sum)));
 		}
 	}
 
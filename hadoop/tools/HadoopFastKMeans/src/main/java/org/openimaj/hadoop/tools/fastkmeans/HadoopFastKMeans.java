@@ -129,9 +129,15 @@ public class HadoopFastKMeans extends Configured implements Tool {
 			final Job job = TextBytesJobUtil.createJob(new Path(selected), new Path(newOutPath),
 					new HashMap<String, String>(), this.getConf());
 			job.setJarByClass(this.getClass());
-			job.setMapperClass(MultithreadedMapper.class);
-			MultithreadedMapper.setNumberOfThreads(job, options.concurrency);
-			MultithreadedMapper.setMapperClass(job, AKMeans.Map.class);
+			if (options.inMapperCombine) {
+				job.setMapperClass(AKMeans.CombiningMap.class);
+				job.getConfiguration().setInt(AKMeans.MAPPER_THREADS, options.concurrency);
+				job.getConfiguration().setInt(AKMeans.MAX_PARTIAL_SUMS, options.maxPartialSums);
+			} else {
+				job.setMapperClass(MultithreadedMapper.class);
+				MultithreadedMapper.setNumberOfThreads(job, options.concurrency);
+				MultithreadedMapper.setMapperClass(job, AKMeans.Map.class);
+			}
 
 			job.setCombinerClass(AKMeans.Combine.class);
 			job.setReducerClass(AKMeans.Reduce.class);
@@ -77,6 +77,20 @@ public class HadoopFastKMeansOptions {
 	@Option(name = "--exact-mode", aliases = "-e", required = false, usage = "Compare the features in exact mode")
 	public boolean exact = false;
 
+	@Option(
+			name = "--in-mapper-combine",
+			aliases = "-imc",
+			required = false,
+			usage = "Accumulate the per-centroid sums in the mappers and only emit the partial sums.")
+	public boolean inMapperCombine = false;
+
+	@Option(
+			name = "--max-partial-sums",
+			aliases = "-mps",
+			required = false,
+			usage = "The maximum number of partial sums held in memory by each mapper in in-mapper combining mode.")
+	public int maxPartialSums = AKMeans.DEFAULT_MAX_PARTIAL_SUMS;
+
 	@Option(
 			name = "--force-delete",
 			aliases = "-rm",
@@ -30,14 +30,31 @@
 package org.openimaj.hadoop.tools.fastkmeans;
 
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
 import org.apache.hadoop.util.ToolRunner;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.openimaj.hadoop.mapreduce.TextBytesJobUtil;
+import org.openimaj.hadoop.sequencefile.ExtractionState;
+import org.openimaj.hadoop.sequencefile.KeyValueDump;
+import org.openimaj.hadoop.sequencefile.NamingStrategy;
 import org.openimaj.hadoop.tools.fastkmeans.HadoopFastKMeans;
 import org.openimaj.hadoop.tools.fastkmeans.HadoopFastKMeansOptions;
 
@@ -82,6 +99,76 @@ public class HadoopFastKMeansTest {
 		ToolRunner.run(hfkm, new String[]{});
 	}
 	
+	@Test
+	public void testInMapperCombine() throws Exception{
+		HadoopFastKMeans hfkm = new HadoopFastKMeans();
+		HadoopFastKMeansOptions hfkmo = new HadoopFastKMeansOptions(null);
+		hfkmo.inputs = new ArrayList<String>();
+		hfkmo.inputs.add(featureSeqFile.getAbsolutePath());
+		hfkmo.output = tmpOut.getAbsolutePath();
+		hfkmo.forceRM = true;
+		hfkmo.nsamples = 1000;
+		hfkmo.exact = true;
+		hfkmo.iter = 1;
+		hfkm.setOptions(hfkmo);
+		ToolRunner.run(hfkm, new String[]{});
+		
+		// run a single iteration from the same samples and initial centroids
+		// with and without combining in the mapper
+		final String selected = hfkmo.output + "/" + featureSeqFile.getName() + "_select_" + hfkmo.nsamples;
+		final String initial = hfkmo.output + "/init";
+		
+		final Map<Integer, byte[]> expected = iterate(selected, initial, hfkmo.output + "/plain", hfkmo.k, false);
+		final Map<Integer, byte[]> combined = iterate(selected, initial, hfkmo.output + "/combined", hfkmo.k, true);
+		
+		assertFalse(expected.isEmpty());
+		assertEquals(expected.keySet(), combined.keySet());
+		for (final Integer c : expected.keySet())
+			assertArrayEquals(expected.get(c), combined.get(c));
+	}
+	
+	/**
+	 * Run one iteration of AKMeans and read back the new centroids, ignoring
+	 * the randomly emitted fallback features
+	 */
+	private Map<Integer, byte[]> iterate(String selected, String centroids, String output, final int k,
+			boolean combine) throws Exception
+	{
+		final Job job = TextBytesJobUtil.createJob(new Path(selected), new Path(output),
+				new HashMap<String, String>(), new Configuration());
+		if (combine) {
+			job.setMapperClass(AKMeans.CombiningMap.class);
+			job.getConfiguration().setInt(AKMeans.MAPPER_THREADS, 2);
+			job.getConfiguration().setInt(AKMeans.MAX_PARTIAL_SUMS, 10);
+		} else {
+			job.setMapperClass(MultithreadedMapper.class);
+			MultithreadedMapper.setNumberOfThreads(job, 2);
+			MultithreadedMapper.setMapperClass(job, AKMeans.Map.class);
+		}
+		job.setCombinerClass(AKMeans.Combine.class);
+		job.setReducerClass(AKMeans.Reduce.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(BytesWritable.class);
+		job.getConfiguration().setStrings(AKMeans.CENTROIDS_PATH, centroids);
+		job.getConfiguration().setStrings(AKMeans.CENTROIDS_K, k + "");
+		job.getConfiguration().setStrings(AKMeans.CENTROIDS_EXACT, "true");
+		job.waitForCompletion(true);
+		
+		final Map<Integer, byte[]> result = new TreeMap<Integer, byte[]>();
+		new IntBytesSequenceMemoryUtility(output + "/part-r-00000", true).exportData(NamingStrategy.KEY,
+				new ExtractionState(), 0, new KeyValueDump<IntWritable, BytesWritable>() {
+					@Override
+					public void dumpValue(IntWritable key, BytesWritable val) {
+						if (key.get() < k) {
+							final byte[] bytes = new byte[val.getLength()];
+							System.arraycopy(val.getBytes(), 0, bytes, 0, bytes.length);
+							result.put(key.get(), bytes);
+						}
+					}
+				});
+		return result;
+	}
+	
 	public static void main(String args[]) throws Exception{
 		HadoopFastKMeansTest test = new HadoopFastKMeansTest();
 		test.setUp();
@@ -70,6 +70,12 @@ public class HadoopGlobalFeaturesOptions {
 	@Option(name="--remove", aliases="-rm", required=false, usage="Remove the existing output location if it exists.", metaVar="BOOLEAN")
 	private boolean replace = false;
 
+	@Option(name="--threads", aliases="-j", required=false, usage="Use NUMBER threads per mapper, sharing a single mapper instance. Defaults to 1.", metaVar="NUMBER")
+	protected int threads = 1;
+	
+	@Option(name="--max-in-flight", required=false, usage="The maximum number of records being processed by each mapper when using multiple threads. Defaults to twice the number of threads.", metaVar="NUMBER")
+	protected int maxInFlight = 0;
+
 	private boolean beforeMaps;
 	
 	/**
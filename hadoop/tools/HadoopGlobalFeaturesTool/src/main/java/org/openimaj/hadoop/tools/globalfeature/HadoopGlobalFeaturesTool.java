@@ -43,11 +43,11 @@ import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 import org.openimaj.feature.FeatureVector;
+import org.openimaj.hadoop.mapreduce.OrderedMultithreadedMapper;
 import org.openimaj.hadoop.mapreduce.TextBytesJobUtil;
 import org.openimaj.hadoop.sequencefile.MetadataConfiguration;
 import org.openimaj.hadoop.tools.HadoopToolsUtil;
@@ -67,23 +67,31 @@ public class HadoopGlobalFeaturesTool extends Configured implements Tool
 	private static final String ARGS_KEY = "globalfeatures.args";
 	private static Logger logger = Logger.getLogger(HadoopGlobalFeaturesTool.class);
 
-	static class GlobalFeaturesMapper extends Mapper<Text, BytesWritable, Text, BytesWritable> {
-		private HadoopGlobalFeaturesOptions options;
+	static class GlobalFeaturesMapper extends OrderedMultithreadedMapper<Text, BytesWritable, Text, BytesWritable> {
+		// the feature extractors are not necessarily thread-safe, so each
+		// thread gets its own copy of the options
+		private ThreadLocal<HadoopGlobalFeaturesOptions> options;
 
 		public GlobalFeaturesMapper() {
 		}
 
 		@Override
-		protected void setup(Mapper<Text, BytesWritable, Text, BytesWritable>.Context context) {
-			options = new HadoopGlobalFeaturesOptions(context.getConfiguration().getStrings(ARGS_KEY));
+		protected void setup(final Context context) {
+			options = new ThreadLocal<HadoopGlobalFeaturesOptions>() {
+				@Override
+				protected HadoopGlobalFeaturesOptions initialValue() {
+					return new HadoopGlobalFeaturesOptions(context.getConfiguration().getStrings(ARGS_KEY));
+				}
+			};
 		}
 
 		@Override
 		protected void
-				map(Text key, BytesWritable value, Mapper<Text, BytesWritable, Text, BytesWritable>.Context context)
+				process(Text key, BytesWritable value, RecordOutput<Text, BytesWritable> output)
 						throws InterruptedException
 		{
 			try {
+				final HadoopGlobalFeaturesOptions options = this.options.get();
 				final MBFImage img = ImageUtilities.readMBF(new ByteArrayInputStream(value.getBytes()));
 				final FeatureVector fv = options.featureOp.extract(img);
 
@@ -93,7 +101,7 @@ public class HadoopGlobalFeaturesTool extends Configured implements Tool
 				else
 					IOUtils.writeASCII(baos, fv);
 
-				context.write(key, new BytesWritable(baos.toByteArray()));
+				output.collect(key, new BytesWritable(baos.toByteArray()));
 			} catch (final Exception e) {
 				logger.warn("Problem processing image " + key + " (" + e + ")");
 			}
@@ -117,7 +125,10 @@ public class HadoopGlobalFeaturesTool extends Configured implements Tool
 
 		final Job job = TextBytesJobUtil.createJob(allPaths, new Path(options.output), metadata, this.getConf());
 		job.setJarByClass(this.getClass());
-		job.setMapperClass(GlobalFeaturesMapper.class);
+		if (options.threads > 1)
+			OrderedMultithreadedMapper.configure(job, GlobalFeaturesMapper.class, options.threads, options.maxInFlight);
+		else
+			job.setMapperClass(GlobalFeaturesMapper.class);
 		job.getConfiguration().setStrings(ARGS_KEY, args);
 		job.setNumReduceTasks(0);
 
@@ -31,7 +31,6 @@ package org.openimaj.hadoop.tools.localfeature;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -40,13 +39,13 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 import org.openimaj.feature.local.LocalFeature;
 import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.hadoop.mapreduce.OrderedMultithreadedMapper;
 import org.openimaj.hadoop.mapreduce.TextBytesJobUtil;
 import org.openimaj.hadoop.sequencefile.MetadataConfiguration;
 import org.openimaj.hadoop.sequencefile.TextBytesSequenceFileUtility;
@@ -69,33 +68,38 @@ public class HadoopLocalFeaturesTool extends Configured implements Tool {
 	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
 	 * @author Sina Samangooei (ss@ecs.soton.ac.uk)
 	 */
-	static class LocalFeaturesMapper extends Mapper<Text, BytesWritable, Text, BytesWritable> {
+	static class LocalFeaturesMapper extends OrderedMultithreadedMapper<Text, BytesWritable, Text, BytesWritable> {
 		static enum Counters {
 			SUCCESSFUL, FAILED;
 		}
 
 		private static final Logger logger = Logger.getLogger(LocalFeaturesMapper.class);
-		private HadoopLocalFeaturesToolOptions options;
+		// the feature extractors are not necessarily thread-safe, so each
+		// thread gets its own copy of the options
+		private ThreadLocal<HadoopLocalFeaturesToolOptions> options;
 
 		@Override
 		protected void setup(Context context) throws IOException,
 				InterruptedException
 		{
-			final InputStream ios = null;
-			try {
-				options = new HadoopLocalFeaturesToolOptions(context.getConfiguration().getStrings(ARGS_KEY));
-				options.prepare();
-			} finally {
-				if (ios != null)
-					ios.close();
-			}
+			final String[] args = context.getConfiguration().getStrings(ARGS_KEY);
+			options = new ThreadLocal<HadoopLocalFeaturesToolOptions>() {
+				@Override
+				protected HadoopLocalFeaturesToolOptions initialValue() {
+					final HadoopLocalFeaturesToolOptions options = new HadoopLocalFeaturesToolOptions(args);
+					options.prepare();
+					return options;
+				}
+			};
 		}
 
 		@Override
 		protected void
-				map(Text key, BytesWritable value, Context context) throws IOException, InterruptedException
+				process(Text key, BytesWritable value, RecordOutput<Text, BytesWritable> output)
+						throws IOException, InterruptedException
 		{
 			try {
+				final HadoopLocalFeaturesToolOptions options = this.options.get();
 				final Timer t = Timer.timer();
 				logger.info("Generating Keypoint for image: " + key);
 				logger.trace("Keypoint mode: " + options.getMode());
@@ -115,11 +119,11 @@ public class HadoopLocalFeaturesTool extends Configured implements Tool {
 				} else {
 					IOUtils.writeBinary(baos, kpl);
 				}
-				context.write(key, new BytesWritable(baos.toByteArray()));
+				output.collect(key, new BytesWritable(baos.toByteArray()));
 				logger.info("Done in " + t.duration() + "ms");
-				context.getCounter(Counters.SUCCESSFUL).increment(1L);
+				output.incrementCounter(Counters.SUCCESSFUL, 1L);
 			} catch (final Throwable e) {
-				context.getCounter(Counters.FAILED).increment(1L);
+				output.incrementCounter(Counters.FAILED, 1L);
 				logger.warn("Problem with this image. (" + e + "/" + key + ")");
 				e.printStackTrace(System.err);
 			}
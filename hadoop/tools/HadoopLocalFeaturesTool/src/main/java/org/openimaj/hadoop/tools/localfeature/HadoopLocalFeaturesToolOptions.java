@@ -43,6 +43,7 @@ import org.kohsuke.args4j.CmdLineOptionsProvider;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 import org.kohsuke.args4j.ProxyOptionHandler;
+import org.openimaj.hadoop.mapreduce.OrderedMultithreadedMapper;
 import org.openimaj.hadoop.sequencefile.SequenceFileUtility;
 import org.openimaj.hadoop.tools.localfeature.HadoopLocalFeaturesTool.LocalFeaturesMapper;
 import org.openimaj.hadoop.tools.localfeature.HadoopLocalFeaturesToolOptions.MapperMode.MapperModeOp;
@@ -90,6 +91,33 @@ public class HadoopLocalFeaturesToolOptions extends ExtractorOptions {
 					}
 				};
 			}
+		},
+		SHARED {
+			@Override
+			public MapperModeOp getOptions() {
+				return new MapperModeOp() {
+					@Option(
+							name = "--threads",
+							aliases = "-j",
+							required = false,
+							usage = "Use NUMBER threads per mapper. defaults n processors.",
+							metaVar = "NUMBER")
+					private int concurrency = Runtime.getRuntime().availableProcessors();
+
+					@Option(
+							name = "--max-in-flight",
+							required = false,
+							usage = "The maximum number of records being processed by each mapper. defaults to twice the number of threads.",
+							metaVar = "NUMBER")
+					private int maxInFlight = 0;
+
+					@Override
+					public void prepareJobMapper(Job job, Class<LocalFeaturesMapper> mapperClass) {
+						OrderedMultithreadedMapper.configure(job, mapperClass, concurrency, maxInFlight);
+						System.out.println("Using shared multithreaded mapper");
+					}
+				};
+			}
 		};
 
 		@Override
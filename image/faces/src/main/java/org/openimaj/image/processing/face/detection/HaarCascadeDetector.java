@@ -48,6 +48,7 @@ import org.openimaj.image.objectdetection.filtering.DetectionFilter;
 import org.openimaj.image.objectdetection.filtering.OpenCVGrouping;
 import org.openimaj.image.objectdetection.haar.Detector;
 import org.openimaj.image.objectdetection.haar.OCVHaarLoader;
+import org.openimaj.image.objectdetection.haar.ScaleParallelDetector;
 import org.openimaj.image.objectdetection.haar.StageTreeClassifier;
 import org.openimaj.image.processing.algorithm.EqualisationProcessor;
 import org.openimaj.io.IOUtils;
@@ -445,4 +446,25 @@ public class HaarCascadeDetector implements FaceDetector<DetectedFace, FImage> {
 	public Detector getDetector() {
 		return detector;
 	}
+
+	/**
+	 * Set the underlying {@link Detector}. This can be used to switch to an
+	 * alternative search strategy; for example, a
+	 * {@link ScaleParallelDetector} can be used to reduce the latency of
+	 * detection on video frames:
+	 * 
+	 * <pre>
+	 * HaarCascadeDetector fd = new HaarCascadeDetector();
+	 * fd.setDetector(new ScaleParallelDetector(fd.getCascade()));
+	 * </pre>
+	 * 
+	 * Note that the minimum and maximum detection sizes are properties of the
+	 * {@link Detector}, and will not be copied from the previous detector.
+	 * 
+	 * @param detector
+	 *            the detector to use
+	 */
+	public void setDetector(Detector detector) {
+		this.detector = detector;
+	}
 }
@@ -289,6 +289,20 @@ public class ConnectedComponentLabeler implements ImageAnalyser<FImage> {
 				// 13. Return.
 				return cc;
 			}
+		},
+		/**
+		 * Union-find over a flat label array. This uses far less memory than
+		 * the other algorithms on large images.
+		 *
+		 * @see UnionFindLabeler
+		 *
+		 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+		 */
+		UNION_FIND {
+			@Override
+			public List<ConnectedComponent> findComponents(FImage image, float bgThreshold, ConnectMode mode) {
+				return new UnionFindLabeler(bgThreshold, mode).findComponents(image);
+			}
 		};
 
 		/**
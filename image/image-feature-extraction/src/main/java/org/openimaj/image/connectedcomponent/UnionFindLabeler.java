@@ -0,0 +1,558 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.connectedcomponent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.analyser.ImageAnalyser;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.ParallelBackend;
+
+/**
+ * A connected component labeler that produces a label image rather than sets
+ * of pixels. Labelling is performed with a union-find over a flat
+ * <code>int</code> array of pixel indices (with path compression), so the
+ * memory required is a single integer per pixel irrespective of the number or
+ * size of the components.
+ * <p>
+ * Components are numbered in raster order of their first (top-left-most)
+ * pixel; the label of the <code>i</code>th component is <code>i + 1</code> and
+ * background pixels have the label 0. Per-component statistics (area, bounding
+ * box and the raw moments up to second order) are made available as primitive
+ * arrays indexed by component. {@link ConnectedComponent} objects are only
+ * created on demand through {@link #getComponent(int)} or
+ * {@link #getComponents()}.
+ * <p>
+ * Optionally, the image can be labelled in horizontal strips in parallel, with
+ * the strips being merged along their boundaries afterwards. The result is
+ * identical to the sequential labelling.
+ * <p>
+ * By default, pixels are foreground if their value is greater than the
+ * background threshold and all neighbouring foreground pixels are connected.
+ * Subclasses can override {@link #isForeground(float)} and
+ * {@link #isConnected(float, float)} to change this.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class UnionFindLabeler implements ImageAnalyser<FImage> {
+	private static final int BACKGROUND = -1;
+
+	protected float bgThreshold = 0;
+	protected ConnectMode mode;
+	protected transient ParallelBackend backend;
+
+	protected int width;
+	protected int height;
+	protected int[] labels;
+	protected int numComponents;
+
+	protected int[] area;
+	protected int[] minX;
+	protected int[] minY;
+	protected int[] maxX;
+	protected int[] maxY;
+	protected double[] m10;
+	protected double[] m01;
+	protected double[] m20;
+	protected double[] m02;
+	protected double[] m11;
+
+	/**
+	 * Construct with background pixels having a value of 0 or less, and the
+	 * given {@link ConnectMode}.
+	 * 
+	 * @param mode
+	 *            the connection mode.
+	 */
+	public UnionFindLabeler(ConnectMode mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * Construct using the given background pixel threshold and
+	 * {@link ConnectMode}.
+	 * 
+	 * @param bgThreshold
+	 *            threshold at which pixels with lower values are considered to
+	 *            be the background
+	 * @param mode
+	 *            the connection mode.
+	 */
+	public UnionFindLabeler(float bgThreshold, ConnectMode mode) {
+		this.bgThreshold = bgThreshold;
+		this.mode = mode;
+	}
+
+	/**
+	 * Construct using the given background pixel threshold and
+	 * {@link ConnectMode}, labelling strips of the image in parallel with the
+	 * given backend.
+	 * 
+	 * @param bgThreshold
+	 *            threshold at which pixels with lower values are considered to
+	 *            be the background
+	 * @param mode
+	 *            the connection mode.
+	 * @param backend
+	 *            the backend; if <code>null</code> the labelling is performed
+	 *            sequentially.
+	 */
+	public UnionFindLabeler(float bgThreshold, ConnectMode mode, ParallelBackend backend) {
+		this.bgThreshold = bgThreshold;
+		this.mode = mode;
+		this.backend = backend;
+	}
+
+	/**
+	 * Determine if a pixel is part of the foreground.
+	 * 
+	 * @param value
+	 *            the pixel value
+	 * @return true if the pixel is foreground; false otherwise
+	 */
+	protected boolean isForeground(float value) {
+		return value > bgThreshold;
+	}
+
+	/**
+	 * Determine if two neighbouring foreground pixels belong to the same
+	 * component. The test must be symmetric.
+	 * 
+	 * @param value
+	 *            the value of the first pixel
+	 * @param neighbourValue
+	 *            the value of the neighbouring pixel
+	 * @return true if the pixels are connected; false otherwise
+	 */
+	protected boolean isConnected(float value, float neighbourValue) {
+		return true;
+	}
+
+	@Override
+	public void analyseImage(final FImage image) {
+		width = image.width;
+		height = image.height;
+
+		if (labels == null || labels.length != width * height)
+			labels = new int[width * height];
+
+		final int nStrips = backend == null ? 1 : Math.min(height, backend.getParallelism());
+
+		if (nStrips <= 1) {
+			labelStrip(image, 0, height);
+		} else {
+			final int stripHeight = (height + nStrips - 1) / nStrips;
+
+			Parallel.forIndex(0, nStrips, 1, new Operation<Integer>() {
+				@Override
+				public void perform(Integer s) {
+					labelStrip(image, s * stripHeight, Math.min(height, (s + 1) * stripHeight));
+				}
+			}, backend);
+
+			for (int y = stripHeight; y < height; y += stripHeight)
+				mergeRows(image, y);
+		}
+
+		resolveLabels();
+		computeStatistics();
+	}
+
+	/**
+	 * Build the union-find forest for the rows between startY (inclusive) and
+	 * stopY (exclusive), only considering neighbours within those rows. Every
+	 * parent has a lower index than its child.
+	 */
+	private void labelStrip(FImage image, int startY, int stopY) {
+		final int[] parent = labels;
+		final boolean connect8 = mode == ConnectMode.CONNECT_8;
+
+		for (int y = startY; y < stopY; y++) {
+			final float[] row = image.pixels[y];
+			final float[] prev = y > startY ? image.pixels[y - 1] : null;
+			final int offset = y * width;
+
+			for (int x = 0; x < width; x++) {
+				final int idx = offset + x;
+				final float v = row[x];
+
+				if (!isForeground(v)) {
+					parent[idx] = BACKGROUND;
+					continue;
+				}
+
+				parent[idx] = idx;
+
+				if (x > 0 && parent[idx - 1] != BACKGROUND && isConnected(v, row[x - 1]))
+					union(idx, idx - 1);
+
+				if (prev != null) {
+					final int up = idx - width;
+
+					if (parent[up] != BACKGROUND && isConnected(v, prev[x]))
+						union(idx, up);
+
+					if (connect8) {
+						if (x > 0 && parent[up - 1] != BACKGROUND && isConnected(v, prev[x - 1]))
+							union(idx, up - 1);
+						if (x + 1 < width && parent[up + 1] != BACKGROUND && isConnected(v, prev[x + 1]))
+							union(idx, up + 1);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Join the components in row y with those in the row above.
+	 */
+	private void mergeRows(FImage image, int y) {
+		final int[] parent = labels;
+		final boolean connect8 = mode == ConnectMode.CONNECT_8;
+		final float[] row = image.pixels[y];
+		final float[] prev = image.pixels[y - 1];
+		final int offset = y * width;
+
+		for (int x = 0; x < width; x++) {
+			final int idx = offset + x;
+			if (parent[idx] == BACKGROUND)
+				continue;
+
+			final float v = row[x];
+			final int up = idx - width;
+
+			if (parent[up] != BACKGROUND && isConnected(v, prev[x]))
+				union(idx, up);
+
+			if (connect8) {
+				if (x > 0 && parent[up - 1] != BACKGROUND && isConnected(v, prev[x - 1]))
+					union(idx, up - 1);
+				if (x + 1 < width && parent[up + 1] != BACKGROUND && isConnected(v, prev[x + 1]))
+					union(idx, up + 1);
+			}
+		}
+	}
+
+	private int find(int i) {
+		final int[] parent = labels;
+
+		while (parent[i] != i) {
+			// path halving
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private void union(int a, int b) {
+		final int ra = find(a);
+		final int rb = find(b);
+
+		// always link to the lower index so roots are the first pixel of
+		// each component in raster order
+		if (ra < rb)
+			labels[rb] = ra;
+		else if (rb < ra)
+			labels[ra] = rb;
+	}
+
+	/**
+	 * Replace the forest with the final labels in a single forward pass. As
+	 * parents always precede their children, each parent has already been
+	 * relabelled by the time its children are visited.
+	 */
+	private void resolveLabels() {
+		final int[] parent = labels;
+		int next = 0;
+
+		for (int i = 0; i < parent.length; i++) {
+			final int p = parent[i];
+
+			if (p == BACKGROUND)
+				parent[i] = 0;
+			else if (p == i)
+				parent[i] = ++next;
+			else
+				parent[i] = parent[p];
+		}
+
+		numComponents = next;
+	}
+
+	private void computeStatistics() {
+		final int n = numComponents;
+
+		area = new int[n];
+		minX = new int[n];
+		minY = new int[n];
+		maxX = new int[n];
+		maxY = new int[n];
+		m10 = new double[n];
+		m01 = new double[n];
+		m20 = new double[n];
+		m02 = new double[n];
+		m11 = new double[n];
+
+		Arrays.fill(minX, Integer.MAX_VALUE);
+		Arrays.fill(maxX, Integer.MIN_VALUE);
+
+		for (int y = 0, i = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, i++) {
+				final int l = labels[i] - 1;
+				if (l < 0)
+					continue;
+
+				// the first pixel visited sets minY
+				if (area[l] == 0)
+					minY[l] = y;
+				maxY[l] = y;
+				if (x < minX[l])
+					minX[l] = x;
+				if (x > maxX[l])
+					maxX[l] = x;
+
+				area[l]++;
+				m10[l] += x;
+				m01[l] += y;
+				m20[l] += (double) x * x;
+				m02[l] += (double) y * y;
+				m11[l] += (double) x * y;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of components found in the last call to
+	 *         {@link #analyseImage(FImage)}.
+	 */
+	public int getNumComponents() {
+		return numComponents;
+	}
+
+	/**
+	 * Get the label image as a row-major array. Component <code>i</code> has
+	 * the label <code>i + 1</code>; background pixels are labelled 0. The
+	 * array is reused by subsequent calls to {@link #analyseImage(FImage)} on
+	 * images of the same size.
+	 * 
+	 * @return the labels
+	 */
+	public int[] getLabels() {
+		return labels;
+	}
+
+	/**
+	 * Get the label of the pixel at (x, y).
+	 * 
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @return the label; 0 if the pixel is background
+	 */
+	public int getLabel(int x, int y) {
+		return labels[y * width + x];
+	}
+
+	/**
+	 * @return the number of pixels in each component
+	 */
+	public int[] getAreas() {
+		return area;
+	}
+
+	/**
+	 * @return the minimum x-ordinate of each component
+	 */
+	public int[] getMinX() {
+		return minX;
+	}
+
+	/**
+	 * @return the minimum y-ordinate of each component
+	 */
+	public int[] getMinY() {
+		return minY;
+	}
+
+	/**
+	 * @return the maximum x-ordinate of each component
+	 */
+	public int[] getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * @return the maximum y-ordinate of each component
+	 */
+	public int[] getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Get the raw (non-central) moment of order (p, q) of a component, for
+	 * p + q &lt;= 2.
+	 * 
+	 * @param index
+	 *            the index of the component
+	 * @param p
+	 *            the order in x
+	 * @param q
+	 *            the order in y
+	 * @return the moment
+	 */
+	public double getMoment(int index, int p, int q) {
+		switch (p * 3 + q) {
+		case 0:
+			return area[index];
+		case 1:
+			return m01[index];
+		case 2:
+			return m02[index];
+		case 3:
+			return m10[index];
+		case 4:
+			return m11[index];
+		case 6:
+			return m20[index];
+		default:
+			throw new IllegalArgumentException("Only moments up to second order are available");
+		}
+	}
+
+	/**
+	 * Get the centroid of a component.
+	 * 
+	 * @param index
+	 *            the index of the component
+	 * @return the centroid as {x, y}
+	 */
+	public double[] getCentroid(int index) {
+		return new double[] { m10[index] / area[index], m01[index] / area[index] };
+	}
+
+	/**
+	 * Get the bounding box of a component. This is consistent with
+	 * {@link ConnectedComponent#calculateRegularBoundingBox()}.
+	 * 
+	 * @param index
+	 *            the index of the component
+	 * @return the bounding box
+	 */
+	public Rectangle getBoundingBox(int index) {
+		return new Rectangle(minX[index], minY[index], maxX[index] - minX[index], maxY[index] - minY[index]);
+	}
+
+	/**
+	 * Create the {@link ConnectedComponent} for the given component.
+	 * 
+	 * @param index
+	 *            the index of the component
+	 * @return the component
+	 */
+	public ConnectedComponent getComponent(int index) {
+		final ConnectedComponent cc = new ConnectedComponent();
+		final int label = index + 1;
+
+		for (int y = minY[index]; y <= maxY[index]; y++) {
+			final int offset = y * width;
+
+			for (int x = minX[index]; x <= maxX[index]; x++) {
+				if (labels[offset + x] == label)
+					cc.addPixel(x, y);
+			}
+		}
+
+		return cc;
+	}
+
+	/**
+	 * Create the {@link ConnectedComponent}s for all the components found in
+	 * the last call to {@link #analyseImage(FImage)}. The list is ordered by
+	 * component index.
+	 * 
+	 * @return the components
+	 */
+	public List<ConnectedComponent> getComponents() {
+		final List<ConnectedComponent> components = new ArrayList<ConnectedComponent>(numComponents);
+		for (int i = 0; i < numComponents; i++)
+			components.add(new ConnectedComponent());
+
+		for (int y = 0, i = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, i++) {
+				if (labels[i] != 0)
+					components.get(labels[i] - 1).addPixel(x, y);
+			}
+		}
+
+		return components;
+	}
+
+	/**
+	 * Syntactic sugar for calling {@link #analyseImage(FImage)} followed by
+	 * {@link #getComponents()};
+	 * 
+	 * @param image
+	 *            the image to extract components from
+	 * @return the extracted components.
+	 */
+	public List<ConnectedComponent> findComponents(FImage image) {
+		analyseImage(image);
+		return getComponents();
+	}
+
+	/**
+	 * Get the backend used to label the image in parallel.
+	 * 
+	 * @return the backend; <code>null</code> if the labelling is performed
+	 *         sequentially.
+	 */
+	public ParallelBackend getParallelBackend() {
+		return backend;
+	}
+
+	/**
+	 * Set the backend used to label the image in parallel.
+	 * 
+	 * @param backend
+	 *            the backend; if <code>null</code> the labelling is performed
+	 *            sequentially.
+	 */
+	public void setParallelBackend(ParallelBackend backend) {
+		this.backend = backend;
+	}
+}
@@ -153,4 +153,27 @@ public class HOG implements ImageAnalyser<FImage> {
 	public Histogram getFeatureVector(Rectangle rectangle) {
 		return currentHist = strategy.extract(extractor, rectangle, currentHist);
 	}
+
+	/**
+	 * Get the {@link SpatialBinningStrategy} used to compute the features.
+	 *
+	 * @return the strategy
+	 */
+	public SpatialBinningStrategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Get the extractor that efficiently computes the gradient orientation
+	 * histograms of the currently analysed image. This can be used to
+	 * compute features for many windows directly from the strategy; for
+	 * example with
+	 * {@link FlexibleHOGStrategy#computeBlockGrid(org.openimaj.image.analysis.algorithm.histogram.WindowedHistogramExtractor, int, int, int, int, int, int)}
+	 * .
+	 *
+	 * @return the extractor
+	 */
+	public GradientOrientationHistogramExtractor getExtractor() {
+		return extractor;
+	}
 }
@@ -62,6 +62,142 @@ public class FlexibleHOGStrategy implements SpatialBinningStrategy {
 	private transient Histogram[][] blocks;
 	private transient Histogram[][] cells;
 
+	/**
+	 * The normalised blocks for every position on a regular grid of cells
+	 * covering part of an image. Descriptors for windows that are aligned with
+	 * the grid can be assembled by copying blocks, rather than by recomputing
+	 * and renormalising the cells and blocks of every window. Instances are
+	 * immutable, and are thus safe to use from multiple threads.
+	 *
+	 * @see FlexibleHOGStrategy#computeBlockGrid(WindowedHistogramExtractor,
+	 *      int, int, int, int, int, int)
+	 */
+	public static class BlockGrid {
+		private final int x;
+		private final int y;
+		private final int cellWidth;
+		private final int cellHeight;
+		private final int gridWidth;
+		private final int gridHeight;
+		private final int numBlocksX;
+		private final int numBlocksY;
+		private final int blockStepX;
+		private final int blockStepY;
+		private final int blockLength;
+
+		// the normalised block at each (block) grid position; stored
+		// row-major with blockLength values per position
+		private final double[] data;
+		private final int blocksPerRow;
+
+		BlockGrid(FlexibleHOGStrategy strategy, int x, int y, int cellWidth, int cellHeight, int gridWidth,
+				int gridHeight, int blockLength)
+		{
+			this.x = x;
+			this.y = y;
+			this.cellWidth = cellWidth;
+			this.cellHeight = cellHeight;
+			this.gridWidth = gridWidth;
+			this.gridHeight = gridHeight;
+			this.numBlocksX = strategy.numBlocksX;
+			this.numBlocksY = strategy.numBlocksY;
+			this.blockStepX = strategy.blockStepX;
+			this.blockStepY = strategy.blockStepY;
+			this.blockLength = blockLength;
+
+			this.blocksPerRow = gridWidth - strategy.cellsPerBlockX + 1;
+			final int blocksPerCol = gridHeight - strategy.cellsPerBlockY + 1;
+			this.data = new double[Math.max(0, blocksPerRow * blocksPerCol * blockLength)];
+		}
+
+		/**
+		 * Get the x-ordinate of the top-left of the grid in pixels
+		 *
+		 * @return the x-ordinate
+		 */
+		public int getX() {
+			return x;
+		}
+
+		/**
+		 * Get the y-ordinate of the top-left of the grid in pixels
+		 *
+		 * @return the y-ordinate
+		 */
+		public int getY() {
+			return y;
+		}
+
+		/**
+		 * Get the width of each cell in pixels
+		 *
+		 * @return the cell width
+		 */
+		public int getCellWidth() {
+			return cellWidth;
+		}
+
+		/**
+		 * Get the height of each cell in pixels
+		 *
+		 * @return the cell height
+		 */
+		public int getCellHeight() {
+			return cellHeight;
+		}
+
+		/**
+		 * Get the width of the grid in cells
+		 *
+		 * @return the width of the grid
+		 */
+		public int getGridWidth() {
+			return gridWidth;
+		}
+
+		/**
+		 * Get the height of the grid in cells
+		 *
+		 * @return the height of the grid
+		 */
+		public int getGridHeight() {
+			return gridHeight;
+		}
+
+		/**
+		 * Extract the descriptor of the window whose top-left cell is at the
+		 * given grid position. The result is identical to calling
+		 * {@link FlexibleHOGStrategy#extract(WindowedHistogramExtractor, Rectangle, Histogram)}
+		 * on the corresponding window. The window must lie entirely within the
+		 * grid.
+		 *
+		 * @param cellX
+		 *            the x-ordinate of the window in cells
+		 * @param cellY
+		 *            the y-ordinate of the window in cells
+		 * @param output
+		 *            the output histogram; can be null
+		 * @return the descriptor (which will be output if it was the correct
+		 *         length)
+		 */
+		public Histogram extract(int cellX, int cellY, Histogram output) {
+			if (output == null || output.values.length != numBlocksX * numBlocksY * blockLength)
+				output = new Histogram(numBlocksX * numBlocksY * blockLength);
+
+			for (int j = 0, k = 0; j < numBlocksY; j++) {
+				final int row = (cellY + j * blockStepY) * blocksPerRow;
+
+				for (int i = 0; i < numBlocksX; i++, k++) {
+					final int pos = row + cellX + i * blockStepX;
+
+					System.arraycopy(data, pos * blockLength, output.values, k * blockLength, blockLength);
+				}
+			}
+
+			return output;
+		}
+	}
+
 	/**
 	 * Construct with the given number of cells per window (or image). Square
 	 * blocks are constructed from the given number of cells in each dimension.
@@ -189,6 +325,95 @@ public class FlexibleHOGStrategy implements SpatialBinningStrategy {
 		return output;
 	}
 
+	/**
+	 * Compute the normalised blocks for every position on a regular grid of
+	 * cells of the given size, starting at the given pixel coordinates. Any
+	 * window of <code>numCellsX * cellWidth</code> by
+	 * <code>numCellsY * cellHeight</code> pixels whose top-left corner lies on
+	 * the grid then has a descriptor that can be read directly from the grid
+	 * with {@link BlockGrid#extract(int, int, Histogram)}; this means that
+	 * each cell and block is only computed and normalised once, however many
+	 * windows it belongs to.
+	 * <p>
+	 * Unlike {@link #extract(WindowedHistogramExtractor, Rectangle, Histogram)}
+	 * this method does not modify the state of this object, so can be called
+	 * concurrently from multiple threads.
+	 *
+	 * @param binnedData
+	 *            the binned data
+	 * @param x
+	 *            the x-ordinate of the top-left of the grid
+	 * @param y
+	 *            the y-ordinate of the top-left of the grid
+	 * @param cellWidth
+	 *            the width of each cell
+	 * @param cellHeight
+	 *            the height of each cell
+	 * @param gridWidth
+	 *            the number of cells in the x direction
+	 * @param gridHeight
+	 *            the number of cells in the y direction
+	 * @return the grid of normalised blocks
+	 */
+	public BlockGrid computeBlockGrid(WindowedHistogramExtractor binnedData, int x, int y, int cellWidth,
+			int cellHeight, int gridWidth, int gridHeight)
+	{
+		final int nbins = binnedData.getNumBins();
+		final int blockLength = nbins * cellsPerBlockX * cellsPerBlockY;
+		final int blockArea = cellsPerBlockX * cellsPerBlockY;
+		final BlockGrid grid = new BlockGrid(this, x, y, cellWidth, cellHeight, gridWidth, gridHeight, blockLength);
+
+		// compute the l2 normalised cells
+		final double[][] cellData = new double[gridWidth * gridHeight][];
+		final Histogram cell = new Histogram(nbins);
+		for (int j = 0, k = 0, yy = y; j < gridHeight; j++, yy += cellHeight) {
+			for (int i = 0, xx = x; i < gridWidth; i++, k++, xx += cellWidth) {
+				binnedData.computeHistogram(xx, yy, cellWidth, cellHeight, cell);
+				cell.normaliseL2();
+				cellData[k] = cell.values.clone();
+			}
+		}
+
+		// build and normalise each block
+		final Histogram block = new Histogram(blockLength);
+		for (int by = 0, k = 0; by <= gridHeight - cellsPerBlockY; by++) {
+			for (int bx = 0; bx <= gridWidth - cellsPerBlockX; bx++, k++) {
+				for (int j = 0, o = 0; j < cellsPerBlockY; j++) {
+					for (int i = 0; i < cellsPerBlockX; i++) {
+						final double[] c = cellData[(by + j) * gridWidth + bx + i];
+
+						System.arraycopy(c, 0, block.values, o, nbins);
+						o += nbins;
+					}
+				}
+
+				norm.normalise(block, blockArea);
+
+				System.arraycopy(block.values, 0, grid.data, k * blockLength, blockLength);
+			}
+		}
+
+		return grid;
+	}
+
+	/**
+	 * Get the number of cells per window in the x direction
+	 *
+	 * @return the number of cells
+	 */
+	public int getNumCellsX() {
+		return numCellsX;
+	}
+
+	/**
+	 * Get the number of cells per window in the y direction
+	 *
+	 * @return the number of cells
+	 */
+	public int getNumCellsY() {
+		return numCellsY;
+	}
+
 	private void computeBlocks(Histogram[][] cells) {
 		for (int y = 0; y < numBlocksY; y++) {
 			for (int x = 0; x < numBlocksX; x++) {
@@ -31,18 +31,17 @@ package org.openimaj.image.text.extraction.swt;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.image.FImage;
 import org.openimaj.image.analyser.ImageAnalyser;
+import org.openimaj.image.connectedcomponent.UnionFindLabeler;
 import org.openimaj.image.pixel.ConnectedComponent;
-import org.openimaj.image.pixel.Pixel;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
 import org.openimaj.image.processing.edges.CannyEdgeDetector;
 import org.openimaj.image.processing.edges.StrokeWidthTransform;
 import org.openimaj.image.processing.resize.ResizeProcessor;
-import org.openimaj.util.set.DisjointSetForest;
 
 /**
  * Implementation of the Stroke Width Transform text detection algorithm by
@@ -239,12 +238,6 @@ public class SWTTextDetector implements ImageAnalyser<FImage> {
 		public float wordBreakdownRatio = 1f;
 	}
 
-	/**
-	 * 8-connected locations
-	 */
-	private final static int[][] connect8 = {
-			{ -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 }, { -1, -1 }, { 1, -1 }, { -1, 1 }, { 1, 1 } };
-
 	/**
 	 * The parameters of the algorithm
 	 */
@@ -289,51 +282,19 @@ public class SWTTextDetector implements ImageAnalyser<FImage> {
 	 * @return the detected components
 	 */
 	private List<ConnectedComponent> findComponents(FImage image) {
-		final DisjointSetForest<Pixel> forest = new DisjointSetForest<Pixel>();
-
-		Pixel current = new Pixel();
-		Pixel next = new Pixel();
-		for (int y = 0; y < image.height; y++) {
-			for (int x = 0; x < image.width; x++) {
-				final float currentValue = image.pixels[y][x];
-
-				if (currentValue > 0 && currentValue != Float.POSITIVE_INFINITY) {
-					current.x = x;
-					current.y = y;
-
-					if (forest.makeSet(current) != null)
-						current = current.clone();
-
-					for (int i = 0; i < connect8.length; i++) {
-						final int xx = x + connect8[i][0];
-						final int yy = y + connect8[i][1];
-
-						if (xx >= 0 && xx < image.width - 1 && yy >= 0 && yy < image.height - 1) {
-							final float value = image.pixels[yy][xx];
-
-							if (value > 0 && value != Float.POSITIVE_INFINITY) {
-								next.x = xx;
-								next.y = yy;
-
-								if (forest.makeSet(next) != null)
-									next = next.clone();
-
-								if ((Math.max(currentValue, value) / Math.min(currentValue, value)) < options.strokeWidthRatio)
-									forest.union(current, next);
-							}
-						}
-					}
-				}
+		final UnionFindLabeler labeler = new UnionFindLabeler(ConnectMode.CONNECT_8) {
+			@Override
+			protected boolean isForeground(float value) {
+				return value > 0 && value != Float.POSITIVE_INFINITY;
 			}
-		}
 
-		final List<ConnectedComponent> components = new ArrayList<ConnectedComponent>();
-		for (final Set<Pixel> pixels : forest.getSubsets()) {
-			final ConnectedComponent cc = new ConnectedComponent(pixels);
-			components.add(cc);
-		}
+			@Override
+			protected boolean isConnected(float value, float neighbourValue) {
+				return (Math.max(value, neighbourValue) / Math.min(value, neighbourValue)) < options.strokeWidthRatio;
+			}
+		};
 
-		return components;
+		return labeler.findComponents(image);
 	}
 
 	@Override
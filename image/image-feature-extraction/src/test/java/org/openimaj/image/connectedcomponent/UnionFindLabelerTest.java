@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.connectedcomponent;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.connectedcomponent.ConnectedComponentLabeler.Algorithm;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
+import org.openimaj.image.pixel.Pixel;
+import org.openimaj.util.parallel.ForkJoinBackend;
+
+/**
+ * Tests for the {@link UnionFindLabeler}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class UnionFindLabelerTest {
+	private static FImage createImage(int width, int height, float density, long seed) {
+		final Random rng = new Random(seed);
+		final FImage image = new FImage(width, height);
+
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextFloat() < density ? 1 : 0;
+
+		return image;
+	}
+
+	private static Set<Set<Pixel>> asSets(List<ConnectedComponent> components) {
+		final Set<Set<Pixel>> sets = new HashSet<Set<Pixel>>();
+		for (final ConnectedComponent cc : components)
+			sets.add(cc.pixels);
+		return sets;
+	}
+
+	/**
+	 * Test that the components are the same as those found by the two-pass
+	 * algorithm, both sequentially and in parallel.
+	 */
+	@Test
+	public void testComponents() {
+		final ForkJoinBackend backend = ForkJoinBackend.create(4);
+
+		try {
+			for (final ConnectMode mode : ConnectMode.values()) {
+				for (int i = 0; i < 10; i++) {
+					final FImage image = createImage(37 + i, 41 + 3 * i, 0.3f + 0.05f * i, i);
+
+					final Set<Set<Pixel>> expected = asSets(new ConnectedComponentLabeler(Algorithm.TWO_PASS, mode)
+							.findComponents(image));
+
+					final UnionFindLabeler labeler = new UnionFindLabeler(mode);
+					assertEquals(expected, asSets(labeler.findComponents(image)));
+					final int[] labels = labeler.getLabels().clone();
+
+					labeler.setParallelBackend(backend);
+					assertEquals(expected, asSets(labeler.findComponents(image)));
+					assertArrayEquals(labels, labeler.getLabels());
+
+					assertEquals(expected, asSets(Algorithm.UNION_FIND.findComponents(image, 0, mode)));
+				}
+			}
+		} finally {
+			backend.close();
+		}
+	}
+
+	/**
+	 * Test the per-component statistics against those computed from the
+	 * {@link ConnectedComponent}s.
+	 */
+	@Test
+	public void testStatistics() {
+		final FImage image = createImage(64, 48, 0.55f, 42);
+		final UnionFindLabeler labeler = new UnionFindLabeler(ConnectMode.CONNECT_4);
+		labeler.analyseImage(image);
+
+		final List<ConnectedComponent> components = labeler.getComponents();
+		assertEquals(labeler.getNumComponents(), components.size());
+
+		for (int i = 0; i < components.size(); i++) {
+			final ConnectedComponent cc = components.get(i);
+
+			assertEquals(cc.pixels, labeler.getComponent(i).pixels);
+			assertEquals(cc.calculateArea(), labeler.getAreas()[i]);
+			assertEquals(cc.calculateRegularBoundingBox(), labeler.getBoundingBox(i));
+			assertArrayEquals(cc.calculateCentroid(), labeler.getCentroid(i), 1e-9);
+			assertEquals(cc.calculateMoment(1, 1, 0, 0), labeler.getMoment(i, 1, 1), 1e-9);
+			assertEquals(cc.calculateMoment(2, 0, 0, 0), labeler.getMoment(i, 2, 0), 1e-9);
+			assertEquals(cc.calculateMoment(0, 2, 0, 0), labeler.getMoment(i, 0, 2), 1e-9);
+
+			for (final Pixel p : cc.pixels)
+				assertEquals(i + 1, labeler.getLabel(p.x, p.y));
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.dense.gradient.binning;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+import org.openimaj.data.RandomData;
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.histogram.SATWindowedExtractor;
+import org.openimaj.image.feature.dense.gradient.binning.FixedHOGStrategy.BlockNormalisation;
+import org.openimaj.image.feature.dense.gradient.binning.FlexibleHOGStrategy.BlockGrid;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.math.statistics.distribution.Histogram;
+
+/**
+ * Tests for the {@link FlexibleHOGStrategy}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class FlexibleHOGStrategyTest {
+	private SATWindowedExtractor createData() {
+		final FImage[] mags = new FImage[9];
+		for (int i = 0; i < mags.length; i++)
+			mags[i] = new FImage(RandomData.getRandomFloatArray(100, 120, 0f, 1f, i));
+
+		return new SATWindowedExtractor(mags);
+	}
+
+	/**
+	 * Test that descriptors read from a {@link BlockGrid} are identical to
+	 * those computed for each window independently.
+	 */
+	@Test
+	public void testBlockGrid() {
+		final SATWindowedExtractor data = createData();
+
+		final FlexibleHOGStrategy[] strategies = {
+				new FlexibleHOGStrategy(4, 8, 2),
+				new FlexibleHOGStrategy(4, 8, 2, BlockNormalisation.L1sqrt),
+				new FlexibleHOGStrategy(6, 6, 3, 2, BlockNormalisation.L2clip),
+				new FlexibleHOGStrategy(5, 4, 2, 1, 1, 2, BlockNormalisation.L1)
+		};
+
+		for (final FlexibleHOGStrategy strategy : strategies) {
+			final int cellSize = 5;
+			final int x0 = 3;
+			final int y0 = 7;
+			final int gridWidth = 18;
+			final int gridHeight = 17;
+			final BlockGrid grid = strategy.computeBlockGrid(data, x0, y0, cellSize, cellSize, gridWidth, gridHeight);
+
+			Histogram expected = null;
+			for (int cy = 0; cy + strategy.getNumCellsY() <= gridHeight; cy++) {
+				for (int cx = 0; cx + strategy.getNumCellsX() <= gridWidth; cx++) {
+					final Rectangle window = new Rectangle(x0 + cx * cellSize, y0 + cy * cellSize,
+							strategy.getNumCellsX() * cellSize, strategy.getNumCellsY() * cellSize);
+
+					expected = strategy.extract(data, window, expected);
+					final Histogram actual = grid.extract(cx, cy, null);
+
+					assertArrayEquals(expected.values, actual.values, 0);
+				}
+			}
+		}
+	}
+}
@@ -52,8 +52,14 @@ public class VLADIndexer<DATA extends ImageProvider<MBFImage>, METADATA extends
 	private IncrementalMetaIndex<DATA, METADATA> metaStore;
 
 	public VLADIndexer(VLADIndexerData indexerData, IncrementalMetaIndex<DATA, METADATA> metaStore) {
+		this(indexerData, indexerData.createIncrementalIndex(), metaStore);
+	}
+
+	public VLADIndexer(VLADIndexerData indexerData, IncrementalFloatADCNearestNeighbours nn,
+			IncrementalMetaIndex<DATA, METADATA> metaStore)
+	{
 		this.indexerData = indexerData;
-		this.nn = indexerData.createIncrementalIndex();
+		this.nn = nn;
 		this.metaStore = metaStore;
 	}
 
@@ -45,8 +45,10 @@ import org.openimaj.feature.local.LocalFeatureExtractor;
 import org.openimaj.image.MBFImage;
 import org.openimaj.image.feature.local.aggregate.VLAD;
 import org.openimaj.io.IOUtils;
+import org.openimaj.knn.FloatNearestNeighboursExact;
 import org.openimaj.knn.pq.FloatProductQuantiser;
 import org.openimaj.knn.pq.IncrementalFloatADCNearestNeighbours;
+import org.openimaj.knn.pq.IncrementalFloatIVFADCNearestNeighbours;
 import org.openimaj.ml.pca.FeatureVectorPCA;
 import org.openimaj.util.array.ArrayUtils;
 import org.openimaj.util.function.Function;
@@ -176,6 +178,28 @@ public class VLADIndexerData {
 		return new IncrementalFloatADCNearestNeighbours(pq, pca.getMean().length);
 	}
 
+	/**
+	 * Create an {@link IncrementalFloatIVFADCNearestNeighbours} pre-prepared to
+	 * index data. Unlike {@link #createIncrementalIndex()}, queries against
+	 * the returned index only visit a subset of the indexed data, so it is
+	 * better suited to very large collections. The quantisers can be learnt
+	 * from a sample of PCA-VLAD vectors (see {@link #extractPcaVlad(MBFImage)})
+	 * using the <code>FloatIVFADCUtilities</code> class in the clustering
+	 * sub-project.
+	 * 
+	 * @param coarseQuantiser
+	 *            the coarse quantiser that determines the inverted lists
+	 * @param residualQuantiser
+	 *            the product quantiser for the residuals from the coarse
+	 *            centroids
+	 * @return a new {@link IncrementalFloatIVFADCNearestNeighbours}
+	 */
+	public IncrementalFloatIVFADCNearestNeighbours createIncrementalIndex(FloatNearestNeighboursExact coarseQuantiser,
+			FloatProductQuantiser residualQuantiser)
+	{
+		return new IncrementalFloatIVFADCNearestNeighbours(coarseQuantiser, residualQuantiser, pca.getMean().length);
+	}
+
 	/**
 	 * Index the given features into the given nearest neighbours object by
 	 * converting them to the PCA-VLAD representation and then
@@ -87,4 +87,13 @@ public abstract class AbstractOctaveLocalFeatureCollector<OCTAVE extends Octave<
 	public LocalFeatureList<FEATURE> getFeatures() {
 		return features;
 	}
+
+	/**
+	 * Start collecting into a new, empty, list of features. Lists previously
+	 * returned by {@link #getFeatures()} are unaffected. This allows the
+	 * collector to be reused across images.
+	 */
+	public void reset() {
+		features = new MemoryLocalFeatureList<FEATURE>();
+	}
 }
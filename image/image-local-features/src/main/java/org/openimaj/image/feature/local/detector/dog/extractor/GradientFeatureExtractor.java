@@ -128,6 +128,17 @@ public class GradientFeatureExtractor implements ScaleSpaceFeatureExtractor<Orie
 		return ret;
 	}
 
+	/**
+	 * Forget the image for which the gradients were last computed, whilst
+	 * keeping the gradient buffers for reuse. This must be called before
+	 * reusing the extractor on images whose buffers might have been recycled,
+	 * as the cached gradients are only recomputed when the identity of the
+	 * image changes.
+	 */
+	public void reset() {
+		currentGradientProperties.image = null;
+	}
+
 	/**
 	 * Get the GradientScaleSpaceImageExtractorProperties for the given
 	 * properties. The returned properties are the same as the input properties,
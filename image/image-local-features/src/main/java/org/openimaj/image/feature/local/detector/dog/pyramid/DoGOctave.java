@@ -33,15 +33,22 @@ import java.lang.reflect.Array;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.Image;
+import org.openimaj.image.analysis.pyramid.ImagePool;
 import org.openimaj.image.analysis.pyramid.OctaveProcessor;
 import org.openimaj.image.analysis.pyramid.gaussian.GaussianOctave;
 import org.openimaj.image.analysis.pyramid.gaussian.GaussianPyramid;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
 
 
 /**
  * A DoGOctave is capable of processing an octave of Gaussian blurred
  * images to produce an octave of difference-of-Gaussian images.
+ * <p>
+ * If the pyramid options specify an {@link ImagePool} the difference images
+ * are allocated from it, and if they specify a parallel backend the
+ * differences are computed in parallel.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -70,13 +77,31 @@ public class DoGOctave<
 	
 	@SuppressWarnings("unchecked")
 	@Override
-	public void process(GaussianOctave<I> octave) {
+	public void process(final GaussianOctave<I> octave) {
 		images = (I[]) Array.newInstance(octave.images[0].getClass(), options.getScales() + options.getExtraScaleSteps());
 		
 		//compute DoG by subtracting adjacent levels 
-		for (int i = 0; i < images.length; i++) {
-			images[i] = octave.images[i].clone();
-			images[i].subtractInplace(octave.images[i + 1]);
+		if (options.getBackend() == null) {
+			for (int i = 0; i < images.length; i++)
+				computeDifference(octave, i);
+		} else {
+			Parallel.forIndex(0, images.length, 1, new Operation<Integer>() {
+				@Override
+				public void perform(Integer i) {
+					computeDifference(octave, i);
+				}
+			}, options.getBackend());
 		}
 	}
+	
+	private void computeDifference(GaussianOctave<I> octave, int i) {
+		final ImagePool<I> pool = options.getImagePool();
+		
+		if (pool != null)
+			images[i] = pool.acquireCopy(octave.images[i]);
+		else
+			images[i] = octave.images[i].clone();
+		
+		images[i].subtractInplace(octave.images[i + 1]);
+	}
 }
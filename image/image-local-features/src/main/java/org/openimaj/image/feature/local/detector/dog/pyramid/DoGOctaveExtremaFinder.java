@@ -95,6 +95,10 @@ public class DoGOctaveExtremaFinder
 		dogOctave.process(octave);
 		
 		innerFinder.process(dogOctave);
+		
+		// recycle the difference images if the pyramid isn't retaining octaves
+		if (octave.options.getImagePool() != null && octave.parentPyramid.getOctaves() == null)
+			octave.options.getImagePool().release(dogOctave.images);
 	}
 
 	@Override
@@ -104,7 +108,10 @@ public class DoGOctaveExtremaFinder
 	
 	/**
 	 * Get the difference-of-Gaussian octave corresponding to
-	 * the current Gaussian octave.
+	 * the current Gaussian octave. Note that if the pyramid options
+	 * specify an image pool and the octaves are not being kept, the
+	 * images of the returned octave are only valid whilst the current 
+	 * octave is being processed.
 	 * @return the difference-of-Gaussian octave
 	 */
 	public GaussianOctave<FImage> getDoGOctave() {
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.detector.mser;
+
+import java.util.ArrayDeque;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.feature.local.detector.mser.MSERFeatureGenerator.MSERDirection;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.Pixel;
+import org.openimaj.math.geometry.shape.Ellipse;
+import org.openimaj.math.geometry.shape.EllipseUtilities;
+
+import Jama.Matrix;
+
+/**
+ * A maximally stable extremal region found by the
+ * {@link StreamingMSERDetector}. The pixels of the region are not stored;
+ * instead the region is described by its grey-level, area, a seed pixel and
+ * its first and second order moments. The pixels can be recovered with
+ * {@link #toConnectedComponent(FImage)}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MSERRegion {
+	MSERDirection direction;
+	int level;
+	int area;
+	float variation;
+	int seedX;
+	int seedY;
+	double sx;
+	double sy;
+	double sxx;
+	double sxy;
+	double syy;
+
+	MSERRegion(MSERDirection direction, int level, int area, float variation, int seedX, int seedY,
+			double sx, double sy, double sxx, double sxy, double syy)
+	{
+		this.direction = direction;
+		this.level = level;
+		this.area = area;
+		this.variation = variation;
+		this.seedX = seedX;
+		this.seedY = seedY;
+		this.sx = sx;
+		this.sy = sy;
+		this.sxx = sxx;
+		this.sxy = sxy;
+		this.syy = syy;
+	}
+
+	/**
+	 * Get the direction of the region. {@link MSERDirection#Up} regions are
+	 * darker than their surroundings; {@link MSERDirection#Down} regions are
+	 * brighter.
+	 * 
+	 * @return the direction
+	 */
+	public MSERDirection getDirection() {
+		return direction;
+	}
+
+	/**
+	 * Get the grey-level (0-255) at which the region was detected. For
+	 * {@link MSERDirection#Up} regions all pixels have a level less than or
+	 * equal to this; for {@link MSERDirection#Down} regions all pixels have a
+	 * level greater than or equal to this.
+	 * 
+	 * @return the level
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @return the number of pixels in the region
+	 */
+	public int getArea() {
+		return area;
+	}
+
+	/**
+	 * @return the area variation of the region
+	 */
+	public float getVariation() {
+		return variation;
+	}
+
+	/**
+	 * @return a pixel that lies within the region
+	 */
+	public Pixel getSeed() {
+		return new Pixel(seedX, seedY);
+	}
+
+	/**
+	 * @return the centroid of the region as {x, y}
+	 */
+	public double[] getCentroid() {
+		return new double[] { sx / area, sy / area };
+	}
+
+	/**
+	 * @return the second order central moment in x
+	 */
+	public double u20() {
+		final double mx = sx / area;
+		return sxx / area - mx * mx;
+	}
+
+	/**
+	 * @return the second order central moment in y
+	 */
+	public double u02() {
+		final double my = sy / area;
+		return syy / area - my * my;
+	}
+
+	/**
+	 * @return the second order central moment in x and y
+	 */
+	public double u11() {
+		return sxy / area - (sx / area) * (sy / area);
+	}
+
+	/**
+	 * Get the ellipse with the same first and second order moments as the
+	 * region.
+	 * 
+	 * @return the ellipse
+	 */
+	public Ellipse getEllipse() {
+		return getEllipse(1);
+	}
+
+	/**
+	 * Get the ellipse with the same first and second order moments as the
+	 * region, with the axes scaled by the given factor.
+	 * 
+	 * @param sf
+	 *            the scale factor
+	 * @return the ellipse
+	 */
+	public Ellipse getEllipse(float sf) {
+		final Matrix sm = new Matrix(new double[][] {
+				{ u20(), u11() },
+				{ u11(), u02() }
+		});
+		return EllipseUtilities.ellipseFromCovariance((float) (sx / area), (float) (sy / area), sm, sf);
+	}
+
+	/**
+	 * Recover the pixels of the region from the image in which it was
+	 * detected.
+	 * 
+	 * @param image
+	 *            the image the region was detected in
+	 * @return the region's pixels
+	 */
+	public ConnectedComponent toConnectedComponent(FImage image) {
+		final ConnectedComponent cc = new ConnectedComponent();
+		final int width = image.width;
+		final int height = image.height;
+		final boolean[] visited = new boolean[width * height];
+		final ArrayDeque<Pixel> queue = new ArrayDeque<Pixel>();
+
+		visited[seedY * width + seedX] = true;
+		queue.add(new Pixel(seedX, seedY));
+
+		while (!queue.isEmpty()) {
+			final Pixel p = queue.poll();
+			cc.addPixel(p);
+
+			for (int i = 0; i < 4; i++) {
+				final int x = p.x + (i == 0 ? 1 : i == 1 ? -1 : 0);
+				final int y = p.y + (i == 2 ? 1 : i == 3 ? -1 : 0);
+
+				if (x < 0 || y < 0 || x >= width || y >= height || visited[y * width + x])
+					continue;
+
+				final int l = StreamingMSERDetector.quantise(image.pixels[y][x]);
+				if (direction == MSERDirection.Down ? l >= level : l <= level) {
+					visited[y * width + x] = true;
+					queue.add(new Pixel(x, y));
+				}
+			}
+		}
+
+		return cc;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MSERRegion[%s, level=%d, area=%d, variation=%f]", direction, level, area, variation);
+	}
+}
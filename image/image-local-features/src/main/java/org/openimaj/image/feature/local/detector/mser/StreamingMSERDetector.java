@@ -0,0 +1,683 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.detector.mser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.image.FImage;
+import org.openimaj.image.feature.local.detector.mser.MSERFeatureGenerator.MSERDirection;
+import org.openimaj.util.function.Operation;
+
+/**
+ * Linear-time MSER detector that emits regions as soon as they are found,
+ * without building the component tree or storing the pixels of any region.
+ * <p>
+ * The image is flooded using the algorithm of Nistér and Stewénius, keeping a
+ * stack of the components being grown. Each time a component changes level
+ * (by growing or merging) a node of the component tree is completed; the node
+ * is kept (as a handful of numbers in primitive arrays) only until the
+ * stability of itself and its parent is known, which happens once the flood
+ * has risen {@link #getDelta() delta} levels above the parent. Memory use is
+ * therefore bounded by the image and the flooding boundary, rather than by
+ * the size of the component tree.
+ * <p>
+ * The variation of a region R at level g is <code>(|R(g+delta)| - |R|) / |R|</code>
+ * where R(g+delta) is the region containing R delta levels up. A region is
+ * maximally stable if its variation is no greater than that of its parent or
+ * any of its children in the component tree. Maximally stable regions are
+ * reported if their area lies strictly between the minimum and maximum area
+ * and their variation is less than the maximum variation. To allow regions to
+ * be reported immediately, a region whose area differs from the nearest
+ * reported region nested inside it by a fraction less than the minimum
+ * diversity is discarded (keeping the smaller of the two).
+ * <p>
+ * Pixels are quantised to 256 levels in the same way as the
+ * {@link MSERFeatureGenerator}. Regions are described by {@link MSERRegion}s
+ * carrying the region's moments; the pixels can be recovered on demand.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+@Reference(
+		type = ReferenceType.Inproceedings,
+		author = { "Nistér, D.", "Stewénius, H." },
+		title = "Linear Time Maximally Stable Extremal Regions",
+		year = "2008",
+		booktitle = "Computer Vision - ECCV 2008",
+		pages = { "183", "196" },
+		publisher = "Springer Berlin Heidelberg",
+		series = "Lecture Notes in Computer Science",
+		volume = "5303")
+public class StreamingMSERDetector {
+	/** The maximum area an MSER can take, in pixels */
+	private int maxArea = Integer.MAX_VALUE;
+
+	/** The minimum area an MSER can be, in pixels */
+	private int minArea = 1;
+
+	/** The minimum stability an MSER must have */
+	private float maxVariation = 1;
+
+	/** The minimum diversity with its parent than an MSER must have */
+	private float minDiversity = 0;
+
+	/** The stability delta */
+	private int delta = 10;
+
+	/**
+	 * Construct with the default parameters.
+	 */
+	public StreamingMSERDetector() {
+	}
+
+	/**
+	 * Construct with the given parameters.
+	 * 
+	 * @param delta
+	 *            the stability delta
+	 * @param maxArea
+	 *            the maximum area of an MSER
+	 * @param minArea
+	 *            the minimum area of an MSER
+	 * @param maxVariation
+	 *            the maximum variation of an MSER
+	 * @param minDiversity
+	 *            the minimum diversity between nested MSERs
+	 */
+	public StreamingMSERDetector(int delta, int maxArea, int minArea, float maxVariation, float minDiversity) {
+		this.delta = delta;
+		this.maxArea = maxArea;
+		this.minArea = minArea;
+		this.maxVariation = maxVariation;
+		this.minDiversity = minDiversity;
+	}
+
+	static int quantise(float value) {
+		final int l = (int) (value * 255);
+		return l < 0 ? 0 : l > 255 ? 255 : l;
+	}
+
+	/**
+	 * Detect the MSERs in both directions, returning them as a list.
+	 * 
+	 * @param image
+	 *            the image
+	 * @return the detected regions
+	 */
+	public List<MSERRegion> detect(FImage image) {
+		return detect(image, MSERDirection.UpAndDown);
+	}
+
+	/**
+	 * Detect the MSERs in the given direction, returning them as a list.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param dir
+	 *            the direction
+	 * @return the detected regions
+	 */
+	public List<MSERRegion> detect(FImage image, MSERDirection dir) {
+		final List<MSERRegion> regions = new ArrayList<MSERRegion>();
+
+		detect(image, dir, new Operation<MSERRegion>() {
+			@Override
+			public void perform(MSERRegion region) {
+				regions.add(region);
+			}
+		});
+
+		return regions;
+	}
+
+	/**
+	 * Detect the MSERs in the given direction, passing each to the handler as
+	 * soon as it is found. The {@link MSERDirection#Up} regions are all
+	 * reported before the {@link MSERDirection#Down} ones.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param dir
+	 *            the direction
+	 * @param handler
+	 *            the handler to receive the regions
+	 */
+	public void detect(FImage image, MSERDirection dir, Operation<MSERRegion> handler) {
+		final int width = image.width;
+		final int height = image.height;
+
+		if (width == 0 || height == 0)
+			return;
+
+		final byte[] levels = new byte[width * height];
+		for (int y = 0, i = 0; y < height; y++)
+			for (int x = 0; x < width; x++, i++)
+				levels[i] = (byte) quantise(image.pixels[y][x]);
+
+		if (dir == MSERDirection.Up || dir == MSERDirection.UpAndDown)
+			new Flood(levels, width, height, MSERDirection.Up, handler).run();
+
+		if (dir == MSERDirection.Down || dir == MSERDirection.UpAndDown) {
+			for (int i = 0; i < levels.length; i++)
+				levels[i] = (byte) (255 - (levels[i] & 0xff));
+
+			new Flood(levels, width, height, MSERDirection.Down, handler).run();
+		}
+	}
+
+	/**
+	 * The state of a single flooding of the image. Components on the stack are
+	 * identified by their stack slot; completed nodes of the component tree are
+	 * stored in a pool of entries that are recycled once the node has been
+	 * decided.
+	 */
+	private final class Flood {
+		private static final int NONE = -1;
+		private static final int MAX_LEVELS = 256;
+
+		final byte[] levels;
+		final int width;
+		final MSERDirection direction;
+		final Operation<MSERRegion> handler;
+		final int nBuckets = delta + 1;
+
+		// boundary pixels, stacked per level
+		final int[][] heap = new int[MAX_LEVELS][];
+		final int[] heapSize = new int[MAX_LEVELS];
+		final long[] heapMask = new long[MAX_LEVELS / 64];
+
+		// the component stack; slot 0 is a sentinel above all levels
+		final int[] cLevel = new int[MAX_LEVELS + 2];
+		final int[] cArea = new int[MAX_LEVELS + 2];
+		final double[] cSx = new double[MAX_LEVELS + 2];
+		final double[] cSy = new double[MAX_LEVELS + 2];
+		final double[] cSxx = new double[MAX_LEVELS + 2];
+		final double[] cSxy = new double[MAX_LEVELS + 2];
+		final double[] cSyy = new double[MAX_LEVELS + 2];
+		final int[] cSeed = new int[MAX_LEVELS + 2];
+		final int[] cChildren = new int[MAX_LEVELS + 2];
+		// entries awaiting their variation, bucketed by level modulo delta+1
+		final int[] cPendingHead = new int[(MAX_LEVELS + 2) * nBuckets];
+		final int[] cPendingTail = new int[(MAX_LEVELS + 2) * nBuckets];
+		int top;
+
+		// completed nodes of the component tree
+		int[] eLevel;
+		int[] eArea;
+		int[] eSeed;
+		int[] eParent;
+		int[] eChild;
+		int[] eSibling;
+		int[] eNext;
+		int[] eMserArea;
+		double[] eSx;
+		double[] eSy;
+		double[] eSxx;
+		double[] eSxy;
+		double[] eSyy;
+		double[] eVar;
+		double[] eMinChildVar;
+		int nEntries;
+		int freeEntry = NONE;
+
+		Flood(byte[] levels, int width, int height, MSERDirection direction, Operation<MSERRegion> handler) {
+			this.levels = levels;
+			this.width = width;
+			this.direction = direction;
+			this.handler = handler;
+
+			allocateEntries(1024);
+		}
+
+		void run() {
+			final int n = levels.length;
+			final BitSet accessible = new BitSet(n);
+
+			cLevel[0] = MAX_LEVELS;
+			top = 0;
+
+			int current = 0;
+			int currentLevel = levels[0] & 0xff;
+			accessible.set(current);
+			pushComponent(currentLevel, current);
+
+			while (true) {
+				// explore the neighbours of the current pixel, descending into
+				// any that are lower
+				final int x = current % width;
+				boolean descended = false;
+
+				for (int k = 0; k < 4; k++) {
+					final int nb;
+					if (k == 0) {
+						if (x + 1 >= width)
+							continue;
+						nb = current + 1;
+					} else if (k == 1) {
+						if (x == 0)
+							continue;
+						nb = current - 1;
+					} else if (k == 2) {
+						nb = current + width;
+						if (nb >= n)
+							continue;
+					} else {
+						nb = current - width;
+						if (nb < 0)
+							continue;
+					}
+
+					if (accessible.get(nb))
+						continue;
+					accessible.set(nb);
+
+					final int nbLevel = levels[nb] & 0xff;
+					if (nbLevel >= currentLevel) {
+						heapPush(nb, nbLevel);
+					} else {
+						heapPush(current, currentLevel);
+						current = nb;
+						currentLevel = nbLevel;
+						pushComponent(currentLevel, current);
+						descended = true;
+						break;
+					}
+				}
+
+				if (descended)
+					continue;
+
+				accumulate(current);
+
+				final int next = heapPop();
+				if (next == NONE)
+					break;
+
+				current = next;
+				final int nextLevel = levels[next] & 0xff;
+				if (nextLevel != currentLevel) {
+					currentLevel = nextLevel;
+					processStack(currentLevel);
+				}
+			}
+
+			finish();
+		}
+
+		void heapPush(int pixel, int level) {
+			int[] stack = heap[level];
+			final int size = heapSize[level];
+
+			if (stack == null)
+				stack = heap[level] = new int[64];
+			else if (size == stack.length)
+				stack = heap[level] = Arrays.copyOf(stack, size * 2);
+
+			stack[size] = pixel;
+			heapSize[level] = size + 1;
+			heapMask[level >> 6] |= 1L << (level & 63);
+		}
+
+		int heapPop() {
+			for (int i = 0; i < heapMask.length; i++) {
+				if (heapMask[i] != 0) {
+					final int level = (i << 6) + Long.numberOfTrailingZeros(heapMask[i]);
+					final int size = --heapSize[level];
+
+					if (size == 0)
+						heapMask[i] &= ~(1L << (level & 63));
+
+					return heap[level][size];
+				}
+			}
+			return NONE;
+		}
+
+		void pushComponent(int level, int seed) {
+			final int s = ++top;
+
+			cLevel[s] = level;
+			cArea[s] = 0;
+			cSx[s] = cSy[s] = cSxx[s] = cSxy[s] = cSyy[s] = 0;
+			cSeed[s] = seed;
+			cChildren[s] = NONE;
+			Arrays.fill(cPendingHead, s * nBuckets, (s + 1) * nBuckets, NONE);
+		}
+
+		void accumulate(int pixel) {
+			final int s = top;
+			final double x = pixel % width;
+			final double y = pixel / width;
+
+			cArea[s]++;
+			cSx[s] += x;
+			cSy[s] += y;
+			cSxx[s] += x * x;
+			cSxy[s] += x * y;
+			cSyy[s] += y * y;
+		}
+
+		/**
+		 * Raise the top of the stack to the given level, merging components as
+		 * they are reached.
+		 */
+		void processStack(int level) {
+			while (level > cLevel[top]) {
+				final int s = top;
+
+				if (level < cLevel[s - 1]) {
+					completeNode(s, level, false);
+					cLevel[s] = level;
+					return;
+				}
+
+				completeNode(s, cLevel[s - 1], true);
+				merge(s, s - 1);
+				top--;
+			}
+		}
+
+		void merge(int from, int to) {
+			cArea[to] += cArea[from];
+			cSx[to] += cSx[from];
+			cSy[to] += cSy[from];
+			cSxx[to] += cSxx[from];
+			cSxy[to] += cSxy[from];
+			cSyy[to] += cSyy[from];
+
+			for (int b = 0; b < nBuckets; b++) {
+				final int fb = from * nBuckets + b;
+				if (cPendingHead[fb] == NONE)
+					continue;
+
+				final int tb = to * nBuckets + b;
+				if (cPendingHead[tb] == NONE) {
+					cPendingHead[tb] = cPendingHead[fb];
+				} else {
+					eNext[cPendingTail[tb]] = cPendingHead[fb];
+				}
+				cPendingTail[tb] = cPendingTail[fb];
+			}
+		}
+
+		/**
+		 * Complete the node for the component in the given slot at its current
+		 * level, as the component moves to the target level.
+		 */
+		void completeNode(int s, int target, boolean merging) {
+			final int e = createEntry(s);
+
+			// add to the entries awaiting their variation
+			final int b = s * nBuckets + eLevel[e] % nBuckets;
+			if (cPendingHead[b] == NONE)
+				cPendingHead[b] = e;
+			else
+				eNext[cPendingTail[b]] = e;
+			cPendingTail[b] = e;
+
+			// everything pending whose delta-level lies below the target now
+			// has its +delta region: the node just completed
+			resolvePending(s, target, eArea[e]);
+
+			if (merging) {
+				eSibling[e] = cChildren[s - 1];
+				cChildren[s - 1] = e;
+			} else {
+				eSibling[e] = NONE;
+				cChildren[s] = e;
+			}
+		}
+
+		int createEntry(int s) {
+			final int e = newEntry();
+
+			eLevel[e] = cLevel[s];
+			eArea[e] = cArea[s];
+			eSeed[e] = cSeed[s];
+			eSx[e] = cSx[s];
+			eSy[e] = cSy[s];
+			eSxx[e] = cSxx[s];
+			eSxy[e] = cSxy[s];
+			eSyy[e] = cSyy[s];
+			eParent[e] = NONE;
+			eNext[e] = NONE;
+			eMserArea[e] = 0;
+			eVar[e] = Double.NaN;
+			eMinChildVar[e] = Double.POSITIVE_INFINITY;
+
+			eChild[e] = cChildren[s];
+			for (int c = eChild[e]; c != NONE; c = eSibling[c]) {
+				eParent[c] = e;
+				if (!Double.isNaN(eVar[c]) && eVar[c] < eMinChildVar[e])
+					eMinChildVar[e] = eVar[c];
+			}
+			cChildren[s] = NONE;
+
+			return e;
+		}
+
+		/**
+		 * Resolve the entries pending in slot s whose level plus delta is less
+		 * than the target level, in increasing order of level.
+		 */
+		void resolvePending(int s, int target, int areaPlus) {
+			final int level = cLevel[s];
+			final int stop = Math.min(level, target - delta - 1);
+
+			for (int l = Math.max(0, level - delta); l <= stop; l++) {
+				final int b = s * nBuckets + l % nBuckets;
+
+				for (int e = cPendingHead[b]; e != NONE;) {
+					final int next = eNext[e];
+					resolve(e, (double) (areaPlus - eArea[e]) / eArea[e]);
+					e = next;
+				}
+				cPendingHead[b] = NONE;
+			}
+		}
+
+		/**
+		 * Set the variation of an entry. All of its children already have
+		 * theirs, so they can now be decided and released.
+		 */
+		void resolve(int e, double var) {
+			eVar[e] = var;
+
+			for (int c = eChild[e]; c != NONE;) {
+				final int next = eSibling[c];
+				decide(c, var, e);
+				releaseEntry(c);
+				c = next;
+			}
+			eChild[e] = NONE;
+
+			final int p = eParent[e];
+			if (p != NONE && var < eMinChildVar[p])
+				eMinChildVar[p] = var;
+		}
+
+		/**
+		 * Decide if an entry is an MSER now that the variation of its parent
+		 * is known.
+		 */
+		void decide(int c, double parentVar, int parent) {
+			final double var = eVar[c];
+			final int area = eArea[c];
+			int mserArea = eMserArea[c];
+
+			if (var <= parentVar && var <= eMinChildVar[c] && area > minArea && area < maxArea && var < maxVariation) {
+				if (mserArea == 0 || (float) (area - mserArea) / area >= minDiversity) {
+					emit(c);
+					mserArea = area;
+				}
+			}
+
+			if (mserArea > eMserArea[parent])
+				eMserArea[parent] = mserArea;
+		}
+
+		void emit(int e) {
+			final int level = direction == MSERDirection.Down ? 255 - eLevel[e] : eLevel[e];
+			final int seed = eSeed[e];
+
+			handler.perform(new MSERRegion(direction, level, eArea[e], (float) eVar[e], seed % width, seed / width,
+					eSx[e], eSy[e], eSxx[e], eSxy[e], eSyy[e]));
+		}
+
+		/**
+		 * The flood has finished, leaving the whole image as the only
+		 * component. Resolve everything that remains; the root itself is never
+		 * reported.
+		 */
+		void finish() {
+			final int s = top;
+			final int root = createEntry(s);
+
+			resolvePending(s, Integer.MAX_VALUE, eArea[root]);
+			resolve(root, Double.POSITIVE_INFINITY);
+			releaseEntry(root);
+		}
+
+		int newEntry() {
+			if (freeEntry != NONE) {
+				final int e = freeEntry;
+				freeEntry = eNext[e];
+				return e;
+			}
+
+			if (nEntries == eLevel.length)
+				allocateEntries(nEntries * 2);
+
+			return nEntries++;
+		}
+
+		void releaseEntry(int e) {
+			eNext[e] = freeEntry;
+			freeEntry = e;
+		}
+
+		void allocateEntries(int size) {
+			eLevel = eLevel == null ? new int[size] : Arrays.copyOf(eLevel, size);
+			eArea = eArea == null ? new int[size] : Arrays.copyOf(eArea, size);
+			eSeed = eSeed == null ? new int[size] : Arrays.copyOf(eSeed, size);
+			eParent = eParent == null ? new int[size] : Arrays.copyOf(eParent, size);
+			eChild = eChild == null ? new int[size] : Arrays.copyOf(eChild, size);
+			eSibling = eSibling == null ? new int[size] : Arrays.copyOf(eSibling, size);
+			eNext = eNext == null ? new int[size] : Arrays.copyOf(eNext, size);
+			eMserArea = eMserArea == null ? new int[size] : Arrays.copyOf(eMserArea, size);
+			eSx = eSx == null ? new double[size] : Arrays.copyOf(eSx, size);
+			eSy = eSy == null ? new double[size] : Arrays.copyOf(eSy, size);
+			eSxx = eSxx == null ? new double[size] : Arrays.copyOf(eSxx, size);
+			eSxy = eSxy == null ? new double[size] : Arrays.copyOf(eSxy, size);
+			eSyy = eSyy == null ? new double[size] : Arrays.copyOf(eSyy, size);
+			eVar = eVar == null ? new double[size] : Arrays.copyOf(eVar, size);
+			eMinChildVar = eMinChildVar == null ? new double[size] : Arrays.copyOf(eMinChildVar, size);
+		}
+	}
+
+	/**
+	 * @return the maxArea
+	 */
+	public int getMaxArea() {
+		return maxArea;
+	}
+
+	/**
+	 * @param maxArea
+	 *            the maxArea to set
+	 */
+	public void setMaxArea(int maxArea) {
+		this.maxArea = maxArea;
+	}
+
+	/**
+	 * @return the minArea
+	 */
+	public int getMinArea() {
+		return minArea;
+	}
+
+	/**
+	 * @param minArea
+	 *            the minArea to set
+	 */
+	public void setMinArea(int minArea) {
+		this.minArea = minArea;
+	}
+
+	/**
+	 * @return the maxVariation
+	 */
+	public float getMaxVariation() {
+		return maxVariation;
+	}
+
+	/**
+	 * @param maxVariation
+	 *            the maxVariation to set
+	 */
+	public void setMaxVariation(float maxVariation) {
+		this.maxVariation = maxVariation;
+	}
+
+	/**
+	 * @return the minDiversity
+	 */
+	public float getMinDiversity() {
+		return minDiversity;
+	}
+
+	/**
+	 * @param minDiversity
+	 *            the minDiversity to set
+	 */
+	public void setMinDiversity(float minDiversity) {
+		this.minDiversity = minDiversity;
+	}
+
+	/**
+	 * @return the delta
+	 */
+	public int getDelta() {
+		return delta;
+	}
+
+	/**
+	 * @param delta
+	 *            the delta to set
+	 */
+	public void setDelta(int delta) {
+		this.delta = delta;
+	}
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.engine;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.pyramid.ImagePool;
+import org.openimaj.image.analysis.pyramid.gaussian.GaussianPyramid;
+import org.openimaj.image.feature.local.detector.dog.collector.OctaveKeypointCollector;
+import org.openimaj.image.feature.local.detector.dog.extractor.GradientFeatureExtractor;
+import org.openimaj.image.feature.local.detector.dog.pyramid.DoGOctaveExtremaFinder;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+
+/**
+ * A version of the {@link DoGSIFTEngine} for extracting features from large
+ * numbers of images. The engine keeps a set of workers, each holding its own
+ * pyramid, extrema finder, gradient images and feature collector, which are
+ * reused from one image to the next. The images making up the pyramid octaves
+ * are recycled through an {@link ImagePool} shared by all the workers of the
+ * engine, which bounds the memory retained between images regardless of how
+ * many different image sizes are processed. A worker is only used by one
+ * thread at a time, so at most one worker per concurrently running extraction
+ * is ever created. The features extracted are identical to those from a
+ * {@link DoGSIFTEngine} with the same options.
+ * <p>
+ * Images are submitted to the thread pool as the results are consumed, with a
+ * bounded number of images in flight at any one time. The results are always
+ * returned in the same order as the input images. If the next result is
+ * needed before any thread of the pool has started on it, it is extracted by
+ * the consuming thread instead; this means the results can safely be consumed
+ * from a task running on the same pool (including the default pool).
+ * <p>
+ * By default the {@link GlobalExecutorPool} is used. Engines constructed with
+ * a number of threads create their own pool, and must be {@link #close()}d to
+ * shut it down. Closing an engine also releases the workers and pooled images
+ * it holds.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class BatchDoGSIFTEngine implements Closeable {
+	/**
+	 * The reusable extraction state.
+	 */
+	private static class Worker {
+		final GradientFeatureExtractor extractor;
+		final OctaveKeypointCollector<FImage> collector;
+		final GaussianPyramid<FImage> pyramid;
+
+		Worker(DoGSIFTEngineOptions<FImage> options, ImagePool<FImage> imagePool) {
+			final DoGSIFTEngineOptions<FImage> workerOptions = new DoGSIFTEngineOptions<FImage>(options);
+			workerOptions.setKeepOctaves(false);
+			workerOptions.setImagePool(imagePool);
+
+			final DoGOctaveExtremaFinder finder = DoGSIFTEngine.createFinder(workerOptions);
+			extractor = DoGSIFTEngine.createExtractor(workerOptions);
+			collector = new OctaveKeypointCollector<FImage>(extractor);
+			finder.setOctaveInterestPointListener(collector);
+			workerOptions.setOctaveProcessor(finder);
+
+			pyramid = new GaussianPyramid<FImage>(workerOptions);
+		}
+
+		LocalFeatureList<Keypoint> findFeatures(FImage image) {
+			// the pyramid buffers are recycled, so the gradient cache must be
+			// invalidated
+			extractor.reset();
+			collector.reset();
+
+			pyramid.process(image);
+
+			return collector.getFeatures();
+		}
+	}
+
+	/**
+	 * Iterator over the results of an extraction, which keeps up to
+	 * <code>depth</code> images in flight.
+	 */
+	private class ResultIterator implements Iterator<LocalFeatureList<Keypoint>> {
+		private final Iterator<FImage> images;
+		private final ArrayDeque<FutureTask<LocalFeatureList<Keypoint>>> pending = new ArrayDeque<FutureTask<LocalFeatureList<Keypoint>>>();
+
+		ResultIterator(Iterator<FImage> images) {
+			this.images = images;
+		}
+
+		private void fill() {
+			while (pending.size() < depth && images.hasNext()) {
+				final FImage image = images.next();
+
+				final FutureTask<LocalFeatureList<Keypoint>> task = new FutureTask<LocalFeatureList<Keypoint>>(
+						new Callable<LocalFeatureList<Keypoint>>() {
+							@Override
+							public LocalFeatureList<Keypoint> call() {
+								return extract(image);
+							}
+						});
+
+				pool.execute(task);
+				pending.add(task);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			fill();
+			return !pending.isEmpty();
+		}
+
+		@Override
+		public LocalFeatureList<Keypoint> next() {
+			fill();
+
+			final FutureTask<LocalFeatureList<Keypoint>> result = pending.poll();
+			if (result == null)
+				throw new NoSuchElementException();
+
+			// does nothing if a pool thread has already started the task;
+			// otherwise it is run here rather than waiting for a free thread
+			result.run();
+
+			try {
+				return result.get();
+			} catch (final InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (final ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				if (e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Not supported");
+		}
+	}
+
+	private final DoGSIFTEngineOptions<FImage> options;
+	private final ThreadPoolExecutor pool;
+	private final boolean ownsPool;
+	private final int depth;
+	private final ConcurrentLinkedQueue<Worker> idle = new ConcurrentLinkedQueue<Worker>();
+	private final ImagePool<FImage> imagePool = new ImagePool<FImage>();
+	private volatile boolean closed;
+
+	/**
+	 * Construct with the default options using the {@link GlobalExecutorPool}.
+	 */
+	public BatchDoGSIFTEngine() {
+		this(new DoGSIFTEngineOptions<FImage>());
+	}
+
+	/**
+	 * Construct with the given options using the {@link GlobalExecutorPool}.
+	 * 
+	 * @param options
+	 *            the options; these are copied, so subsequent changes have no
+	 *            effect
+	 */
+	public BatchDoGSIFTEngine(DoGSIFTEngineOptions<FImage> options) {
+		this(options, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct with the given options and a new pool with the given number of
+	 * threads. The pool belongs to this engine, so the engine must be
+	 * {@link #close()}d once it is no longer needed.
+	 * 
+	 * @param options
+	 *            the options; these are copied, so subsequent changes have no
+	 *            effect
+	 * @param nThreads
+	 *            the number of threads
+	 */
+	public BatchDoGSIFTEngine(DoGSIFTEngineOptions<FImage> options, int nThreads) {
+		this(options, (ThreadPoolExecutor) Executors.newFixedThreadPool(Math.max(1, nThreads),
+				new DaemonThreadFactory()), 2 * Math.max(1, nThreads), true);
+	}
+
+	/**
+	 * Construct with the given options and thread pool. Up to twice as many
+	 * images as the pool has threads will be in flight at once. The pool is
+	 * not shut down when the engine is closed.
+	 * 
+	 * @param options
+	 *            the options; these are copied, so subsequent changes have no
+	 *            effect
+	 * @param pool
+	 *            the thread pool used for extraction
+	 */
+	public BatchDoGSIFTEngine(DoGSIFTEngineOptions<FImage> options, ThreadPoolExecutor pool) {
+		this(options, pool, 2 * pool.getMaximumPoolSize());
+	}
+
+	/**
+	 * Construct with the given options, thread pool and maximum number of
+	 * images in flight.
+	 * 
+	 * @param options
+	 *            the options; these are copied, so subsequent changes have no
+	 *            effect
+	 * @param pool
+	 *            the thread pool used for extraction
+	 * @param depth
+	 *            the maximum number of images being processed or waiting to be
+	 *            consumed at any one time.
+	 */
+	public BatchDoGSIFTEngine(DoGSIFTEngineOptions<FImage> options, ThreadPoolExecutor pool, int depth) {
+		this(options, pool, depth, false);
+	}
+
+	private BatchDoGSIFTEngine(DoGSIFTEngineOptions<FImage> options, ThreadPoolExecutor pool, int depth,
+			boolean ownsPool)
+	{
+		this.options = new DoGSIFTEngineOptions<FImage>(options);
+		this.pool = pool;
+		this.depth = Math.max(1, depth);
+		this.ownsPool = ownsPool;
+	}
+
+	private LocalFeatureList<Keypoint> extract(FImage image) {
+		Worker worker = idle.poll();
+		if (worker == null)
+			worker = new Worker(options, imagePool);
+
+		try {
+			return worker.findFeatures(image);
+		} finally {
+			idle.offer(worker);
+
+			if (closed) {
+				idle.clear();
+				imagePool.clear();
+			}
+		}
+	}
+
+	/**
+	 * Extract features from the given images. The images are read from the
+	 * iterator as the results are consumed, and extraction of upcoming images
+	 * proceeds in the background. The returned iterator produces the features
+	 * of each image in the same order as the input.
+	 * 
+	 * @param images
+	 *            the images
+	 * @return an iterator over the features of each image
+	 */
+	public Iterator<LocalFeatureList<Keypoint>> findFeatures(Iterator<FImage> images) {
+		return new ResultIterator(images);
+	}
+
+	/**
+	 * Extract features from the given images (for example a
+	 * {@link org.openimaj.data.dataset.Dataset} of images).
+	 * 
+	 * @see #findFeatures(Iterator)
+	 * 
+	 * @param images
+	 *            the images
+	 * @return an iterator over the features of each image
+	 */
+	public Iterator<LocalFeatureList<Keypoint>> findFeatures(Iterable<FImage> images) {
+		return findFeatures(images.iterator());
+	}
+
+	/**
+	 * Extract features from a single image in the calling thread, reusing the
+	 * extraction state of an idle worker if one is available.
+	 * 
+	 * @param image
+	 *            the image
+	 * @return the features
+	 */
+	public LocalFeatureList<Keypoint> findFeatures(FImage image) {
+		return extract(image);
+	}
+
+	/**
+	 * Release the extraction state held by the idle workers and the pooled
+	 * images and, if the engine created its own thread pool, shut the pool
+	 * down. Workers in use by extractions that are still running are released
+	 * when they complete.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+
+		if (ownsPool)
+			pool.shutdownNow();
+
+		idle.clear();
+		imagePool.clear();
+	}
+}
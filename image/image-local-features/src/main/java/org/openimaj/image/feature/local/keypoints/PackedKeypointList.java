@@ -0,0 +1,696 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.keypoints;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Locale;
+import java.util.RandomAccess;
+
+import org.openimaj.data.RandomData;
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.feature.local.list.MemoryLocalFeatureList;
+import org.openimaj.io.IOUtils;
+
+/**
+ * A compact, in-memory {@link LocalFeatureList} of {@link Keypoint}s. Rather
+ * than holding a {@link Keypoint} object (with its own descriptor array) for
+ * every feature, the list stores the locations of the features in parallel
+ * primitive arrays and all the descriptors back-to-back in a single
+ * <code>byte[]</code>. The descriptor of the <code>i</code>th feature occupies
+ * <code>vecLength()</code> bytes starting at
+ * <code>getDescriptorOffset(i)</code> in the array returned by
+ * {@link #getDescriptorData()}, which allows matchers and quantisers to work
+ * directly on contiguous memory.
+ * <p>
+ * As {@link Keypoint}s expose their data through public fields, the objects
+ * returned by {@link #get(int)} are independent copies; changes to them are
+ * not reflected in the list unless they are written back with
+ * {@link #set(int, Keypoint)}. To avoid allocating a {@link Keypoint} for every
+ * access, use {@link #get(int, Keypoint)} with a reusable instance.
+ * <p>
+ * The accessors for individual fields, such as {@link #getX(int)} and
+ * {@link #getDescriptorOffset(int)}, are intended for tight loops and don't
+ * check the index against the size of the list; the caller must ensure that
+ * it is less than {@link #size()}. The {@link java.util.List} methods check
+ * their indices as usual. {@link #subList(int, int)} returns a view backed by
+ * this list.
+ * <p>
+ * The list reads and writes the same binary and ASCII formats as the other
+ * {@link LocalFeatureList}s, so it is interchangeable with
+ * {@link MemoryLocalFeatureList} and
+ * {@link org.openimaj.feature.local.list.FileLocalFeatureList} when storing
+ * features.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PackedKeypointList extends AbstractList<Keypoint> implements LocalFeatureList<Keypoint>, RandomAccess {
+	/** The number of bytes used to encode the location of a feature */
+	private static final int LOCATION_BYTES = 4 * 4;
+
+	private int veclen;
+	private int size;
+	private float[] x;
+	private float[] y;
+	private float[] scale;
+	private float[] ori;
+	private byte[] data;
+
+	/**
+	 * Construct an empty list. The feature-vector length is determined by
+	 * the first feature added.
+	 */
+	public PackedKeypointList() {
+		this(-1, 10);
+	}
+
+	/**
+	 * Construct an empty list with the given feature-vector length and
+	 * capacity. The list will automatically grow once the capacity is reached.
+	 * 
+	 * @param veclen
+	 *            the length of the feature vectors, or -1 to determine it from
+	 *            the first feature added
+	 * @param initialCapacity
+	 *            the initial capacity of the list
+	 */
+	public PackedKeypointList(int veclen, int initialCapacity) {
+		this.veclen = veclen;
+		this.x = new float[initialCapacity];
+		this.y = new float[initialCapacity];
+		this.scale = new float[initialCapacity];
+		this.ori = new float[initialCapacity];
+		this.data = new byte[veclen > 0 ? veclen * initialCapacity : 0];
+	}
+
+	/**
+	 * Construct a list containing copies of the given keypoints.
+	 * 
+	 * @param keypoints
+	 *            the keypoints
+	 */
+	public PackedKeypointList(Collection<? extends Keypoint> keypoints) {
+		this(-1, keypoints.size());
+
+		for (final Keypoint k : keypoints)
+			add(k);
+	}
+
+	/**
+	 * Read a list of keypoints from the given file, which can be in either the
+	 * binary or ASCII format.
+	 * 
+	 * @param file
+	 *            the file
+	 * @return the list
+	 * @throws IOException
+	 *             if an error occurs reading the file
+	 */
+	public static PackedKeypointList read(File file) throws IOException {
+		final BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return read(bis);
+		} finally {
+			bis.close();
+		}
+	}
+
+	/**
+	 * Read a list of keypoints from the given stream, which can be in either
+	 * the binary or ASCII format.
+	 * 
+	 * @param stream
+	 *            the stream
+	 * @return the list
+	 * @throws IOException
+	 *             if an error occurs reading the stream
+	 */
+	public static PackedKeypointList read(InputStream stream) throws IOException {
+		final BufferedInputStream bis = stream instanceof BufferedInputStream ?
+				(BufferedInputStream) stream : new BufferedInputStream(stream);
+
+		if (!IOUtils.isBinary(bis, BINARY_HEADER))
+			return new PackedKeypointList(MemoryLocalFeatureList.read(bis, Keypoint.class));
+
+		final DataInputStream dis = new DataInputStream(bis);
+		dis.readFully(new byte[BINARY_HEADER.length]);
+
+		return readNoHeader(dis);
+	}
+
+	/**
+	 * Read a list of keypoints in binary format from the given
+	 * {@link DataInput}. Reading of the header is skipped, and it is assumed
+	 * that the data is in binary format.
+	 * 
+	 * @param in
+	 *            the input
+	 * @return the list
+	 * @throws IOException
+	 *             if an error occurs reading the data
+	 */
+	public static PackedKeypointList readNoHeader(DataInput in) throws IOException {
+		final int nItems = in.readInt();
+		final int veclen = in.readInt();
+
+		final PackedKeypointList list = new PackedKeypointList(veclen, nItems);
+
+		// read the records in blocks and decode them from a buffer
+		final int recordLength = LOCATION_BYTES + veclen;
+		final int blockRecords = Math.max(1, Math.min(nItems, (64 * 1024) / recordLength));
+		final byte[] block = new byte[blockRecords * recordLength];
+		final ByteBuffer buffer = ByteBuffer.wrap(block);
+
+		for (int i = 0; i < nItems;) {
+			final int n = Math.min(blockRecords, nItems - i);
+			in.readFully(block, 0, n * recordLength);
+			buffer.clear();
+
+			for (int j = 0; j < n; j++, i++) {
+				list.x[i] = buffer.getFloat();
+				list.y[i] = buffer.getFloat();
+				list.scale[i] = buffer.getFloat();
+				list.ori[i] = buffer.getFloat();
+				buffer.get(list.data, i * veclen, veclen);
+			}
+		}
+		list.size = nItems;
+
+		return list;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= x.length)
+			return;
+
+		final int newCapacity = Math.max(capacity, x.length + (x.length >> 1) + 1);
+		x = Arrays.copyOf(x, newCapacity);
+		y = Arrays.copyOf(y, newCapacity);
+		scale = Arrays.copyOf(scale, newCapacity);
+		ori = Arrays.copyOf(ori, newCapacity);
+		data = Arrays.copyOf(data, newCapacity * Math.max(veclen, 0));
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+	private void checkLength(Keypoint k) {
+		if (veclen < 0) {
+			veclen = k.ivec.length;
+			data = new byte[x.length * veclen];
+		} else if (k.ivec.length != veclen) {
+			throw new IllegalArgumentException("Keypoint has a feature vector of length " + k.ivec.length
+					+ ", but the list requires " + veclen);
+		}
+	}
+
+	private void store(int index, Keypoint k) {
+		x[index] = k.x;
+		y[index] = k.y;
+		scale[index] = k.scale;
+		ori[index] = k.ori;
+		System.arraycopy(k.ivec, 0, data, index * veclen, veclen);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get a copy of the keypoint at the given index.
+	 * 
+	 * @param index
+	 *            the index
+	 * @return a new {@link Keypoint} with the data at the given index
+	 */
+	@Override
+	public Keypoint get(int index) {
+		checkIndex(index);
+
+		return load(index, new Keypoint(veclen));
+	}
+
+	/**
+	 * Copy the keypoint at the given index into the given {@link Keypoint}. The
+	 * feature vector of the given keypoint must have the same length as the
+	 * features in this list.
+	 * 
+	 * @param index
+	 *            the index
+	 * @param k
+	 *            the keypoint to fill
+	 * @return the given keypoint
+	 */
+	public Keypoint get(int index, Keypoint k) {
+		checkIndex(index);
+
+		return load(index, k);
+	}
+
+	private Keypoint load(int index, Keypoint k) {
+		k.x = x[index];
+		k.y = y[index];
+		k.scale = scale[index];
+		k.ori = ori[index];
+		System.arraycopy(data, index * veclen, k.ivec, 0, veclen);
+
+		return k;
+	}
+
+	@Override
+	public Keypoint set(int index, Keypoint k) {
+		checkIndex(index);
+		checkLength(k);
+
+		final Keypoint old = load(index, new Keypoint(veclen));
+		store(index, k);
+		return old;
+	}
+
+	@Override
+	public boolean add(Keypoint k) {
+		checkLength(k);
+		ensureCapacity(size + 1);
+		store(size++, k);
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public void add(int index, Keypoint k) {
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		checkLength(k);
+		ensureCapacity(size + 1);
+		shift(index, index + 1, size - index);
+		store(index, k);
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Keypoint remove(int index) {
+		checkIndex(index);
+
+		final Keypoint old = load(index, new Keypoint(veclen));
+		shift(index + 1, index, size - index - 1);
+		size--;
+		modCount++;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+
+	private void shift(int from, int to, int count) {
+		System.arraycopy(x, from, x, to, count);
+		System.arraycopy(y, from, y, to, count);
+		System.arraycopy(scale, from, scale, to, count);
+		System.arraycopy(ori, from, ori, to, count);
+		System.arraycopy(data, from * veclen, data, to * veclen, count * veclen);
+	}
+
+	/**
+	 * Get the x-ordinate of the keypoint at the given index.
+	 * 
+	 * @param index
+	 *            the index
+	 * @return the x-ordinate
+	 */
+	public float getX(int index) {
+		return x[index];
+	}
+
+	/**
+	 * Get the y-ordinate of the keypoint at the given index.
+	 * 
+	 * @param index
+	 *            the index
+	 * @return the y-ordinate
+	 */
+	public float getY(int index) {
+		return y[index];
+	}
+
+	/**
+	 * Get the scale of the keypoint at the given index.
+	 * 
+	 * @param index
+	 *            the index
+	 * @return the scale
+	 */
+	public float getScale(int index) {
+		return scale[index];
+	}
+
+	/**
+	 * Get the orientation of the keypoint at the given index.
+	 * 
+	 * @param index
+	 *            the index
+	 * @return the orientation
+	 */
+	public float getOrientation(int index) {
+		return ori[index];
+	}
+
+	/**
+	 * Get the array holding the descriptors of all the keypoints. The array
+	 * is not copied; it may be longer than <code>size() * vecLength()</code>
+	 * and is replaced when the list grows.
+	 * 
+	 * @return the descriptor data
+	 */
+	public byte[] getDescriptorData() {
+		return data;
+	}
+
+	/**
+	 * Get the offset of the descriptor of the given keypoint in the array
+	 * returned by {@link #getDescriptorData()}.
+	 * 
+	 * @param index
+	 *            the index of the keypoint
+	 * @return the offset of its descriptor
+	 */
+	public int getDescriptorOffset(int index) {
+		return index * veclen;
+	}
+
+	/**
+	 * Copy the descriptor of the given keypoint into the given array.
+	 * 
+	 * @param index
+	 *            the index of the keypoint
+	 * @param out
+	 *            the array to fill; if null or too short a new array is
+	 *            created
+	 * @return the array containing the descriptor
+	 */
+	public byte[] getDescriptor(int index, byte[] out) {
+		if (out == null || out.length < veclen)
+			out = new byte[veclen];
+
+		System.arraycopy(data, index * veclen, out, 0, veclen);
+		return out;
+	}
+
+	/**
+	 * Reduce the storage used by the list to the minimum required for its
+	 * current size.
+	 */
+	public void trimToSize() {
+		if (x.length == size)
+			return;
+
+		x = Arrays.copyOf(x, size);
+		y = Arrays.copyOf(y, size);
+		scale = Arrays.copyOf(scale, size);
+		ori = Arrays.copyOf(ori, size);
+		data = Arrays.copyOf(data, size * Math.max(veclen, 0));
+	}
+
+	@Override
+	public <Q> Q[] asDataArray(Q[] a) {
+		return asDataArray(a, 0, size);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <Q> Q[] asDataArray(Q[] a, int offset, int size) {
+		if (a.length < size)
+			a = (Q[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+
+		for (int i = 0, j = offset; i < size; i++, j++)
+			a[i] = (Q) Arrays.copyOfRange(data, j * veclen, (j + 1) * veclen);
+
+		return a;
+	}
+
+	@Override
+	public int vecLength() {
+		return veclen;
+	}
+
+	/**
+	 * Get a view of the portion of this list between the given indices. As
+	 * with {@link java.util.ArrayList#subList(int, int)}, changes to the view
+	 * are reflected in this list and vice-versa, but the view becomes invalid
+	 * if this list is structurally modified other than through the view.
+	 */
+	@Override
+	public LocalFeatureList<Keypoint> subList(int fromIndex, int toIndex) {
+		checkRange(fromIndex, toIndex, size);
+
+		return new SubList(null, fromIndex, toIndex);
+	}
+
+	@Override
+	public PackedKeypointList randomSubList(int nelem) {
+		return randomSubList(nelem, 0, size);
+	}
+
+	private PackedKeypointList randomSubList(int nelem, int offset, int size) {
+		final int[] idx;
+		if (nelem > size) {
+			idx = RandomData.getUniqueRandomInts(size, 0, size);
+		} else {
+			idx = RandomData.getUniqueRandomInts(nelem, 0, size);
+		}
+
+		final PackedKeypointList list = new PackedKeypointList(veclen, idx.length);
+		for (final int i : idx)
+			list.copyFrom(this, offset + i);
+		return list;
+	}
+
+	private static void checkRange(int fromIndex, int toIndex, int size) {
+		if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex);
+	}
+
+	/**
+	 * A view of a range of the list. Structural changes made through the
+	 * view are propagated to the views it was created from.
+	 */
+	private class SubList extends AbstractList<Keypoint> implements LocalFeatureList<Keypoint>, RandomAccess {
+		private final SubList parent;
+		private final int offset;
+		private int size;
+		private int expectedModCount;
+
+		SubList(SubList parent, int fromIndex, int toIndex) {
+			this.parent = parent;
+			this.offset = fromIndex;
+			this.size = toIndex - fromIndex;
+			this.expectedModCount = PackedKeypointList.this.modCount;
+		}
+
+		private void checkModCount() {
+			if (expectedModCount != PackedKeypointList.this.modCount)
+				throw new ConcurrentModificationException();
+		}
+
+		private void checkIndex(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		private void structureChanged(int delta) {
+			for (SubList l = this; l != null; l = l.parent) {
+				l.size += delta;
+				l.expectedModCount = PackedKeypointList.this.modCount;
+				l.modCount++;
+			}
+		}
+
+		@Override
+		public int size() {
+			checkModCount();
+			return size;
+		}
+
+		@Override
+		public Keypoint get(int index) {
+			checkModCount();
+			checkIndex(index);
+			return PackedKeypointList.this.get(offset + index);
+		}
+
+		@Override
+		public Keypoint set(int index, Keypoint k) {
+			checkModCount();
+			checkIndex(index);
+			return PackedKeypointList.this.set(offset + index, k);
+		}
+
+		@Override
+		public void add(int index, Keypoint k) {
+			checkModCount();
+			if (index < 0 || index > size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+			PackedKeypointList.this.add(offset + index, k);
+			structureChanged(1);
+		}
+
+		@Override
+		public Keypoint remove(int index) {
+			checkModCount();
+			checkIndex(index);
+
+			final Keypoint old = PackedKeypointList.this.remove(offset + index);
+			structureChanged(-1);
+			return old;
+		}
+
+		@Override
+		public <Q> Q[] asDataArray(Q[] a) {
+			checkModCount();
+			return PackedKeypointList.this.asDataArray(a, offset, size);
+		}
+
+		@Override
+		public int vecLength() {
+			return veclen;
+		}
+
+		@Override
+		public LocalFeatureList<Keypoint> subList(int fromIndex, int toIndex) {
+			checkModCount();
+			checkRange(fromIndex, toIndex, size);
+
+			return new SubList(this, offset + fromIndex, offset + toIndex);
+		}
+
+		@Override
+		public PackedKeypointList randomSubList(int nelem) {
+			checkModCount();
+			return PackedKeypointList.this.randomSubList(nelem, offset, size);
+		}
+
+		@Override
+		public void writeBinary(DataOutput out) throws IOException {
+			checkModCount();
+			PackedKeypointList.this.writeBinary(out, offset, size);
+		}
+
+		@Override
+		public void writeASCII(PrintWriter out) throws IOException {
+			checkModCount();
+			PackedKeypointList.this.writeASCII(out, offset, size);
+		}
+
+		@Override
+		public byte[] binaryHeader() {
+			return BINARY_HEADER;
+		}
+
+		@Override
+		public String asciiHeader() {
+			return "";
+		}
+	}
+
+	private void copyFrom(PackedKeypointList other, int index) {
+		ensureCapacity(size + 1);
+		x[size] = other.x[index];
+		y[size] = other.y[index];
+		scale[size] = other.scale[index];
+		ori[size] = other.ori[index];
+		System.arraycopy(other.data, index * veclen, data, size * veclen, veclen);
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		writeBinary(out, 0, size);
+	}
+
+	private void writeBinary(DataOutput out, int offset, int size) throws IOException {
+		out.writeInt(size);
+		out.writeInt(veclen);
+
+		for (int i = offset; i < offset + size; i++) {
+			out.writeFloat(x[i]);
+			out.writeFloat(y[i]);
+			out.writeFloat(scale[i]);
+			out.writeFloat(ori[i]);
+			out.write(data, i * veclen, veclen);
+		}
+	}
+
+	@Override
+	public void writeASCII(PrintWriter out) throws IOException {
+		writeASCII(out, 0, size);
+	}
+
+	private void writeASCII(PrintWriter out, int offset, int size) throws IOException {
+		final Locale def = Locale.getDefault();
+		Locale.setDefault(Locale.ENGLISH);
+
+		out.println(size + " " + veclen);
+
+		final Keypoint k = new Keypoint(veclen);
+		for (int i = offset; i < offset + size; i++)
+			load(i, k).writeASCII(out);
+
+		Locale.setDefault(def);
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return BINARY_HEADER;
+	}
+
+	@Override
+	public String asciiHeader() {
+		return "";
+	}
+}
@@ -36,6 +36,7 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 
@@ -45,6 +46,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.openimaj.feature.local.list.FileLocalFeatureList;
 import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.feature.local.list.MappedLocalFeatureList;
 import org.openimaj.feature.local.list.MemoryLocalFeatureList;
 import org.openimaj.feature.local.list.StreamLocalFeatureList;
 import org.openimaj.image.FImage;
@@ -268,4 +270,36 @@ public class KeypointListTest {
 
 		ascii.delete();
 	}
+
+	/**
+	 * Test reading keypoints from a memory-mapped file
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void mappedTest() throws IOException {
+		final File binary = folder.newFile("kpt-mappedTest.bin");
+		IOUtils.writeBinary(binary, keys);
+
+		final MappedLocalFeatureList<Keypoint> mkl = MappedLocalFeatureList.read(binary, Keypoint.class);
+		assertEquals(keys.size(), mkl.size());
+		assertEquals(keys.vecLength(), mkl.vecLength());
+		assertEquals(keys, mkl);
+
+		final int idx = keys.size() / 2;
+		final ByteBuffer vec = mkl.getFeatureVectorBuffer(idx);
+		assertEquals(keys.vecLength(), vec.remaining());
+		for (int i = 0; i < keys.vecLength(); i++)
+			assertEquals(keys.get(idx).ivec[i], vec.get(i));
+
+		assertEquals(keys.subList(2, 4), mkl.subList(2, 4));
+		assertEquals(keys.get(3), mkl.subList(2, 4).get(1));
+
+		final File binary2 = folder.newFile("kpt-mappedTest2.bin");
+		IOUtils.writeBinary(binary2, mkl.subList(1, 5));
+		assertEquals(keys.subList(1, 5), MemoryLocalFeatureList.read(binary2, Keypoint.class));
+
+		binary.delete();
+		binary2.delete();
+	}
 }
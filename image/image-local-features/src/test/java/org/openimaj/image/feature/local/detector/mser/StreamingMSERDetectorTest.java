@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.detector.mser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.feature.local.detector.mser.MSERFeatureGenerator.MSERDirection;
+
+/**
+ * Tests for the {@link StreamingMSERDetector}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class StreamingMSERDetectorTest {
+	private static float value(int level) {
+		return (level + 0.5f) / 255f;
+	}
+
+	private static void fill(FImage image, int x, int y, int w, int h, int level) {
+		for (int yy = y; yy < y + h; yy++)
+			for (int xx = x; xx < x + w; xx++)
+				image.pixels[yy][xx] = value(level);
+	}
+
+	private static String key(MSERDirection dir, int level, int area, double sx, double sy) {
+		return dir + ":" + level + ":" + area + ":" + (long) sx + ":" + (long) sy;
+	}
+
+	private static List<String> keys(List<MSERRegion> regions) {
+		final List<String> keys = new ArrayList<String>();
+		for (final MSERRegion r : regions)
+			keys.add(key(r.direction, r.level, r.area, r.sx, r.sy));
+		Collections.sort(keys);
+		return keys;
+	}
+
+	/**
+	 * Test the regions found in an image of nested squares
+	 */
+	@Test
+	public void testSquares() {
+		final FImage image = new FImage(60, 40);
+		fill(image, 0, 0, 60, 40, 200);
+		fill(image, 10, 10, 20, 20, 100);
+		fill(image, 16, 16, 8, 8, 50);
+		fill(image, 40, 10, 10, 10, 240);
+
+		final StreamingMSERDetector detector = new StreamingMSERDetector();
+
+		final List<MSERRegion> up = detector.detect(image, MSERDirection.Up);
+		assertEquals(3, up.size());
+		assertEquals(50, up.get(0).getLevel());
+		assertEquals(64, up.get(0).getArea());
+		assertEquals(100, up.get(1).getLevel());
+		assertEquals(400, up.get(1).getArea());
+		assertEquals(200, up.get(2).getLevel());
+		assertEquals(2300, up.get(2).getArea());
+
+		assertEquals(19.5, up.get(0).getCentroid()[0], 1e-9);
+		assertEquals(19.5, up.get(0).getCentroid()[1], 1e-9);
+		assertEquals((64 - 1) / 12.0, up.get(0).u20(), 1e-9);
+		assertEquals(0, up.get(0).u11(), 1e-9);
+		assertEquals(400, up.get(1).toConnectedComponent(image).calculateArea());
+
+		final List<MSERRegion> down = detector.detect(image, MSERDirection.Down);
+		assertEquals(3, down.size());
+		assertEquals(240, down.get(0).getLevel());
+		assertEquals(100, down.get(0).getArea());
+		assertEquals(44.5, down.get(0).getCentroid()[0], 1e-9);
+		assertEquals(100, down.get(0).toConnectedComponent(image).calculateArea());
+		assertEquals(200, down.get(1).getLevel());
+		assertEquals(2000, down.get(1).getArea());
+		assertEquals(100, down.get(2).getLevel());
+		assertEquals(2336, down.get(2).getArea());
+
+		// the middle square is too similar to the inner one
+		detector.setMinDiversity(0.9f);
+		final List<MSERRegion> diverse = detector.detect(image, MSERDirection.Up);
+		assertEquals(2, diverse.size());
+		assertEquals(64, diverse.get(0).getArea());
+		assertEquals(2300, diverse.get(1).getArea());
+
+		detector.setMinArea(64);
+		detector.setMaxArea(2300);
+		assertEquals(1, detector.detect(image, MSERDirection.Up).size());
+		assertEquals(400, detector.detect(image, MSERDirection.Up).get(0).getArea());
+	}
+
+	/**
+	 * Test against a direct computation of the component tree by thresholding
+	 * the image at every level.
+	 */
+	@Test
+	public void testAgainstThresholding() {
+		final Random rng = new Random(1);
+
+		for (int i = 0; i < 50; i++) {
+			final int width = 5 + rng.nextInt(30);
+			final int height = 5 + rng.nextInt(30);
+			final int nLevels = 2 + rng.nextInt(40);
+			final FImage image = new FImage(width, height);
+			for (int y = 0; y < height; y++)
+				for (int x = 0; x < width; x++)
+					image.pixels[y][x] = value(rng.nextInt(nLevels) * (255 / nLevels));
+
+			final int[] deltas = { 0, 1, 5, 10, 40 };
+			final StreamingMSERDetector detector = new StreamingMSERDetector();
+			detector.setDelta(deltas[i % deltas.length]);
+			detector.setMaxVariation(i % 2 == 0 ? Float.MAX_VALUE : 0.5f);
+			detector.setMinDiversity(i % 3 == 0 ? 0 : 0.3f);
+			detector.setMinArea(i % 4);
+			detector.setMaxArea(width * height / 2);
+
+			final List<String> expected = new ArrayList<String>();
+			threshold(image, MSERDirection.Up, detector, expected);
+			threshold(image, MSERDirection.Down, detector, expected);
+			Collections.sort(expected);
+
+			assertEquals(expected, keys(detector.detect(image)));
+		}
+	}
+
+	private static void threshold(FImage image, MSERDirection dir, StreamingMSERDetector detector, List<String> out)
+	{
+		final int width = image.width;
+		final int n = width * image.height;
+		final int[] levels = new int[n];
+		for (int i = 0; i < n; i++) {
+			final int l = StreamingMSERDetector.quantise(image.pixels[i / width][i % width]);
+			levels[i] = dir == MSERDirection.Down ? 255 - l : l;
+		}
+
+		// the component containing each pixel at each level
+		final int[][] comp = new int[256][];
+		final int[][] compArea = new int[256][];
+		final boolean[][] compIsNode = new boolean[256][];
+		final double[][] compSx = new double[256][];
+		final double[][] compSy = new double[256][];
+		int maxLevel = 0;
+		for (final int l : levels)
+			maxLevel = Math.max(maxLevel, l);
+
+		for (int g = 0; g <= maxLevel; g++) {
+			comp[g] = new int[n];
+			Arrays.fill(comp[g], -1);
+			final List<Integer> areas = new ArrayList<Integer>();
+			final List<Boolean> nodes = new ArrayList<Boolean>();
+			final List<double[]> sums = new ArrayList<double[]>();
+
+			for (int s = 0; s < n; s++) {
+				if (levels[s] > g || comp[g][s] >= 0)
+					continue;
+
+				final int id = areas.size();
+				int area = 0;
+				boolean node = false;
+				final double[] sum = new double[2];
+				final ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+				queue.add(s);
+				comp[g][s] = id;
+
+				while (!queue.isEmpty()) {
+					final int p = queue.poll();
+					area++;
+					node |= levels[p] == g;
+					sum[0] += p % width;
+					sum[1] += p / width;
+
+					final int[] nbs = { p % width + 1 < width ? p + 1 : -1, p % width > 0 ? p - 1 : -1, p + width < n ? p + width : -1, p - width };
+					for (final int q : nbs) {
+						if (q >= 0 && levels[q] <= g && comp[g][q] < 0) {
+							comp[g][q] = id;
+							queue.add(q);
+						}
+					}
+				}
+				areas.add(area);
+				nodes.add(node);
+				sums.add(sum);
+			}
+
+			compArea[g] = new int[areas.size()];
+			compIsNode[g] = new boolean[areas.size()];
+			compSx[g] = new double[areas.size()];
+			compSy[g] = new double[areas.size()];
+			for (int i = 0; i < areas.size(); i++) {
+				compArea[g][i] = areas.get(i);
+				compIsNode[g][i] = nodes.get(i);
+				compSx[g][i] = sums.get(i)[0];
+				compSy[g][i] = sums.get(i)[1];
+			}
+		}
+
+		// nodes of the tree, indexed by [level][component]
+		final double[][] var = new double[256][];
+		final double[][] minChildVar = new double[256][];
+		final int[][] mserArea = new int[256][];
+		for (int g = 0; g <= maxLevel; g++) {
+			final int nc = compArea[g].length;
+			var[g] = new double[nc];
+			minChildVar[g] = new double[nc];
+			Arrays.fill(minChildVar[g], Double.POSITIVE_INFINITY);
+			mserArea[g] = new int[nc];
+		}
+
+		final int delta = detector.getDelta();
+		for (int g = 0; g <= maxLevel; g++) {
+			for (int c = 0; c < compArea[g].length; c++) {
+				if (!compIsNode[g][c])
+					continue;
+
+				if (g == maxLevel) {
+					var[g][c] = Double.POSITIVE_INFINITY;
+					continue;
+				}
+
+				final int seed = seedOf(comp[g], c);
+				final int plus = Math.min(g + delta, maxLevel);
+				var[g][c] = (double) (compArea[plus][comp[plus][seed]] - compArea[g][c]) / compArea[g][c];
+			}
+		}
+
+		for (int g = 0; g < maxLevel; g++) {
+			for (int c = 0; c < compArea[g].length; c++) {
+				if (!compIsNode[g][c])
+					continue;
+
+				final int[] parent = parentOf(comp, compIsNode, g, c, maxLevel);
+				final double pv = var[parent[0]][parent[1]];
+				if (var[g][c] < minChildVar[parent[0]][parent[1]])
+					minChildVar[parent[0]][parent[1]] = var[g][c];
+
+				// children have all been processed
+				final double v = var[g][c];
+				final int area = compArea[g][c];
+				int ma = mserArea[g][c];
+				if (v <= pv && v <= minChildVar[g][c] && area > detector.getMinArea() && area < detector.getMaxArea()
+						&& v < detector.getMaxVariation())
+				{
+					if (ma == 0 || (float) (area - ma) / area >= detector.getMinDiversity()) {
+						out.add(key(dir, dir == MSERDirection.Down ? 255 - g : g, area, compSx[g][c], compSy[g][c]));
+						ma = area;
+					}
+				}
+				mserArea[parent[0]][parent[1]] = Math.max(mserArea[parent[0]][parent[1]], ma);
+			}
+		}
+	}
+
+	private static int seedOf(int[] comp, int c) {
+		for (int i = 0; i < comp.length; i++)
+			if (comp[i] == c)
+				return i;
+		return -1;
+	}
+
+	private static int[] parentOf(int[][] comp, boolean[][] isNode, int g, int c, int maxLevel) {
+		final int seed = seedOf(comp[g], c);
+		for (int h = g + 1; h <= maxLevel; h++) {
+			final int pc = comp[h][seed];
+			if (isNode[h][pc])
+				return new int[] { h, pc };
+		}
+		return null;
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.pyramid.ImagePool;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.math.geometry.shape.Circle;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.parallel.ForkJoinBackend;
+
+/**
+ * Tests for {@link DoGSIFTEngine}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DoGSIFTEngineTest {
+	FImage im1;
+	FImage im2;
+
+	/**
+	 * Constructor
+	 */
+	public DoGSIFTEngineTest() {
+		im1 = new FImage(200, 200);
+		im1.drawShapeFilled(new Circle(100, 100, 40), 1f);
+
+		im2 = new FImage(200, 200);
+		im2.drawShapeFilled(new Rectangle(50, 60, 70, 50), 1f);
+	}
+
+	private static void assertSameFeatures(LocalFeatureList<Keypoint> expected, LocalFeatureList<Keypoint> actual) {
+		assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).x, actual.get(i).x, 0);
+			assertEquals(expected.get(i).y, actual.get(i).y, 0);
+			assertEquals(expected.get(i).scale, actual.get(i).scale, 0);
+			assertEquals(expected.get(i).ori, actual.get(i).ori, 0);
+			assertArrayEquals(expected.get(i).ivec, actual.get(i).ivec);
+		}
+	}
+
+	/**
+	 * Test that building the pyramids from a shared image pool and with a
+	 * parallel backend doesn't change the features
+	 */
+	@Test
+	public void testPooledParallelPyramid() {
+		final DoGSIFTEngine engine = new DoGSIFTEngine();
+		final LocalFeatureList<Keypoint> expected1 = engine.findFeatures(im1);
+		final LocalFeatureList<Keypoint> expected2 = engine.findFeatures(im2);
+
+		final ForkJoinBackend backend = ForkJoinBackend.create(2);
+		try {
+			final DoGSIFTEngine pooled = new DoGSIFTEngine();
+			pooled.getOptions().setImagePool(new ImagePool<FImage>());
+			pooled.getOptions().setBackend(backend);
+
+			for (int i = 0; i < 2; i++) {
+				assertSameFeatures(expected1, pooled.findFeatures(im1));
+				assertSameFeatures(expected2, pooled.findFeatures(im2));
+			}
+		} finally {
+			backend.close();
+		}
+	}
+
+	/**
+	 * Test that the batch engine gives the same features as the normal engine,
+	 * in the same order as the input.
+	 */
+	@Test
+	public void testBatch() {
+		final DoGSIFTEngine engine = new DoGSIFTEngine();
+		final LocalFeatureList<Keypoint> expected1 = engine.findFeatures(im1);
+		final LocalFeatureList<Keypoint> expected2 = engine.findFeatures(im2);
+
+		final BatchDoGSIFTEngine batch = new BatchDoGSIFTEngine();
+		final Iterator<LocalFeatureList<Keypoint>> results = batch.findFeatures(Arrays.asList(im1, im2, im1, im2, im2));
+
+		assertSameFeatures(expected1, results.next());
+		assertSameFeatures(expected2, results.next());
+		assertSameFeatures(expected1, results.next());
+		assertSameFeatures(expected2, results.next());
+		assertSameFeatures(expected2, results.next());
+		assertFalse(results.hasNext());
+	}
+
+	/**
+	 * Test a batch engine with its own thread pool, which is shut down when the
+	 * engine is closed.
+	 */
+	@Test
+	public void testBatchOwnedPool() {
+		final DoGSIFTEngine engine = new DoGSIFTEngine();
+		final LocalFeatureList<Keypoint> expected1 = engine.findFeatures(im1);
+		final LocalFeatureList<Keypoint> expected2 = engine.findFeatures(im2);
+
+		final BatchDoGSIFTEngine batch = new BatchDoGSIFTEngine(new DoGSIFTEngineOptions<FImage>(), 2);
+		try {
+			final Iterator<LocalFeatureList<Keypoint>> results = batch.findFeatures(Arrays.asList(im1, im2, im1));
+
+			assertSameFeatures(expected1, results.next());
+			assertSameFeatures(expected2, results.next());
+			assertSameFeatures(expected1, results.next());
+			assertFalse(results.hasNext());
+		} finally {
+			batch.close();
+		}
+	}
+
+	/**
+	 * Test that the results can be consumed from a task running on the pool
+	 * used by the engine, even if the pool has only one thread.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBatchSamePool() throws Exception {
+		final DoGSIFTEngine engine = new DoGSIFTEngine();
+		final LocalFeatureList<Keypoint> expected1 = engine.findFeatures(im1);
+		final LocalFeatureList<Keypoint> expected2 = engine.findFeatures(im2);
+
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+		try {
+			final BatchDoGSIFTEngine batch = new BatchDoGSIFTEngine(new DoGSIFTEngineOptions<FImage>(), pool);
+
+			final Future<List<LocalFeatureList<Keypoint>>> future = pool
+					.submit(new Callable<List<LocalFeatureList<Keypoint>>>() {
+						@Override
+						public List<LocalFeatureList<Keypoint>> call() {
+							final List<LocalFeatureList<Keypoint>> results = new ArrayList<LocalFeatureList<Keypoint>>();
+							final Iterator<LocalFeatureList<Keypoint>> iter = batch.findFeatures(Arrays.asList(im1,
+									im2, im1));
+
+							while (iter.hasNext())
+								results.add(iter.next());
+
+							return results;
+						}
+					});
+
+			final List<LocalFeatureList<Keypoint>> results = future.get(5, TimeUnit.MINUTES);
+			assertEquals(3, results.size());
+			assertSameFeatures(expected1, results.get(0));
+			assertSameFeatures(expected2, results.get(1));
+			assertSameFeatures(expected1, results.get(2));
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.keypoints;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.feature.local.list.MemoryLocalFeatureList;
+import org.openimaj.io.IOUtils;
+
+/**
+ * Tests for {@link PackedKeypointList}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PackedKeypointListTest {
+	private MemoryLocalFeatureList<Keypoint> keypoints;
+
+	/**
+	 * Create some random keypoints
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+		keypoints = new MemoryLocalFeatureList<Keypoint>();
+
+		for (int i = 0; i < 100; i++) {
+			final byte[] vec = new byte[128];
+			rng.nextBytes(vec);
+			keypoints.add(new Keypoint(rng.nextFloat() * 100, rng.nextFloat() * 100, rng.nextFloat(),
+					rng.nextFloat() * 10, vec));
+		}
+	}
+
+	private static void assertSameKeypoints(LocalFeatureList<Keypoint> expected, LocalFeatureList<Keypoint> actual) {
+		assertEquals(expected.vecLength(), actual.vecLength());
+		assertSameKeypoints((List<Keypoint>) expected, (List<Keypoint>) actual);
+	}
+
+	private static void assertSameKeypoints(List<Keypoint> expected, List<Keypoint> actual) {
+		assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++) {
+			final Keypoint e = expected.get(i);
+			final Keypoint a = actual.get(i);
+
+			assertEquals(e.x, a.x, 0);
+			assertEquals(e.y, a.y, 0);
+			assertEquals(e.scale, a.scale, 0);
+			assertEquals(e.ori, a.ori, 0);
+			assertArrayEquals(e.ivec, a.ivec);
+		}
+	}
+
+	/**
+	 * Test that the packed list holds the same data as the original
+	 */
+	@Test
+	public void testPacking() {
+		final PackedKeypointList packed = new PackedKeypointList(keypoints);
+		assertSameKeypoints(keypoints, packed);
+
+		final Keypoint k = new Keypoint(128);
+		packed.get(10, k);
+		assertArrayEquals(keypoints.get(10).ivec, k.ivec);
+		assertEquals(keypoints.get(10).x, packed.getX(10), 0);
+
+		final byte[] data = packed.getDescriptorData();
+		assertEquals(keypoints.get(10).ivec[5], data[packed.getDescriptorOffset(10) + 5]);
+
+		packed.remove(0);
+		keypoints.remove(0);
+		packed.add(5, keypoints.get(50));
+		keypoints.add(5, keypoints.get(50));
+		assertSameKeypoints(keypoints, packed);
+	}
+
+	/**
+	 * Test that the binary format is identical to
+	 * {@link MemoryLocalFeatureList}'s
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testBinaryIO() throws IOException {
+		final PackedKeypointList packed = new PackedKeypointList(keypoints);
+
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		IOUtils.writeBinary(expected, keypoints);
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		IOUtils.writeBinary(actual, packed);
+		assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+		assertSameKeypoints(keypoints, PackedKeypointList.read(new ByteArrayInputStream(actual.toByteArray())));
+	}
+
+	/**
+	 * Test reading the ASCII format
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testASCIIIO() throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		IOUtils.writeASCII(baos, keypoints);
+
+		final PackedKeypointList packed = PackedKeypointList.read(new ByteArrayInputStream(baos.toByteArray()));
+		final MemoryLocalFeatureList<Keypoint> memory = MemoryLocalFeatureList.read(
+				new ByteArrayInputStream(baos.toByteArray()), Keypoint.class);
+
+		assertSameKeypoints(memory, packed);
+	}
+
+	/**
+	 * Test that a sub-list is a view that writes through to the list, and
+	 * that changes made through nested views are seen by all of them
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testSubList() throws IOException {
+		final List<Keypoint> expected = new ArrayList<Keypoint>(keypoints);
+		final PackedKeypointList packed = new PackedKeypointList(keypoints);
+
+		final List<Keypoint> expectedSub = expected.subList(10, 40);
+		final LocalFeatureList<Keypoint> sub = packed.subList(10, 40);
+		assertSameKeypoints(expectedSub, sub);
+
+		expectedSub.set(3, keypoints.get(90));
+		sub.set(3, keypoints.get(90));
+		assertSameKeypoints(expected, packed);
+
+		final List<Keypoint> expectedNested = expectedSub.subList(5, 15);
+		final LocalFeatureList<Keypoint> nested = sub.subList(5, 15);
+		expectedNested.remove(2);
+		nested.remove(2);
+		expectedNested.add(4, keypoints.get(0));
+		nested.add(4, keypoints.get(0));
+		expectedNested.subList(0, 3).clear();
+		nested.subList(0, 3).clear();
+		assertSameKeypoints(expectedNested, nested);
+		assertSameKeypoints(expectedSub, sub);
+		assertSameKeypoints(expected, packed);
+
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		IOUtils.writeBinary(actual, sub);
+		assertSameKeypoints(new PackedKeypointList(expectedSub),
+				PackedKeypointList.read(new ByteArrayInputStream(actual.toByteArray())));
+		assertArrayEquals(expectedSub.get(7).ivec, sub.asDataArray(new byte[0][])[7]);
+	}
+
+	/**
+	 * Test that a sub-list can't be used after the list has been structurally
+	 * modified
+	 */
+	@Test(expected = ConcurrentModificationException.class)
+	public void testSubListInvalidated() {
+		final PackedKeypointList packed = new PackedKeypointList(keypoints);
+		final LocalFeatureList<Keypoint> sub = packed.subList(10, 40);
+
+		packed.remove(0);
+		sub.get(0);
+	}
+
+	/**
+	 * Test that an out of range index on a list without a known vector length
+	 * gives an {@link IndexOutOfBoundsException}
+	 */
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetEmpty() {
+		new PackedKeypointList().get(0);
+	}
+}
@@ -52,6 +52,8 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 	 */
 	public FImage tiltSum;
 
+	private boolean inPlace;
+
 	/**
 	 * Construct an empty SAT.
 	 */
@@ -87,15 +89,29 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 			computeRotSqSumIntegralImages(image);
 		} else {
 			computeSqSumIntegralImages(image);
+			tiltSum = null;
 		}
 	}
 
+	/**
+	 * Get an image of the given size for one of the tables. When analysing in
+	 * place, the existing image is returned if it already has the correct
+	 * dimensions; this is safe because every cell that is read is either
+	 * overwritten or belongs to the zero border, which is never written.
+	 */
+	private FImage buffer(FImage img, int width, int height) {
+		if (inPlace && img != null && img.width == width && img.height == height)
+			return img;
+
+		return new FImage(width, height);
+	}
+
 	protected void computeSqSumIntegralImages(FImage img) {
 		final int width = img.width;
 		final int height = img.height;
 
-		sum = new FImage(width + 1, height + 1);
-		sqSum = new FImage(width + 1, height + 1);
+		sum = buffer(sum, width + 1, height + 1);
+		sqSum = buffer(sqSum, width + 1, height + 1);
 
 		final float[][] sumData = sum.pixels;
 		final float[][] sqSumData = sqSum.pixels;
@@ -121,9 +137,9 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 		final int width = image.width;
 		final int height = image.height;
 
-		sum = new FImage(width + 1, height + 1);
-		sqSum = new FImage(width + 1, height + 1);
-		tiltSum = new FImage(width + 2, height + 2);
+		sum = buffer(sum, width + 1, height + 1);
+		sqSum = buffer(sqSum, width + 1, height + 1);
+		tiltSum = buffer(tiltSum, width + 2, height + 2);
 
 		final float[] buffer = new float[width];
 
@@ -266,4 +282,39 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 	public void analyseImage(FImage image) {
 		computeTable(image, true);
 	}
+
+	/**
+	 * Compute new SATs for the given image, optionally including the tilted
+	 * sum.
+	 * 
+	 * @param image
+	 *            the image.
+	 * @param computeTilted
+	 *            if true compute the tilted features.
+	 */
+	public void analyseImage(FImage image, boolean computeTilted) {
+		computeTable(image, computeTilted);
+	}
+
+	/**
+	 * Recompute the SATs for the given image, optionally including the tilted
+	 * sum. If the image has the same dimensions as the previously analysed
+	 * image then the existing {@link #sum}, {@link #sqSum} and {@link #tiltSum}
+	 * images are overwritten rather than reallocated, so a single instance can
+	 * be applied to successive frames of a video without allocation. Any
+	 * references to the previous tables will see the new values.
+	 * 
+	 * @param image
+	 *            the image.
+	 * @param computeTilted
+	 *            if true compute the tilted features.
+	 */
+	public void analyseImageInPlace(FImage image, boolean computeTilted) {
+		inPlace = true;
+		try {
+			computeTable(image, computeTilted);
+		} finally {
+			inPlace = false;
+		}
+	}
 }
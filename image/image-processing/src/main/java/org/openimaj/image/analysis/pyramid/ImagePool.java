@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.analysis.pyramid;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openimaj.image.Image;
+
+/**
+ * A pool of images that can be recycled between the levels and octaves of
+ * pyramids built from a sequence of images. Building a pyramid allocates an
+ * image for every level of every octave; if the images being processed are
+ * mostly the same size then a pool allows these allocations to be avoided
+ * after the first image.
+ * <p>
+ * Images are pooled by size. The pool retains a bounded number of free images
+ * of each size, and a bounded total number of free pixels across all sizes;
+ * when the total is exceeded, images of the least recently used sizes are
+ * discarded first, so a pool fed with images of many different sizes does not
+ * grow without limit.
+ * <p>
+ * The contents of an acquired image are undefined. Once an image has been
+ * released it might be handed out again at any time, so callers must not
+ * retain references to released images; in particular, anything that caches
+ * data keyed on the identity of an image must be reset between pyramids. The
+ * pool is thread-safe.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <IMAGE>
+ *            Type of image
+ */
+public class ImagePool<IMAGE extends Image<?, IMAGE>> {
+	/**
+	 * The default maximum number of free pixels retained by a pool (32
+	 * megapixels; 128MB for {@link org.openimaj.image.FImage}s).
+	 */
+	public static final long DEFAULT_MAX_PIXELS = 32L * 1024 * 1024;
+
+	// access ordered, so the first entry is the least recently used size
+	private final LinkedHashMap<Long, ArrayDeque<IMAGE>> free = new LinkedHashMap<Long, ArrayDeque<IMAGE>>(16,
+			0.75f, true);
+	private final int maxPerSize;
+	private final long maxPixels;
+	private long pixels;
+
+	/**
+	 * Construct a pool that retains at most 16 free images of each size, and
+	 * at most {@link #DEFAULT_MAX_PIXELS} free pixels in total.
+	 */
+	public ImagePool() {
+		this(16);
+	}
+
+	/**
+	 * Construct a pool that retains at most the given number of free images
+	 * of each size, and at most {@link #DEFAULT_MAX_PIXELS} free pixels in
+	 * total. Images released when the limit has been reached are left for the
+	 * garbage collector.
+	 * 
+	 * @param maxPerSize
+	 *            the maximum number of free images of each size.
+	 */
+	public ImagePool(int maxPerSize) {
+		this(maxPerSize, DEFAULT_MAX_PIXELS);
+	}
+
+	/**
+	 * Construct a pool that retains at most the given number of free images
+	 * of each size, and at most the given number of free pixels in total.
+	 * Images released when the per-size limit has been reached are left for
+	 * the garbage collector; if the total limit is exceeded, free images of the
+	 * least recently used sizes are discarded.
+	 * 
+	 * @param maxPerSize
+	 *            the maximum number of free images of each size.
+	 * @param maxPixels
+	 *            the maximum total number of pixels in all the free images.
+	 */
+	public ImagePool(int maxPerSize, long maxPixels) {
+		this.maxPerSize = maxPerSize;
+		this.maxPixels = maxPixels;
+	}
+
+	private static long key(int width, int height) {
+		return ((long) width << 32) | (height & 0xffffffffL);
+	}
+
+	/**
+	 * Get an image of the given size from the pool. If there are no free
+	 * images of the requested size a new one is created using
+	 * {@link Image#newInstance(int, int)} on the template.
+	 * 
+	 * @param template
+	 *            the image used to create new instances
+	 * @param width
+	 *            the required width
+	 * @param height
+	 *            the required height
+	 * @return an image of the given size with undefined contents
+	 */
+	public IMAGE acquire(IMAGE template, int width, int height) {
+		synchronized (free) {
+			final long key = key(width, height);
+			final ArrayDeque<IMAGE> images = free.get(key);
+
+			if (images != null && !images.isEmpty()) {
+				final IMAGE image = images.pop();
+				pixels -= (long) width * height;
+
+				if (images.isEmpty())
+					free.remove(key);
+
+				return image;
+			}
+		}
+		return template.newInstance(width, height);
+	}
+
+	/**
+	 * Get an image from the pool and copy the contents of the given image into
+	 * it.
+	 * 
+	 * @param image
+	 *            the image to copy
+	 * @return a copy of the image
+	 */
+	public IMAGE acquireCopy(IMAGE image) {
+		return acquire(image, image.getWidth(), image.getHeight()).internalCopy(image);
+	}
+
+	/**
+	 * Return an image to the pool.
+	 * 
+	 * @param image
+	 *            the image; it must not be used by the caller after this call
+	 */
+	public void release(IMAGE image) {
+		if (image == null)
+			return;
+
+		final long size = (long) image.getWidth() * image.getHeight();
+		if (size > maxPixels)
+			return;
+
+		final long key = key(image.getWidth(), image.getHeight());
+		synchronized (free) {
+			ArrayDeque<IMAGE> images = free.get(key);
+			if (images == null) {
+				if (maxPerSize < 1)
+					return;
+
+				free.put(key, images = new ArrayDeque<IMAGE>());
+			} else if (images.size() >= maxPerSize) {
+				return;
+			}
+
+			images.push(image);
+			pixels += size;
+
+			evict();
+		}
+	}
+
+	/**
+	 * Discard free images of the least recently used sizes until the total
+	 * number of free pixels is within the limit. Must be called with the lock
+	 * held.
+	 */
+	private void evict() {
+		final Iterator<Map.Entry<Long, ArrayDeque<IMAGE>>> iter = free.entrySet().iterator();
+
+		while (pixels > maxPixels && iter.hasNext()) {
+			final Map.Entry<Long, ArrayDeque<IMAGE>> entry = iter.next();
+			final ArrayDeque<IMAGE> images = entry.getValue();
+
+			while (pixels > maxPixels && !images.isEmpty()) {
+				final IMAGE image = images.pop();
+				pixels -= (long) image.getWidth() * image.getHeight();
+			}
+
+			if (images.isEmpty())
+				iter.remove();
+		}
+	}
+
+	/**
+	 * Return all the images in the given array to the pool.
+	 * 
+	 * @param images
+	 *            the images; they must not be used by the caller after this
+	 *            call
+	 */
+	public void release(IMAGE[] images) {
+		if (images == null)
+			return;
+
+		for (final IMAGE image : images)
+			release(image);
+	}
+
+	/**
+	 * Get the total number of pixels in the free images held by the pool.
+	 * 
+	 * @return the number of free pixels
+	 */
+	public long freePixels() {
+		synchronized (free) {
+			return pixels;
+		}
+	}
+
+	/**
+	 * Remove all free images from the pool.
+	 */
+	public void clear() {
+		synchronized (free) {
+			free.clear();
+			pixels = 0;
+		}
+	}
+}
@@ -95,7 +95,10 @@ public class GaussianOctave<IMAGE extends Image<?, IMAGE> & SinglebandImageProce
 		float prevSigma = options.initialSigma;
 
 		for (int i = 1; i < options.scales + options.extraScaleSteps + 1; i++) {
-			images[i] = images[i - 1].clone();
+			if (options.imagePool != null)
+				images[i] = options.imagePool.acquireCopy(images[i - 1]);
+			else
+				images[i] = images[i - 1].clone();
 
 			// compute the amount to increase from prevSigma to prevSigma*k
 			final float increase = prevSigma * (float) Math.sqrt(k * k - 1.0);
@@ -32,6 +32,7 @@ package org.openimaj.image.analysis.pyramid.gaussian;
 import org.openimaj.image.FImage;
 import org.openimaj.image.Image;
 import org.openimaj.image.analyser.ImageAnalyser;
+import org.openimaj.image.analysis.pyramid.ImagePool;
 import org.openimaj.image.analysis.pyramid.Pyramid;
 import org.openimaj.image.processing.resize.ResizeProcessor;
 import org.openimaj.image.processor.SinglebandImageProcessor;
@@ -50,6 +51,11 @@ import org.openimaj.image.processor.SinglebandImageProcessor;
  * Pyramids are Iterable for easy access to the octaves; however this will only
  * work if the pyramid has already been populated with the octaves retained.
  * 
+ * If the octaves are not retained and an {@link ImagePool} is set in the
+ * options, the images of each octave are returned to the pool after the
+ * octave has been processed, and can be reused by subsequent octaves or
+ * pyramids.
+ * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
  * @param <I>
@@ -94,7 +100,9 @@ public class GaussianPyramid<I extends Image<?, I> & SinglebandImageProcessor.Pr
 		if (options.doubleInitialImage) {
 			image = ResizeProcessor.doubleSize(img);
 			octaveSize *= 0.5;
-		} else
+		} else if (options.imagePool != null)
+			image = options.imagePool.acquireCopy(img);
+		else
 			image = img.clone();
 
 		// Lowe's IJCV paper (P.10) suggests that if you double the size of the
@@ -132,9 +140,12 @@ public class GaussianPyramid<I extends Image<?, I> & SinglebandImageProcessor.Pr
 			octaveSize *= 2.0; // the size of the octave increases by a factor
 								// of two each iteration
 
-			// if the octaves array is not null we want to retain each octave.
+			// if the octaves array is not null we want to retain each octave;
+			// otherwise the octave's images can be recycled
 			if (octaves != null)
 				octaves.add(currentOctave);
+			else if (options.imagePool != null)
+				options.imagePool.release(currentOctave.images);
 		}
 
 		// if a PyramidProcessor was specified in the options it should
@@ -31,9 +31,12 @@ package org.openimaj.image.analysis.pyramid.gaussian;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.Image;
+import org.openimaj.image.analysis.pyramid.ImagePool;
 import org.openimaj.image.analysis.pyramid.PyramidOptions;
 import org.openimaj.image.processing.convolution.FGaussianConvolve;
+import org.openimaj.image.processing.convolution.FImageConvolveSeparable;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.util.parallel.ParallelBackend;
 
 /**
  * Options for constructing a Gaussian pyramid in the style of Lowe's SIFT
@@ -77,6 +80,20 @@ public class GaussianPyramidOptions<IMAGE extends Image<?, IMAGE> & SinglebandIm
 	 */
 	protected int scales = 3;
 
+	/**
+	 * Pool from which the images of each octave are allocated, and to which
+	 * they are returned once the octave has been processed (if the octaves are
+	 * not being kept). If null, new images are always allocated.
+	 */
+	protected ImagePool<IMAGE> imagePool;
+
+	/**
+	 * Backend used to perform the blurring and difference-of-Gaussian
+	 * computations in parallel. If null, all the work is performed by the
+	 * calling thread.
+	 */
+	protected ParallelBackend backend;
+
 	/**
 	 * Default constructor.
 	 */
@@ -86,7 +103,10 @@ public class GaussianPyramidOptions<IMAGE extends Image<?, IMAGE> & SinglebandIm
 
 	/**
 	 * Construct the pyramid options by copying the non-processor options from
-	 * the given options object.
+	 * the given options object. The {@link ImagePool} is not copied, as the
+	 * options being copied might be for a different type of image; if the
+	 * pool should be shared it must be set on the copy with
+	 * {@link #setImagePool(ImagePool)}.
 	 * 
 	 * @param options
 	 *            options to copy from
@@ -98,6 +118,7 @@ public class GaussianPyramidOptions<IMAGE extends Image<?, IMAGE> & SinglebandIm
 		this.initialSigma = options.initialSigma;
 		this.keepOctaves = options.keepOctaves;
 		this.scales = options.scales;
+		this.backend = options.backend;
 	}
 
 	/**
@@ -210,6 +231,54 @@ public class GaussianPyramidOptions<IMAGE extends Image<?, IMAGE> & SinglebandIm
 		this.scales = scales;
 	}
 
+	/**
+	 * Get the pool from which the images of each octave are allocated.
+	 * 
+	 * @return the image pool; may be null
+	 */
+	public ImagePool<IMAGE> getImagePool() {
+		return imagePool;
+	}
+
+	/**
+	 * Set the pool from which the images of each octave are allocated. When a
+	 * pool is set and the octaves are not being kept, the images of each
+	 * octave are returned to the pool once the octave has been processed by
+	 * the octave processor, so processors must not hold onto them. Sharing a
+	 * pool between pyramids built from a sequence of similarly sized images
+	 * avoids re-allocating the images for every pyramid.
+	 * 
+	 * @param imagePool
+	 *            the image pool; may be null
+	 */
+	public void setImagePool(ImagePool<IMAGE> imagePool) {
+		this.imagePool = imagePool;
+	}
+
+	/**
+	 * Get the backend used to perform the blurring and difference-of-Gaussian
+	 * computations in parallel.
+	 * 
+	 * @return the backend; may be null
+	 */
+	public ParallelBackend getBackend() {
+		return backend;
+	}
+
+	/**
+	 * Set the backend used to perform the blurring and difference-of-Gaussian
+	 * computations in parallel. If the pyramid is itself being built within a
+	 * parallel loop the backend must support nesting.
+	 * 
+	 * @see FImageConvolveSeparable
+	 * 
+	 * @param backend
+	 *            the backend; null means process with the calling thread
+	 */
+	public void setBackend(ParallelBackend backend) {
+		this.backend = backend;
+	}
+
 	/**
 	 * Create a {@link SinglebandImageProcessor} that performs a Gaussian
 	 * blurring with a standard deviation given by sigma. This method is used by
@@ -222,6 +291,6 @@ public class GaussianPyramidOptions<IMAGE extends Image<?, IMAGE> & SinglebandIm
 	 * @return the image processor to apply the blur
 	 */
 	public SinglebandImageProcessor<Float, FImage> createGaussianBlur(float sigma) {
-		return new FGaussianConvolve(sigma);
+		return new FGaussianConvolve(sigma, backend);
 	}
 }
@@ -30,7 +30,9 @@
 package org.openimaj.image.processing.convolution;
 
 import org.openimaj.image.FImage;
+import org.openimaj.image.FlatFImage;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.util.parallel.ParallelBackend;
 
 /**
  * Image processor for FImage capable of performing convolutions with Gaussians.
@@ -45,6 +47,7 @@ public class FGaussianConvolve implements SinglebandImageProcessor<Float, FImage
 	public static final float DEFAULT_GAUSS_TRUNCATE = 4.0f;
 
 	protected float[] kernel;
+	protected ParallelBackend backend;
 
 	/**
 	 * Construct an {@link FGaussianConvolve} with a Gaussian of standard
@@ -69,6 +72,24 @@ public class FGaussianConvolve implements SinglebandImageProcessor<Float, FImage
 		kernel = makeKernel(sigma, truncate);
 	}
 
+	/**
+	 * Construct an {@link FGaussianConvolve} with a Gaussian of standard
+	 * deviation sigma that uses the given backend to perform the convolution
+	 * in parallel.
+	 * 
+	 * @see FImageConvolveSeparable
+	 * 
+	 * @param sigma
+	 *            Gaussian kernel standard deviation
+	 * @param backend
+	 *            the parallel backend; if null the convolution will be
+	 *            performed by the calling thread
+	 */
+	public FGaussianConvolve(float sigma, ParallelBackend backend) {
+		this(sigma, DEFAULT_GAUSS_TRUNCATE);
+		this.backend = backend;
+	}
+
 	/**
 	 * Construct a zero-mean Gaussian with the specified standard deviation.
 	 * 
@@ -126,7 +147,19 @@ public class FGaussianConvolve implements SinglebandImageProcessor<Float, FImage
 	 */
 	@Override
 	public void processImage(FImage image) {
-		FImageConvolveSeparable.convolveHorizontal(image, kernel);
-		FImageConvolveSeparable.convolveVertical(image, kernel);
+		FImageConvolveSeparable.convolveHorizontal(image, kernel, backend);
+		FImageConvolveSeparable.convolveVertical(image, kernel, backend);
+	}
+
+	/**
+	 * Blur an image with flat storage. The result is identical to
+	 * {@link #processImage(FImage)}.
+	 * 
+	 * @param image
+	 *            the image to blur in place
+	 */
+	public void processImage(FlatFImage image) {
+		FImageConvolveSeparable.convolveHorizontal(image, kernel, backend);
+		FImageConvolveSeparable.convolveVertical(image, kernel, backend);
 	}
 }
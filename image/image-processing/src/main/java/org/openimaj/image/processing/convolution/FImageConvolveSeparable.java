@@ -30,17 +30,58 @@
 package org.openimaj.image.processing.convolution;
 
 import org.openimaj.image.FImage;
+import org.openimaj.image.FlatFImage;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+import org.openimaj.util.parallel.ParallelBackend;
 
 /**
  * Image processor for separable convolution of an FImage. Capable of doing
  * convolution in either the vertical, horizontal or both directions.
+ * <p>
+ * The vertical pass works on strips of columns at a time, reading and writing
+ * whole row segments so that memory is accessed sequentially. If a
+ * {@link ParallelBackend} is provided then the rows (horizontal pass) and
+ * strips (vertical pass) are processed in parallel. Parallel processing is
+ * opt-in because convolutions are frequently performed inside loops that are
+ * already parallel; only use a backend that supports nested loops (such as a
+ * {@link org.openimaj.util.parallel.ForkJoinBackend}) in that situation.
+ * Working buffers of up to 256KB are cached per-thread and reused between
+ * calls; larger buffers are allocated for each call.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
 public class FImageConvolveSeparable implements SinglebandImageProcessor<Float, FImage> {
+	/**
+	 * The maximum number of columns processed together by the vertical pass
+	 */
+	private static final int STRIP_WIDTH = 256;
+
+	/**
+	 * The minimum number of columns processed together by the vertical pass
+	 * when working in parallel
+	 */
+	private static final int MIN_STRIP_WIDTH = 32;
+
+	/**
+	 * Images with fewer pixels than this are always processed by the calling
+	 * thread
+	 */
+	private static final int MIN_PARALLEL_PIXELS = 1 << 16;
+
+	/**
+	 * The largest working buffer (in floats) that is kept for re-use by each
+	 * thread; larger buffers are allocated for each call and then discarded
+	 */
+	private static final int MAX_SCRATCH_SIZE = 1 << 16;
+
+	private static final ThreadLocal<float[]> scratch = new ThreadLocal<float[]>();
+
 	float[] hkernel;
 	float[] vkernel;
+	ParallelBackend backend;
 
 	/**
 	 * Specify the horizontal kernel and vertical kernel separately.
@@ -66,6 +107,24 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 		this.vkernel = kernel;
 	}
 
+	/**
+	 * Specify the horizontal kernel and vertical kernel separately, and the
+	 * backend used to perform the convolution in parallel.
+	 * 
+	 * @param hkernel
+	 *            horizontal kernel
+	 * @param vkernel
+	 *            vertical kernel
+	 * @param backend
+	 *            the parallel backend; if null the convolution will be
+	 *            performed by the calling thread
+	 */
+	public FImageConvolveSeparable(float[] hkernel, float[] vkernel, ParallelBackend backend) {
+		this.hkernel = hkernel;
+		this.vkernel = vkernel;
+		this.backend = backend;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -76,9 +135,23 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 	@Override
 	public void processImage(FImage image) {
 		if (hkernel != null)
-			convolveHorizontal(image, hkernel);
+			convolveHorizontal(image, hkernel, backend);
 		if (vkernel != null)
-			convolveVertical(image, vkernel);
+			convolveVertical(image, vkernel, backend);
+	}
+
+	/**
+	 * Apply the convolution to an image with flat storage. The result is
+	 * identical to {@link #processImage(FImage)}.
+	 * 
+	 * @param image
+	 *            the image to convolve in place.
+	 */
+	public void processImage(FlatFImage image) {
+		if (hkernel != null)
+			convolveHorizontal(image, hkernel, backend);
+		if (vkernel != null)
+			convolveVertical(image, vkernel, backend);
 	}
 
 	/*
@@ -110,37 +183,109 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 	 *            the convolution kernel.
 	 */
 	public static void convolveHorizontal(FImage image, float[] kernel) {
-		final int halfsize = kernel.length / 2;
+		convolveHorizontal(image, kernel, null);
+	}
 
-		final float buffer[] = new float[image.width + kernel.length];
+	/**
+	 * Convolve the image in the horizontal direction with the kernel, using the
+	 * given backend to process blocks of rows in parallel. Edge effects are
+	 * handled by duplicating the edge pixels.
+	 * 
+	 * @param image
+	 *            the image to convolve.
+	 * @param kernel
+	 *            the convolution kernel.
+	 * @param backend
+	 *            the parallel backend; if null the convolution will be
+	 *            performed by the calling thread
+	 */
+	public static void convolveHorizontal(final FImage image, final float[] kernel, ParallelBackend backend) {
+		if (backend == null || image.width * image.height < MIN_PARALLEL_PIXELS) {
+			convolveRows(image.pixels, null, 0, 0, image.width, kernel, 0, image.height);
+			return;
+		}
 
-		for (int r = 0; r < image.height; r++) {
-			for (int i = 0; i < halfsize; i++)
-				buffer[i] = image.pixels[r][0];
-			for (int i = 0; i < image.width; i++)
-				buffer[halfsize + i] = image.pixels[r][i];
-			for (int i = 0; i < halfsize; i++)
-				buffer[halfsize + image.width + i] = image.pixels[r][image.width - 1];
+		Parallel.forRange(0, image.height, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				convolveRows(image.pixels, null, 0, 0, image.width, kernel, range.start, range.stop);
+			}
+		}, backend);
+	}
 
-			// convolveBuffer(buffer, kernel);
-			final int l = buffer.length - kernel.length;
-			for (int i = 0; i < l; i++) {
-				float sum = 0.0f;
+	/**
+	 * Convolve the image in the vertical direction with the kernel. Edge
+	 * effects are handled by duplicating the edge pixels.
+	 * 
+	 * @param image
+	 *            the image to convolve.
+	 * @param kernel
+	 *            the convolution kernel.
+	 */
+	public static void convolveVertical(FImage image, float[] kernel) {
+		convolveVertical(image, kernel, null);
+	}
 
-				for (int j = 0, jj = kernel.length - 1; j < kernel.length; j++, jj--)
-					sum += buffer[i + j] * kernel[jj];
+	/**
+	 * Convolve the image in the vertical direction with the kernel, using the
+	 * given backend to process strips of columns in parallel. Edge effects are
+	 * handled by duplicating the edge pixels.
+	 * 
+	 * @param image
+	 *            the image to convolve.
+	 * @param kernel
+	 *            the convolution kernel.
+	 * @param backend
+	 *            the parallel backend; if null the convolution will be
+	 *            performed by the calling thread
+	 */
+	public static void convolveVertical(final FImage image, final float[] kernel, ParallelBackend backend) {
+		convolveStrips(image.pixels, null, 0, 0, image.width, image.height, kernel, backend);
+	}
 
-				buffer[i] = sum;
-			}
-			// end convolveBuffer(buffer, kernel);
+	/**
+	 * Convolve the flat image in the horizontal direction with the kernel. Edge
+	 * effects are handled by duplicating the edge pixels.
+	 * 
+	 * @param image
+	 *            the image to convolve.
+	 * @param kernel
+	 *            the convolution kernel.
+	 */
+	public static void convolveHorizontal(FlatFImage image, float[] kernel) {
+		convolveHorizontal(image, kernel, null);
+	}
 
-			for (int c = 0; c < image.width; c++)
-				image.pixels[r][c] = buffer[c];
+	/**
+	 * Convolve the flat image in the horizontal direction with the kernel,
+	 * using the given backend to process blocks of rows in parallel. Edge
+	 * effects are handled by duplicating the edge pixels.
+	 * 
+	 * @param image
+	 *            the image to convolve.
+	 * @param kernel
+	 *            the convolution kernel.
+	 * @param backend
+	 *            the parallel backend; if null the convolution will be
+	 *            performed by the calling thread
+	 */
+	public static void convolveHorizontal(final FlatFImage image, final float[] kernel, ParallelBackend backend) {
+		if (backend == null || image.width * image.height < MIN_PARALLEL_PIXELS) {
+			convolveRows(null, image.data, image.offset, image.stride, image.width, kernel, 0, image.height);
+			return;
 		}
+
+		Parallel.forRange(0, image.height, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				convolveRows(null, image.data, image.offset, image.stride, image.width, kernel, range.start,
+						range.stop);
+			}
+		}, backend);
 	}
 
 	/**
-	 * Convolve the image in the vertical direction with the kernel. Edge
+	 * Convolve the flat image in the vertical direction with the kernel. Edge
 	 * effects are handled by duplicating the edge pixels.
 	 * 
 	 * @param image
@@ -148,33 +293,153 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 	 * @param kernel
 	 *            the convolution kernel.
 	 */
-	public static void convolveVertical(FImage image, float[] kernel) {
+	public static void convolveVertical(FlatFImage image, float[] kernel) {
+		convolveVertical(image, kernel, null);
+	}
+
+	/**
+	 * Convolve the flat image in the vertical direction with the kernel, using
+	 * the given backend to process strips of columns in parallel. Edge effects
+	 * are handled by duplicating the edge pixels.
+	 * 
+	 * @param image
+	 *            the image to convolve.
+	 * @param kernel
+	 *            the convolution kernel.
+	 * @param backend
+	 *            the parallel backend; if null the convolution will be
+	 *            performed by the calling thread
+	 */
+	public static void convolveVertical(FlatFImage image, float[] kernel, ParallelBackend backend) {
+		convolveStrips(null, image.data, image.offset, image.stride, image.width, image.height, kernel, backend);
+	}
+
+	/*
+	 * Get a working buffer of at least the given size for the current thread.
+	 * Only buffers of up to MAX_SCRATCH_SIZE are cached, so the memory held by
+	 * each thread is bounded however large the images and kernels are.
+	 */
+	private static float[] getScratch(int size) {
+		if (size > MAX_SCRATCH_SIZE)
+			return new float[size];
+
+		float[] buffer = scratch.get();
+		if (buffer == null || buffer.length < size) {
+			buffer = new float[size];
+			scratch.set(buffer);
+		}
+		return buffer;
+	}
+
+	/*
+	 * The pixel storage used by the row and column passes is described by
+	 * (rows, data, base, stride): row r of the image starts at index
+	 * base + r * stride of rows[r], or of data if rows is null. An FImage is
+	 * (pixels, null, 0, 0) and a FlatFImage is (null, data, offset, stride).
+	 */
+
+	/*
+	 * Horizontally convolve the rows [r0, r1) of the image in place.
+	 */
+	private static void convolveRows(float[][] rows, float[] data, int base, int stride, int width,
+			float[] kernel, int r0, int r1)
+	{
 		final int halfsize = kernel.length / 2;
 
-		final float buffer[] = new float[image.height + kernel.length];
+		final float buffer[] = getScratch(width + kernel.length);
+
+		for (int r = r0; r < r1; r++) {
+			final float[] row = rows == null ? data : rows[r];
+			final int off = base + r * stride;
 
-		for (int c = 0; c < image.width; c++) {
 			for (int i = 0; i < halfsize; i++)
-				buffer[i] = image.pixels[0][c];
-			for (int i = 0; i < image.height; i++)
-				buffer[halfsize + i] = image.pixels[i][c];
+				buffer[i] = row[off];
+			System.arraycopy(row, off, buffer, halfsize, width);
 			for (int i = 0; i < halfsize; i++)
-				buffer[halfsize + image.height + i] = image.pixels[image.height - 1][c];
+				buffer[halfsize + width + i] = row[off + width - 1];
 
-			// convolveBuffer(buffer, kernel);
-			final int l = buffer.length - kernel.length;
-			for (int i = 0; i < l; i++) {
+			for (int c = 0; c < width; c++) {
 				float sum = 0.0f;
 
 				for (int j = 0, jj = kernel.length - 1; j < kernel.length; j++, jj--)
-					sum += buffer[i + j] * kernel[jj];
+					sum += buffer[c + j] * kernel[jj];
+
+				row[off + c] = sum;
+			}
+		}
+	}
+
+	/*
+	 * Vertically convolve the image in place, a strip of columns at a time.
+	 */
+	private static void convolveStrips(final float[][] rows, final float[] data, final int base, final int stride,
+			final int width, final int height, final float[] kernel, ParallelBackend backend)
+	{
+		if (backend == null || width * height < MIN_PARALLEL_PIXELS) {
+			for (int c = 0; c < width; c += STRIP_WIDTH)
+				convolveColumns(rows, data, base, stride, height, kernel, c, Math.min(c + STRIP_WIDTH, width));
+			return;
+		}
+
+		// make sure there are enough strips to keep all the threads busy
+		final int target = (width + 2 * backend.getParallelism() - 1) / (2 * backend.getParallelism());
+		final int stripWidth = Math.max(MIN_STRIP_WIDTH, Math.min(STRIP_WIDTH, target));
+		final int nstrips = (width + stripWidth - 1) / stripWidth;
+
+		Parallel.forRange(0, nstrips, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int s = range.start; s < range.stop; s += range.incr) {
+					final int c = s * stripWidth;
+					convolveColumns(rows, data, base, stride, height, kernel, c, Math.min(c + stripWidth, width));
+				}
+			}
+		}, backend);
+	}
+
+	/*
+	 * Vertically convolve the columns [c0, c1) of the image in place. The output
+	 * rows are accumulated a segment at a time; the source segments that have
+	 * already been overwritten are kept in a ring buffer of halfsize + 1 rows.
+	 */
+	private static void convolveColumns(float[][] rows, float[] data, int base, int stride, int height,
+			float[] kernel, int c0, int c1)
+	{
+		final int halfsize = kernel.length / 2;
+		final int sw = c1 - c0;
+		final int ringRows = halfsize + 1;
+		final int out = ringRows * sw;
+
+		final float[] buffer = getScratch(out + sw);
+
+		for (int r = 0; r < height; r++) {
+			final float[] row = rows == null ? data : rows[r];
+			final int off = base + r * stride + c0;
+
+			System.arraycopy(row, off, buffer, (r % ringRows) * sw, sw);
+
+			for (int c = 0; c < sw; c++)
+				buffer[out + c] = 0;
+
+			for (int j = 0, jj = kernel.length - 1; j < kernel.length; j++, jj--) {
+				final int sr = Math.min(height - 1, Math.max(0, r + j - halfsize));
+				final float k = kernel[jj];
+
+				final float[] src;
+				final int srcOff;
+				if (sr <= r) {
+					src = buffer;
+					srcOff = (sr % ringRows) * sw;
+				} else {
+					src = rows == null ? data : rows[sr];
+					srcOff = base + sr * stride + c0;
+				}
 
-				buffer[i] = sum;
+				for (int c = 0; c < sw; c++)
+					buffer[out + c] += src[srcOff + c] * k;
 			}
-			// end convolveBuffer(buffer, kernel);
 
-			for (int r = 0; r < image.height; r++)
-				image.pixels[r][c] = buffer[r];
+			System.arraycopy(buffer, out, row, off, sw);
 		}
 	}
 
@@ -0,0 +1,537 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.resize;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+import org.openimaj.util.parallel.ParallelBackend;
+
+/**
+ * Resize engine that produces exactly the same output as
+ * {@link ResizeProcessor#zoom(FImage, FImage, ResizeFilterFunction)}, but
+ * works on strips of output rows. For each strip the source rows it depends on
+ * are filtered horizontally into a small buffer, which is then filtered
+ * vertically into the output rows, so the working memory is independent of the
+ * image height. The filter contributions for each pair of source and target
+ * lengths are held in flat arrays and cached between calls, and the strips can
+ * optionally be processed in parallel by a {@link ParallelBackend}.
+ * <p>
+ * A set of differently sized images (i.e. thumbnails) can be created from a
+ * single source image in one call with {@link #resizeMax(FImage, int...)} or
+ * {@link #resizeMax(MBFImage, int...)}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class SeparableResizer {
+	/**
+	 * The contributions of the source pixels to each target pixel along one
+	 * axis. The contributions of target pixel <code>i</code> are at indices
+	 * <code>offsets[i]</code> (inclusive) to <code>offsets[i+1]</code>
+	 * (exclusive) of the <code>pixels</code> and <code>weights</code> arrays.
+	 */
+	static class Contributions {
+		int[] offsets;
+		int[] pixels;
+		double[] weights;
+	}
+
+	private static class Key {
+		boolean vertical;
+		int srcLength;
+		int dstLength;
+		ResizeFilterFunction filter;
+
+		Key(boolean vertical, int srcLength, int dstLength, ResizeFilterFunction filter) {
+			this.vertical = vertical;
+			this.srcLength = srcLength;
+			this.dstLength = dstLength;
+			this.filter = filter;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			final Key k = (Key) obj;
+			return vertical == k.vertical && srcLength == k.srcLength && dstLength == k.dstLength
+					&& filter.equals(k.filter);
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = vertical ? 1 : 0;
+			hash = 31 * hash + srcLength;
+			hash = 31 * hash + dstLength;
+			hash = 31 * hash + filter.hashCode();
+			return hash;
+		}
+	}
+
+	/** The maximum number of contribution tables that are cached */
+	static final int CACHE_SIZE = 64;
+
+	/** The number of output rows produced from each buffer of source rows */
+	static final int STRIP_HEIGHT = 32;
+
+	private static final Map<Key, Contributions> CACHE = Collections
+			.synchronizedMap(new LinkedHashMap<Key, Contributions>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key, Contributions> eldest) {
+					return size() > CACHE_SIZE;
+				}
+			});
+
+	private ResizeFilterFunction filterFunction;
+	private ParallelBackend backend;
+
+	/**
+	 * Construct with the default filter function (see
+	 * {@link ResizeProcessor#DEFAULT_FILTER}). Resizing will be performed in
+	 * the calling thread.
+	 */
+	public SeparableResizer() {
+		this(ResizeProcessor.DEFAULT_FILTER);
+	}
+
+	/**
+	 * Construct with the given filter function. Resizing will be performed in
+	 * the calling thread.
+	 *
+	 * @param filterFunction
+	 *            the filter function
+	 */
+	public SeparableResizer(ResizeFilterFunction filterFunction) {
+		this(filterFunction, null);
+	}
+
+	/**
+	 * Construct with the given filter function and {@link ParallelBackend}.
+	 *
+	 * @param filterFunction
+	 *            the filter function
+	 * @param backend
+	 *            the backend used to process strips of rows in parallel; can
+	 *            be <code>null</code>, in which case the resizing will be
+	 *            performed in the calling thread.
+	 */
+	public SeparableResizer(ResizeFilterFunction filterFunction, ParallelBackend backend) {
+		this.filterFunction = filterFunction;
+		this.backend = backend;
+	}
+
+	/**
+	 * Resize an image to the given size. The input image is not modified.
+	 *
+	 * @param in
+	 *            the image to resize
+	 * @param width
+	 *            the width of the resized image
+	 * @param height
+	 *            the height of the resized image
+	 * @return a new image
+	 */
+	public FImage resize(FImage in, int width, int height) {
+		return zoom(in, new FImage(width, height));
+	}
+
+	/**
+	 * Resize an image to fill the given destination image.
+	 *
+	 * @see ResizeProcessor#zoom(FImage, FImage, ResizeFilterFunction)
+	 *
+	 * @param in
+	 *            the source image
+	 * @param dst
+	 *            the destination image
+	 * @return the destination image
+	 */
+	public FImage zoom(FImage in, FImage dst) {
+		return zoom(in, dst, in.max());
+	}
+
+	/**
+	 * Resize each band of an image to the given size. The input image is not
+	 * modified.
+	 *
+	 * @param in
+	 *            the image to resize
+	 * @param width
+	 *            the width of the resized image
+	 * @param height
+	 *            the height of the resized image
+	 * @return a new image
+	 */
+	public MBFImage resize(MBFImage in, int width, int height) {
+		final FImage[] bands = new FImage[in.numBands()];
+
+		for (int b = 0; b < bands.length; b++)
+			bands[b] = resize(in.getBand(b), width, height);
+
+		return new MBFImage(in.colourSpace, bands);
+	}
+
+	/**
+	 * Create a set of resized images from a single image, such that the
+	 * longest side of each output is at most the corresponding given size. The
+	 * output sizes are computed in the same way as
+	 * {@link ResizeProcessor#resizeMax(FImage, int, ResizeFilterFunction)};
+	 * images that are already small enough are copied. The input image is not
+	 * modified.
+	 *
+	 * @param in
+	 *            the image to resize
+	 * @param maxDims
+	 *            the maximum allowable length of the longest side of each
+	 *            output image.
+	 * @return the resized images, in the same order as the sizes
+	 */
+	public FImage[] resizeMax(FImage in, int... maxDims) {
+		final FImage[] out = new FImage[maxDims.length];
+		final float maxValue = in.max();
+
+		for (int i = 0; i < maxDims.length; i++) {
+			final int[] size = maxSize(in.width, in.height, maxDims[i]);
+
+			if (size == null)
+				out[i] = in.clone();
+			else
+				out[i] = zoom(in, new FImage(size[0], size[1]), maxValue);
+		}
+
+		return out;
+	}
+
+	/**
+	 * Create a set of resized images from a single image, such that the
+	 * longest side of each output is at most the corresponding given size. Each
+	 * band is resized independently, as if the image had been processed with a
+	 * {@link ResizeProcessor}.
+	 *
+	 * @see #resizeMax(FImage, int...)
+	 *
+	 * @param in
+	 *            the image to resize
+	 * @param maxDims
+	 *            the maximum allowable length of the longest side of each
+	 *            output image.
+	 * @return the resized images, in the same order as the sizes
+	 */
+	public MBFImage[] resizeMax(MBFImage in, int... maxDims) {
+		final FImage[][] bands = new FImage[maxDims.length][in.numBands()];
+
+		for (int b = 0; b < in.numBands(); b++) {
+			final FImage[] resized = resizeMax(in.getBand(b), maxDims);
+
+			for (int i = 0; i < maxDims.length; i++)
+				bands[i][b] = resized[i];
+		}
+
+		final MBFImage[] out = new MBFImage[maxDims.length];
+		for (int i = 0; i < maxDims.length; i++)
+			out[i] = new MBFImage(in.colourSpace, bands[i]);
+
+		return out;
+	}
+
+	/**
+	 * Compute the size of an image resized with
+	 * {@link ResizeProcessor#resizeMax(FImage, int, ResizeFilterFunction)}, or
+	 * null if the image would be unchanged.
+	 */
+	private static int[] maxSize(int width, int height, int maxDim) {
+		if (width < maxDim && height < maxDim) {
+			return null;
+		} else if (width < height) {
+			final float resizeRatio = ((float) maxDim / (float) height);
+			return new int[] { (int) (width * resizeRatio), maxDim };
+		} else {
+			final float resizeRatio = ((float) maxDim / (float) width);
+			return new int[] { maxDim, (int) (height * resizeRatio) };
+		}
+	}
+
+	private FImage zoom(final FImage in, final FImage dst, final float maxValue) {
+		final Contributions cx = contributions(false, in.width, dst.width, filterFunction);
+		final Contributions cy = contributions(true, in.height, dst.height, filterFunction);
+
+		if (backend == null || backend.getParallelism() <= 1) {
+			zoomRows(in, dst, cx, cy, 0, dst.height, maxValue);
+		} else {
+			Parallel.forRange(0, dst.height, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					zoomRows(in, dst, cx, cy, range.start, range.stop, maxValue);
+				}
+			}, backend);
+		}
+
+		return dst;
+	}
+
+	/**
+	 * Produce the output rows from <code>start</code> (inclusive) to
+	 * <code>stop</code> (exclusive), a strip at a time. Only the source rows
+	 * that contribute to the current strip are filtered horizontally.
+	 */
+	private static void zoomRows(FImage in, FImage dst, Contributions cx, Contributions cy, int start, int stop,
+			float maxValue)
+	{
+		final int[] pixels = cy.pixels;
+
+		for (int s = start; s < stop; s += STRIP_HEIGHT) {
+			final int e = Math.min(stop, s + STRIP_HEIGHT);
+
+			int lo = Integer.MAX_VALUE;
+			int hi = -1;
+			for (int j = cy.offsets[s]; j < cy.offsets[e]; j++) {
+				lo = Math.min(lo, pixels[j]);
+				hi = Math.max(hi, pixels[j]);
+			}
+
+			// the rows are mirrored at the edges, so not every row in
+			// [lo, hi] is necessarily used
+			final float[][] work = new float[hi - lo + 1][];
+			for (int j = cy.offsets[s]; j < cy.offsets[e]; j++) {
+				final int r = pixels[j] - lo;
+
+				if (work[r] == null) {
+					work[r] = new float[dst.width];
+					filterRow(in.pixels[pixels[j]], work[r], cx, maxValue);
+				}
+			}
+
+			for (int y = s; y < e; y++)
+				filterColumns(work, lo, dst.pixels[y], cy, y, maxValue);
+		}
+	}
+
+	/**
+	 * Horizontal pass: filter a source row into a row of the intermediate
+	 * image
+	 */
+	private static void filterRow(float[] src, float[] out, Contributions cx, float maxValue) {
+		final int[] offsets = cx.offsets;
+		final int[] pixels = cx.pixels;
+		final double[] weights = cx.weights;
+
+		for (int x = 0; x < out.length; x++) {
+			final int start = offsets[x];
+			final int stop = offsets[x + 1];
+
+			if (start == stop) {
+				// can happen with filters with very small support
+				out[x] = 0;
+				continue;
+			}
+
+			double weight = 0.0;
+			boolean bPelDelta = false;
+			final double pel = src[pixels[start]];
+			for (int j = start; j < stop; j++) {
+				final double pel2 = src[pixels[j]];
+				if (pel2 != pel) {
+					bPelDelta = true;
+				}
+				weight += pel2 * weights[j];
+			}
+			weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
+
+			if (weight < 0) {
+				weight = 0;
+			}
+			else if (weight > maxValue) {
+				weight = maxValue;
+			}
+
+			out[x] = (float) weight;
+		}
+	}
+
+	/**
+	 * Vertical pass: filter the horizontally filtered rows into a row of the
+	 * output. Row <code>r</code> of the source is held in
+	 * <code>work[r - offset]</code>.
+	 */
+	private static void filterColumns(float[][] work, int offset, float[] out, Contributions cy, int y,
+			float maxValue)
+	{
+		final int start = cy.offsets[y];
+		final int n = cy.offsets[y + 1] - start;
+		final float[][] rows = new float[n][];
+		final double[] weights = new double[n];
+
+		for (int j = 0; j < n; j++) {
+			rows[j] = work[cy.pixels[start + j] - offset];
+			weights[j] = cy.weights[start + j];
+		}
+
+		for (int x = 0; x < out.length; x++) {
+			double weight = 0.0;
+			boolean bPelDelta = false;
+			final double pel = rows[0][x];
+
+			for (int j = 0; j < n; j++) {
+				final double pel2 = rows[j][x];
+				if (pel2 != pel) {
+					bPelDelta = true;
+				}
+				weight += pel2 * weights[j];
+			}
+			weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
+
+			if (weight < 0) {
+				weight = 0;
+			}
+			else if (weight > maxValue) {
+				weight = maxValue;
+			}
+
+			out[x] = (float) weight;
+		}
+	}
+
+	/**
+	 * Get the (possibly cached) contributions for resizing along one axis.
+	 * The horizontal and vertical contributions are computed slightly
+	 * differently in {@link ResizeProcessor}, so they are cached separately.
+	 */
+	static Contributions contributions(boolean vertical, int srcLength, int dstLength,
+			ResizeFilterFunction filterf)
+	{
+		final Key key = new Key(vertical, srcLength, dstLength, filterf);
+
+		Contributions c = CACHE.get(key);
+		if (c == null) {
+			c = computeContributions(vertical, srcLength, dstLength, filterf);
+			CACHE.put(key, c);
+		}
+
+		return c;
+	}
+
+	private static Contributions computeContributions(boolean vertical, int srcLength, int dstLength,
+			ResizeFilterFunction filterf)
+	{
+		final double scale = (double) dstLength / (double) srcLength;
+		final double fwidth = filterf.getSupport();
+
+		double width = fwidth;
+		double fscale = 1.0;
+		if (scale < 1.0) {
+			width = fwidth / scale;
+			fscale = 1.0 / scale;
+
+			if (width <= .5) {
+				// Reduce to point sampling.
+				width = .5 + 1.0e-6;
+				fscale = 1.0;
+			}
+		}
+
+		final int[] lefts = new int[dstLength];
+		final int[] counts = new int[dstLength];
+		final Contributions c = new Contributions();
+		c.offsets = new int[dstLength + 1];
+
+		for (int i = 0; i < dstLength; i++) {
+			final double center = i / scale;
+			lefts[i] = (int) Math.ceil(center - width);
+
+			if (vertical)
+				counts[i] = (int) (width * 2.0 + 1.0);
+			else
+				counts[i] = (int) Math.floor(center + width) - lefts[i] + 1;
+
+			c.offsets[i + 1] = c.offsets[i] + counts[i];
+		}
+
+		c.pixels = new int[c.offsets[dstLength]];
+		c.weights = new double[c.offsets[dstLength]];
+
+		for (int i = 0; i < dstLength; i++) {
+			final double center = i / scale;
+			final int start = c.offsets[i];
+
+			double density = 0.0;
+			for (int k = 0; k < counts[i]; k++) {
+				final int j = lefts[i] + k;
+
+				double weight = center - j;
+				if (scale < 1.0)
+					weight = filterf.filter(weight / fscale) / fscale;
+				else
+					weight = filterf.filter(weight);
+
+				int n;
+				if (j < 0) {
+					n = -j;
+				}
+				else if (j >= srcLength) {
+					n = (srcLength - j) + srcLength - 1;
+				}
+				else {
+					n = j;
+				}
+
+				if (n >= srcLength) {
+					n = n % srcLength;
+				}
+				else if (n < 0) {
+					n = srcLength - 1;
+				}
+
+				c.pixels[start + k] = n;
+				c.weights[start + k] = weight;
+
+				density += weight;
+			}
+
+			if (scale < 1.0 && (density != 0.0) && (density != 1.0)) {
+				// Normalize.
+				density = 1.0 / density;
+				for (int k = 0; k < counts[i]; k++) {
+					c.weights[start + k] *= density;
+				}
+			}
+		}
+
+		return c;
+	}
+}
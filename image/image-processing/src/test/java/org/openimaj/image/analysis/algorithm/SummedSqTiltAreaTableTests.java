@@ -30,6 +30,7 @@
 package org.openimaj.image.analysis.algorithm;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 import org.openimaj.data.RandomData;
@@ -86,4 +87,79 @@ public class SummedSqTiltAreaTableTests {
 			}
 		}
 	}
+
+	/**
+	 * Test that analysing a second image of the same size in place reuses the
+	 * tables and gives the same result as computing them afresh.
+	 */
+	@Test
+	public void testReuse() {
+		final FImage image1 = new FImage(RandomData.getRandomFloatArray(50, 40, 0f, 1f));
+		final FImage image2 = new FImage(RandomData.getRandomFloatArray(50, 40, 0f, 1f));
+
+		final SummedSqTiltAreaTable reused = new SummedSqTiltAreaTable(image1, true);
+		final FImage sum = reused.sum;
+		final FImage tiltSum = reused.tiltSum;
+		reused.analyseImageInPlace(image2, true);
+
+		assertTrue(sum == reused.sum);
+		assertTrue(tiltSum == reused.tiltSum);
+
+		final SummedSqTiltAreaTable fresh = new SummedSqTiltAreaTable(image2, true);
+		for (int y = 0; y < fresh.sum.height; y++) {
+			for (int x = 0; x < fresh.sum.width; x++) {
+				assertEquals(fresh.sum.pixels[y][x], reused.sum.pixels[y][x], 0f);
+				assertEquals(fresh.sqSum.pixels[y][x], reused.sqSum.pixels[y][x], 0f);
+			}
+		}
+		for (int y = 0; y < fresh.tiltSum.height; y++) {
+			for (int x = 0; x < fresh.tiltSum.width; x++) {
+				assertEquals(fresh.tiltSum.pixels[y][x], reused.tiltSum.pixels[y][x], 0f);
+			}
+		}
+
+		reused.analyseImageInPlace(image1, false);
+		assertEquals(null, reused.tiltSum);
+	}
+
+	/**
+	 * Test that analysing a new image of the same size creates new tables and
+	 * leaves the tables of the previous analysis unchanged.
+	 */
+	@Test
+	public void testNoAliasing() {
+		final FImage image1 = new FImage(RandomData.getRandomFloatArray(50, 40, 0f, 1f));
+		final FImage image2 = new FImage(RandomData.getRandomFloatArray(50, 40, 0f, 1f));
+
+		final SummedSqTiltAreaTable tsat = new SummedSqTiltAreaTable(image1, true);
+		final SummedSqTiltAreaTable expected = new SummedSqTiltAreaTable(image1, true);
+		final FImage sum = tsat.sum;
+		final FImage sqSum = tsat.sqSum;
+		final FImage tiltSum = tsat.tiltSum;
+
+		tsat.analyseImage(image2);
+		assertTrue(sum != tsat.sum);
+		assertTrue(sqSum != tsat.sqSum);
+		assertTrue(tiltSum != tsat.tiltSum);
+		assertImageEquals(expected.sum, sum);
+		assertImageEquals(expected.sqSum, sqSum);
+		assertImageEquals(expected.tiltSum, tiltSum);
+
+		tsat.analyseImage(image2, true);
+		assertImageEquals(new SummedSqTiltAreaTable(image2, true).sum, tsat.sum);
+
+		final SummedAreaTable sat = new SummedAreaTable(image1);
+		final FImage data = sat.data;
+		sat.analyseImage(image2);
+		assertTrue(data != sat.data);
+		assertImageEquals(new SummedAreaTable(image1).data, data);
+	}
+
+	private static void assertImageEquals(FImage expected, FImage actual) {
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+		for (int y = 0; y < expected.height; y++)
+			for (int x = 0; x < expected.width; x++)
+				assertEquals(expected.pixels[y][x], actual.pixels[y][x], 0f);
+	}
 }
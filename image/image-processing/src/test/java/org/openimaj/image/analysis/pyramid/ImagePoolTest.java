@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.analysis.pyramid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+
+/**
+ * Tests for the {@link ImagePool}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ImagePoolTest {
+	/**
+	 * Test that released images are reused and the per-size limit is applied
+	 */
+	@Test
+	public void testReuse() {
+		final ImagePool<FImage> pool = new ImagePool<FImage>(2);
+		final FImage template = new FImage(1, 1);
+
+		final FImage a = new FImage(10, 10);
+		pool.release(a);
+		pool.release(new FImage(10, 10));
+		pool.release(new FImage(10, 10));
+		assertEquals(200, pool.freePixels());
+
+		assertNotSame(a, pool.acquire(template, 10, 10));
+		assertSame(a, pool.acquire(template, 10, 10));
+		assertEquals(0, pool.freePixels());
+
+		final FImage b = pool.acquire(template, 10, 20);
+		assertEquals(10, b.width);
+		assertEquals(20, b.height);
+	}
+
+	/**
+	 * Test that the least recently used sizes are discarded when the total
+	 * limit is exceeded
+	 */
+	@Test
+	public void testEviction() {
+		final ImagePool<FImage> pool = new ImagePool<FImage>(16, 250);
+		final FImage template = new FImage(1, 1);
+
+		final FImage a = new FImage(10, 10);
+		final FImage b = new FImage(5, 20);
+		pool.release(a);
+		pool.release(b);
+		assertEquals(200, pool.freePixels());
+
+		// touch the size of a, so the size of b is least recently used
+		assertSame(a, pool.acquire(template, 10, 10));
+		pool.release(a);
+
+		pool.release(new FImage(8, 10));
+		assertEquals(180, pool.freePixels());
+		assertNotSame(b, pool.acquire(template, 5, 20));
+		assertSame(a, pool.acquire(template, 10, 10));
+
+		// images larger than the limit are never retained
+		pool.release(new FImage(20, 20));
+		assertEquals(80, pool.freePixels());
+
+		pool.clear();
+		assertEquals(0, pool.freePixels());
+	}
+
+	/**
+	 * Test that a pool that keeps no free images always creates new ones
+	 */
+	@Test
+	public void testNoFreeImages() {
+		final ImagePool<FImage> pool = new ImagePool<FImage>(0);
+		final FImage template = new FImage(1, 1);
+
+		final FImage a = new FImage(10, 10);
+		pool.release(a);
+		assertEquals(0, pool.freePixels());
+
+		final FImage b = pool.acquire(template, 10, 10);
+		assertNotSame(a, b);
+		assertEquals(10, b.width);
+		assertEquals(10, b.height);
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.convolution;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.FlatFImage;
+import org.openimaj.util.parallel.ForkJoinBackend;
+
+/**
+ * Tests for {@link FImageConvolveSeparable}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class FImageConvolveSeparableTest {
+	/**
+	 * Test that convolving a view of a flat image gives the same result as
+	 * convolving an {@link FImage}, and doesn't touch pixels outside the view.
+	 */
+	@Test
+	public void testFlatConsistency() {
+		final Random rng = new Random(0);
+		final FImage image = new FImage(37, 23);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				image.pixels[y][x] = rng.nextFloat();
+
+		final FlatFImage parent = new FlatFImage(image.width + 4, image.height + 4);
+		final FlatFImage view = parent.subImage(2, 2, image.width, image.height).copyFrom(image);
+
+		final FGaussianConvolve blur = new FGaussianConvolve(2f);
+		image.processInplace(blur);
+		blur.processImage(view);
+
+		for (int y = 0; y < parent.height; y++) {
+			for (int x = 0; x < parent.width; x++) {
+				if (x < 2 || y < 2 || x >= image.width + 2 || y >= image.height + 2)
+					assertEquals(0, parent.get(x, y), 0);
+				else
+					assertEquals(image.pixels[y - 2][x - 2], parent.get(x, y), 0);
+			}
+		}
+	}
+
+	/**
+	 * Test that the parallel convolution gives the same result as the
+	 * sequential one, for both storage layouts.
+	 */
+	@Test
+	public void testParallelConsistency() {
+		final Random rng = new Random(0);
+		final FImage image = new FImage(613, 257);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				image.pixels[y][x] = rng.nextFloat();
+
+		final FImage seq = image.process(new FGaussianConvolve(3f));
+
+		final ForkJoinBackend backend = ForkJoinBackend.create(4);
+		try {
+			final FImage par = image.process(new FGaussianConvolve(3f, backend));
+
+			final FlatFImage flat = image.toFlat();
+			new FGaussianConvolve(3f, backend).processImage(flat);
+
+			for (int y = 0; y < image.height; y++) {
+				for (int x = 0; x < image.width; x++) {
+					assertEquals(seq.pixels[y][x], par.pixels[y][x], 0);
+					assertEquals(seq.pixels[y][x], flat.get(x, y), 0);
+				}
+			}
+		} finally {
+			backend.close();
+		}
+	}
+
+	/**
+	 * Test that kernels too long for the cached working buffers are still
+	 * applied correctly, both before and after a short kernel has been used
+	 * by the same thread.
+	 */
+	@Test
+	public void testLongKernel() {
+		// the first is too long for the vertical pass buffer and the second
+		// for both passes
+		testLongKernel(300, 9, 601);
+		testLongKernel(5, 3, 70001);
+	}
+
+	private void testLongKernel(int width, int height, int length) {
+		final Random rng = new Random(0);
+		final FImage image = new FImage(width, height);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				image.pixels[y][x] = rng.nextFloat();
+
+		final float[] longKernel = new float[length];
+		for (int i = 0; i < longKernel.length; i++)
+			longKernel[i] = rng.nextFloat() / longKernel.length;
+
+		for (final float[] kernel : new float[][] { longKernel, { 0.25f, 0.5f, 0.25f }, longKernel }) {
+			final FImage horizontal = image.clone();
+			FImageConvolveSeparable.convolveHorizontal(horizontal, kernel);
+			final FImage vertical = image.clone();
+			FImageConvolveSeparable.convolveVertical(vertical, kernel);
+
+			final int half = kernel.length / 2;
+			for (int y = 0; y < image.height; y++) {
+				for (int x = 0; x < image.width; x++) {
+					float h = 0, v = 0;
+					for (int j = 0; j < kernel.length; j++) {
+						final float k = kernel[kernel.length - 1 - j];
+						h += image.pixels[y][Math.min(image.width - 1, Math.max(0, x + j - half))] * k;
+						v += image.pixels[Math.min(image.height - 1, Math.max(0, y + j - half))][x] * k;
+					}
+
+					assertEquals(h, horizontal.pixels[y][x], 1e-5);
+					assertEquals(v, vertical.pixels[y][x], 1e-5);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.resize;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.image.processing.resize.filters.BSplineFilter;
+import org.openimaj.image.processing.resize.filters.BellFilter;
+import org.openimaj.image.processing.resize.filters.BlackmanFilter;
+import org.openimaj.image.processing.resize.filters.BoxFilter;
+import org.openimaj.image.processing.resize.filters.CatmullRomFilter;
+import org.openimaj.image.processing.resize.filters.HammingFilter;
+import org.openimaj.image.processing.resize.filters.HanningFilter;
+import org.openimaj.image.processing.resize.filters.HermiteFilter;
+import org.openimaj.image.processing.resize.filters.Lanczos3Filter;
+import org.openimaj.image.processing.resize.filters.MitchellFilter;
+import org.openimaj.image.processing.resize.filters.TriangleFilter;
+import org.openimaj.util.parallel.ForkJoinBackend;
+
+/**
+ * Tests for the {@link SeparableResizer}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class SeparableResizerTest {
+	private static FImage random(Random rng, int width, int height) {
+		final FImage image = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextInt(256) / 255f;
+		return image;
+	}
+
+	private static void assertImageEquals(FImage expected, FImage actual) {
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+		for (int y = 0; y < expected.height; y++)
+			assertArrayEquals(expected.pixels[y], actual.pixels[y], 0f);
+	}
+
+	/**
+	 * CRC32 checksums of the 8-bit quantised outputs of the original
+	 * implementation of
+	 * {@link ResizeProcessor#zoom(FImage, FImage, ResizeFilterFunction)} (from
+	 * before it delegated to {@link SeparableResizer}) for each filter and size
+	 * in {@link #testGoldenOutputs()}.
+	 */
+	private static final long[][] GOLDEN = {
+			{ 0x27bf2670L, 0xa095b485L, 0xb675d2fbL, 0xd5c07f8fL, 0x7dcc35edL }, // Lanczos3
+			{ 0x7824b568L, 0xa08c07baL, 0xd00344b3L, 0x478fba01L, 0x9b7a0e9fL }, // Triangle
+			{ 0xffbac806L, 0x624f1c08L, 0x85142cf8L, 0x634354e8L, 0x69843bc2L }, // Bell
+			{ 0x0ce87c0dL, 0xe851b750L, 0x90f3601cL, 0x06b5054fL, 0x5030ba9fL }, // BSpline
+			{ 0x9149c210L, 0x8591750fL, 0x6a8b72a7L, 0x3eabefe3L, 0xe007e580L }, // Mitchell
+			{ 0x697dee94L, 0x0c676118L, 0xa4210769L, 0x493666d7L, 0x13b0133fL }, // Hermite
+			{ 0xb42b155cL, 0x8128d7f9L, 0x97a4889aL, 0x290dbbcfL, 0x5beb6be6L }, // CatmullRom
+			{ 0x72bb8f86L, 0x4f7b0534L, 0x13dafb43L, 0x9331bdb3L, 0xa3ace5bfL }, // Box
+			{ 0x0f34fe1bL, 0x360529f8L, 0x462b9290L, 0xa2e206c0L, 0xd1e94c6bL }, // Blackman
+			{ 0x9b0f9bc3L, 0x0f8ed56cL, 0x347dac66L, 0xef01da23L, 0x43c578d1L }, // Hanning
+			{ 0xb0cd9781L, 0x31fb1a65L, 0x8edde4e1L, 0x4d3f997cL, 0x233c295eL }, // Hamming
+	};
+
+	/**
+	 * Compute the CRC32 of the 8-bit quantised pixels of the given image,
+	 * checking that quantisation is lossless.
+	 */
+	private static long checksum(FImage image) {
+		final CRC32 crc = new CRC32();
+		for (int y = 0; y < image.height; y++) {
+			for (int x = 0; x < image.width; x++) {
+				final int q = Math.round(image.pixels[y][x] * 255);
+				assertEquals(q / 255f, image.pixels[y][x], 0f);
+				crc.update(q);
+			}
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Test that the output matches that of the original implementation of
+	 * {@link ResizeProcessor#zoom(FImage, FImage, ResizeFilterFunction)} for a
+	 * range of filters, when both enlarging and shrinking
+	 */
+	@Test
+	public void testGoldenOutputs() {
+		final ResizeFilterFunction[] filters = {
+				Lanczos3Filter.INSTANCE, TriangleFilter.INSTANCE, BellFilter.INSTANCE, BSplineFilter.INSTANCE,
+				MitchellFilter.INSTANCE, HermiteFilter.INSTANCE, CatmullRomFilter.INSTANCE, BoxFilter.INSTANCE,
+				new BlackmanFilter(), new HanningFilter(), new HammingFilter()
+		};
+		final int[][] sizes = {
+				{ 97, 83, 31, 17 }, // shrink
+				{ 31, 17, 97, 203 }, // enlarge across several strips
+				{ 60, 80, 150, 20 }, // enlarge horizontally, shrink vertically
+				{ 150, 20, 60, 80 }, // shrink horizontally, enlarge vertically
+				{ 40, 40, 40, 40 } // same size
+		};
+
+		final Random rng = new Random(2);
+		final ForkJoinBackend backend = ForkJoinBackend.create(4);
+		try {
+			for (int f = 0; f < filters.length; f++) {
+				final SeparableResizer par = new SeparableResizer(filters[f], backend);
+
+				for (int s = 0; s < sizes.length; s++) {
+					final int[] sz = sizes[s];
+					final FImage image = random(rng, sz[0], sz[1]);
+					final FImage zoomed = ResizeProcessor.zoom(image, new FImage(sz[2], sz[3]), filters[f]);
+					final FImage resized = par.resize(image, sz[2], sz[3]);
+
+					assertEquals(sz[2], zoomed.width);
+					assertEquals(sz[3], zoomed.height);
+					assertEquals(GOLDEN[f][s], checksum(zoomed));
+					assertImageEquals(zoomed, resized);
+				}
+			}
+		} finally {
+			backend.close();
+		}
+	}
+
+	/**
+	 * Test that resizing in parallel gives the same result as resizing in the
+	 * calling thread
+	 */
+	@Test
+	public void testParallel() {
+		final Random rng = new Random(0);
+		final SeparableResizer seq = new SeparableResizer(Lanczos3Filter.INSTANCE);
+		final ForkJoinBackend backend = ForkJoinBackend.create(4);
+
+		try {
+			final SeparableResizer par = new SeparableResizer(Lanczos3Filter.INSTANCE, backend);
+
+			for (int i = 0; i < 20; i++) {
+				final FImage image = random(rng, 10 + rng.nextInt(100), 10 + rng.nextInt(100));
+				final int width = 5 + rng.nextInt(200);
+				final int height = 5 + rng.nextInt(200);
+
+				assertImageEquals(seq.resize(image, width, height), par.resize(image, width, height));
+			}
+		} finally {
+			backend.close();
+		}
+	}
+
+	/**
+	 * Test that thumbnail sets are the same as individually resized images
+	 */
+	@Test
+	public void testResizeMax() {
+		final Random rng = new Random(1);
+		final FImage image = random(rng, 160, 120);
+		final int[] sizes = { 100, 32, 200, 160 };
+
+		final FImage[] thumbs = new SeparableResizer().resizeMax(image, sizes);
+		assertEquals(sizes.length, thumbs.length);
+
+		for (int i = 0; i < sizes.length; i++)
+			assertImageEquals(ResizeProcessor.resizeMax(image.clone(), sizes[i]), thumbs[i]);
+
+		assertEquals(100, thumbs[0].width);
+		assertEquals(75, thumbs[0].height);
+		assertEquals(160, thumbs[2].width);
+
+		final MBFImage colour = new MBFImage(ColourSpace.RGB, random(rng, 90, 60), random(rng, 90, 60),
+				random(rng, 90, 60));
+		final MBFImage[] cthumbs = new SeparableResizer().resizeMax(colour, 30);
+		final MBFImage expected = colour.process(new ResizeProcessor(30));
+		for (int b = 0; b < 3; b++)
+			assertImageEquals(expected.getBand(b), cthumbs[0].getBand(b));
+	}
+
+	/**
+	 * Test that the contributions are cached and that resizing a constant
+	 * image gives a constant image
+	 */
+	@Test
+	public void testContributions() {
+		assertSame(SeparableResizer.contributions(true, 100, 37, TriangleFilter.INSTANCE),
+				SeparableResizer.contributions(true, 100, 37, TriangleFilter.INSTANCE));
+
+		final FImage image = new FImage(50, 40).addInplace(0.5f);
+		final FImage resized = new SeparableResizer().resize(image, 17, 123);
+		for (int y = 0; y < resized.height; y++)
+			for (int x = 0; x < resized.width; x++)
+				assertEquals(0.5f, resized.pixels[y][x], 0f);
+	}
+}
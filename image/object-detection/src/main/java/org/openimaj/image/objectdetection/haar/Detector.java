@@ -186,16 +186,19 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 		}
 	}
 
-	@Override
-	public List<Rectangle> detect(FImage image) {
-		final List<Rectangle> results = new ArrayList<Rectangle>();
-
-		final int imageWidth = image.getWidth();
-		final int imageHeight = image.getHeight();
-
-		final SummedSqTiltAreaTable sat = new SummedSqTiltAreaTable(image, cascade.hasTiltedFeatures);
-
-		// compute the number of scales to test and the starting factor
+	/**
+	 * Compute the range of scale steps to search for an image of the given
+	 * size, taking into account the minimum and maximum detection sizes. The
+	 * scale factor at step <code>i</code> is <code>scaleFactor<sup>i</sup></code>.
+	 * 
+	 * @param imageWidth
+	 *            the width of the image
+	 * @param imageHeight
+	 *            the height of the image
+	 * @return a two element array holding the first scale step and the
+	 *         (exclusive) last scale step.
+	 */
+	protected int[] computeScaleRange(final int imageWidth, final int imageHeight) {
 		int nFactors = 0;
 		int startFactor = 0;
 		for (float factor = 1; factor * cascade.width < imageWidth - 10 &&
@@ -215,6 +218,23 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 			nFactors++;
 		}
 
+		return new int[] { startFactor, nFactors };
+	}
+
+	@Override
+	public List<Rectangle> detect(FImage image) {
+		final List<Rectangle> results = new ArrayList<Rectangle>();
+
+		final int imageWidth = image.getWidth();
+		final int imageHeight = image.getHeight();
+
+		final SummedSqTiltAreaTable sat = new SummedSqTiltAreaTable(image, cascade.hasTiltedFeatures);
+
+		// compute the number of scales to test and the starting factor
+		final int[] range = computeScaleRange(imageWidth, imageHeight);
+		final int startFactor = range[0];
+		final int nFactors = range[1];
+
 		// run the detection at each scale
 		float factor = (float) Math.pow(scaleFactor, startFactor);
 		for (int scaleStep = startFactor; scaleStep < nFactors; factor *= scaleFactor, scaleStep++) {
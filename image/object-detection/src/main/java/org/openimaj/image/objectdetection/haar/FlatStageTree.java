@@ -0,0 +1,418 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.objectdetection.haar;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.SummedSqTiltAreaTable;
+
+/**
+ * A flattened, array-based representation of a {@link StageTreeClassifier}.
+ * The stages, trees, nodes and features of the classifier are laid out in
+ * parallel primitive arrays (with child pointers replaced by indices), so
+ * evaluation avoids the virtual calls and pointer chasing of the object graph.
+ * <p>
+ * Unlike the {@link StageTreeClassifier}, the scale-dependent data is held in
+ * separate immutable {@link Scale} objects rather than being cached inside the
+ * classifier, and the rectangle corners are stored as offsets into row-major
+ * copies of the summed area tables. Once the {@link Scale}s have been created,
+ * any number of threads can evaluate windows at any number of scales
+ * concurrently. The arithmetic is performed in exactly the same order as the
+ * object-based implementation, so the results of
+ * {@link #classify(float[], float[], float[], Scale, int, int)} are identical
+ * to {@link StageTreeClassifier#classify(SummedSqTiltAreaTable, int, int)}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+final class FlatStageTree {
+	/**
+	 * The scale-dependent data for evaluating the classifier at a specific
+	 * scale on images of a specific width. This mirrors the values cached in
+	 * the {@link StageTreeClassifier} and {@link HaarFeature}s by
+	 * {@link StageTreeClassifier#setScale(float)}, but with the rectangle
+	 * corners pre-computed as offsets into the row-major summed area tables.
+	 */
+	static final class Scale {
+		final float scale;
+		final float invArea;
+		final int imageWidth;
+
+		// offsets of the variance normalisation window corners
+		final int normOffset;
+		final int[] normCorners = new int[4];
+
+		// four corner offsets per rectangle, ordered such that the region sum
+		// is c0 - c1 - c2 + c3
+		final int[] rectCorners;
+		final float[] rectWeight;
+
+		Scale(float scale, float invArea, int imageWidth, int nrects) {
+			this.scale = scale;
+			this.invArea = invArea;
+			this.imageWidth = imageWidth;
+
+			final int shift = Math.round(scale);
+			this.normOffset = shift * (imageWidth + 1) + shift;
+
+			rectCorners = new int[nrects * 4];
+			rectWeight = new float[nrects];
+		}
+	}
+
+	final StageTreeClassifier cascade;
+
+	// stages; successor indices are -1 for null
+	final float[] stageThreshold;
+	final int[] stageSuccess;
+	final int[] stageFailure;
+	final boolean[] stageHasNegative;
+	final int[] stageTrees; // stage i uses trees [stageTrees[i], stageTrees[i+1])
+
+	// trees & nodes; a negative index -(i+1) refers to leaf value i
+	final int[] treeRoot;
+	final int[] nodeFeature;
+	final int[] nodeRectStart; // copied from the feature to save an indirection
+	final int[] nodeRectEnd;
+	final boolean[] nodeTilted;
+	final float[] nodeThreshold;
+	final int[] nodeLeft;
+	final int[] nodeRight;
+	final float[] leafValue;
+
+	// features; feature i uses rects [featureRects[i], featureRects[i+1])
+	final HaarFeature[] features;
+	final boolean[] featureTilted;
+	final int[] featureRects;
+
+	/**
+	 * Construct by flattening the given classifier.
+	 * 
+	 * @param cascade
+	 *            the classifier
+	 */
+	FlatStageTree(StageTreeClassifier cascade) {
+		this.cascade = cascade;
+
+		// number the stages in depth-first order from the root
+		final List<Stage> stages = new ArrayList<Stage>();
+		final Map<Stage, Integer> stageIndex = new IdentityHashMap<Stage, Integer>();
+		indexStages(cascade.root, stages, stageIndex);
+
+		final List<Classifier> trees = new ArrayList<Classifier>();
+		stageThreshold = new float[stages.size()];
+		stageSuccess = new int[stages.size()];
+		stageFailure = new int[stages.size()];
+		stageHasNegative = new boolean[stages.size()];
+		stageTrees = new int[stages.size() + 1];
+		for (int i = 0; i < stages.size(); i++) {
+			final Stage s = stages.get(i);
+
+			stageThreshold[i] = s.threshold;
+			stageSuccess[i] = s.successStage == null ? -1 : stageIndex.get(s.successStage);
+			stageFailure[i] = s.failureStage == null ? -1 : stageIndex.get(s.failureStage);
+			stageTrees[i] = trees.size();
+
+			for (final Classifier c : s.ensemble) {
+				trees.add(c);
+				stageHasNegative[i] |= hasNegativeValues(c);
+			}
+		}
+		stageTrees[stages.size()] = trees.size();
+
+		// number the nodes, leaves and features
+		final List<HaarFeatureClassifier> nodes = new ArrayList<HaarFeatureClassifier>();
+		final List<ValueClassifier> leaves = new ArrayList<ValueClassifier>();
+		final Map<HaarFeature, Integer> featureIndex = new IdentityHashMap<HaarFeature, Integer>();
+		final List<HaarFeature> featureList = new ArrayList<HaarFeature>();
+
+		treeRoot = new int[trees.size()];
+		for (int i = 0; i < trees.size(); i++) {
+			treeRoot[i] = indexNodes(trees.get(i), nodes, leaves, featureList, featureIndex);
+		}
+
+		nodeFeature = new int[nodes.size()];
+		nodeThreshold = new float[nodes.size()];
+		nodeLeft = new int[nodes.size()];
+		nodeRight = new int[nodes.size()];
+		final Map<Classifier, Integer> classifierIndex = new IdentityHashMap<Classifier, Integer>();
+		for (int i = 0; i < nodes.size(); i++)
+			classifierIndex.put(nodes.get(i), i);
+		for (int i = 0; i < leaves.size(); i++)
+			classifierIndex.put(leaves.get(i), -(i + 1));
+
+		for (int i = 0; i < nodes.size(); i++) {
+			final HaarFeatureClassifier n = nodes.get(i);
+			nodeFeature[i] = featureIndex.get(n.feature);
+			nodeThreshold[i] = n.threshold;
+			nodeLeft[i] = classifierIndex.get(n.left);
+			nodeRight[i] = classifierIndex.get(n.right);
+		}
+
+		leafValue = new float[leaves.size()];
+		for (int i = 0; i < leaves.size(); i++)
+			leafValue[i] = leaves.get(i).value;
+
+		features = featureList.toArray(new HaarFeature[featureList.size()]);
+		featureTilted = new boolean[features.length];
+		featureRects = new int[features.length + 1];
+		for (int i = 0; i < features.length; i++) {
+			featureTilted[i] = features[i] instanceof HaarFeature.TiltedFeature;
+			featureRects[i + 1] = featureRects[i] + features[i].rects.length;
+		}
+
+		nodeRectStart = new int[nodes.size()];
+		nodeRectEnd = new int[nodes.size()];
+		nodeTilted = new boolean[nodes.size()];
+		for (int i = 0; i < nodes.size(); i++) {
+			nodeRectStart[i] = featureRects[nodeFeature[i]];
+			nodeRectEnd[i] = featureRects[nodeFeature[i] + 1];
+			nodeTilted[i] = featureTilted[nodeFeature[i]];
+		}
+	}
+
+	private static void indexStages(Stage s, List<Stage> stages, Map<Stage, Integer> index) {
+		if (s == null || index.containsKey(s))
+			return;
+
+		index.put(s, stages.size());
+		stages.add(s);
+
+		indexStages(s.successStage, stages, index);
+		indexStages(s.failureStage, stages, index);
+	}
+
+	private static boolean hasNegativeValues(Classifier c) {
+		if (c instanceof ValueClassifier)
+			return ((ValueClassifier) c).value < 0;
+
+		final HaarFeatureClassifier hfc = (HaarFeatureClassifier) c;
+		return hasNegativeValues(hfc.left) || hasNegativeValues(hfc.right);
+	}
+
+	private static int indexNodes(Classifier c, List<HaarFeatureClassifier> nodes, List<ValueClassifier> leaves,
+			List<HaarFeature> features, Map<HaarFeature, Integer> featureIndex)
+	{
+		if (c instanceof ValueClassifier) {
+			leaves.add((ValueClassifier) c);
+			return -leaves.size();
+		}
+
+		final HaarFeatureClassifier hfc = (HaarFeatureClassifier) c;
+		nodes.add(hfc);
+		if (!featureIndex.containsKey(hfc.feature)) {
+			featureIndex.put(hfc.feature, features.size());
+			features.add(hfc.feature);
+		}
+
+		final int idx = nodes.size() - 1;
+		indexNodes(hfc.left, nodes, leaves, features, featureIndex);
+		indexNodes(hfc.right, nodes, leaves, features, featureIndex);
+		return idx;
+	}
+
+	/**
+	 * Create the scale-dependent data for the given scale and image width.
+	 * This works by setting the scale of the underlying
+	 * {@link StageTreeClassifier} and copying its caches, so it must not be
+	 * called concurrently with any other use of the classifier.
+	 * 
+	 * @param scale
+	 *            the scale
+	 * @param imageWidth
+	 *            the width of the images that will be searched
+	 * @return the data for the scale
+	 */
+	Scale createScale(float scale, int imageWidth) {
+		cascade.setScale(scale);
+
+		final int ss = imageWidth + 1; // stride of the sum tables
+		final int ts = imageWidth + 2; // stride of the tilted sum table
+		final Scale s = new Scale(scale, cascade.cachedInvArea, imageWidth, featureRects[features.length]);
+
+		final int w = cascade.cachedW;
+		final int h = cascade.cachedH;
+		s.normCorners[0] = h * ss + w;
+		s.normCorners[1] = 0;
+		s.normCorners[2] = h * ss;
+		s.normCorners[3] = w;
+
+		for (int i = 0, k = 0; i < features.length; i++) {
+			for (final WeightedRectangle r : features[i].cachedRects) {
+				final int[] c = s.rectCorners;
+				if (featureTilted[i]) {
+					c[k * 4] = r.y * ts + r.x;
+					c[k * 4 + 1] = (r.y + r.height) * ts + r.x - r.height;
+					c[k * 4 + 2] = (r.y + r.width) * ts + r.x + r.width;
+					c[k * 4 + 3] = (r.y + r.width + r.height) * ts + r.x + r.width - r.height;
+				} else {
+					c[k * 4] = (r.y + r.height) * ss + r.x + r.width;
+					c[k * 4 + 1] = (r.y + r.height) * ss + r.x;
+					c[k * 4 + 2] = r.y * ss + r.x + r.width;
+					c[k * 4 + 3] = r.y * ss + r.x;
+				}
+				s.rectWeight[k] = r.weight;
+				k++;
+			}
+		}
+
+		return s;
+	}
+
+	/**
+	 * Copy the pixels of the given image into a row-major array, reusing the
+	 * given buffer if it is large enough.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param buffer
+	 *            the buffer to reuse (may be null)
+	 * @return the row-major pixel data
+	 */
+	static float[] flatten(FImage image, float[] buffer) {
+		if (image == null)
+			return null;
+
+		final int size = image.width * image.height;
+		if (buffer == null || buffer.length != size)
+			buffer = new float[size];
+
+		for (int y = 0; y < image.height; y++)
+			System.arraycopy(image.pixels[y], 0, buffer, y * image.width, image.width);
+
+		return buffer;
+	}
+
+	/**
+	 * Apply the classifier to an image at the given position and scale. The
+	 * summed area tables must have been flattened with
+	 * {@link #flatten(FImage, float[])}. The return value follows the same
+	 * convention as
+	 * {@link StageTreeClassifier#classify(SummedSqTiltAreaTable, int, int)}.
+	 * 
+	 * @param sum
+	 *            the flattened sum table
+	 * @param sqSum
+	 *            the flattened squared sum table
+	 * @param tilt
+	 *            the flattened tilted sum table; may be null if there are no
+	 *            tilted features
+	 * @param scale
+	 *            the scale data
+	 * @param x
+	 *            the x-ordinate of the top-left of the current window
+	 * @param y
+	 *            the y-ordinate of the top-left of the current window
+	 * @return > 0 if a detection was made; <=0 if no detection was made. The
+	 *         magnitude indicates the number of stages that passed.
+	 */
+	int classify(final float[] sum, final float[] sqSum, final float[] tilt, final Scale scale, final int x, final int y)
+	{
+		final int sumBase = y * (scale.imageWidth + 1) + x;
+		final int tiltBase = y * (scale.imageWidth + 2) + x;
+		final float wvNorm = computeWindowVarianceNorm(sum, sqSum, scale, sumBase);
+
+		final int[] corners = scale.rectCorners;
+		final float[] weights = scale.rectWeight;
+
+		// everything is evaluated within this method (rather than delegating
+		// to stages, trees and features) to keep it within the JIT's inlining
+		// limits
+		int matches = 0; // the number of stages that pass
+		int stage = 0;
+		while (true) {
+			final float threshold = stageThreshold[stage];
+
+			// if there are no negative valued leaves in the stage, then the
+			// sum can only increase and we can stop as soon as it passes
+			final boolean earlyExit = !stageHasNegative[stage];
+
+			float total = 0;
+			for (int t = stageTrees[stage], tend = stageTrees[stage + 1]; t < tend; t++) {
+				int node = treeRoot[t];
+				while (node >= 0) {
+					final float[] table;
+					final int base;
+					if (nodeTilted[node]) {
+						table = tilt;
+						base = tiltBase;
+					} else {
+						table = sum;
+						base = sumBase;
+					}
+
+					float response = 0;
+					for (int i = nodeRectStart[node], end = nodeRectEnd[node]; i < end; i++) {
+						final int c = i * 4;
+						final float regionSum = table[base + corners[c]] - table[base + corners[c + 1]]
+								- table[base + corners[c + 2]] + table[base + corners[c + 3]];
+
+						response += regionSum * weights[i];
+					}
+
+					node = (response < nodeThreshold[node] * wvNorm) ? nodeLeft[node] : nodeRight[node];
+				}
+				total += leafValue[-node - 1];
+
+				if (earlyExit && total >= threshold)
+					break;
+			}
+
+			if (total >= threshold) {
+				matches++;
+				stage = stageSuccess[stage];
+				if (stage < 0)
+					return matches;
+			} else {
+				stage = stageFailure[stage];
+				if (stage < 0)
+					return -matches;
+			}
+		}
+	}
+
+	private static float computeWindowVarianceNorm(final float[] sum, final float[] sqSum, final Scale scale,
+			final int base)
+	{
+		final int o = base + scale.normOffset;
+		final int[] c = scale.normCorners;
+
+		final float s = sum[o + c[0]] + sum[o + c[1]] - sum[o + c[2]] - sum[o + c[3]];
+		final float sq = sqSum[o + c[0]] + sqSum[o + c[1]] - sqSum[o + c[2]] - sqSum[o + c[3]];
+
+		final float mean = s * scale.invArea;
+		final float wvNorm = sq * scale.invArea - mean * mean;
+
+		return (float) ((wvNorm > 0) ? Math.sqrt(wvNorm) : 1);
+	}
+}
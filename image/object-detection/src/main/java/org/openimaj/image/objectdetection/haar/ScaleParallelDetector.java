@@ -0,0 +1,326 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.objectdetection.haar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.SummedSqTiltAreaTable;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.ParallelBackend;
+
+/**
+ * Multi-scale Haar cascade/tree object detector that searches all scales
+ * concurrently. The search algorithm (and the detections, including their
+ * order) is identical to the {@link Detector}, but rather than processing
+ * the scales one after another, the work at every scale is broken into strips
+ * of rows, and the resultant (scale, strip) work units are shared dynamically
+ * between the threads of a {@link ParallelBackend}. This keeps all cores busy
+ * on the coarse scales (which have few rows each) as well as the fine scales
+ * (which dominate the total cost).
+ * <p>
+ * To make this possible the {@link StageTreeClassifier} is evaluated through a
+ * flattened, array-based copy in which the per-scale data is held separately
+ * rather than cached inside the classifier; this also avoids much of the
+ * overhead of walking the object graph, and allows the summed area tables to
+ * be indexed with pre-computed offsets. The summed area tables and the
+ * per-scale data are retained between calls to {@link #detect(FImage)}, so
+ * processing a sequence of equally sized images (i.e. video frames) performs
+ * no per-frame allocation beyond the results.
+ * <p>
+ * <strong>Important note:</strong> This detector is NOT thread-safe as it
+ * reuses its internal buffers between calls. Do not call {@link #detect(FImage)}
+ * concurrently from multiple threads, nor from within a task running on the
+ * pool backing the {@link ParallelBackend} (unless the backend supports nested
+ * loops).
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ScaleParallelDetector extends Detector {
+	/**
+	 * Default number of rows of windows in each unit of work.
+	 */
+	public static final int DEFAULT_STRIP_HEIGHT = 8;
+
+	protected int stripHeight = DEFAULT_STRIP_HEIGHT;
+	protected transient ParallelBackend backend;
+
+	private transient FlatStageTree flat;
+	private transient SummedSqTiltAreaTable sat;
+	private transient float[] sumData;
+	private transient float[] sqSumData;
+	private transient float[] tiltData;
+	private transient FlatStageTree.Scale[] scales;
+	private transient int cachedStart = -1;
+	private transient int cachedStop = -1;
+	private transient int cachedWidth = -1;
+	private transient float cachedScaleFactor;
+
+	/**
+	 * Construct the {@link ScaleParallelDetector} with the given parameters.
+	 * 
+	 * @param cascade
+	 *            the cascade or tree of stages.
+	 * @param scaleFactor
+	 *            the amount to change between scales (multiplicative)
+	 * @param smallStep
+	 *            the amount to step when there is a hint of detection
+	 * @param bigStep
+	 *            the amount to step when there is definitely no detection
+	 * @param backend
+	 *            the backend used to process the work units. If
+	 *            <code>null</code> the detection is performed in the calling
+	 *            thread.
+	 */
+	public ScaleParallelDetector(StageTreeClassifier cascade, float scaleFactor, int smallStep, int bigStep,
+			ParallelBackend backend)
+	{
+		super(cascade, scaleFactor, smallStep, bigStep);
+
+		this.backend = backend;
+	}
+
+	/**
+	 * Construct the {@link ScaleParallelDetector} with the given tree of stages
+	 * and scale factor. The default step sizes and the global
+	 * {@link ParallelBackend} are used.
+	 * 
+	 * @param cascade
+	 *            the cascade or tree of stages.
+	 * @param scaleFactor
+	 *            the amount to change between scales
+	 */
+	public ScaleParallelDetector(StageTreeClassifier cascade, float scaleFactor) {
+		this(cascade, scaleFactor, DEFAULT_SMALL_STEP, DEFAULT_BIG_STEP, GlobalExecutorPool.getBackend());
+	}
+
+	/**
+	 * Construct the {@link ScaleParallelDetector} with the given tree of
+	 * stages, the default parameters for step sizes and scale factor, and the
+	 * global {@link ParallelBackend}.
+	 * 
+	 * @param cascade
+	 *            the cascade or tree of stages.
+	 */
+	public ScaleParallelDetector(StageTreeClassifier cascade) {
+		this(cascade, DEFAULT_SCALE_FACTOR, DEFAULT_SMALL_STEP, DEFAULT_BIG_STEP, GlobalExecutorPool.getBackend());
+	}
+
+	/**
+	 * Get the (possibly cached) data for each scale step in the given range.
+	 * The data is recomputed if the range, image width or scale factor has
+	 * changed.
+	 */
+	private FlatStageTree.Scale[] getScales(int startFactor, int nFactors, int imageWidth) {
+		if (flat == null || flat.cascade != cascade) {
+			flat = new FlatStageTree(cascade);
+			scales = null;
+		}
+
+		if (scales == null || startFactor != cachedStart || nFactors != cachedStop
+				|| imageWidth != cachedWidth || scaleFactor != cachedScaleFactor)
+		{
+			scales = new FlatStageTree.Scale[Math.max(0, nFactors - startFactor)];
+
+			float factor = (float) Math.pow(scaleFactor, startFactor);
+			for (int i = 0; i < scales.length; factor *= scaleFactor, i++) {
+				scales[i] = flat.createScale(factor, imageWidth);
+			}
+
+			cachedStart = startFactor;
+			cachedStop = nFactors;
+			cachedWidth = imageWidth;
+			cachedScaleFactor = scaleFactor;
+		}
+
+		return scales;
+	}
+
+	@Override
+	public List<Rectangle> detect(FImage image) {
+		final int imageWidth = image.getWidth();
+		final int imageHeight = image.getHeight();
+
+		if (sat == null)
+			sat = new SummedSqTiltAreaTable();
+		sat.analyseImageInPlace(image, cascade.hasTiltedFeatures);
+		sumData = FlatStageTree.flatten(sat.sum, sumData);
+		sqSumData = FlatStageTree.flatten(sat.sqSum, sqSumData);
+		tiltData = FlatStageTree.flatten(sat.tiltSum, tiltData);
+
+		final int[] range = computeScaleRange(imageWidth, imageHeight);
+		final FlatStageTree.Scale[] scales = getScales(range[0], range[1], imageWidth);
+
+		// build the list of work units, ordered by scale and then by strip so
+		// that concatenating their results reproduces the serial ordering
+		final List<int[]> units = new ArrayList<int[]>();
+		final float[] ysteps = new float[scales.length];
+		final int[] bounds = new int[scales.length * 4];
+		for (int i = 0; i < scales.length; i++) {
+			final float factor = scales[i].scale;
+			final float ystep = Math.max(2, factor);
+
+			final int windowWidth = (int) (factor * cascade.width);
+			final int windowHeight = (int) (factor * cascade.height);
+
+			// determine the spatial range, taking into account any ROI.
+			final int startX = (int) (roi == null ? 0 : Math.max(0, roi.x));
+			final int startY = (int) (roi == null ? 0 : Math.max(0, roi.y));
+			final int stopX = Math.round(
+					(((roi == null ? imageWidth : Math.min(imageWidth, roi.x + roi.width)) - windowWidth)) / ystep);
+			final int stopY = Math.round(
+					(((roi == null ? imageHeight : Math.min(imageHeight, roi.y + roi.height)) - windowHeight)) / ystep);
+
+			ysteps[i] = ystep;
+			bounds[i * 4] = startX;
+			bounds[i * 4 + 1] = stopX;
+			bounds[i * 4 + 2] = windowWidth;
+			bounds[i * 4 + 3] = windowHeight;
+
+			for (int y = startY; y < stopY; y += stripHeight) {
+				units.add(new int[] { i, y, Math.min(y + stripHeight, stopY) });
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		final List<Rectangle>[] unitResults = new List[units.size()];
+		final AtomicInteger next = new AtomicInteger();
+		final Operation<Integer> worker = new Operation<Integer>() {
+			@Override
+			public void perform(Integer ignored) {
+				int u;
+				while ((u = next.getAndIncrement()) < unitResults.length) {
+					final int[] unit = units.get(u);
+					final int s = unit[0];
+
+					unitResults[u] = detectInStrip(scales[s], unit[1], unit[2], ysteps[s], bounds[s * 4],
+							bounds[s * 4 + 1], bounds[s * 4 + 2], bounds[s * 4 + 3]);
+				}
+			}
+		};
+
+		if (backend == null || backend.getParallelism() <= 1 || units.size() <= 1) {
+			worker.perform(0);
+		} else {
+			Parallel.forIndex(0, Math.min(backend.getParallelism(), units.size()), 1, worker, backend);
+		}
+
+		final List<Rectangle> results = new ArrayList<Rectangle>();
+		for (final List<Rectangle> r : unitResults) {
+			if (r != null)
+				results.addAll(r);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Search the rows of windows in the given range at a single scale.
+	 * 
+	 * @return the detections, or <code>null</code> if there were none.
+	 */
+	private List<Rectangle> detectInStrip(final FlatStageTree.Scale scale, final int startY, final int stopY,
+			final float ystep, final int startX, final int stopX, final int windowWidth, final int windowHeight)
+	{
+		List<Rectangle> results = null;
+
+		for (int iy = startY; iy < stopY; iy++) {
+			final int y = Math.round(iy * ystep);
+
+			for (int ix = startX, xstep = 0; ix < stopX; ix += xstep) {
+				final int x = Math.round(ix * ystep);
+
+				final int result = flat.classify(sumData, sqSumData, tiltData, scale, x, y);
+
+				if (result > 0) {
+					if (results == null)
+						results = new ArrayList<Rectangle>();
+
+					results.add(new Rectangle(x, y, windowWidth, windowHeight));
+				}
+
+				// if there is no detection, then increase the step size
+				xstep = (result > 0 ? smallStep : bigStep);
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Get the number of rows of windows processed in each unit of work.
+	 * 
+	 * @return the strip height
+	 */
+	public int getStripHeight() {
+		return stripHeight;
+	}
+
+	/**
+	 * Set the number of rows of windows processed in each unit of work.
+	 * Smaller strips balance the load better, but incur more scheduling
+	 * overhead.
+	 * 
+	 * @param stripHeight
+	 *            the strip height; must be positive
+	 */
+	public void setStripHeight(int stripHeight) {
+		if (stripHeight <= 0)
+			throw new IllegalArgumentException("strip height must be positive");
+
+		this.stripHeight = stripHeight;
+	}
+
+	/**
+	 * Get the backend used to process the work units.
+	 * 
+	 * @return the backend; <code>null</code> if the detection is performed in
+	 *         the calling thread.
+	 */
+	public ParallelBackend getParallelBackend() {
+		return backend;
+	}
+
+	/**
+	 * Set the backend used to process the work units.
+	 * 
+	 * @param backend
+	 *            the backend; if <code>null</code> the detection is performed
+	 *            in the calling thread.
+	 */
+	public void setParallelBackend(ParallelBackend backend) {
+		this.backend = backend;
+	}
+}
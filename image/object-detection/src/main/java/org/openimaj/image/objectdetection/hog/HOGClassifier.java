@@ -34,6 +34,7 @@ import java.util.List;
 import org.openimaj.feature.DoubleFV;
 import org.openimaj.image.FImage;
 import org.openimaj.image.feature.dense.gradient.HOG;
+import org.openimaj.image.feature.dense.gradient.binning.FlexibleHOGStrategy;
 import org.openimaj.math.geometry.shape.Rectangle;
 import org.openimaj.math.statistics.distribution.Histogram;
 import org.openimaj.ml.annotation.Annotator;
@@ -50,9 +51,24 @@ public class HOGClassifier {
 	}
 
 	public double classify(Rectangle current) {
-		final Histogram fv = hogExtractor.getFeatureVector(current);
+		return classify(hogExtractor.getFeatureVector(current));
+	}
 
-		final List<ScoredAnnotation<Boolean>> res = classifier.annotate(fv);
+	/**
+	 * Classify a pre-computed HOG descriptor (for example one read from a
+	 * {@link FlexibleHOGStrategy.BlockGrid}). The descriptor can be computed
+	 * by any thread, but the underlying annotator is only ever called by one
+	 * thread at a time, so it does not need to be thread-safe.
+	 * 
+	 * @param fv
+	 *            the descriptor
+	 * @return the confidence that the descriptor represents the object
+	 */
+	public double classify(Histogram fv) {
+		final List<ScoredAnnotation<Boolean>> res;
+		synchronized (this) {
+			res = classifier.annotate(fv);
+		}
 
 		if (res.get(0).annotation) {
 			return res.get(0).confidence;
@@ -33,13 +33,38 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.histogram.binning.SpatialBinningStrategy;
+import org.openimaj.image.feature.dense.gradient.HOG;
+import org.openimaj.image.feature.dense.gradient.binning.FlexibleHOGStrategy;
+import org.openimaj.image.feature.dense.gradient.binning.FlexibleHOGStrategy.BlockGrid;
 import org.openimaj.image.objectdetection.AbstractMultiScaleObjectDetector;
 import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.math.statistics.distribution.Histogram;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.ParallelBackend;
 
+/**
+ * Multi-scale sliding window detector based on a {@link HOGClassifier}.
+ * <p>
+ * If the classifier uses a {@link FlexibleHOGStrategy}, then at each scale the
+ * windows lie on a regular grid of cells. In this case a HOG feature pyramid is
+ * built: the cells and normalised blocks covering the search area are computed
+ * once per scale, and the descriptor of each window is read from them by
+ * offset rather than being recomputed from scratch. The detections are
+ * identical to those of the per-window computation.
+ * <p>
+ * Optionally, the scales can be searched in parallel using a
+ * {@link ParallelBackend}. The block grids are computed concurrently, but the
+ * classifier's underlying annotator is only called by one thread at a time, so
+ * it need not be thread-safe. Scales that can't use a block grid are searched
+ * while holding the lock on the classifier, as its HOG extractor caches state.
+ */
 public class HOGDetector extends AbstractMultiScaleObjectDetector<FImage, Rectangle> {
 	protected float scaleFactor = 1.2f;
 	protected HOGClassifier classifier;
 	double threshold = 0.5;
+	protected transient ParallelBackend backend;
 
 	public HOGDetector(HOGClassifier classifier, float scaleFactor) {
 		this.classifier = classifier;
@@ -50,10 +75,26 @@ public class HOGDetector extends AbstractMultiScaleObjectDetector<FImage, Rectan
 		this.classifier = classifier;
 	}
 
+	/**
+	 * Construct with the given classifier and scale factor, searching the
+	 * scales in parallel with the given backend.
+	 * 
+	 * @param classifier
+	 *            the classifier
+	 * @param scaleFactor
+	 *            the amount to change between scales (multiplicative)
+	 * @param backend
+	 *            the backend; if <code>null</code> the scales are searched
+	 *            sequentially
+	 */
+	public HOGDetector(HOGClassifier classifier, float scaleFactor, ParallelBackend backend) {
+		this.classifier = classifier;
+		this.scaleFactor = scaleFactor;
+		this.backend = backend;
+	}
+
 	@Override
 	public List<Rectangle> detect(FImage image) {
-		final List<Rectangle> results = new ArrayList<Rectangle>();
-
 		final int imageWidth = image.getWidth();
 		final int imageHeight = image.getHeight();
 
@@ -79,33 +120,73 @@ public class HOGDetector extends AbstractMultiScaleObjectDetector<FImage, Rectan
 			nFactors++;
 		}
 
-		// run the detection at each scale
+		final int nScales = Math.max(0, nFactors - startFactor);
+		final float[] factors = new float[nScales];
 		float factor = (float) Math.pow(scaleFactor, startFactor);
-		for (int scaleStep = startFactor; scaleStep < nFactors; factor *=
-				scaleFactor, scaleStep++)
-		{
-			final float ystep = 8 * factor;
-			final int windowWidth = (int) (factor * classifier.width);
-			final int windowHeight = (int) (factor * classifier.height);
-
-			// determine the spatial range, taking into account any ROI.
-			final int startX = (int) (roi == null ? 0 : Math.max(0, roi.x));
-			final int startY = (int) (roi == null ? 0 : Math.max(0, roi.y));
-			final int stopX = Math.round(
-					(roi == null ? imageWidth : Math.min(imageWidth, roi.x + roi.width)) - windowWidth);
-			final int stopY = Math.round((((roi == null ? imageHeight : Math.min(imageHeight, roi.y +
-					roi.height)) - windowHeight)));
-
-			detectAtScale(startX, stopX, startY, stopY, ystep, windowWidth, windowHeight, results);
+		for (int i = 0; i < nScales; factor *= scaleFactor, i++)
+			factors[i] = factor;
+
+		// run the detection at each scale
+		@SuppressWarnings("unchecked")
+		final List<Rectangle>[] scaleResults = new List[nScales];
+		final Operation<Integer> op = new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				final float factor = factors[i];
+				final float ystep = 8 * factor;
+				final int windowWidth = (int) (factor * classifier.width);
+				final int windowHeight = (int) (factor * classifier.height);
+
+				// determine the spatial range, taking into account any ROI.
+				final int startX = (int) (roi == null ? 0 : Math.max(0, roi.x));
+				final int startY = (int) (roi == null ? 0 : Math.max(0, roi.y));
+				final int stopX = Math.round(
+						(roi == null ? imageWidth : Math.min(imageWidth, roi.x + roi.width)) - windowWidth);
+				final int stopY = Math.round((((roi == null ? imageHeight : Math.min(imageHeight, roi.y +
+						roi.height)) - windowHeight)));
+
+				scaleResults[i] = new ArrayList<Rectangle>();
+				detectAtScale(startX, stopX, startY, stopY, ystep, windowWidth, windowHeight, scaleResults[i]);
+			}
+		};
+
+		if (backend == null || nScales <= 1) {
+			for (int i = 0; i < nScales; i++)
+				op.perform(i);
+		} else {
+			Parallel.forIndex(0, nScales, 1, op, backend);
 		}
 
+		final List<Rectangle> results = new ArrayList<Rectangle>();
+		for (final List<Rectangle> r : scaleResults)
+			results.addAll(r);
+
 		return results;
 	}
 
+	/**
+	 * Compute the window positions visited between the given start and stop
+	 * ordinates.
+	 */
+	private static int[] positions(final int start, final int stop, final float step) {
+		int n = 0;
+		for (int i = start; i < stop; i += step)
+			n++;
+
+		final int[] pos = new int[n];
+		n = 0;
+		for (int i = start; i < stop; i += step)
+			pos[n++] = i;
+
+		return pos;
+	}
+
 	/**
 	 * Perform detection at a single scale. Subclasses may override this to
 	 * customise the spatial search. The given starting and stopping coordinates
-	 * take into account any region of interest set on this detector.
+	 * take into account any region of interest set on this detector. If the
+	 * scales are being searched in parallel, this will be called concurrently
+	 * for different scales.
 	 * 
 	 * @param startX
 	 *            the starting x-ordinate
@@ -128,19 +209,103 @@ public class HOGDetector extends AbstractMultiScaleObjectDetector<FImage, Rectan
 			final int stopY, final float ystep, final int windowWidth, final int windowHeight,
 			final List<Rectangle> results)
 	{
-		final Rectangle current = new Rectangle();
+		final int[] xs = positions(startX, stopX, ystep);
+		final int[] ys = positions(startY, stopY, ystep);
+
+		if (xs.length == 0 || ys.length == 0)
+			return;
 
-		for (int iy = startY; iy < stopY; iy += ystep) {
-			for (int ix = startX; ix < stopX; ix += ystep) {
-				current.x = ix;
-				current.y = iy;
-				current.width = windowWidth;
-				current.height = windowHeight;
+		final BlockGrid grid = computeBlockGrid(xs, ys, windowWidth, windowHeight);
 
-				if (classifier.classify(current) > threshold) {
-					results.add(current.clone());
+		if (grid != null) {
+			// read each window's descriptor from the grid by offset
+			Histogram fv = null;
+			for (final int iy : ys) {
+				final int cellY = (iy - grid.getY()) / grid.getCellHeight();
+
+				for (final int ix : xs) {
+					final int cellX = (ix - grid.getX()) / grid.getCellWidth();
+					fv = grid.extract(cellX, cellY, fv);
+
+					if (classifier.classify(fv) > threshold) {
+						results.add(new Rectangle(ix, iy, windowWidth, windowHeight));
+					}
+				}
+			}
+		} else {
+			// the HOG extractor caches state, so can only be used by one
+			// thread at a time
+			synchronized (classifier) {
+				final Rectangle current = new Rectangle();
+
+				for (final int iy : ys) {
+					for (final int ix : xs) {
+						current.x = ix;
+						current.y = iy;
+						current.width = windowWidth;
+						current.height = windowHeight;
+
+						if (classifier.classify(current) > threshold) {
+							results.add(current.clone());
+						}
+					}
 				}
 			}
 		}
 	}
+
+	/**
+	 * Compute the grid of normalised HOG blocks covering all the windows at
+	 * the given positions.
+	 * 
+	 * @return the grid, or null if the windows don't lie on a regular grid of
+	 *         cells (or the strategy does not support it)
+	 */
+	private BlockGrid computeBlockGrid(final int[] xs, final int[] ys, final int windowWidth, final int windowHeight)
+	{
+		final HOG hog = classifier.hogExtractor;
+		final SpatialBinningStrategy strategy = hog.getStrategy();
+		if (!(strategy instanceof FlexibleHOGStrategy))
+			return null;
+
+		final FlexibleHOGStrategy fhs = (FlexibleHOGStrategy) strategy;
+		final int cellWidth = windowWidth / fhs.getNumCellsX();
+		final int cellHeight = windowHeight / fhs.getNumCellsY();
+
+		if (cellWidth <= 0 || cellHeight <= 0 || !aligned(xs, cellWidth) || !aligned(ys, cellHeight))
+			return null;
+
+		final int gridWidth = (xs[xs.length - 1] - xs[0]) / cellWidth + fhs.getNumCellsX();
+		final int gridHeight = (ys[ys.length - 1] - ys[0]) / cellHeight + fhs.getNumCellsY();
+
+		return fhs.computeBlockGrid(hog.getExtractor(), xs[0], ys[0], cellWidth, cellHeight, gridWidth, gridHeight);
+	}
+
+	private static boolean aligned(int[] pos, int cellSize) {
+		for (int i = 1; i < pos.length; i++)
+			if ((pos[i] - pos[0]) % cellSize != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Get the backend used to search the scales in parallel.
+	 * 
+	 * @return the backend; <code>null</code> if the scales are searched
+	 *         sequentially.
+	 */
+	public ParallelBackend getParallelBackend() {
+		return backend;
+	}
+
+	/**
+	 * Set the backend used to search the scales in parallel.
+	 * 
+	 * @param backend
+	 *            the backend; if <code>null</code> the scales are searched
+	 *            sequentially.
+	 */
+	public void setParallelBackend(ParallelBackend backend) {
+		this.backend = backend;
+	}
 }
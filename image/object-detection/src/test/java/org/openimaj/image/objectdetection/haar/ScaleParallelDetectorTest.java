@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.objectdetection.haar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.SummedSqTiltAreaTable;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.parallel.ForkJoinBackend;
+
+/**
+ * Tests for the {@link ScaleParallelDetector} and the flattened cascade it
+ * uses; both must give exactly the same results as the object-based
+ * implementation.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ScaleParallelDetectorTest {
+	String[] cascades = {
+			"haarcascade_frontalface_default.xml",
+			"haarcascade_frontalface_alt_tree.xml",
+			"haarcascade_eye_tree_eyeglasses.xml",
+			"haarcascade_lefteye_2splits.xml"
+	};
+
+	FImage image;
+
+	/**
+	 * Create a test image with some structure at a range of scales
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+
+		image = new FImage(160, 120);
+		for (int y = 0; y < image.height; y++) {
+			for (int x = 0; x < image.width; x++) {
+				image.pixels[y][x] = (float) (0.5 + 0.25 * Math.sin(x / 7.0) * Math.cos(y / 5.0) + 0.1 * rng.nextFloat());
+			}
+		}
+
+		for (int i = 0; i < 20; i++) {
+			final int x0 = rng.nextInt(image.width - 10);
+			final int y0 = rng.nextInt(image.height - 10);
+			final int w = 2 + rng.nextInt(Math.min(30, image.width - x0 - 1));
+			final int h = 2 + rng.nextInt(Math.min(30, image.height - y0 - 1));
+			final float v = rng.nextFloat();
+
+			for (int y = y0; y < y0 + h && y < image.height; y++)
+				for (int x = x0; x < x0 + w && x < image.width; x++)
+					image.pixels[y][x] = v;
+		}
+	}
+
+	private static StageTreeClassifier load(String name) throws IOException {
+		return OCVHaarLoader.read(OCVHaarLoader.class.getResourceAsStream(name));
+	}
+
+	/**
+	 * Create a weaker version of a cascade that uses only the first few stages
+	 * along the success path, in order to get plenty of detections.
+	 */
+	private static StageTreeClassifier truncate(StageTreeClassifier cascade, int nstages) {
+		final Stage[] stages = new Stage[nstages];
+		Stage s = cascade.root;
+		for (int i = 0; i < nstages; i++, s = s.successStage)
+			stages[i] = s;
+
+		Stage next = null;
+		for (int i = nstages - 1; i >= 0; i--)
+			next = new Stage(stages[i].threshold, stages[i].ensemble, next, null);
+
+		return new StageTreeClassifier(cascade.width, cascade.height, cascade.name, cascade.hasTiltedFeatures, next);
+	}
+
+	/**
+	 * Test that the flattened cascade produces the same classification as the
+	 * original at every window position and scale
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testClassify() throws IOException {
+		for (final String c : cascades) {
+			final StageTreeClassifier cascade = load(c);
+			final FlatStageTree flat = new FlatStageTree(cascade);
+			final SummedSqTiltAreaTable sat = new SummedSqTiltAreaTable(image, cascade.hasTiltedFeatures());
+			final float[] sum = FlatStageTree.flatten(sat.sum, null);
+			final float[] sqSum = FlatStageTree.flatten(sat.sqSum, null);
+			final float[] tilt = FlatStageTree.flatten(sat.tiltSum, null);
+
+			for (float scale = 1; scale * cascade.width < image.width - 10
+					&& scale * cascade.height < image.height - 10; scale *= 1.25f)
+			{
+				final FlatStageTree.Scale fs = flat.createScale(scale, image.width);
+				cascade.setScale(scale);
+
+				final int ww = (int) (scale * cascade.width);
+				final int wh = (int) (scale * cascade.height);
+				for (int y = 0; y < image.height - wh; y += 2) {
+					for (int x = 0; x < image.width - ww; x++) {
+						assertEquals(cascade.classify(sat, x, y), flat.classify(sum, sqSum, tilt, fs, x, y));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that the detections match the {@link Detector}, including when the
+	 * detector is reused with images of the same and different sizes. Weakened
+	 * versions of the cascades are also tested to ensure that there are many
+	 * detections.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testDetect() throws IOException {
+		final ForkJoinBackend backend = ForkJoinBackend.create(4);
+
+		try {
+			for (final String c : cascades) {
+				testDetect(load(c), backend);
+				testDetect(truncate(load(c), 2), backend);
+			}
+		} finally {
+			backend.close();
+		}
+	}
+
+	private void testDetect(StageTreeClassifier cascade, ForkJoinBackend backend) {
+		final Detector serial = new Detector(cascade, 1.1f, 1, 1);
+		final ScaleParallelDetector parallel = new ScaleParallelDetector(cascade, 1.1f, 1, 1, backend);
+		parallel.setStripHeight(3);
+
+		for (final FImage img : new FImage[] { image, image.flipX(), image.extractROI(10, 10, 100, 80) }) {
+			final List<Rectangle> expected = serial.detect(img);
+			final List<Rectangle> actual = parallel.detect(img);
+
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++)
+				assertEquals(expected.get(i), actual.get(i));
+		}
+
+		serial.setMinimumDetectionSize(40);
+		parallel.setMinimumDetectionSize(40);
+		assertEquals(serial.detect(image), parallel.detect(image));
+	}
+
+	/**
+	 * Test that the sequential mode gives the same detections as the
+	 * {@link Detector}
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testDetectSequential() throws IOException {
+		final StageTreeClassifier cascade = truncate(load(cascades[0]), 2);
+		final Detector serial = new Detector(cascade, 1.1f, 1, 1);
+		final ScaleParallelDetector parallel = new ScaleParallelDetector(cascade, 1.1f, 1, 1, null);
+
+		final List<Rectangle> expected = serial.detect(image);
+		assertTrue(expected.size() > 0);
+		assertEquals(expected, parallel.detect(image));
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.objectdetection.hog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.feature.DoubleFV;
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.histogram.WindowedHistogramExtractor;
+import org.openimaj.image.analysis.algorithm.histogram.binning.SpatialBinningStrategy;
+import org.openimaj.image.feature.dense.gradient.HOG;
+import org.openimaj.image.feature.dense.gradient.binning.FlexibleHOGStrategy;
+import org.openimaj.image.processing.convolution.FImageGradients;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.math.statistics.distribution.Histogram;
+import org.openimaj.ml.annotation.AbstractAnnotator;
+import org.openimaj.ml.annotation.ScoredAnnotation;
+import org.openimaj.util.parallel.ForkJoinBackend;
+
+/**
+ * Tests for the {@link HOGDetector}; the block grid and per-window
+ * computations, and the parallel and sequential searches, must all give
+ * exactly the same detections.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class HOGDetectorTest {
+	/**
+	 * Deterministic linear annotator that records whether it was ever called
+	 * by more than one thread at once.
+	 */
+	static class LinearAnnotator extends AbstractAnnotator<DoubleFV, Boolean> {
+		final Random rng = new Random(7);
+		double[] weights;
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicBoolean concurrent = new AtomicBoolean();
+
+		@Override
+		public Set<Boolean> getAnnotations() {
+			final Set<Boolean> annotations = new HashSet<Boolean>();
+			annotations.add(true);
+			annotations.add(false);
+			return annotations;
+		}
+
+		@Override
+		public List<ScoredAnnotation<Boolean>> annotate(DoubleFV object) {
+			if (active.incrementAndGet() > 1)
+				concurrent.set(true);
+
+			try {
+				if (weights == null || weights.length != object.values.length) {
+					weights = new double[object.values.length];
+					for (int i = 0; i < weights.length; i++)
+						weights[i] = rng.nextGaussian();
+				}
+
+				double score = 0;
+				for (int i = 0; i < weights.length; i++)
+					score += weights[i] * object.values[i];
+
+				Thread.yield();
+
+				final List<ScoredAnnotation<Boolean>> res = new ArrayList<ScoredAnnotation<Boolean>>();
+				res.add(new ScoredAnnotation<Boolean>(true, (float) (1 / (1 + Math.exp(-score)))));
+				return res;
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+	}
+
+	FImage image;
+	LinearAnnotator annotator;
+
+	/**
+	 * Create a test image with some structure at a range of scales
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+
+		image = new FImage(200, 300);
+		for (int y = 0; y < image.height; y++) {
+			for (int x = 0; x < image.width; x++) {
+				image.pixels[y][x] = (float) (0.5 + 0.25 * Math.sin(x / 7.0) * Math.cos(y / 11.0) + 0.1 * rng.nextFloat());
+			}
+		}
+
+		annotator = new LinearAnnotator();
+	}
+
+	private HOGClassifier createClassifier(SpatialBinningStrategy strategy) {
+		final HOGClassifier classifier = new HOGClassifier();
+		classifier.width = 64;
+		classifier.height = 128;
+		classifier.hogExtractor = new HOG(9, false, FImageGradients.Mode.Unsigned, strategy);
+		classifier.classifier = annotator;
+		return classifier;
+	}
+
+	/**
+	 * Wrap the given strategy so that the detector can't recognise it, and so
+	 * must compute each window separately.
+	 */
+	private static SpatialBinningStrategy perWindow(final SpatialBinningStrategy strategy) {
+		return new SpatialBinningStrategy() {
+			@Override
+			public Histogram extract(WindowedHistogramExtractor binnedData, Rectangle region, Histogram output) {
+				return strategy.extract(binnedData, region, output);
+			}
+		};
+	}
+
+	/**
+	 * Test that the block grid gives the same detections as computing the
+	 * descriptor of each window separately
+	 */
+	@Test
+	public void testBlockGrid() {
+		final FlexibleHOGStrategy strategy = new FlexibleHOGStrategy(8, 16, 2);
+		final HOGDetector grid = new HOGDetector(createClassifier(strategy), 1.2f);
+		final HOGDetector windows = new HOGDetector(createClassifier(perWindow(strategy)), 1.2f);
+
+		final List<Rectangle> expected = windows.detect(image);
+		assertTrue(expected.size() > 0);
+		assertEquals(expected, grid.detect(image));
+
+		final FImage roiImage = image.extractROI(10, 10, 150, 200);
+		assertEquals(windows.detect(roiImage), grid.detect(roiImage));
+	}
+
+	/**
+	 * Test that searching the scales in parallel gives the same detections as
+	 * the sequential search, with both the block grid and per-window
+	 * computations, and that the annotator is never called concurrently
+	 */
+	@Test
+	public void testParallel() {
+		final FlexibleHOGStrategy strategy = new FlexibleHOGStrategy(8, 16, 2);
+		final ForkJoinBackend backend = ForkJoinBackend.create(4);
+
+		try {
+			for (final SpatialBinningStrategy s : new SpatialBinningStrategy[] { strategy, perWindow(strategy) }) {
+				final HOGDetector sequential = new HOGDetector(createClassifier(s), 1.2f);
+				final HOGDetector parallel = new HOGDetector(createClassifier(s), 1.2f, backend);
+
+				final List<Rectangle> expected = sequential.detect(image);
+				assertTrue(expected.size() > 0);
+
+				for (int i = 0; i < 5; i++)
+					assertEquals(expected, parallel.detect(image));
+			}
+		} finally {
+			backend.close();
+		}
+
+		assertFalse(annotator.concurrent.get());
+	}
+}
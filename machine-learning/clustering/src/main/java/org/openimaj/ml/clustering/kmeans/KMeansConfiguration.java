@@ -46,6 +46,46 @@ import org.openimaj.util.parallel.GlobalExecutorPool;
  *            The type of data
  */
 public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA> implements Cloneable {
+	/**
+	 * The algorithms that can be used to perform the K-Means iterations.
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static enum Mode {
+		/**
+		 * Standard (Lloyd) iterations. In each iteration every sample is
+		 * assigned to a centroid using the {@link NearestNeighbours} produced
+		 * by the configured factory, and the centroids are recomputed from
+		 * their assigned samples.
+		 */
+		LLOYD,
+		/**
+		 * Mini-batch K-Means (Sculley, "Web-scale k-means clustering", WWW
+		 * 2010). In each iteration a random sample of
+		 * {@link KMeansConfiguration#getMiniBatchSize()} points is assigned
+		 * using the {@link NearestNeighbours} produced by the configured
+		 * factory, and each centroid is moved towards its assigned points with
+		 * a per-centroid learning rate. Each iteration is much cheaper than a
+		 * Lloyd iteration, but many more iterations are required. The
+		 * iterations stop early once an exponentially weighted average of the
+		 * movement of the centroids falls below
+		 * {@link KMeansConfiguration#getMiniBatchTolerance()}.
+		 */
+		MINI_BATCH,
+		/**
+		 * Exact Euclidean K-Means accelerated using the triangle inequality
+		 * (Hamerly, "Making k-means even faster", SDM 2010). The results are
+		 * the same as {@link #LLOYD} with exact Euclidean nearest-neighbours,
+		 * but upper and lower bounds on the distances of every sample to its
+		 * closest and second closest centroids are maintained so that most
+		 * distance computations can be skipped once the centroids start to
+		 * settle. The configured factory is only used to create the
+		 * {@link NearestNeighbours} of the final result. The bounds need about
+		 * 20 bytes of memory per sample.
+		 */
+		HAMERLY
+	}
+
 	/**
 	 * The default number of samples per parallel assignment instance.
 	 */
@@ -56,6 +96,16 @@ public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA>
 	 */
 	public static final int DEFAULT_NUMBER_ITERATIONS = 30;
 
+	/**
+	 * The default number of samples in each iteration of mini-batch K-Means.
+	 */
+	public static final int DEFAULT_MINI_BATCH_SIZE = 10000;
+
+	/**
+	 * The default convergence tolerance of mini-batch K-Means.
+	 */
+	public static final double DEFAULT_MINI_BATCH_TOLERANCE = 1e-4;
+
 	/**
 	 * The number of clusters
 	 */
@@ -82,6 +132,21 @@ public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA>
 	 */
 	protected ExecutorService threadpool;
 
+	/**
+	 * The algorithm used for the iterations
+	 */
+	protected Mode mode;
+
+	/**
+	 * The number of samples in each mini-batch
+	 */
+	protected int miniBatchSize;
+
+	/**
+	 * The convergence tolerance of mini-batch K-Means
+	 */
+	protected double miniBatchTolerance;
+
 	/**
 	 * Create configuration for data that will create <code>K</code> clusters.
 	 * The algorithm will run for a maximum of
@@ -182,6 +247,9 @@ public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA>
 		this.niters = niters;
 		this.blockSize = blockSize;
 		this.threadpool = (threadpool == null ? GlobalExecutorPool.getPool() : threadpool);
+		this.mode = Mode.LLOYD;
+		this.miniBatchSize = DEFAULT_MINI_BATCH_SIZE;
+		this.miniBatchTolerance = DEFAULT_MINI_BATCH_TOLERANCE;
 	}
 
 	/**
@@ -308,4 +376,71 @@ public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA>
 	public void setNearestNeighbourFactory(NearestNeighboursFactory<? extends NN, DATA> factory) {
 		this.factory = factory;
 	}
+
+	/**
+	 * Get the algorithm used to perform the K-Means iterations.
+	 * 
+	 * @return the mode
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Set the algorithm used to perform the K-Means iterations.
+	 * 
+	 * @param mode
+	 *            the mode to set
+	 */
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * Get the number of samples used in each iteration when operating in
+	 * {@link Mode#MINI_BATCH} mode.
+	 * 
+	 * @return the mini-batch size
+	 */
+	public int getMiniBatchSize() {
+		return miniBatchSize;
+	}
+
+	/**
+	 * Set the number of samples used in each iteration when operating in
+	 * {@link Mode#MINI_BATCH} mode.
+	 * 
+	 * @param miniBatchSize
+	 *            the mini-batch size
+	 */
+	public void setMiniBatchSize(int miniBatchSize) {
+		this.miniBatchSize = miniBatchSize;
+	}
+
+	/**
+	 * Get the convergence tolerance used when operating in
+	 * {@link Mode#MINI_BATCH} mode. The iterations stop once an exponentially
+	 * weighted average of the mean squared movement of the centroids in each
+	 * iteration is no more than the tolerance multiplied by the total variance
+	 * of the data (estimated from the first mini-batch).
+	 * 
+	 * @return the tolerance
+	 */
+	public double getMiniBatchTolerance() {
+		return miniBatchTolerance;
+	}
+
+	/**
+	 * Set the convergence tolerance used when operating in
+	 * {@link Mode#MINI_BATCH} mode. A tolerance of zero means that the
+	 * iterations only stop early if the centroids stop moving.
+	 * 
+	 * @see #getMiniBatchTolerance()
+	 * 
+	 * @param miniBatchTolerance
+	 *            the tolerance
+	 */
+	public void setMiniBatchTolerance(double miniBatchTolerance) {
+		this.miniBatchTolerance = miniBatchTolerance;
+	}
 }
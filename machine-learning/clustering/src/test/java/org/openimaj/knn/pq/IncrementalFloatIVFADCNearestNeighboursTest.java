@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.knn.pq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.io.IOUtils;
+import org.openimaj.knn.FloatNearestNeighboursExact;
+import org.openimaj.util.pair.IntFloatPair;
+
+/**
+ * Tests for {@link IncrementalFloatIVFADCNearestNeighbours}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class IncrementalFloatIVFADCNearestNeighboursTest {
+	private float[][] data;
+	private IncrementalFloatIVFADCNearestNeighbours index;
+
+	/**
+	 * Create some clustered data and index it
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+
+		final float[][] centres = new float[20][16];
+		for (final float[] c : centres)
+			for (int i = 0; i < c.length; i++)
+				c[i] = rng.nextFloat() * 100;
+
+		data = new float[2000][16];
+		for (int n = 0; n < data.length; n++) {
+			final float[] c = centres[n % centres.length];
+			for (int i = 0; i < c.length; i++)
+				data[n][i] = c[i] + (float) rng.nextGaussian();
+		}
+
+		index = FloatIVFADCUtilities.createIndex(data, 10, 4, 20);
+		for (final float[] d : data)
+			index.add(d);
+	}
+
+	/**
+	 * Test that all the data is indexed in the inverted lists
+	 */
+	@Test
+	public void testLists() {
+		assertEquals(data.length, index.size());
+
+		int total = 0;
+		for (int i = 0; i < index.numLists(); i++)
+			total += index.listSize(i);
+
+		assertEquals(data.length, total);
+	}
+
+	/**
+	 * Test that probing all the lists finds the same neighbours as exhaustive
+	 * search over the same codes, and that probing a single list finds the
+	 * vectors from the query's own cluster
+	 */
+	@Test
+	public void testSearch() {
+		final float[] query = data[7];
+
+		index.setNumProbes(index.numLists());
+		final List<IntFloatPair> all = index.searchKNN(query, 10);
+		assertEquals(10, all.size());
+
+		for (int i = 1; i < all.size(); i++)
+			assertTrue(all.get(i - 1).second <= all.get(i).second);
+
+		index.setNumProbes(1);
+		final List<IntFloatPair> one = index.searchKNN(query, 10);
+		assertEquals(10, one.size());
+
+		for (int i = 0; i < one.size(); i++) {
+			assertEquals(all.get(i).second, one.get(i).second, 0.0001);
+			assertEquals(7 % 20, one.get(i).first % 20);
+		}
+	}
+
+	/**
+	 * Test that fewer results are returned if the probed lists are too small
+	 */
+	@Test
+	public void testSmallLists() {
+		index.setNumProbes(1);
+
+		final List<IntFloatPair> res = index.searchKNN(data[0], data.length);
+		assertTrue(res.size() < data.length);
+		assertTrue(res.get(res.size() - 1).first >= 0);
+	}
+
+	/**
+	 * Test the single and batch searches when probing a single list that is
+	 * empty or holds fewer than K vectors
+	 */
+	@Test
+	public void testSparseLists() {
+		final FloatNearestNeighboursExact coarse = index.getCoarseQuantiser();
+		final IncrementalFloatIVFADCNearestNeighbours sparse = new IncrementalFloatIVFADCNearestNeighbours(coarse,
+				index.pq, data[0].length);
+		sparse.setNumProbes(1);
+
+		// two vectors in the list of data[0], one in another list, and a query
+		// from a list that is left empty
+		final int listA = coarse.searchNN(data[0]).first;
+		int second = -1, other = -1, empty = -1;
+		for (int n = 1; n < data.length; n++) {
+			final int list = coarse.searchNN(data[n]).first;
+
+			if (list == listA) {
+				if (second < 0)
+					second = n;
+			} else if (other < 0) {
+				other = n;
+			} else if (empty < 0 && list != coarse.searchNN(data[other]).first) {
+				empty = n;
+			}
+		}
+
+		sparse.add(data[0]);
+		sparse.add(data[second]);
+		sparse.add(data[other]);
+
+		final IntFloatPair none = sparse.searchNN(data[empty]);
+		assertEquals(-1, none.first);
+		assertEquals(Float.MAX_VALUE, none.second, 0);
+		assertEquals(2, sparse.searchNN(data[other]).first);
+		assertEquals(0, sparse.searchKNN(data[empty], 3).size());
+		assertEquals(2, sparse.searchKNN(data[0], 3).size());
+
+		final float[][] queries = { data[empty], data[other] };
+		final int[] indices = new int[2];
+		final float[] distances = new float[2];
+		sparse.searchNN(queries, indices, distances);
+		assertEquals(-1, indices[0]);
+		assertEquals(Float.MAX_VALUE, distances[0], 0);
+		assertEquals(2, indices[1]);
+
+		final int[][] knnIndices = new int[2][3];
+		final float[][] knnDistances = new float[2][3];
+		sparse.searchKNN(Arrays.asList(data[0], data[empty]), 3, knnIndices, knnDistances);
+		assertTrue(knnIndices[0][0] == 0 || knnIndices[0][0] == 1);
+		assertTrue(knnIndices[0][1] == 0 || knnIndices[0][1] == 1);
+		assertEquals(-1, knnIndices[0][2]);
+		assertEquals(Float.MAX_VALUE, knnDistances[0][2], 0);
+		for (int k = 0; k < 3; k++)
+			assertEquals(-1, knnIndices[1][k]);
+	}
+
+	/**
+	 * Test serialisation
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testIO() throws Exception {
+		index.setNumProbes(3);
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		IOUtils.writeBinary(new DataOutputStream(baos), index);
+
+		final IncrementalFloatIVFADCNearestNeighbours read = IOUtils.read(
+				new DataInputStream(new ByteArrayInputStream(baos.toByteArray())),
+				IncrementalFloatIVFADCNearestNeighbours.class);
+
+		assertEquals(index.size(), read.size());
+		assertEquals(index.numLists(), read.numLists());
+		assertEquals(3, read.getNumProbes());
+
+		final List<IntFloatPair> expected = index.searchKNN(data[3], 5);
+		final List<IntFloatPair> actual = read.searchKNN(data[3], 5);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).first, actual.get(i).first);
+			assertEquals(expected.get(i).second, actual.get(i).second, 0);
+		}
+	}
+}
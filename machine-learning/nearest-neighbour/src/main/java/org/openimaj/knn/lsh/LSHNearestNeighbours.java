@@ -35,6 +35,7 @@ import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -42,6 +43,7 @@ import org.openimaj.knn.IncrementalNearestNeighbours;
 import org.openimaj.util.comparator.DistanceComparator;
 import org.openimaj.util.hash.HashFunction;
 import org.openimaj.util.hash.HashFunctionFactory;
+import org.openimaj.util.hash.MultiProbeHashFunction;
 import org.openimaj.util.pair.IntFloatPair;
 import org.openimaj.util.queue.BoundedPriorityQueue;
 
@@ -54,6 +56,15 @@ import org.openimaj.util.queue.BoundedPriorityQueue;
  * tables is then combined and sorted by distance (and trimmed if necessary)
  * before being returned.
  * <p>
+ * If the hash functions of the tables are {@link MultiProbeHashFunction}s, each
+ * table can be probed multiple times per query (see
+ * {@link #setNumProbes(int)}). Probing the buckets adjacent to the query's
+ * bucket allows the same recall to be achieved with far fewer tables.
+ * <p>
+ * Once all the data has been added, the tables can be frozen (see
+ * {@link #freeze()}) into a compact read-only representation that uses much
+ * less memory than the hash tables used during construction.
+ * <p>
  * Note: This object is not thread-safe. Multiple insertions or mixed insertions
  * and searches should not be performed concurrently without external locking.
  *
@@ -68,7 +79,10 @@ public class LSHNearestNeighbours<OBJECT>
 {
 	/**
 	 * Encapsulates a hash table with an associated hash function and pointers
-	 * to the data.
+	 * to the data. Once frozen, the buckets are stored in a compact
+	 * compressed-sparse-row layout: a sorted array of the bucket hash codes,
+	 * an array of offsets into a single packed array of the identifiers of the
+	 * points in each bucket.
 	 *
 	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
 	 *
@@ -76,9 +90,14 @@ public class LSHNearestNeighbours<OBJECT>
 	 *            Type of object being hashed
 	 */
 	private static class Table<OBJECT> {
-		private final TIntObjectHashMap<TIntArrayList> table;
+		private TIntObjectHashMap<TIntArrayList> table;
 		HashFunction<OBJECT> function;
 
+		// the frozen representation
+		private int[] keys;
+		private int[] offsets;
+		private int[] ids;
+
 		public Table(HashFunction<OBJECT> function) {
 			this.function = function;
 			table = new TIntObjectHashMap<TIntArrayList>();
@@ -104,24 +123,120 @@ public class LSHNearestNeighbours<OBJECT>
 		}
 
 		/**
-		 * Search for a point in the table
+		 * Search for a point in the table, adding the ids of the matching
+		 * points to the given set
 		 *
 		 * @param point
 		 *            query point
-		 * @param norm
-		 *            normalisation factor
-		 * @return ids of matched points
+		 * @param numProbes
+		 *            the number of buckets to probe
+		 * @param pl
+		 *            the set to add the matches to
 		 */
-		protected TIntArrayList searchPoint(OBJECT point) {
-			final int hash = function.computeHashCode(point);
+		@SuppressWarnings("unchecked")
+		protected void searchPoint(OBJECT point, int numProbes, TIntHashSet pl) {
+			if (numProbes > 1 && function instanceof MultiProbeHashFunction) {
+				final int[] hashes = ((MultiProbeHashFunction<OBJECT>) function).computeProbeHashCodes(point, numProbes);
+
+				for (final int hash : hashes)
+					searchBucket(hash, pl);
+			} else {
+				searchBucket(function.computeHashCode(point), pl);
+			}
+		}
+
+		private void searchBucket(int hash, TIntHashSet pl) {
+			if (keys == null) {
+				final TIntArrayList result = table.get(hash);
+
+				if (result != null)
+					pl.addAll(result);
+			} else {
+				final int idx = Arrays.binarySearch(keys, hash);
+
+				if (idx >= 0) {
+					for (int i = offsets[idx]; i < offsets[idx + 1]; i++)
+						pl.add(ids[i]);
+				}
+			}
+		}
+
+		/**
+		 * Convert the table to the frozen representation
+		 */
+		protected void freeze() {
+			final int[] hashes = table.keys();
+			Arrays.sort(hashes);
+
+			int total = 0;
+			for (final int h : hashes)
+				total += table.get(h).size();
 
-			return table.get(hash);
+			keys = hashes;
+			offsets = new int[hashes.length + 1];
+			ids = new int[total];
+
+			for (int i = 0, pos = 0; i < hashes.length; i++) {
+				final TIntArrayList bucket = table.get(hashes[i]);
+
+				offsets[i] = pos;
+				bucket.toArray(ids, 0, pos, bucket.size());
+				pos += bucket.size();
+			}
+			offsets[hashes.length] = total;
+
+			table = null;
+		}
+
+		/**
+		 * Build the frozen representation directly from the given data,
+		 * without creating the intermediate hash table
+		 *
+		 * @param data
+		 *            the data
+		 */
+		protected void freeze(List<OBJECT> data) {
+			final int size = data.size();
+
+			// pack the hash code and id so the pairs can be sorted together
+			final long[] pairs = new long[size];
+			for (int i = 0; i < size; i++) {
+				final long hash = function.computeHashCode(data.get(i));
+				pairs[i] = (hash << 32) | i;
+			}
+			Arrays.sort(pairs);
+
+			int nkeys = 0;
+			for (int i = 0; i < size; i++) {
+				if (i == 0 || (int) (pairs[i] >> 32) != (int) (pairs[i - 1] >> 32))
+					nkeys++;
+			}
+
+			keys = new int[nkeys];
+			offsets = new int[nkeys + 1];
+			ids = new int[size];
+
+			for (int i = 0, k = -1; i < size; i++) {
+				final int hash = (int) (pairs[i] >> 32);
+
+				if (k < 0 || hash != keys[k]) {
+					keys[++k] = hash;
+					offsets[k] = i;
+				}
+
+				ids[i] = (int) pairs[i];
+			}
+			offsets[nkeys] = size;
+
+			table = null;
 		}
 	}
 
 	protected DistanceComparator<OBJECT> distanceFcn;
 	protected List<Table<OBJECT>> tables;
 	protected List<OBJECT> data = new ArrayList<OBJECT>();
+	protected int numProbes = 1;
+	protected boolean frozen = false;
 
 	/**
 	 * Construct with the given hash functions and distance function. One table
@@ -163,6 +278,35 @@ public class LSHNearestNeighbours<OBJECT>
 		}
 	}
 
+	/**
+	 * Create a frozen {@link LSHNearestNeighbours} containing the given data.
+	 * The compact tables are built directly from the data, so the memory
+	 * required by the intermediate hash tables is never needed.
+	 *
+	 * @param factory
+	 *            The hash function factory.
+	 * @param numTables
+	 *            The number of requested tables.
+	 * @param distanceFcn
+	 *            The distance function.
+	 * @param data
+	 *            The data to index
+	 * @return the frozen {@link LSHNearestNeighbours}
+	 */
+	public static <OBJECT> LSHNearestNeighbours<OBJECT> createFrozen(HashFunctionFactory<OBJECT> factory,
+			int numTables, DistanceComparator<OBJECT> distanceFcn, List<OBJECT> data)
+	{
+		final LSHNearestNeighbours<OBJECT> nn = new LSHNearestNeighbours<OBJECT>(factory, numTables, distanceFcn);
+		nn.data.addAll(data);
+
+		for (final Table<OBJECT> table : nn.tables)
+			table.freeze(nn.data);
+
+		nn.frozen = true;
+
+		return nn;
+	}
+
 	/**
 	 * Get the number of hash tables
 	 *
@@ -172,6 +316,58 @@ public class LSHNearestNeighbours<OBJECT>
 		return tables.size();
 	}
 
+	/**
+	 * Get the number of buckets that are probed in each table for each query.
+	 *
+	 * @return the number of probes per table
+	 */
+	public int getNumProbes() {
+		return numProbes;
+	}
+
+	/**
+	 * Set the number of buckets that are probed in each table for each query.
+	 * Values greater than 1 only have an effect if the hash functions of the
+	 * tables are {@link MultiProbeHashFunction}s.
+	 *
+	 * @param numProbes
+	 *            the number of probes per table
+	 */
+	public void setNumProbes(int numProbes) {
+		if (numProbes <= 0)
+			throw new IllegalArgumentException("numProbes must be positive");
+
+		this.numProbes = numProbes;
+	}
+
+	/**
+	 * Freeze the tables into a compact read-only representation. Once frozen,
+	 * no more data can be added.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+
+		for (final Table<OBJECT> table : tables)
+			table.freeze();
+
+		frozen = true;
+	}
+
+	/**
+	 * Determine if the tables have been frozen.
+	 *
+	 * @return true if frozen; false otherwise
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new UnsupportedOperationException("Data cannot be added to a frozen LSHNearestNeighbours");
+	}
+
 	/**
 	 * Insert data into the tables
 	 *
@@ -179,6 +375,8 @@ public class LSHNearestNeighbours<OBJECT>
 	 *            the data
 	 */
 	public void addAll(Collection<OBJECT> d) {
+		checkNotFrozen();
+
 		int i = this.data.size();
 
 		for (final OBJECT point : d) {
@@ -199,6 +397,8 @@ public class LSHNearestNeighbours<OBJECT>
 	 *            the data
 	 */
 	public void addAll(OBJECT[] d) {
+		checkNotFrozen();
+
 		int i = this.data.size();
 
 		for (final OBJECT point : d) {
@@ -214,6 +414,8 @@ public class LSHNearestNeighbours<OBJECT>
 
 	@Override
 	public int add(OBJECT o) {
+		checkNotFrozen();
+
 		final int index = this.data.size();
 		this.data.add(o);
 
@@ -253,10 +455,7 @@ public class LSHNearestNeighbours<OBJECT>
 		final TIntHashSet pl = new TIntHashSet();
 
 		for (final Table<OBJECT> table : tables) {
-			final TIntArrayList result = table.searchPoint(data);
-
-			if (result != null)
-				pl.addAll(result);
+			table.searchPoint(data, numProbes, pl);
 		}
 
 		return pl;
@@ -34,6 +34,7 @@ import java.util.List;
 import org.openimaj.util.hash.HashFunction;
 import org.openimaj.util.hash.HashFunctionFactory;
 import org.openimaj.util.hash.composition.HashComposition;
+import org.openimaj.util.hash.composition.MultiProbeHashComposition;
 
 /**
  * {@link HashComposition} that uses a polynomial function to combine the
@@ -46,7 +47,7 @@ import org.openimaj.util.hash.composition.HashComposition;
  * @param <OBJECT>
  *            Object being hashed
  */
-public class PolyHashComposition<OBJECT> extends HashComposition<OBJECT> {
+public class PolyHashComposition<OBJECT> extends MultiProbeHashComposition<OBJECT> {
 	private static final int HASH_POLY = 1368547;
 	private static final int HASH_POLY_REM = 573440;
 	private static final int HASH_POLY_A[] =
@@ -105,4 +106,16 @@ public class PolyHashComposition<OBJECT> extends HashComposition<OBJECT> {
 		}
 		return id;
 	}
+
+	@Override
+	public int combine(int[] hashes) {
+		if (hashes.length == 0)
+			return 0;
+
+		int id = hashes[0];
+		for (int i = 1; i < hashes.length; i++) {
+			id = addId(id, hashes[i], i);
+		}
+		return id;
+	}
 }
@@ -33,7 +33,7 @@ import java.util.List;
 
 import org.openimaj.util.hash.HashFunction;
 import org.openimaj.util.hash.HashFunctionFactory;
-import org.openimaj.util.hash.composition.HashComposition;
+import org.openimaj.util.hash.composition.MultiProbeHashComposition;
 
 import cern.jet.random.engine.MersenneTwister;
 
@@ -46,7 +46,7 @@ import cern.jet.random.engine.MersenneTwister;
  * @param <OBJECT>
  *            Object being hashed
  */
-public class RandomProjectionHashComposition<OBJECT> extends HashComposition<OBJECT> {
+public class RandomProjectionHashComposition<OBJECT> extends MultiProbeHashComposition<OBJECT> {
 	int[] projection;
 
 	/**
@@ -112,4 +112,15 @@ public class RandomProjectionHashComposition<OBJECT> extends HashComposition<OBJ
 
 		return hash;
 	}
+
+	@Override
+	public int combine(int[] hashes) {
+		int hash = 0;
+
+		for (int i = 0; i < projection.length; i++) {
+			hash += projection[i] * hashes[i];
+		}
+
+		return hash;
+	}
 }
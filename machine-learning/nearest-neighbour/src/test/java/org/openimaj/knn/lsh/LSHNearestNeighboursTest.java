@@ -31,7 +31,9 @@ package org.openimaj.knn.lsh;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import gnu.trove.set.hash.TIntHashSet;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Before;
@@ -235,4 +237,83 @@ public class LSHNearestNeighboursTest {
 			assertEquals(null, lsh.searchNN(qus[i]));
 		}
 	}
+
+	/**
+	 * Test that freezing the tables doesn't change the results of a search,
+	 * and that building frozen tables directly gives the same results.
+	 */
+	@Test
+	public void frozenSearchMatchesUnfrozen() {
+		final double[][] data = RandomData.getRandomDoubleArray(200, 10, 0, 100, 1);
+
+		final LSHNearestNeighbours<double[]> lsh = new LSHNearestNeighbours<double[]>(firstElementHashFunctionFactory, 4,
+				gauss.distanceFunction());
+		lsh.addAll(data);
+
+		final TIntHashSet[] expected = lsh.search(data);
+
+		lsh.freeze();
+		assertTrue(lsh.isFrozen());
+
+		final TIntHashSet[] frozen = lsh.search(data);
+
+		final LSHNearestNeighbours<double[]> built = LSHNearestNeighbours.createFrozen(firstElementHashFunctionFactory, 4,
+				gauss.distanceFunction(), Arrays.asList(data));
+		final TIntHashSet[] direct = built.search(data);
+
+		for (int i = 0; i < data.length; i++) {
+			final int[] e = expected[i].toArray();
+			final int[] f = frozen[i].toArray();
+			final int[] d = direct[i].toArray();
+			Arrays.sort(e);
+			Arrays.sort(f);
+			Arrays.sort(d);
+
+			assertTrue(Arrays.equals(e, f));
+			assertTrue(Arrays.equals(e, d));
+		}
+	}
+
+	/**
+	 * Test that data can't be added once frozen
+	 */
+	@Test(expected = UnsupportedOperationException.class)
+	public void addToFrozenFails() {
+		final LSHNearestNeighbours<double[]> lsh = new LSHNearestNeighbours<double[]>(firstElementHashFunctionFactory, 4,
+				gauss.distanceFunction());
+		lsh.add(new double[] { 1, 2 });
+		lsh.freeze();
+		lsh.add(new double[] { 1, 2 });
+	}
+
+	/**
+	 * Test that multiple probes find a superset of the matches of a single
+	 * probe
+	 */
+	@Test
+	public void multiProbeFindsMore() {
+		final double[][] data = RandomData.getRandomDoubleArray(1000, 128, 0, 10, 1);
+
+		final LSHNearestNeighbours<double[]> lsh = new LSHNearestNeighbours<double[]>(factory, 2,
+				gauss.distanceFunction());
+		lsh.addAll(data);
+
+		final double[][] qus = RandomData.getRandomDoubleArray(20, 128, 0, 10, 2);
+		final TIntHashSet[] single = lsh.search(qus);
+
+		lsh.setNumProbes(50);
+		final TIntHashSet[] multi = lsh.search(qus);
+
+		int singleTotal = 0;
+		int multiTotal = 0;
+		for (int i = 0; i < qus.length; i++) {
+			for (final int id : single[i].toArray())
+				assertTrue(multi[i].contains(id));
+
+			singleTotal += single[i].size();
+			multiTotal += multi[i].size();
+		}
+
+		assertTrue(multiTotal > singleTotal);
+	}
 }
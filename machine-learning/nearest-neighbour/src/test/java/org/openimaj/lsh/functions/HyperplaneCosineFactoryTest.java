@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.lsh.functions;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.openimaj.util.hash.PerturbableHashFunction;
+
+import cern.jet.random.engine.MersenneTwister;
+
+/**
+ * Tests for the perturbation distances of the functions produced by the
+ * {@link DoubleHyperplaneCosineFactory}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class HyperplaneCosineFactoryTest {
+	private static double distance(PerturbableHashFunction<double[]> fcn, double[] x) {
+		final double[] distances = new double[2];
+		final int code = fcn.computeHashCode(x, distances);
+
+		assertEquals(code, fcn.computeHashCode(x));
+		return code == 1 ? distances[0] : distances[1];
+	}
+
+	/**
+	 * Test that the probe distance is |r.x| / (|r||x|). The hyperplane normal r
+	 * is recovered (up to scale) by probing with the unit basis vectors.
+	 */
+	@Test
+	public void testProbeDistance() {
+		final int ndims = 16;
+		final MersenneTwister rng = new MersenneTwister(1);
+		final DoubleHyperplaneCosineFactory factory = new DoubleHyperplaneCosineFactory(ndims, rng);
+
+		for (int f = 0; f < 10; f++) {
+			final PerturbableHashFunction<double[]> fcn = (PerturbableHashFunction<double[]>) factory.create();
+
+			final double[] r = new double[ndims];
+			double rNormSq = 0;
+			for (int i = 0; i < ndims; i++) {
+				final double[] e = new double[ndims];
+				e[i] = 1;
+
+				final double d = distance(fcn, e);
+				r[i] = fcn.computeHashCode(e) == 1 ? d : -d;
+				rNormSq += r[i] * r[i];
+			}
+			// distance(e_i) = |r_i| / |r|, so these must form a unit vector
+			assertEquals(1, rNormSq, 1e-10);
+
+			for (int t = 0; t < 20; t++) {
+				final double[] x = new double[ndims];
+				final double scale = 0.01 + 100 * rng.nextDouble();
+				double dp = 0;
+				double xNormSq = 0;
+				for (int i = 0; i < ndims; i++) {
+					x[i] = scale * (rng.nextDouble() - 0.5);
+					dp += r[i] * x[i];
+					xNormSq += x[i] * x[i];
+				}
+
+				final double expected = Math.abs(dp) / (Math.sqrt(rNormSq) * Math.sqrt(xNormSq));
+				assertEquals(expected, distance(fcn, x), 1e-10);
+				assertEquals(dp >= 0 ? 1 : 0, fcn.computeHashCode(x));
+			}
+		}
+	}
+}